@@ -38,6 +38,9 @@ public class Asn1Buffer
 
     /** A buffer to store the encoded PDU */
     private byte[] buffer;
+
+    /** The size the buffer is created with, and shrunk back to when cleared */
+    private int initialSize;
     
     
     /**
@@ -45,7 +48,41 @@ public class Asn1Buffer
      */
     public Asn1Buffer()
     {
-        buffer = new byte[DEFAULT_SIZE];
+        this( DEFAULT_SIZE );
+    }
+
+
+    /**
+     * Creates a new Asn1Buffer instance with a given initial size. This is useful
+     * to avoid reallocations when the size of the encoded PDU is known to be large.
+     *
+     * @param size The initial buffer size, rounded up to a multiple of 1024
+     */
+    public Asn1Buffer( int size )
+    {
+        if ( size <= DEFAULT_SIZE )
+        {
+            initialSize = DEFAULT_SIZE;
+        }
+        else
+        {
+            initialSize = ( ( size + DEFAULT_SIZE - 1 ) / DEFAULT_SIZE ) * DEFAULT_SIZE;
+        }
+
+        buffer = new byte[initialSize];
+    }
+
+
+    /**
+     * Creates a new Asn1Buffer instance using a given storage. Subclasses which
+     * manage their own storage pass null.
+     *
+     * @param storage The byte[] used to store the PDU
+     */
+    Asn1Buffer( byte[] storage )
+    {
+        buffer = storage;
+        initialSize = DEFAULT_SIZE;
     }
 
 
@@ -142,6 +179,30 @@ public class Asn1Buffer
     }
 
 
+    /**
+     * Gives access to the stored encoded PDU without copying it. The returned
+     * ByteBuffer shares the content of this Asn1Buffer : it must not be used once
+     * the Asn1Buffer has been cleared or reused for another encoding.
+     *
+     * @return A ByteBuffer wrapping the stored encoded PDU
+     */
+    public ByteBuffer getBuffer()
+    {
+        return ByteBuffer.wrap( buffer, buffer.length - pos, pos ).slice();
+    }
+
+
+    /**
+     * Copy the stored encoded PDU into a given ByteBuffer, at its current position.
+     *
+     * @param target The ByteBuffer to copy the PDU into
+     */
+    public void copyTo( ByteBuffer target )
+    {
+        target.put( buffer, buffer.length - pos, pos );
+    }
+
+
     /**
      * @return The buffer size (ie the maximum number of bytes that can be
      * added to this bffder before it gets extended).
@@ -158,9 +219,9 @@ public class Asn1Buffer
      */
     public void clear()
     {
-        if ( buffer.length > DEFAULT_SIZE )
+        if ( buffer.length > initialSize )
         {
-            buffer = new byte[DEFAULT_SIZE];
+            buffer = new byte[initialSize];
         }
 
         pos = 0;
@@ -1,88 +1,165 @@
 /*
- *   Licensed to the Apache Software Foundation (ASF) under one
- *   or more contributor license agreements.  See the NOTICE file
- *   distributed with this work for additional information
- *   regarding copyright ownership.  The ASF licenses this file
- *   to you under the Apache License, Version 2.0 (the
- *   "License"); you may not use this file except in compliance
- *   with the License.  You may obtain a copy of the License at
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
  *
- *     http://www.apache.org/licenses/LICENSE-2.0
+ *    http://www.apache.org/licenses/LICENSE-2.0
  *
- *   Unless required by applicable law or agreed to in writing,
- *   software distributed under the License is distributed on an
- *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
- *   KIND, either express or implied.  See the License for the
- *   specific language governing permissions and limitations
- *   under the License.
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
  *
  */
-
 package org.apache.directory.api.asn1.util;
 
+import java.nio.ByteBuffer;
+
+import org.apache.directory.api.i18n.I18n;
+
 /**
  * A buffer used to store an encoding PDU. It's auto-extended, and
- * filled by the end.
+ * filled by the end. Unlike {@link Asn1Buffer}, the buffer is never
+ * reallocated : it's a chain of segments, each new segment being twice
+ * as big as the previous one, up to 64 KB. The segments can be obtained as a
+ * ByteBuffer[], to be written to a channel with a gathering write, without
+ * being flattened into a single array.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
-public class Asn1Buffer2
+public class Asn1Buffer2 extends Asn1Buffer
 {
     /** The buffer default size */
     private static final int DEFAULT_SIZE = 1024;
 
+    /** The maximum size of a segment */
+    private static final int MAX_SEGMENT_SIZE = 64 * 1024;
+
     /** The current position in the buffer */
     private int pos = 0;
 
     /** The current size */
-    private int size = DEFAULT_SIZE;
+    private int size;
+
+    /** The number of segments */
+    private int nbSegments;
 
     /** The internal buffer storage */
-    private class InternalBuffer
+    private static final class InternalBuffer
     {
         /** A buffer to store the encoded PDU */
-        private byte[] buffer = new byte[DEFAULT_SIZE];
+        private byte[] buffer;
 
         /** The next buffer, if any */
         private InternalBuffer next;
+
+
+        private InternalBuffer( int size )
+        {
+            buffer = new byte[size];
+        }
     }
 
-    /** The current internal buffer */
+    /** The current internal buffer, containing the first bytes of the PDU */
     private InternalBuffer currentBuffer;
 
+    /** The position of the first byte in the current buffer */
+    private int currentStart;
+
 
     /**
      * Create a new instance of Asn1Buffer2
      */
     public Asn1Buffer2()
     {
-        currentBuffer = new InternalBuffer();
+        super( ( byte[] ) null );
+        currentBuffer = new InternalBuffer( DEFAULT_SIZE );
+        currentStart = DEFAULT_SIZE;
+        size = DEFAULT_SIZE;
+        nbSegments = 1;
     }
 
 
     /**
      * @return The current position in the buffer
      */
+    @Override
     public int getPos()
     {
         return pos;
     }
 
 
+    /**
+     * Set the current position in the buffer. As the buffer is filled by the end, moving
+     * back to an earlier position drops the last stored bytes, and the segments they
+     * were using. Moving forward is not supported.
+     *
+     * @param pos The position to move the buffer to
+     */
+    @Override
+    public void setPos( int pos )
+    {
+        if ( ( pos < 0 ) || ( pos > this.pos ) )
+        {
+            throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION,
+                getClass().getName().concat( ".setPos( " ).concat( Integer.toString( pos ) ).concat( " )" ) ) );
+        }
+
+        if ( pos == 0 )
+        {
+            clear();
+
+            return;
+        }
+
+        int dropped = this.pos - pos;
+
+        while ( dropped > 0 )
+        {
+            int stored = currentBuffer.buffer.length - currentStart;
+
+            if ( dropped < stored )
+            {
+                currentStart += dropped;
+
+                break;
+            }
+
+            // The whole current segment is dropped. As some bytes are kept, it has a next segment
+            dropped -= stored;
+            size -= currentBuffer.buffer.length;
+            currentBuffer = currentBuffer.next;
+            currentStart = 0;
+            nbSegments--;
+        }
+
+        this.pos = pos;
+    }
+
+
     /**
      * Store a byte at the current position in the buffer
      *
      * @param b The byte to store
      */
+    @Override
     public void put( byte b )
     {
-        if ( pos == size )
+        if ( currentStart == 0 )
         {
-            // The buffer needs to be reallocated, its too small
+            // The current segment is full
             extend();
         }
 
-        currentBuffer.buffer[size - pos - 1] = b;
+        currentStart--;
+        currentBuffer.buffer[currentStart] = b;
         pos++;
     }
 
@@ -92,94 +169,124 @@ public class Asn1Buffer2
      *
      * @param bytes The bytes to store
      */
+    @Override
     public void put( byte[] bytes )
     {
         int dataLength = bytes.length;
 
-        while ( true )
+        while ( dataLength > currentStart )
         {
-            int room = size - pos;
-
-            if ( dataLength > room )
-            {
-                // First fulfill the current buffer
-                System.arraycopy(
-                    bytes,
-                    dataLength - room,
-                    currentBuffer,
-                    0,
-                    room );
-
-                dataLength -= room;
-                pos += room;
-
-                extend();
-            }
-            else
-            {
-                // Last bytes are copied in the current buffer
-                System.arraycopy(
-                    bytes,
-                    0,
-                    currentBuffer,
-                    room - dataLength,
-                    dataLength );
-
-                pos += dataLength;
+            // First fulfill the current segment with the last bytes
+            int room = currentStart;
+            dataLength -= room;
+            System.arraycopy( bytes, dataLength, currentBuffer.buffer, 0, room );
+            currentStart = 0;
+            pos += room;
 
-                break;
-            }
+            extend();
         }
+
+        // Last bytes are copied in the current segment
+        currentStart -= dataLength;
+        System.arraycopy( bytes, 0, currentBuffer.buffer, currentStart, dataLength );
+        pos += dataLength;
     }
 
 
     /**
-     * Extend the buffer
+     * Extend the buffer, adding a new segment in front of the current one
      */
     private void extend()
     {
-        InternalBuffer newCurrentBuffer = new InternalBuffer();
+        int segmentSize = Math.min( currentBuffer.buffer.length * 2, MAX_SEGMENT_SIZE );
+        InternalBuffer newCurrentBuffer = new InternalBuffer( segmentSize );
 
         newCurrentBuffer.next = currentBuffer;
         currentBuffer = newCurrentBuffer;
-        size += DEFAULT_SIZE;
+        currentStart = segmentSize;
+        size += segmentSize;
+        nbSegments++;
     }
 
 
     /**
-     * @return The stored encoded PDU.
+     * @return The stored encoded PDU, flattened in a single buffer.
      */
-    public byte[] getBytes()
+    @Override
+    public ByteBuffer getBytes()
     {
-        byte[] result = new byte[pos];
+        ByteBuffer result = ByteBuffer.allocate( pos );
+
+        copyTo( result );
+        result.flip();
 
+        return result;
+    }
+
+
+    /**
+     * @return The stored encoded PDU. As it can't be done without a copy when more
+     * than one segment is used, this is the same as {@link #getBytes()} in this case.
+     */
+    @Override
+    public ByteBuffer getBuffer()
+    {
+        if ( nbSegments == 1 )
+        {
+            return ByteBuffer.wrap( currentBuffer.buffer, currentStart, pos ).slice();
+        }
+
+        return getBytes();
+    }
+
+
+    /**
+     * Exposes the segments containing the encoded PDU, in order, without copying
+     * them. The returned buffers share the content of this Asn1Buffer2 : they must
+     * not be used once it has been cleared or reused for another encoding.
+     *
+     * @return The segments containing the PDU
+     */
+    public ByteBuffer[] getByteBuffers()
+    {
+        ByteBuffer[] result = new ByteBuffer[nbSegments];
         InternalBuffer bufferPtr = currentBuffer;
-        int currentPos = 0;
-        int dataPos = size - pos;
-        int dataLength = DEFAULT_SIZE - dataPos;
+        int start = currentStart;
 
-        while ( bufferPtr.next != null )
+        for ( int i = 0; i < nbSegments; i++ )
         {
-            System.arraycopy(
-                bufferPtr,
-                dataPos,
-                result,
-                currentPos,
-                dataLength );
-
-            currentPos += dataLength;
-            dataPos = 0;
-            dataLength = DEFAULT_SIZE;
+            result[i] = ByteBuffer.wrap( bufferPtr.buffer, start, bufferPtr.buffer.length - start ).slice();
+            bufferPtr = bufferPtr.next;
+            start = 0;
         }
 
         return result;
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void copyTo( ByteBuffer target )
+    {
+        InternalBuffer bufferPtr = currentBuffer;
+        int start = currentStart;
+
+        while ( bufferPtr != null )
+        {
+            target.put( bufferPtr.buffer, start, bufferPtr.buffer.length - start );
+            bufferPtr = bufferPtr.next;
+            start = 0;
+        }
+    }
+
+
     /**
      * @return The buffer size (ie the maximum number of bytes that can be
      * added to this buffer before it gets extended).
      */
+    @Override
     public int getSize()
     {
         return size;
@@ -190,16 +297,19 @@ public class Asn1Buffer2
      * Clear the position, emptying the buffer. If it has grown, reallocate it
      * to its initial size.
      */
+    @Override
     public void clear()
     {
-        pos = 0;
-        size = DEFAULT_SIZE;
-
-        // Un-reference the extended buffer. They will be garbage collected.
+        // Un-reference the extended buffers. They will be garbage collected.
         while ( currentBuffer.next != null )
         {
             currentBuffer = currentBuffer.next;
         }
+
+        pos = 0;
+        size = currentBuffer.buffer.length;
+        currentStart = size;
+        nbSegments = 1;
     }
 
 
@@ -210,13 +320,13 @@ public class Asn1Buffer2
     public String toString()
     {
         StringBuilder sb = new StringBuilder();
-        sb.append( "[" ).append( size ).append( ", " ).append( pos ).append( "] )" );
-
-        InternalBuffer bufferPtr = currentBuffer;
+        sb.append( "[" ).append( size ).append( ", " ).append( pos ).append( "]" );
 
-        while ( bufferPtr.next != null )
+        for ( ByteBuffer segment : getByteBuffers() )
         {
-            sb.append( "\n    " ).append( Asn1StringUtils.dumpBytes( bufferPtr.buffer ) );
+            sb.append( "\n    '" ).append(
+                Asn1StringUtils.dumpBytes( segment.array(), segment.arrayOffset(), segment.remaining() ) )
+                .append( '\'' );
         }
 
         return sb.toString();
@@ -0,0 +1,182 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.asn1.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+
+/**
+ * A pool of {@link Asn1Buffer} instances, sorted by size classes. Each size class
+ * contains buffers which size is at least a power of two, starting at 1 KB. Buffers
+ * that have grown while encoding a PDU are released in the size class matching
+ * their new size, so that the next large PDU can be encoded without reallocating
+ * the buffer. Buffers bigger than the maximum pooled size are not kept.
+ * <br>
+ * This class is thread safe : buffers can be acquired by one thread and released
+ * by another one.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class Asn1BufferPool
+{
+    /** The smallest size class, 1 KB */
+    private static final int MIN_SIZE_SHIFT = 10;
+
+    /** The default maximum pooled buffer size : 1 MB */
+    public static final int DEFAULT_MAX_POOLED_SIZE = 1 << 20;
+
+    /** The default number of buffers kept per size class */
+    public static final int DEFAULT_BUFFERS_PER_CLASS = 16;
+
+    /** The size classes */
+    private final ArrayBlockingQueue<Asn1Buffer>[] sizeClasses;
+
+    /** The biggest size of a pooled buffer */
+    private final int maxPooledSize;
+
+
+    /**
+     * Creates a new Asn1BufferPool instance, keeping up to 16 buffers up to 1 MB
+     * in each size class.
+     */
+    public Asn1BufferPool()
+    {
+        this( DEFAULT_MAX_POOLED_SIZE, DEFAULT_BUFFERS_PER_CLASS );
+    }
+
+
+    /**
+     * Creates a new Asn1BufferPool instance
+     *
+     * @param maxPooledSize The biggest size of a pooled buffer. It will be rounded
+     * down to a power of two, and can't be below 1 KB
+     * @param buffersPerClass The maximum number of buffers kept in each size class
+     */
+    @SuppressWarnings("unchecked")
+    public Asn1BufferPool( int maxPooledSize, int buffersPerClass )
+    {
+        int maxShift = Math.max( MIN_SIZE_SHIFT, 31 - Integer.numberOfLeadingZeros( maxPooledSize ) );
+
+        this.maxPooledSize = 1 << maxShift;
+        sizeClasses = new ArrayBlockingQueue[maxShift - MIN_SIZE_SHIFT + 1];
+
+        for ( int i = 0; i < sizeClasses.length; i++ )
+        {
+            sizeClasses[i] = new ArrayBlockingQueue<>( Math.max( 1, buffersPerClass ) );
+        }
+    }
+
+
+    /**
+     * Gets an empty buffer able to contain at least the given number of bytes
+     * without being extended. If no pooled buffer is available, a new one is created.
+     *
+     * @param expectedSize The expected size of the PDU to encode
+     * @return An empty Asn1Buffer
+     */
+    public Asn1Buffer acquire( int expectedSize )
+    {
+        if ( expectedSize > maxPooledSize )
+        {
+            return new Asn1Buffer( expectedSize );
+        }
+
+        int sizeClass = sizeClassFor( expectedSize );
+
+        // Try the best fitting size class, then the next one
+        for ( int i = sizeClass; ( i < sizeClasses.length ) && ( i <= sizeClass + 1 ); i++ )
+        {
+            Asn1Buffer buffer = sizeClasses[i].poll();
+
+            if ( buffer != null )
+            {
+                return buffer;
+            }
+        }
+
+        return new Asn1Buffer( 1 << ( sizeClass + MIN_SIZE_SHIFT ) );
+    }
+
+
+    /**
+     * Gives back a buffer to the pool. The buffer must not be used by the caller
+     * anymore, including any ByteBuffer obtained through {@link Asn1Buffer#getBuffer()}.
+     *
+     * @param buffer The buffer to release
+     */
+    public void release( Asn1Buffer buffer )
+    {
+        int size = buffer.getSize();
+
+        if ( size > maxPooledSize )
+        {
+            // Too big, let the GC reclaim it
+            return;
+        }
+
+        buffer.setPos( 0 );
+
+        // The buffer is stored in the biggest size class it can fulfill. If this
+        // class is full, the buffer is simply dropped
+        int sizeClass = ( 31 - Integer.numberOfLeadingZeros( size ) ) - MIN_SIZE_SHIFT;
+
+        sizeClasses[sizeClass].offer( buffer );
+    }
+
+
+    /**
+     * @return The biggest size of a pooled buffer
+     */
+    public int getMaxPooledSize()
+    {
+        return maxPooledSize;
+    }
+
+
+    /**
+     * @return The number of buffers currently available in the pool
+     */
+    public int getAvailable()
+    {
+        int available = 0;
+
+        for ( ArrayBlockingQueue<Asn1Buffer> sizeClass : sizeClasses )
+        {
+            available += sizeClass.size();
+        }
+
+        return available;
+    }
+
+
+    /**
+     * Compute the size class index of the smallest power of two greater or equal
+     * to the given size.
+     */
+    private static int sizeClassFor( int size )
+    {
+        if ( size <= ( 1 << MIN_SIZE_SHIFT ) )
+        {
+            return 0;
+        }
+
+        return ( 32 - Integer.numberOfLeadingZeros( size - 1 ) ) - MIN_SIZE_SHIFT;
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.directory.api.asn1.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.nio.ByteBuffer;
 
@@ -115,4 +116,120 @@ public class Asn1Buffer2Test
 
         System.out.println( "Delta: " + ( t1 - t0 ) );
     }
+
+
+    @Test
+    public void testSegmentedPutByte()
+    {
+        Asn1Buffer2 buffer = new Asn1Buffer2();
+
+        for ( int i = 0; i < 1025; i++ )
+        {
+            buffer.put( ( byte ) i );
+        }
+
+        assertEquals( 1025, buffer.getPos() );
+        assertEquals( 3072, buffer.getSize() );
+
+        ByteBuffer[] segments = buffer.getByteBuffers();
+        assertEquals( 2, segments.length );
+        assertEquals( 1, segments[0].remaining() );
+        assertEquals( 1024, segments[1].remaining() );
+
+        ByteBuffer result = buffer.getBytes();
+
+        for ( int i = 0; i < 1025; i++ )
+        {
+            assertEquals( ( byte ) ( 1024 - i ), result.get( i ) );
+        }
+    }
+
+
+    @Test
+    public void testSegmentedPutBytes()
+    {
+        Asn1Buffer2 buffer = new Asn1Buffer2();
+        Asn1Buffer reference = new Asn1Buffer();
+        byte[] bytes = new byte[5000];
+
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = ( byte ) i;
+        }
+
+        buffer.put( ( byte ) 0x04 );
+        reference.put( ( byte ) 0x04 );
+        buffer.put( bytes );
+        reference.put( bytes );
+        buffer.put( new byte[] { 0x30, 0x01 } );
+        reference.put( new byte[] { 0x30, 0x01 } );
+
+        assertEquals( reference.getPos(), buffer.getPos() );
+        assertEquals( reference.getBytes(), buffer.getBytes() );
+
+        int total = 0;
+
+        for ( ByteBuffer segment : buffer.getByteBuffers() )
+        {
+            total += segment.remaining();
+        }
+
+        assertEquals( 5003, total );
+
+        buffer.clear();
+        assertEquals( 0, buffer.getPos() );
+        assertEquals( 1, buffer.getByteBuffers().length );
+        assertEquals( 0, buffer.getBytes().remaining() );
+    }
+
+
+    @Test
+    public void testSetPos()
+    {
+        Asn1Buffer2 buffer = new Asn1Buffer2();
+        Asn1Buffer reference = new Asn1Buffer();
+        byte[] bytes = new byte[3000];
+
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = ( byte ) i;
+        }
+
+        buffer.put( bytes );
+        reference.put( bytes );
+        assertEquals( 2, buffer.getByteBuffers().length );
+
+        // Drop some bytes in the current segment
+        buffer.put( new byte[] { 0x30, 0x01 } );
+        buffer.setPos( 3000 );
+        assertEquals( reference.getBytes(), buffer.getBytes() );
+
+        // Drop the whole first segment
+        buffer.setPos( 1024 );
+        reference.setPos( 1024 );
+        assertEquals( 1, buffer.getByteBuffers().length );
+        assertEquals( 1024, buffer.getSize() );
+        assertEquals( reference.getBytes(), buffer.getBytes() );
+
+        // The buffer can be filled again
+        buffer.put( ( byte ) 0x04 );
+        reference.put( ( byte ) 0x04 );
+        assertEquals( 1025, buffer.getPos() );
+        assertEquals( reference.getBytes(), buffer.getBytes() );
+
+        // Moving forward is not supported
+        try
+        {
+            buffer.setPos( 2000 );
+            fail();
+        }
+        catch ( UnsupportedOperationException uoe )
+        {
+            // Expected
+        }
+
+        buffer.setPos( 0 );
+        assertEquals( 0, buffer.getPos() );
+        assertEquals( 0, buffer.getBytes().remaining() );
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.asn1.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Test for the Asn1BufferPool class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class Asn1BufferPoolTest
+{
+    @Test
+    public void testAcquireRelease()
+    {
+        Asn1BufferPool pool = new Asn1BufferPool();
+
+        Asn1Buffer buffer = pool.acquire( 10 );
+        assertEquals( 1024, buffer.getSize() );
+
+        buffer.put( new byte[] { 0x01, 0x02 } );
+        pool.release( buffer );
+        assertEquals( 1, pool.getAvailable() );
+
+        Asn1Buffer reused = pool.acquire( 100 );
+        assertSame( buffer, reused );
+        assertEquals( 0, reused.getPos() );
+        assertEquals( 0, pool.getAvailable() );
+    }
+
+
+    @Test
+    public void testSizeClasses()
+    {
+        Asn1BufferPool pool = new Asn1BufferPool();
+
+        Asn1Buffer small = pool.acquire( 0 );
+        Asn1Buffer large = pool.acquire( 5000 );
+        assertEquals( 8192, large.getSize() );
+
+        pool.release( small );
+        pool.release( large );
+
+        // The small buffer can't be used for a large PDU
+        Asn1Buffer buffer = pool.acquire( 6000 );
+        assertSame( large, buffer );
+
+        buffer = pool.acquire( 6000 );
+        assertNotSame( small, buffer );
+        assertTrue( buffer.getSize() >= 6000 );
+    }
+
+
+    @Test
+    public void testOversizedBuffersAreNotPooled()
+    {
+        Asn1BufferPool pool = new Asn1BufferPool( 4096, 2 );
+
+        Asn1Buffer buffer = pool.acquire( 10000 );
+        assertEquals( 10240, buffer.getSize() );
+
+        pool.release( buffer );
+        assertEquals( 0, pool.getAvailable() );
+    }
+
+
+    @Test
+    public void testGetBufferDoesNotCopy()
+    {
+        Asn1Buffer buffer = new Asn1Buffer( 2000 );
+        assertEquals( 2048, buffer.getSize() );
+
+        buffer.put( new byte[] { 0x01, 0x02, 0x03 } );
+        ByteBuffer view = buffer.getBuffer();
+
+        assertEquals( 3, view.remaining() );
+        assertEquals( 0x01, view.get( 0 ) );
+        assertEquals( 0x03, view.get( 2 ) );
+
+        buffer.put( ( byte ) 0x7F );
+        ByteBuffer copy = ByteBuffer.allocate( 4 );
+        buffer.copyTo( copy );
+        assertEquals( 0x7F, copy.get( 0 ) );
+    }
+}
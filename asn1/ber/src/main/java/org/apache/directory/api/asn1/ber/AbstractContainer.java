@@ -37,6 +37,9 @@ import org.apache.directory.api.asn1.ber.tlv.TLVStateEnum;
  */
 public abstract class AbstractContainer implements Asn1Container
 {
+    /** The maximum number of TLVs kept for the next PDUs */
+    private static final int MAX_RECYCLED_TLVS = 256;
+
     /** All the possible grammars */
     private Grammar<? extends Asn1Container> grammar;
 
@@ -71,6 +74,19 @@ public abstract class AbstractContainer implements Asn1Container
      * for constructed types */
     private boolean gathering = false;
 
+    /** A flag telling if the primitive values should be sliced from the stream
+     * instead of being copied */
+    private boolean slicing = false;
+
+    /** The TLVs created by this container, reused once the container has been cleaned */
+    private TLV[] tlvs = new TLV[16];
+
+    /** The number of TLVs in the tlvs array */
+    private int nbTlvs;
+
+    /** The position of the next TLV to reuse in the tlvs array */
+    private int tlvPos;
+
 
     /**
      * Creates a new instance of AbstractContainer with a starting state.
@@ -215,7 +231,8 @@ public abstract class AbstractContainer implements Asn1Container
 
 
     /**
-     * Clean the container for the next usage.
+     * Clean the container for the next usage. The TLVs used to decode the
+     * previous PDU will be reused.
      */
     public void clean()
     {
@@ -223,6 +240,7 @@ public abstract class AbstractContainer implements Asn1Container
         parentTLV = null;
         transition = ( ( States ) transition ).getStartState();
         state = TLVStateEnum.TAG_STATE_START;
+        tlvPos = 0;
     }
 
 
@@ -236,6 +254,41 @@ public abstract class AbstractContainer implements Asn1Container
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TLV getNewTlv()
+    {
+        int newId = getNewTlvId();
+
+        if ( tlvPos < nbTlvs )
+        {
+            TLV recycled = tlvs[tlvPos++];
+            recycled.reset( newId );
+
+            return recycled;
+        }
+
+        TLV newTlv = new TLV( newId );
+
+        if ( nbTlvs < MAX_RECYCLED_TLVS )
+        {
+            if ( nbTlvs == tlvs.length )
+            {
+                TLV[] newTlvs = new TLV[nbTlvs * 2];
+                System.arraycopy( tlvs, 0, newTlvs, 0, nbTlvs );
+                tlvs = newTlvs;
+            }
+
+            tlvs[nbTlvs++] = newTlv;
+            tlvPos++;
+        }
+
+        return newTlv;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -371,4 +424,23 @@ public ByteBuffer getStream()
         this.gathering = gathering;
     }
 
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSlicing()
+    {
+        return slicing;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSlicing( boolean slicing )
+    {
+        this.slicing = slicing;
+    }
 }
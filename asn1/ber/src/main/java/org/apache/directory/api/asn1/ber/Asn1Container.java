@@ -153,6 +153,15 @@ public interface Asn1Container
     int getNewTlvId();
 
 
+    /**
+     * Gets a new TLV, with a new id. The TLV may have been used by a previous PDU,
+     * as the TLVs are recycled when the container is cleaned.
+     *
+     * @return an empty TLV
+     */
+    TLV getNewTlv();
+
+
     /**
      * Gets the current TLV id
      * @return a unique value representing the current TLV id
@@ -223,4 +232,21 @@ public interface Asn1Container
      * into the container. If not set, the default value is 'false'
      */
     void setGathering( boolean isGathering );
+
+
+    /**
+     * @return true if the decoder should slice the primitive values from the stream
+     * instead of copying them. In this mode, a value is only guaranteed to be
+     * available while the action associated with its TLV is executed.
+     */
+    boolean isSlicing();
+
+
+    /**
+     * Set the slicing flag
+     * @param slicing true to ask the Asn1Decoder to reference the values bytes
+     * in the incoming stream instead of copying them. If not set, the default
+     * value is 'false'
+     */
+    void setSlicing( boolean slicing );
 }
@@ -87,7 +87,7 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
         {
             byte octet = stream.get();
 
-            TLV tlv = new TLV( container.getNewTlvId() );
+            TLV tlv = container.getNewTlv();
             tlv.setTag( octet );
 
             // Store the current TLV in the container.
@@ -167,9 +167,9 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
 
         BerValue value = current.getValue();
 
-        if ( ( value != null ) && ( value.getData() != null ) )
+        if ( ( value != null ) && value.hasData() )
         {
-            return current.getExpectedLength() == value.getData().length;
+            return current.getExpectedLength() == value.getDataLength();
         }
         else
         {
@@ -533,8 +533,17 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
             }
             else
             {
-                currentTlv.getValue().init( length );
-                stream.get( currentTlv.getValue().getData(), 0, length );
+                if ( container.isSlicing() && !container.isGathering() )
+                {
+                    // The value is completely in the stream : just reference it
+                    currentTlv.getValue().setSlice( stream, length );
+                }
+                else
+                {
+                    currentTlv.getValue().init( length );
+                    stream.get( currentTlv.getValue().getData(), 0, length );
+                }
+
                 container.setState( TLVStateEnum.TLV_STATE_DONE );
 
                 return MORE;
@@ -571,9 +580,7 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
         else
         {
             int remaining = length - currentLength;
-            byte[] data = new byte[remaining];
-            stream.get( data, 0, remaining );
-            currentTlv.getValue().addData( data );
+            currentTlv.getValue().addData( stream, remaining );
             container.setState( TLVStateEnum.TLV_STATE_DONE );
 
             return MORE;
@@ -631,6 +638,14 @@ public final class Asn1Decoder implements TLVBerDecoderMBean
             container.setState( TLVStateEnum.TAG_STATE_START );
         }
 
+        // The stream may be reused once we return, so we can't keep a view on it
+        TLV currentTlv = container.getCurrentTLV();
+
+        if ( currentTlv != null )
+        {
+            currentTlv.getValue().releaseSlice();
+        }
+
         return stream.hasRemaining();
     }
 
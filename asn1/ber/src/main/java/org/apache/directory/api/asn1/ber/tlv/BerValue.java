@@ -45,6 +45,9 @@ public class BerValue
     /** The current position of the last byte in the data buffer */
     private int currentPos;
 
+    /** A view on the decoded stream, used instead of a copy when the value is sliced */
+    private ByteBuffer slice;
+
     /** The encoded byte for a TRUE value */
     public static final byte TRUE_VALUE = ( byte ) 0xFF;
 
@@ -134,6 +137,7 @@ public class BerValue
     public void init( int size )
     {
         data = new byte[size];
+        slice = null;
         currentPos = 0;
     }
 
@@ -144,21 +148,123 @@ public class BerValue
     public void reset()
     {
         data = null;
+        slice = null;
         currentPos = 0;
     }
 
 
     /**
-     * Get the Values'data
+     * Get the Values'data. If the value is a slice of the decoded stream, the
+     * bytes are copied into a byte[] the first time this method is called.
      *
      * @return Returns the data.
      */
     public byte[] getData()
     {
+        if ( slice != null )
+        {
+            data = new byte[slice.remaining()];
+            slice.duplicate().get( data );
+            slice = null;
+        }
+
         return data;
     }
 
 
+    /**
+     * Get the Value's data as a ByteBuffer, without copying it. The returned buffer
+     * is a view on the decoded stream when the value is sliced, or wraps the
+     * internal byte[] otherwise. The caller must not keep it after the grammar
+     * action processing this value has returned.
+     *
+     * @return A ByteBuffer containing the data, or null if there is no data
+     */
+    public ByteBuffer getDataBuffer()
+    {
+        if ( slice != null )
+        {
+            return slice.duplicate();
+        }
+
+        if ( data != null )
+        {
+            return ByteBuffer.wrap( data );
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Makes this Value a view on the next <code>length</code> bytes of the given
+     * stream, instead of copying them. The stream position is moved after the
+     * sliced bytes. The bytes will be copied only if {@link #getData()} is called.
+     *
+     * @param stream The stream containing the value
+     * @param length The number of bytes to slice
+     */
+    public void setSlice( ByteBuffer stream, int length )
+    {
+        ByteBuffer view = stream.slice();
+        view.limit( length );
+        stream.position( stream.position() + length );
+
+        slice = view;
+        data = null;
+        currentPos = length;
+    }
+
+
+    /**
+     * @return <code>true</code> if the Value is a view on the decoded stream
+     */
+    public boolean isSliced()
+    {
+        return slice != null;
+    }
+
+
+    /**
+     * Release the view on the decoded stream, if any. Once called, the data
+     * that have not been read through {@link #getData()} are lost. The decoder calls
+     * this method when the action associated with the TLV has been executed, as the
+     * stream may be reused by the caller.
+     */
+    public void releaseSlice()
+    {
+        slice = null;
+    }
+
+
+    /**
+     * @return <code>true</code> if the Value contains some data, sliced or not
+     */
+    public boolean hasData()
+    {
+        return ( data != null ) || ( slice != null );
+    }
+
+
+    /**
+     * @return The size of the Value's data, sliced or not
+     */
+    public int getDataLength()
+    {
+        if ( slice != null )
+        {
+            return slice.remaining();
+        }
+
+        if ( data != null )
+        {
+            return data.length;
+        }
+
+        return 0;
+    }
+
+
     /**
      * Set a block of bytes in the Value
      *
@@ -179,7 +285,19 @@ public class BerValue
      */
     public void addData( ByteBuffer buffer )
     {
-        int length = buffer.remaining();
+        addData( buffer, buffer.remaining() );
+    }
+
+
+    /**
+     * Append a given number of bytes from a buffer to the data buffer, without
+     * any intermediate copy.
+     *
+     * @param buffer The buffer containing the data to append.
+     * @param length The number of bytes to read from the buffer
+     */
+    public void addData( ByteBuffer buffer, int length )
+    {
         buffer.get( data, currentPos, length );
         currentPos += length;
     }
@@ -1244,7 +1362,11 @@ public class BerValue
         StringBuilder sb = new StringBuilder();
         sb.append( "DATA" );
 
-        if ( data != null )
+        if ( slice != null )
+        {
+            sb.append( "[sliced, " ).append( slice.remaining() ).append( " bytes]" );
+        }
+        else if ( data != null )
         {
             sb.append( '[' );
             sb.append( Asn1StringUtils.dumpBytes( data ) );
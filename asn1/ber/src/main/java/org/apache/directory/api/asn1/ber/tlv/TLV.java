@@ -169,12 +169,26 @@ public class TLV
         tag = 0;
         length = 0;
         lengthNbBytes = 0;
+        lengthBytesRead = 0;
         value.reset();
+        parent = null;
 
         expectedLength = 0;
     }
 
 
+    /**
+     * Reset the TLV and give it a new id, so it can be reused for the next PDU decoding.
+     *
+     * @param id the TLV's new id
+     */
+    public void reset( int id )
+    {
+        reset();
+        this.id = id;
+    }
+
+
     /**
      * @return Returns the tag.
      */
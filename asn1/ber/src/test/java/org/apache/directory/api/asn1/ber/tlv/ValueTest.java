@@ -21,6 +21,7 @@ package org.apache.directory.api.asn1.ber.tlv;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -789,5 +790,41 @@ public class ValueTest
         
         assertEquals( "0x03 0x03 0x06 0x00 0x40 ", Asn1StringUtils.dumpBytes( buffer.array() )  );
     }
-}
 
+
+    /**
+     * Test that a sliced value references the stream and is copied on demand
+     */
+    @Test
+    public void testSlicedValue()
+    {
+        ByteBuffer stream = ByteBuffer.wrap( new byte[]
+            { 0x01, 0x02, 0x03, 0x04 } );
+        stream.position( 1 );
+
+        BerValue value = new BerValue();
+        value.setSlice( stream, 2 );
+
+        assertTrue( value.isSliced() );
+        assertEquals( 3, stream.position() );
+        assertEquals( 2, value.getDataLength() );
+
+        ByteBuffer view = value.getDataBuffer();
+        assertEquals( 2, view.remaining() );
+        assertEquals( 0x02, view.get() );
+
+        // Reading the view does not consume the value
+        assertTrue( Arrays.equals( new byte[]
+            { 0x02, 0x03 }, value.getData() ) );
+        assertFalse( value.isSliced() );
+
+        // The materialized data does not depend on the stream anymore
+        stream.put( 1, ( byte ) 0x7F );
+        assertTrue( Arrays.equals( new byte[]
+            { 0x02, 0x03 }, value.getData() ) );
+
+        value.setSlice( stream, 1 );
+        value.releaseSlice();
+        assertFalse( value.hasData() );
+    }
+}
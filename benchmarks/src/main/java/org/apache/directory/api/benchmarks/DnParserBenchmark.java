@@ -0,0 +1,171 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.benchmarks;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Measures the parsing of real world Dns. The simple Dns are parsed by the FastDnParser,
+ * the other ones by the ComplexDnParser, once the FastDnParser has given up. Each operation
+ * parses all the Dns of a kind.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DnParserBenchmark
+{
+    /** Dns with single valued Rdns and no special character */
+    private static final String[] SIMPLE =
+        {
+            "uid=jdoe,ou=People,dc=example,dc=com",
+            "cn=John Doe,ou=Engineering,o=Acme,c=US",
+            "ou=Groups,dc=example,dc=com",
+            "cn=admin,ou=system"
+        };
+
+    /** Dns with multi-valued Rdns */
+    private static final String[] MULTI_VALUED =
+        {
+            "cn=John Doe+uid=jdoe,ou=People,dc=example,dc=com",
+            "uid=jdoe+employeeNumber=12345,ou=People,dc=example,dc=com",
+            "cn=Printers+l=Paris,ou=Devices,o=Acme,c=FR",
+            "cn=Jane Smith + sn=Smith,ou=People,dc=example,dc=com"
+        };
+
+    /** Active Directory like Dns, with escaped and quoted values */
+    private static final String[] ESCAPED =
+        {
+            "CN=Smith\\, John,OU=Sales,OU=Users,DC=corp,DC=example,DC=com",
+            "CN=Doe\\, Jane (Contractor),OU=IT\\+Ops,DC=corp,DC=example,DC=com",
+            "CN=J\\C3\\BCrgen M\\C3\\BCller,OU=Berlin,DC=corp,DC=example,DC=com",
+            "OU=\"Sales, EMEA\",DC=corp,DC=example,DC=com"
+        };
+
+    /** Dns with hex encoded values */
+    private static final String[] HEX =
+        {
+            "cn=#4a6f686e20446f65,ou=People,dc=example,dc=com",
+            "uid=#6a646f65,ou=People,dc=example,dc=com",
+            "cn=#4a616e6520536d697468+uid=jsmith,ou=People,dc=example,dc=com",
+            "ou=#53616c6573,dc=example,dc=com"
+        };
+
+    /** The kind of Dns to parse */
+    @Param(
+        { "SIMPLE", "MULTI_VALUED", "ESCAPED", "HEX" })
+    String kind;
+
+    /** The schema manager */
+    private SchemaManager schemaManager;
+
+    /** The Dns to parse */
+    private String[] names;
+
+
+    /**
+     * Loads the schema and selects the Dns
+     *
+     * @throws LdapException If the schema can't be loaded
+     */
+    @Setup
+    public void setup() throws LdapException
+    {
+        schemaManager = new DefaultSchemaManager();
+
+        switch ( kind )
+        {
+            case "SIMPLE":
+                names = SIMPLE;
+                break;
+
+            case "MULTI_VALUED":
+                names = MULTI_VALUED;
+                break;
+
+            case "ESCAPED":
+                names = ESCAPED;
+                break;
+
+            case "HEX":
+                names = HEX;
+                break;
+
+            default:
+                throw new IllegalArgumentException( kind );
+        }
+    }
+
+
+    /**
+     * Parses the Dns without a SchemaManager
+     *
+     * @param blackhole The blackhole consuming the parsed Dns
+     * @throws LdapInvalidDnException If a Dn is invalid
+     */
+    @Benchmark
+    public void parse( Blackhole blackhole ) throws LdapInvalidDnException
+    {
+        for ( String name : names )
+        {
+            blackhole.consume( new Dn( name ) );
+        }
+    }
+
+
+    /**
+     * Parses the Dns with a SchemaManager, normalizing their values
+     *
+     * @param blackhole The blackhole consuming the parsed Dns
+     * @throws LdapInvalidDnException If a Dn is invalid
+     */
+    @Benchmark
+    public void parseSchemaAware( Blackhole blackhole ) throws LdapInvalidDnException
+    {
+        for ( String name : names )
+        {
+            blackhole.consume( new Dn( schemaManager, name ) );
+        }
+    }
+}
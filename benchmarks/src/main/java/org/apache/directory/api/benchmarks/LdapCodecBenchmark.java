@@ -0,0 +1,173 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.benchmarks;
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.asn1.DecoderException;
+import org.apache.directory.api.asn1.EncoderException;
+import org.apache.directory.api.asn1.ber.Asn1Decoder;
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.ldap.codec.api.LdapApiService;
+import org.apache.directory.api.ldap.codec.api.LdapEncoder;
+import org.apache.directory.api.ldap.codec.api.LdapFastPathDecoder;
+import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.api.ldap.codec.osgi.DefaultLdapCodecService;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the encoding and the decoding of the {@link LdapPdus} with the
+ * generic codec : {@link Asn1Decoder} with a {@link LdapMessageContainer} and
+ * {@link LdapEncoder} with an {@link Asn1Buffer}. The decoding is also measured with
+ * the {@link LdapFastPathDecoder} first, as a connection enabling it does.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LdapCodecBenchmark
+{
+    /** The PDU to encode and decode */
+    @Param(
+        { "SMALL_BIND", "SEARCH_RESULT_ENTRY_50", "LARGE_BINARY_ADD", "PAGED_SEARCH" })
+    LdapPdus pdu;
+
+    /** The codec service */
+    private LdapApiService codec;
+
+    /** The message to encode */
+    private Message message;
+
+    /** The encoded message, to decode */
+    private byte[] encoded;
+
+    /** The container used to decode the PDUs, reused as a connection would */
+    private LdapMessageContainer<Message> container;
+
+    /** The buffer used to encode the messages, reused as a connection would */
+    private Asn1Buffer buffer;
+
+
+    /**
+     * Creates the codec and the PDU
+     *
+     * @throws LdapException If the message can't be created
+     * @throws EncoderException If the message can't be encoded
+     */
+    @Setup
+    public void setup() throws LdapException, EncoderException
+    {
+        codec = new DefaultLdapCodecService();
+        message = pdu.createMessage();
+        encoded = pdu.encode( codec );
+        container = new LdapMessageContainer<>( codec );
+        buffer = new Asn1Buffer();
+    }
+
+
+    /**
+     * Decodes the PDU
+     *
+     * @return The decoded message
+     * @throws DecoderException If the PDU can't be decoded
+     */
+    @Benchmark
+    public Message decode() throws DecoderException
+    {
+        Asn1Decoder.decode( ByteBuffer.wrap( encoded ), container );
+
+        Message decoded = container.getMessage();
+        container.clean();
+
+        return decoded;
+    }
+
+
+    /**
+     * Decodes the PDU with the single-pass decoder, falling back to the generic
+     * grammar for the PDUs it does not handle
+     *
+     * @return The decoded message
+     * @throws DecoderException If the PDU can't be decoded
+     */
+    @Benchmark
+    public Message decodeFastPath() throws DecoderException
+    {
+        ByteBuffer stream = ByteBuffer.wrap( encoded );
+        Message decoded = LdapFastPathDecoder.decode( stream, container );
+
+        if ( decoded != null )
+        {
+            return decoded;
+        }
+
+        return decode();
+    }
+
+
+    /**
+     * Encodes the message, extracting the PDU in a new ByteBuffer
+     *
+     * @return The encoded PDU
+     * @throws EncoderException If the message can't be encoded
+     */
+    @Benchmark
+    public ByteBuffer encode() throws EncoderException
+    {
+        buffer.clear();
+
+        return LdapEncoder.encodeMessage( buffer, codec, message );
+    }
+
+
+    /**
+     * Encodes the message, without extracting the PDU from the Asn1Buffer
+     *
+     * @return The encoded PDU, sharing the Asn1Buffer content
+     * @throws EncoderException If the message can't be encoded
+     */
+    @Benchmark
+    public ByteBuffer encodeNoCopy() throws EncoderException
+    {
+        buffer.clear();
+        LdapEncoder.encodeMessageReverse( buffer, codec, message );
+
+        return buffer.getBuffer();
+    }
+}
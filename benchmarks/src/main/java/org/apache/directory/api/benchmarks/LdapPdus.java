@@ -0,0 +1,169 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.benchmarks;
+
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.directory.api.asn1.EncoderException;
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.ldap.codec.api.LdapApiService;
+import org.apache.directory.api.ldap.codec.api.LdapEncoder;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.AddRequest;
+import org.apache.directory.api.ldap.model.message.AddRequestImpl;
+import org.apache.directory.api.ldap.model.message.BindRequest;
+import org.apache.directory.api.ldap.model.message.BindRequestImpl;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * The representative PDUs used by the codec benchmarks.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public enum LdapPdus
+{
+    /** A simple BindRequest */
+    SMALL_BIND
+    {
+        @Override
+        Message createMessage() throws LdapException
+        {
+            BindRequest bindRequest = new BindRequestImpl();
+            bindRequest.setMessageId( 1 );
+            bindRequest.setSimple( true );
+            bindRequest.setName( "uid=admin,ou=system" );
+            bindRequest.setCredentials( Strings.getBytesUtf8( "secret" ) );
+
+            return bindRequest;
+        }
+    },
+
+    /** A SearchResultEntry with 50 attributes */
+    SEARCH_RESULT_ENTRY_50
+    {
+        @Override
+        Message createMessage() throws LdapException
+        {
+            Entry entry = new DefaultEntry( "uid=jdoe,ou=people,dc=example,dc=com",
+                "objectClass: top",
+                "objectClass: person",
+                "objectClass: organizationalPerson",
+                "objectClass: inetOrgPerson",
+                "uid: jdoe",
+                "cn: John Doe",
+                "sn: Doe" );
+
+            for ( int i = entry.size(); i < 50; i++ )
+            {
+                entry.add( "attribute" + i, "A value for the attribute number " + i );
+            }
+
+            SearchResultEntry searchResultEntry = new SearchResultEntryImpl( 2 );
+            searchResultEntry.setEntry( entry );
+
+            return searchResultEntry;
+        }
+    },
+
+    /** An AddRequest containing a 10 MB binary value */
+    LARGE_BINARY_ADD
+    {
+        @Override
+        Message createMessage() throws LdapException
+        {
+            byte[] photo = new byte[10 * 1024 * 1024];
+            Arrays.fill( photo, ( byte ) 0xA5 );
+
+            Entry entry = new DefaultEntry( "uid=jdoe,ou=people,dc=example,dc=com",
+                "objectClass: top",
+                "objectClass: person",
+                "objectClass: inetOrgPerson",
+                "uid: jdoe",
+                "cn: John Doe",
+                "sn: Doe" );
+            entry.add( "jpegPhoto", photo );
+
+            AddRequest addRequest = new AddRequestImpl();
+            addRequest.setMessageId( 3 );
+            addRequest.setEntry( entry );
+
+            return addRequest;
+        }
+    },
+
+    /** A SearchRequest with a paged search control */
+    PAGED_SEARCH
+    {
+        @Override
+        Message createMessage() throws LdapException
+        {
+            SearchRequest searchRequest = new SearchRequestImpl();
+            searchRequest.setMessageId( 4 );
+            searchRequest.setBase( new Dn( "ou=people,dc=example,dc=com" ) );
+            searchRequest.setScope( SearchScope.SUBTREE );
+            searchRequest.setFilter( "(&(objectClass=person)(|(cn=John*)(sn=Doe)))" );
+            searchRequest.addAttributes( "cn", "sn", "mail" );
+
+            PagedResults pagedResults = new PagedResultsImpl();
+            pagedResults.setSize( 100 );
+            pagedResults.setCookie( Strings.getBytesUtf8( "0123456789abcdef" ) );
+            searchRequest.addControl( pagedResults );
+
+            return searchRequest;
+        }
+    };
+
+
+    /**
+     * @return A new instance of the message
+     * @throws LdapException If the message can't be created
+     */
+    abstract Message createMessage() throws LdapException;
+
+
+    /**
+     * Encodes the message
+     *
+     * @param codec The LDAP codec service
+     * @return The encoded PDU
+     * @throws LdapException If the message can't be created
+     * @throws EncoderException If the message can't be encoded
+     */
+    byte[] encode( LdapApiService codec ) throws LdapException, EncoderException
+    {
+        ByteBuffer pdu = LdapEncoder.encodeMessage( new Asn1Buffer(), codec, createMessage() );
+
+        return pdu.array();
+    }
+}
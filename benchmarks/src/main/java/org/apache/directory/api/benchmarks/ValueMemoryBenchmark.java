@@ -0,0 +1,187 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.benchmarks;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
+import org.apache.directory.api.util.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the memory used by schema aware entries : each operation creates a corpus
+ * of inetOrgPerson entries, as a replica loading them would. The gc.alloc.rate.norm
+ * metric of the GC profiler gives the number of bytes allocated to build the corpus,
+ * most of them being retained by the Values. The {@link #main(String[])} method
+ * measures the heap actually retained by the corpus.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueMemoryBenchmark
+{
+    private static final String[] FIRST_NAMES =
+        { "John", "Jane", "Alice", "Bob", "Carol", "David", "Emma", "Frank", "Grace", "Henry" };
+
+    private static final String[] LAST_NAMES =
+        { "Doe", "Smith", "Martin", "Bernard", "Dubois", "Garcia", "Miller", "Wilson", "Moore", "Taylor" };
+
+    private static final String[] DEPARTMENTS =
+        { "Engineering", "Sales", "Marketing", "Human Resources", "Finance" };
+
+    /** The number of entries in the corpus */
+    @Param(
+        { "1000" })
+    int size;
+
+    /** The schema manager */
+    private SchemaManager schemaManager;
+
+    /** The Dn of each entry */
+    private List<String> dns;
+
+    /** The LDIF elements of each entry */
+    private List<Object[]> corpus;
+
+
+    /**
+     * Loads the schema and generates the corpus
+     *
+     * @throws LdapException If the schema can't be loaded
+     */
+    @Setup
+    public void setup() throws LdapException
+    {
+        schemaManager = new DefaultSchemaManager();
+        dns = new ArrayList<>( size );
+        corpus = new ArrayList<>( size );
+
+        // Always the same corpus
+        Random random = new Random( 42L );
+
+        for ( int i = 0; i < size; i++ )
+        {
+            String firstName = FIRST_NAMES[random.nextInt( FIRST_NAMES.length )];
+            String lastName = LAST_NAMES[random.nextInt( LAST_NAMES.length )];
+            String uid = Strings.toLowerCaseAscii( firstName.charAt( 0 ) + lastName + i );
+
+            dns.add( "uid=" + uid + ",ou=people,dc=example,dc=com" );
+            corpus.add( new Object[]
+                {
+                    "objectClass: top",
+                    "objectClass: person",
+                    "objectClass: organizationalPerson",
+                    "objectClass: inetOrgPerson",
+                    "uid: " + uid,
+                    "cn: " + firstName + " " + lastName,
+                    "sn: " + lastName,
+                    "givenName: " + firstName,
+                    "displayName: " + firstName + " " + lastName,
+                    "mail: " + uid + "@example.com",
+                    "telephoneNumber: +1 408 555 " + ( 1000 + random.nextInt( 9000 ) ),
+                    "employeeNumber: " + ( 100000 + i ),
+                    "ou: " + DEPARTMENTS[random.nextInt( DEPARTMENTS.length )],
+                    "title: Member of the " + DEPARTMENTS[random.nextInt( DEPARTMENTS.length )] + " team",
+                    "description: Account created by the provisioning system"
+                } );
+        }
+    }
+
+
+    /**
+     * Creates the schema aware entries of the corpus
+     *
+     * @return The entries
+     * @throws LdapException If an entry can't be created
+     */
+    @Benchmark
+    public List<Entry> createEntries() throws LdapException
+    {
+        List<Entry> entries = new ArrayList<>( size );
+
+        for ( int i = 0; i < size; i++ )
+        {
+            entries.add( new DefaultEntry( schemaManager, dns.get( i ), corpus.get( i ) ) );
+        }
+
+        return entries;
+    }
+
+
+    /**
+     * Measures the heap retained by the entries of a corpus, which the allocation rate
+     * does not give : the entries are kept while the used heap is compared.
+     *
+     * @param args The number of entries of the corpus, 20000 by default
+     * @throws LdapException If the corpus can't be created
+     */
+    public static void main( String[] args ) throws LdapException
+    {
+        ValueMemoryBenchmark benchmark = new ValueMemoryBenchmark();
+        benchmark.size = ( args.length > 0 ) ? Integer.parseInt( args[0] ) : 20000;
+        benchmark.setup();
+
+        long before = getUsedHeap();
+        List<Entry> entries = benchmark.createEntries();
+        long after = getUsedHeap();
+
+        System.out.println( ( after - before ) / entries.size() + " bytes retained per entry" );
+    }
+
+
+    /**
+     * @return The heap used once the garbage collector has run
+     */
+    private static long getUsedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,4 @@
+package org.apache.directory.api.benchmarks.generated;
+public class DnParserBenchmark_jmhType extends DnParserBenchmark_jmhType_B3 {
+}
+
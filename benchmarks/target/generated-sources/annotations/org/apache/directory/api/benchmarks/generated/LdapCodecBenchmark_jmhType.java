@@ -0,0 +1,4 @@
+package org.apache.directory.api.benchmarks.generated;
+public class LdapCodecBenchmark_jmhType extends LdapCodecBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package org.apache.directory.api.benchmarks.generated;
+public class ValueMemoryBenchmark_jmhType extends ValueMemoryBenchmark_jmhType_B3 {
+}
+
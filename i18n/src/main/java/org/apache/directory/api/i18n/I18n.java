@@ -214,6 +214,14 @@ public enum I18n
     ERR_04178_CANT_LOAD_KEY_STORE( "ERR_04178_CANT_LOAD_KEY_STORE" ),
     ERR_04179_TRUST_STORE_CANT_BE_READ( "ERR_04179_TRUST_STORE_CANT_BE_READ" ),
     ERR_04180_FILE_DOES_NOT_EXIST_ON_CLASSPATH( "ERR_04180_FILE_DOES_NOT_EXIST_ON_CLASSPATH" ),
+    ERR_04181_POOL_CLOSED( "ERR_04181_POOL_CLOSED" ),
+    ERR_04182_NOT_AN_ASYNC_CONNECTION( "ERR_04182_NOT_AN_ASYNC_CONNECTION" ),
+    ERR_04183_NOT_A_POOLED_CONNECTION( "ERR_04183_NOT_A_POOLED_CONNECTION" ),
+    ERR_04184_INVALID_POOL_SIZE( "ERR_04184_INVALID_POOL_SIZE" ),
+    ERR_04185_UNSUPPORTED_BATCH_REQUEST( "ERR_04185_UNSUPPORTED_BATCH_REQUEST" ),
+    ERR_04186_INVALID_PAGE_SIZE( "ERR_04186_INVALID_PAGE_SIZE" ),
+    ERR_04187_INVALID_PARALLEL_SEARCH_CONFIG( "ERR_04187_INVALID_PARALLEL_SEARCH_CONFIG" ),
+    ERR_04188_PARALLEL_SEARCH_EXECUTOR_CLOSED( "ERR_04188_PARALLEL_SEARCH_EXECUTOR_CLOSED" ),
 
     //     template                     4200-4300
     // None
@@ -686,6 +694,11 @@ public enum I18n
     ERR_13624_CANNOT_SERIALIZE_NULL_DN( "ERR_13624_CANNOT_SERIALIZE_NULL_DN" ),
     ERR_13625_INVALID_RDN( "ERR_13625_INVALID_RDN" ),
     ERR_13626_INVALID_RDN_DUPLICATE_AVA( "ERR_13626_INVALID_RDN_DUPLICATE_AVA" ),
+    ERR_13627_INVALID_DN_CACHE_SIZE( "ERR_13627_INVALID_DN_CACHE_SIZE" ),
+    ERR_13628_UNEXPECTED_CHAR_IN_VALUE( "ERR_13628_UNEXPECTED_CHAR_IN_VALUE" ),
+    ERR_13629_INVALID_ESCAPED_CHAR( "ERR_13629_INVALID_ESCAPED_CHAR" ),
+    ERR_13630_UNCLOSED_QUOTED_VALUE( "ERR_13630_UNCLOSED_QUOTED_VALUE" ),
+    ERR_13631_INVALID_NORMALIZER_CACHE_SIZE( "ERR_13631_INVALID_NORMALIZER_CACHE_SIZE" ),
 
     //     schema                           13700 - 13899
     ERR_13700_CANNOT_MODIFY_LOCKED_SCHEMA_OBJECT( "ERR_13700_CANNOT_MODIFY_LOCKED_SCHEMA_OBJECT" ),
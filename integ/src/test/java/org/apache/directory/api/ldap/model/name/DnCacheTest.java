@@ -0,0 +1,157 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.name;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * Test the class DnCache
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DnCacheTest
+{
+    private static SchemaManager schemaManager;
+
+
+    @BeforeClass
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+    }
+
+
+    /**
+     * Check that a cached Dn is the same as the parsed one
+     */
+    private static void assertSameDn( Dn expected, Dn dn )
+    {
+        assertEquals( expected, dn );
+        assertEquals( expected.getName(), dn.getName() );
+        assertEquals( expected.getNormName(), dn.getNormName() );
+        assertEquals( expected.hashCode(), dn.hashCode() );
+        assertEquals( expected.size(), dn.size() );
+        assertEquals( expected.isSchemaAware(), dn.isSchemaAware() );
+
+        for ( int i = 0; i < expected.size(); i++ )
+        {
+            assertEquals( expected.getRdn( i ), dn.getRdn( i ) );
+            assertEquals( expected.getRdn( i ).getName(), dn.getRdn( i ).getName() );
+            assertEquals( expected.getRdn( i ).getNormName(), dn.getRdn( i ).getNormName() );
+        }
+    }
+
+
+    @Test
+    public void testCachedDnIsParsedDn() throws Exception
+    {
+        String[] names =
+            {
+                "",
+                "dc=com",
+                "ou=people,dc=example,dc=com",
+                "CN = John Doe , OU=People;DC=Example, DC=COM",
+                "cn=Doe\\, John,ou=people,dc=example,dc=com",
+                "cn=\"Doe, John\",ou=people,dc=example,dc=com",
+                "cn=John+sn=Doe,ou=people,dc=example,dc=com",
+                "2.5.4.3=#4A6F686E,ou=people,dc=example,dc=com",
+                "cn=\\4A\\C3\\A9r\\C3\\B4me,ou=people,dc=example,dc=com"
+            };
+
+        for ( SchemaManager sm : new SchemaManager[]
+            { schemaManager, null } )
+        {
+            DnCache cache = new DnCache( sm );
+
+            for ( String name : names )
+            {
+                Dn dn = cache.getDn( name );
+
+                assertSameDn( new Dn( sm, name ), dn );
+                assertSame( dn, cache.getDn( name ) );
+            }
+        }
+    }
+
+
+    @Test
+    public void testParentRdnsAreShared() throws Exception
+    {
+        DnCache cache = new DnCache( schemaManager );
+
+        Dn john = cache.getDn( "cn=John Doe,ou=people,dc=example,dc=com" );
+        Dn jane = cache.getDn( "cn=Jane Doe,ou=people,dc=example,dc=com" );
+        Dn people = cache.getDn( "ou=people,dc=example,dc=com" );
+
+        assertSame( people.getRdn(), john.getRdn( 1 ) );
+        assertSame( people.getRdn(), jane.getRdn( 1 ) );
+        assertSame( people.getRdn( 1 ), jane.getRdn( 2 ) );
+        assertTrue( john.isDescendantOf( people ) );
+        assertEquals( people, john.getParent() );
+        assertEquals( 5, cache.size() );
+    }
+
+
+    @Test
+    public void testInvalidDn() throws Exception
+    {
+        DnCache cache = new DnCache( schemaManager );
+
+        for ( String name : new String[]
+            { "cn=John Doe,invalid", "invalid,dc=com", "cn=John Doe,,dc=com" } )
+        {
+            try
+            {
+                cache.getDn( name );
+                fail();
+            }
+            catch ( LdapInvalidDnException lide )
+            {
+                // Expected
+            }
+        }
+    }
+
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        DnCache cache = new DnCache( schemaManager, 100 );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            Dn dn = cache.getDn( "uid=user" + i + ",ou=people,dc=example,dc=com" );
+
+            assertEquals( "uid=user" + i + ",ou=people,dc=example,dc=com", dn.getName() );
+            assertTrue( cache.size() <= 100 );
+        }
+    }
+}
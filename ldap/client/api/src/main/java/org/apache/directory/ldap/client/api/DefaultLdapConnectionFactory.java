@@ -44,6 +44,12 @@ public class DefaultLdapConnectionFactory implements LdapConnectionFactory
     private LdapConnectionConfig connectionConfig;
     private long timeout;
 
+    /** The connector shared by the connections, if the configuration requires it */
+    private SharedLdapConnector sharedConnector;
+
+    /** The cache of the server capabilities shared by the connections, if any */
+    private ServerCapabilityCache capabilityCache;
+
 
     /**
      * Creates a new instance of DefaultLdapConnectionFactory.
@@ -135,13 +141,53 @@ public class DefaultLdapConnectionFactory implements LdapConnectionFactory
     @Override
     public LdapConnection newUnboundLdapConnection()
     {
+        LdapNetworkConnection connection;
+
         if ( apiService == null )
         {
-            return configureConnection( new LdapNetworkConnection( connectionConfig ) );
+            connection = new LdapNetworkConnection( connectionConfig );
         }
         else
         {
-            return configureConnection( new LdapNetworkConnection( connectionConfig, apiService ) );
+            connection = new LdapNetworkConnection( connectionConfig, apiService );
+        }
+
+        if ( connectionConfig.isSharedConnector() )
+        {
+            connection.setSharedConnector( getSharedConnector() );
+        }
+
+        connection.setCapabilityCache( capabilityCache );
+
+        return configureConnection( connection );
+    }
+
+
+    /**
+     * @return The connector shared by the connections, created on the first call
+     */
+    synchronized SharedLdapConnector getSharedConnector()
+    {
+        if ( sharedConnector == null )
+        {
+            sharedConnector = new SharedLdapConnector( connectionConfig.getIoThreads(), connectionConfig.getTimeout() );
+        }
+
+        return sharedConnector;
+    }
+
+
+    /**
+     * Releases the connector shared by the connections created by this factory, if
+     * any. The connections must have been closed. A new connector is created if a
+     * connection is created afterward.
+     */
+    public synchronized void dispose()
+    {
+        if ( sharedConnector != null )
+        {
+            sharedConnector.dispose();
+            sharedConnector = null;
         }
     }
 
@@ -159,6 +205,29 @@ public class DefaultLdapConnectionFactory implements LdapConnectionFactory
     }
 
 
+    /**
+     * @return The cache of the server capabilities shared by the connections, null if none
+     */
+    public ServerCapabilityCache getCapabilityCache()
+    {
+        return capabilityCache;
+    }
+
+
+    /**
+     * Sets the cache of the server capabilities shared by the connections created by
+     * this factory, so that the supported controls and the schema are read once per
+     * server instead of once per connection. The same cache can be shared by several
+     * factories.
+     *
+     * @param capabilityCache The cache, or null to let each connection read the capabilities
+     */
+    public void setCapabilityCache( ServerCapabilityCache capabilityCache )
+    {
+        this.capabilityCache = capabilityCache;
+    }
+
+
     /**
      * Sets the timeout that will be used by all connections created by this
      * factory.
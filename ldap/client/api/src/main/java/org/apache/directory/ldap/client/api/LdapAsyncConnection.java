@@ -21,7 +21,16 @@ package org.apache.directory.ldap.client.api;
 
 
 import java.io.IOException;
-
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.message.AddRequest;
@@ -31,9 +40,13 @@ import org.apache.directory.api.ldap.model.message.DeleteRequest;
 import org.apache.directory.api.ldap.model.message.ExtendedRequest;
 import org.apache.directory.api.ldap.model.message.ModifyDnRequest;
 import org.apache.directory.api.ldap.model.message.ModifyRequest;
+import org.apache.directory.api.ldap.model.message.Request;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
 import org.apache.directory.api.ldap.model.message.SearchRequest;
 import org.apache.directory.api.ldap.model.message.SearchScope;
 import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.exception.InvalidConnectionException;
 import org.apache.directory.ldap.client.api.future.AddFuture;
 import org.apache.directory.ldap.client.api.future.BindFuture;
 import org.apache.directory.ldap.client.api.future.CompareFuture;
@@ -41,6 +54,7 @@ import org.apache.directory.ldap.client.api.future.DeleteFuture;
 import org.apache.directory.ldap.client.api.future.ExtendedFuture;
 import org.apache.directory.ldap.client.api.future.ModifyDnFuture;
 import org.apache.directory.ldap.client.api.future.ModifyFuture;
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
 import org.apache.directory.ldap.client.api.future.SearchFuture;
 
 
@@ -196,6 +210,213 @@ public interface LdapAsyncConnection extends LdapConnection
     SearchFuture searchAsync( SearchRequest searchRequest ) throws LdapException;
 
 
+    /**
+     * Do an asynchronous search, passing the responses to a listener as they are
+     * received instead of queuing them in the returned future. The listener gets the
+     * entries, the references, and last the SearchResultDone. It's called by the
+     * thread reading the responses, so it must not block. The end of the search can
+     * also be awaited with the returned future's {@link SearchFuture#toCompletableFuture()}.
+     * <br>
+     * The default implementation sends the request with {@link #searchAsync(SearchRequest)},
+     * so the responses are queued, and passes them all to the listener when the
+     * SearchResultDone has been received : they are not streamed, and the implementations
+     * with a bounded response queue must override this method. The returned future is
+     * completed once the listener has received the SearchResultDone, and it's cancelled
+     * when the search is cancelled, the listener not being called.
+     * 
+     * @param searchRequest The search request to send to the server
+     * @param listener The listener receiving the responses
+     * @return the search operation's future
+     * @throws LdapException if some error occurred
+     */
+    default SearchFuture searchAsync( SearchRequest searchRequest, Consumer<? super Response> listener )
+        throws LdapException
+    {
+        SearchFuture searchFuture = searchAsync( searchRequest );
+
+        if ( listener == null )
+        {
+            return searchFuture;
+        }
+
+        SearchFuture listenerFuture = new SearchFuture( this, searchRequest.getMessageId(), listener );
+
+        searchFuture.toCompletableFuture().whenComplete( ( searchResultDone, failure ) ->
+        {
+            if ( failure != null )
+            {
+                listenerFuture.setCause( searchFuture.getCause() );
+                listenerFuture.cancel();
+
+                return;
+            }
+
+            // All the responses have been queued, the SearchResultDone being the last one
+            try
+            {
+                Response response = searchFuture.get( 0L, TimeUnit.MILLISECONDS );
+
+                while ( response != null )
+                {
+                    listenerFuture.set( response );
+                    response = searchFuture.get( 0L, TimeUnit.MILLISECONDS );
+                }
+            }
+            catch ( InterruptedException ie )
+            {
+                Thread.currentThread().interrupt();
+                listenerFuture.setCause( ie );
+                listenerFuture.cancel();
+            }
+        } );
+
+        return listenerFuture;
+    }
+
+
+    /**
+     * Sends a batch of Add, Modify, ModifyDn and Delete requests, pipelining them : up to
+     * {@link LdapConnectionConfig#getBatchWindow()} requests are sent without waiting for
+     * their responses. The requests are processed in the order the server receives
+     * them, so a request may depend on a previous one, as long as it does not depend
+     * on its success. This method is blocking.
+     * 
+     * If the connection is closed before all the responses have been received, an
+     * {@link org.apache.directory.ldap.client.api.exception.InvalidConnectionException}
+     * is thrown and the responses already received are lost.
+     * 
+     * @param requests The requests to send
+     * @return The responses, in the requests order. A response is null if the request
+     * has been abandoned, because it has timed out.
+     * @throws LdapException if the requests can't be sent, or if the connection has been closed
+     */
+    default List<ResultResponse> batch( Iterator<? extends Request> requests ) throws LdapException
+    {
+        List<ResultResponse> responses = new ArrayList<>();
+
+        batch( requests, ( request, response ) -> responses.add( response ) );
+
+        return responses;
+    }
+
+
+    /**
+     * Sends a batch of Add, Modify, ModifyDn and Delete requests, pipelining them as
+     * {@link #batch(Iterator)} does, and passes each request with its response to a handler
+     * instead of collecting the responses, in the requests order. The response is null if
+     * the request has been abandoned, because it has timed out. The handler is called by
+     * the thread calling this method. If the connection is closed before all the responses
+     * have been received, an
+     * {@link org.apache.directory.ldap.client.api.exception.InvalidConnectionException}
+     * is thrown, the handler having received the responses received before.
+     * <br>
+     * The default implementation sends a window of requests with the asynchronous
+     * operations, then waits for all their responses, for at most the configured timeout
+     * each, before sending the next window.
+     * 
+     * @param requests The requests to send
+     * @param handler The handler receiving each request and its response
+     * @throws LdapException if the requests can't be sent, or if the connection has been closed
+     */
+    default void batch( Iterator<? extends Request> requests,
+        BiConsumer<? super Request, ? super ResultResponse> handler ) throws LdapException
+    {
+        int window = getConfig().getBatchWindow();
+        long timeout = getConfig().getTimeout();
+        List<Request> windowRequests = new ArrayList<>( window );
+        List<ResponseFuture<?>> windowFutures = new ArrayList<>( window );
+        int handled = 0;
+
+        try
+        {
+            while ( requests.hasNext() )
+            {
+                // Send a full window of requests
+                windowRequests.clear();
+                windowFutures.clear();
+                handled = 0;
+
+                while ( requests.hasNext() && ( windowFutures.size() < window ) )
+                {
+                    Request request = requests.next();
+                    ResponseFuture<?> future;
+
+                    if ( request instanceof AddRequest )
+                    {
+                        future = addAsync( ( AddRequest ) request );
+                    }
+                    else if ( request instanceof ModifyRequest )
+                    {
+                        future = modifyAsync( ( ModifyRequest ) request );
+                    }
+                    else if ( request instanceof ModifyDnRequest )
+                    {
+                        future = modifyDnAsync( ( ModifyDnRequest ) request );
+                    }
+                    else if ( request instanceof DeleteRequest )
+                    {
+                        future = deleteAsync( ( DeleteRequest ) request );
+                    }
+                    else
+                    {
+                        throw new IllegalArgumentException( I18n.err( I18n.ERR_04185_UNSUPPORTED_BATCH_REQUEST,
+                            request == null ? null : request.getClass().getName() ) );
+                    }
+
+                    windowRequests.add( request );
+                    windowFutures.add( future );
+                }
+
+                // Then wait for all its responses
+                while ( handled < windowFutures.size() )
+                {
+                    ResponseFuture<?> future = windowFutures.get( handled );
+                    ResultResponse response = ( ResultResponse ) future.get( timeout, TimeUnit.MILLISECONDS );
+
+                    // The pending requests are cancelled when the connection is closed
+                    if ( ( ( response == null ) || future.isCancelled() ) && !isConnected() )
+                    {
+                        throw new InvalidConnectionException( I18n.err( I18n.ERR_04160_SESSION_HAS_BEEN_CLOSED ) );
+                    }
+
+                    if ( ( response == null ) && !future.isCancelled() )
+                    {
+                        // The request has timed out : abandon it
+                        future.cancel( true );
+                    }
+
+                    Request request = windowRequests.get( handled );
+                    handled++;
+                    handler.accept( request, future.isCancelled() ? null : response );
+                }
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new LdapException( I18n.err( I18n.ERR_04169_RESPONSE_QUEUE_EMPTIED ), ie );
+        }
+        catch ( ExecutionException | TimeoutException e )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04169_RESPONSE_QUEUE_EMPTIED ), e );
+        }
+        finally
+        {
+            // The batch has failed : abandon the requests still pending
+            for ( int i = handled; i < windowFutures.size(); i++ )
+            {
+                ResponseFuture<?> future = windowFutures.get( i );
+
+                if ( !future.isDone() && !future.isCancelled() )
+                {
+                    future.cancel( true );
+                }
+            }
+        }
+    }
+
+
     /**
      * Performs an asynchronous modify operation based on the modifications present in
      * the ModifyRequest.
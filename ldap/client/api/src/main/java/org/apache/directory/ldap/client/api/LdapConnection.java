@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.List;
 
 import org.apache.directory.api.asn1.util.Oid;
+import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.BinaryAttributeDetector;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.model.cursor.EntryCursor;
@@ -297,6 +298,40 @@ public interface LdapConnection extends Closeable
     SearchCursor search( SearchRequest searchRequest ) throws LdapException;
 
 
+    /**
+     * Performs a paged search using a search request object. The search is split in
+     * pages of <code>pageSize</code> entries, using the PagedResults control, and the
+     * returned cursor iterates over the entries of all the pages : the next page is
+     * requested as soon as the current one has been received, while its entries are
+     * still being read. The cursor {@link SearchCursor#getSearchResultDone()} returns
+     * the SearchResultDone of the last page.
+     * <br>
+     * The search request is not modified : each page is requested with a copy of it,
+     * carrying its own PagedResults control. The default implementation reads the pages
+     * one after the other with {@link #search(SearchRequest)}, the next page being only
+     * requested once the entries of the current one have been consumed.
+     *
+     * @param searchRequest The search request object containing all the needed information
+     * @param pageSize The number of entries per page
+     * @return a search cursor on the result of all the pages.
+     * @throws LdapException if some error occurred
+     */
+    default SearchCursor searchPaged( SearchRequest searchRequest, int pageSize ) throws LdapException
+    {
+        if ( searchRequest == null )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04130_CANNOT_PROCESS_NULL_SEARCH_REQ ) );
+        }
+
+        if ( pageSize <= 0 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04186_INVALID_PAGE_SIZE, pageSize ) );
+        }
+
+        return new PagedSearchCursorImpl( this, searchRequest, pageSize );
+    }
+
+
     //------------------------ The LDAP operations ------------------------//
     // Unbind operations                                                   //
     //---------------------------------------------------------------------//
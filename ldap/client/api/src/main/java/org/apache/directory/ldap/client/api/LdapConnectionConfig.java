@@ -34,6 +34,7 @@ import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.BinaryAttributeDetector;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.util.Network;
+import org.apache.directory.ldap.client.api.metrics.LdapMetricsListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +67,9 @@ public class LdapConnectionConfig
     /** the default protocol used for creating SSL context */
     public static final String DEFAULT_SSL_PROTOCOL = "TLS";
 
+    /** The default number of batched requests waiting for their response */
+    public static final int DEFAULT_BATCH_WINDOW = 128;
+
     // --- private members ----
     /** A flag indicating if we are using SSL or not, default value is false */
     private boolean useSsl = false;
@@ -112,6 +116,30 @@ public class LdapConnectionConfig
     /** The Service to use internally when creating connections */
     private LdapApiService ldapApiService;
 
+    /** A flag telling if the decoder should slice the values from the incoming buffers instead of copying them */
+    private boolean slicedValues = false;
+
+    /** A flag telling if the SearchResultEntry attributes are decoded only when accessed */
+    private boolean lazyEntries = false;
+
+    /** A flag telling if the most frequent responses are decoded in a single pass */
+    private boolean fastPathDecoding = false;
+
+    /** The number of queued search responses above which the reads are suspended, 0 for no limit */
+    private int maxSearchQueueSize = 0;
+
+    /** Tells if the connections created by a factory share the same connector */
+    private boolean sharedConnector = false;
+
+    /** The number of I/O threads of the shared connector, 0 for one per core */
+    private int ioThreads = 0;
+
+    /** The listener notified of the activity of the connections, if any */
+    private LdapMetricsListener metricsListener;
+
+    /** The maximum number of batched requests waiting for their response */
+    private int batchWindow = DEFAULT_BATCH_WINDOW;
+
 
     /**
      * Creates a default LdapConnectionConfig instance
@@ -525,4 +553,218 @@ public class LdapConnectionConfig
     {
         this.ldapApiService = ldapApiService;
     }
+
+
+    /**
+     * Checks if the decoder slices the values from the incoming buffers.
+     *
+     * @return true if the values are sliced
+     */
+    public boolean isSlicedValues()
+    {
+        return slicedValues;
+    }
+
+
+    /**
+     * Sets whether the decoder should reference the values in the incoming buffers
+     * instead of copying each of them into a dedicated byte[]. A copy is still done
+     * when a value is split across two reads, or when the value is read as a byte[].
+     *
+     * @param slicedValues true to slice the values
+     */
+    public void setSlicedValues( boolean slicedValues )
+    {
+        this.slicedValues = slicedValues;
+    }
+
+
+    /**
+     * Checks if the SearchResultEntry attributes are decoded only when accessed.
+     *
+     * @return true if the entries are decoded lazily
+     */
+    public boolean isLazyEntries()
+    {
+        return lazyEntries;
+    }
+
+
+    /**
+     * Sets whether the attributes of the received entries should only be decoded, and
+     * normalized when a SchemaManager is used, when they are accessed. This saves CPU
+     * and memory when only a few attributes of wide entries are read.
+     * <br>
+     * Only the entries decoded by the single-pass decoder are lazy, this decoder being
+     * enabled with them (see {@link #setFastPathDecoding(boolean)}) : an entry must be
+     * received in a single network read, and have no control. The other entries are fully
+     * decoded, as usual. In particular, the widest entries, which are the most likely to
+     * be split across several reads, are often not decoded lazily.
+     * <br>
+     * The searches then return some LazyEntry instances, which differ from a DefaultEntry
+     * in two ways : a value which can't be normalized makes the accessor reading its
+     * attribute throw an IllegalStateException, instead of failing the search, and the
+     * accessors are synchronized, as they modify the entry when they decode an attribute.
+     *
+     * @param lazyEntries true to decode the entries lazily
+     */
+    public void setLazyEntries( boolean lazyEntries )
+    {
+        this.lazyEntries = lazyEntries;
+    }
+
+
+    /**
+     * Checks if the most frequent responses are decoded in a single pass.
+     *
+     * @return true if the single-pass decoder is used
+     */
+    public boolean isFastPathDecoding()
+    {
+        return fastPathDecoding;
+    }
+
+
+    /**
+     * Sets whether the most frequent responses (SearchResultEntry, SearchResultDone,
+     * BindResponse and ModifyResponse) should be decoded in a single pass over the
+     * received bytes, instead of going through the generic ASN.1 grammar. Only the
+     * responses received in a single network read, and without control or referral,
+     * are decoded this way, the other ones being decoded as usual.
+     *
+     * @param fastPathDecoding true to use the single-pass decoder
+     */
+    public void setFastPathDecoding( boolean fastPathDecoding )
+    {
+        this.fastPathDecoding = fastPathDecoding;
+    }
+
+
+    /**
+     * Gets the number of search responses waiting to be consumed above which the
+     * connection stops reading from the socket.
+     *
+     * @return The maximum number of queued search responses, 0 if there is no limit
+     */
+    public int getMaxSearchQueueSize()
+    {
+        return maxSearchQueueSize;
+    }
+
+
+    /**
+     * Sets the number of search responses waiting to be consumed above which the
+     * connection stops reading from the socket, until half of them have been consumed.
+     * This bounds the memory used by a search returning more entries than the client
+     * processes, the server being slowed down by the TCP flow control.
+     * <br>
+     * As the reads are suspended for the whole connection, the responses to the other
+     * requests sent on this connection are not received either until the search
+     * entries are consumed : they stall, and are expired after the
+     * {@link #getTimeout() timeout} if the entries are not consumed in time. When
+     * many searches share a connection, the reads stay suspended as long as one of
+     * them has a full queue.
+     *
+     * @param maxSearchQueueSize The maximum number of queued search responses, 0 for no limit
+     */
+    public void setMaxSearchQueueSize( int maxSearchQueueSize )
+    {
+        this.maxSearchQueueSize = maxSearchQueueSize;
+    }
+
+
+    /**
+     * Checks if the connections created by a {@link DefaultLdapConnectionFactory}, or
+     * by a {@link LdapConnectionPool}, share the same connector.
+     *
+     * @return true if the connections share their connector
+     */
+    public boolean isSharedConnector()
+    {
+        return sharedConnector;
+    }
+
+
+    /**
+     * Sets whether the connections created by a {@link DefaultLdapConnectionFactory}, or
+     * by a {@link LdapConnectionPool}, share the same connector and its I/O threads,
+     * instead of each connection creating its own connector and thread. The shared connector
+     * is released by {@link DefaultLdapConnectionFactory#dispose()}, or when the pool built
+     * from this configuration is closed.
+     *
+     * @param sharedConnector true to share the connector
+     */
+    public void setSharedConnector( boolean sharedConnector )
+    {
+        this.sharedConnector = sharedConnector;
+    }
+
+
+    /**
+     * @return The number of I/O threads of the shared connector, 0 for one per core
+     */
+    public int getIoThreads()
+    {
+        return ioThreads;
+    }
+
+
+    /**
+     * Sets the number of I/O threads of the shared connector. The sessions are
+     * distributed over these threads. It has no effect if the connector isn't shared,
+     * as a connection uses a single thread.
+     *
+     * @param ioThreads The number of I/O threads, 0 for one per core
+     */
+    public void setIoThreads( int ioThreads )
+    {
+        this.ioThreads = ioThreads;
+    }
+
+
+    /**
+     * @return The listener notified of the activity of the connections, null if none
+     */
+    public LdapMetricsListener getMetricsListener()
+    {
+        return metricsListener;
+    }
+
+
+    /**
+     * Sets the listener notified of the activity of the connections using this
+     * configuration : the requests, their latency and the bytes exchanged. A
+     * {@link org.apache.directory.ldap.client.api.metrics.LdapConnectionMetrics}
+     * shared by all the connections records their aggregated metrics.
+     *
+     * @param metricsListener The listener, or null to disable the metrics
+     */
+    public void setMetricsListener( LdapMetricsListener metricsListener )
+    {
+        this.metricsListener = metricsListener;
+    }
+
+
+    /**
+     * @return The maximum number of batched requests waiting for their response
+     */
+    public int getBatchWindow()
+    {
+        return batchWindow;
+    }
+
+
+    /**
+     * Sets the maximum number of requests sent by
+     * {@link LdapAsyncConnection#batch(java.util.Iterator)} without waiting for their
+     * response. A larger window hides a longer round trip time, at the cost of more
+     * requests to abandon if the batch fails.
+     *
+     * @param batchWindow The maximum number of batched requests waiting for their response,
+     * at least 1
+     */
+    public void setBatchWindow( int batchWindow )
+    {
+        this.batchWindow = Math.max( 1, batchWindow );
+    }
 }
@@ -21,12 +21,20 @@
 package org.apache.directory.ldap.client.api;
 
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.apache.commons.pool2.PooledObjectFactory;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.ldap.client.api.metrics.LdapMetricsListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,8 +51,43 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
 {
     private static final Logger LOG = LoggerFactory.getLogger( LdapConnectionPool.class );
 
+    /** The maximum number of connections created in parallel by {@link #warmUp()} */
+    private static final int MAX_WARM_UP_THREADS = 16;
+
     private PooledObjectFactory<LdapConnection> factory;
 
+    /** The connection factory created by this pool, disposed when the pool is closed */
+    private DefaultLdapConnectionFactory connectionFactory;
+
+    /** The pool settings replaced by {@link #startMaintenance(long, long)}, null when it's not started */
+    private MaintenanceSettings savedSettings;
+
+    /** The listener notified when a connection is borrowed, if any */
+    private volatile LdapMetricsListener metricsListener;
+
+
+    /**
+     * The pool settings modified by the background maintenance
+     */
+    private static final class MaintenanceSettings
+    {
+        private final boolean testOnBorrow;
+        private final boolean testWhileIdle;
+        private final int numTestsPerEvictionRun;
+        private final long minEvictableIdleTime;
+        private final long timeBetweenEvictionRuns;
+
+
+        private MaintenanceSettings( LdapConnectionPool pool )
+        {
+            testOnBorrow = pool.getTestOnBorrow();
+            testWhileIdle = pool.getTestWhileIdle();
+            numTestsPerEvictionRun = pool.getNumTestsPerEvictionRun();
+            minEvictableIdleTime = pool.getMinEvictableIdleTimeMillis();
+            timeBetweenEvictionRuns = pool.getTimeBetweenEvictionRunsMillis();
+        }
+    }
+
 
     /**
      * Instantiates a new LDAP connection pool.
@@ -61,7 +104,9 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
 
 
     /**
-     * Instantiates a new LDAP connection pool.
+     * Instantiates a new LDAP connection pool. The connection factory created by the
+     * pool is disposed when the pool is closed, which releases its shared connector,
+     * if any.
      *
      * @param connectionConfig The connection configuration
      * @param apiService The api service (codec)
@@ -72,6 +117,8 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
         LdapApiService apiService, long timeout, GenericObjectPoolConfig poolConfig )
     {
         this( newPoolableConnectionFactory( connectionConfig, apiService, timeout ), poolConfig );
+        connectionFactory = ( DefaultLdapConnectionFactory )
+            ( ( AbstractPoolableLdapConnectionFactory ) factory ).connectionFactory;
     }
 
 
@@ -110,6 +157,28 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
     }
 
 
+    /**
+     * @return The listener notified when a connection is borrowed, null if none
+     */
+    public LdapMetricsListener getMetricsListener()
+    {
+        return metricsListener;
+    }
+
+
+    /**
+     * Sets the listener notified when a connection is borrowed, with the time spent
+     * waiting for it. The same listener can be set on the configuration of the pooled
+     * connections, to get the metrics of the pool and of its connections together.
+     *
+     * @param metricsListener The listener, or null to disable the metrics
+     */
+    public void setMetricsListener( LdapMetricsListener metricsListener )
+    {
+        this.metricsListener = metricsListener;
+    }
+
+
     /**
      * Gives a LdapConnection fetched from the pool.
      *
@@ -119,10 +188,16 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
     public LdapConnection getConnection() throws LdapException
     {
         LdapConnection connection;
+        long start = System.nanoTime();
 
         try
         {
             connection = super.borrowObject();
+
+            if ( metricsListener != null )
+            {
+                metricsListener.connectionBorrowed( System.nanoTime() - start );
+            }
             
             if ( LOG.isTraceEnabled() )
             {
@@ -146,6 +221,161 @@ public class LdapConnectionPool extends GenericObjectPool<LdapConnection>
     }
 
 
+    /**
+     * Creates the missing idle connections, in parallel, so that the pool holds at
+     * least <code>minIdle</code> idle connections, within the <code>maxTotal</code> limit.
+     * Calling it when the pool is created spares the first borrowers the connection
+     * creation and bind.
+     *
+     * @throws LdapException If a connection can't be created. The other connections are
+     * created anyway.
+     */
+    public void warmUp() throws LdapException
+    {
+        int missing = getMinIdle() - getNumIdle();
+
+        if ( getMaxTotal() >= 0 )
+        {
+            missing = Math.min( missing, getMaxTotal() - getNumActive() - getNumIdle() );
+        }
+
+        if ( missing <= 0 )
+        {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( Math.min( missing, MAX_WARM_UP_THREADS ),
+            runnable ->
+            {
+                Thread thread = new Thread( runnable, "LdapConnectionPoolWarmUp" );
+                thread.setDaemon( true );
+
+                return thread;
+            } );
+
+        try
+        {
+            List<Future<Void>> creations = new ArrayList<>( missing );
+
+            for ( int i = 0; i < missing; i++ )
+            {
+                creations.add( executor.submit( () ->
+                {
+                    addObject();
+
+                    return null;
+                } ) );
+            }
+
+            LdapException failure = null;
+
+            for ( Future<Void> creation : creations )
+            {
+                try
+                {
+                    creation.get();
+                }
+                catch ( ExecutionException ee )
+                {
+                    if ( failure == null )
+                    {
+                        Throwable cause = ee.getCause();
+                        failure = cause instanceof LdapException ? ( LdapException ) cause
+                            : new LdapException( cause.getMessage(), cause );
+                    }
+                }
+            }
+
+            if ( failure != null )
+            {
+                throw failure;
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new LdapException( ie.getMessage(), ie );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Moves the connection maintenance off the borrowers path. The connections are not
+     * validated when they are borrowed anymore : a background thread validates all the idle
+     * connections every <code>probeInterval</code> milliseconds, using the validator of the
+     * pool factory, and replaces the invalid ones. The connections idle for more than
+     * <code>maxIdleTime</code> milliseconds are retired, and the pool is refilled up to
+     * <code>minIdle</code> connections, so that the borrowers get a ready connection after
+     * a quiet period.
+     * <br>
+     * <code>maxIdleTime</code> should be shorter than the server idle timeout, so that the
+     * connections are retired before the server closes them.
+     *
+     * @param probeInterval The time between two validations of the idle connections, in milliseconds
+     * @param maxIdleTime The time after which an idle connection is retired, in milliseconds,
+     * or a negative value to keep the idle connections
+     */
+    public synchronized void startMaintenance( long probeInterval, long maxIdleTime )
+    {
+        // Keep the settings in place before the first start, to restore them when stopping
+        if ( savedSettings == null )
+        {
+            savedSettings = new MaintenanceSettings( this );
+        }
+
+        setTestOnBorrow( false );
+        setTestWhileIdle( true );
+
+        // Check all the idle connections on each run
+        setNumTestsPerEvictionRun( -1 );
+        setMinEvictableIdleTimeMillis( maxIdleTime );
+        setTimeBetweenEvictionRunsMillis( probeInterval );
+    }
+
+
+    /**
+     * Stops the background maintenance of the idle connections, and restores the
+     * validation and eviction settings the pool had before {@link #startMaintenance(long, long)}
+     * was called.
+     */
+    public synchronized void stopMaintenance()
+    {
+        if ( savedSettings == null )
+        {
+            return;
+        }
+
+        setTimeBetweenEvictionRunsMillis( savedSettings.timeBetweenEvictionRuns );
+        setMinEvictableIdleTimeMillis( savedSettings.minEvictableIdleTime );
+        setNumTestsPerEvictionRun( savedSettings.numTestsPerEvictionRun );
+        setTestWhileIdle( savedSettings.testWhileIdle );
+        setTestOnBorrow( savedSettings.testOnBorrow );
+        savedSettings = null;
+    }
+
+
+    /**
+     * Closes the pool. If the pool has created its connection factory, the factory is
+     * disposed, so the connector shared by its connections, if any, is released : the
+     * connections still borrowed from the pool can't be used anymore.
+     */
+    @Override
+    public void close()
+    {
+        super.close();
+
+        if ( connectionFactory != null )
+        {
+            connectionFactory.dispose();
+        }
+    }
+
+
     private static ValidatingPoolableLdapConnectionFactory newPoolableConnectionFactory(
         LdapConnectionConfig connectionConfig, LdapApiService apiService,
         long timeout )
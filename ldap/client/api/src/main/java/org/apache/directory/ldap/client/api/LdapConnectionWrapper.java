@@ -282,6 +282,16 @@ public class LdapConnectionWrapper implements LdapConnection, Wrapper<LdapConnec
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchCursor searchPaged( SearchRequest searchRequest, int pageSize ) throws LdapException
+    {
+        return connection.searchPaged( searchRequest, pageSize );
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -34,15 +34,20 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.PrivilegedExceptionAction;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
@@ -58,12 +63,16 @@ import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.BinaryAttributeDetector;
 import org.apache.directory.api.ldap.codec.api.DefaultConfigurableBinaryAttributeDetector;
 import org.apache.directory.api.ldap.codec.api.ExtendedOperationFactory;
+import org.apache.directory.api.ldap.codec.api.LazyEntry;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.codec.api.LdapApiServiceFactory;
 import org.apache.directory.api.ldap.codec.api.LdapDecoder;
 import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.api.ldap.codec.api.MessageEncoderException;
 import org.apache.directory.api.ldap.codec.api.SchemaBinaryAttributeDetector;
+import org.apache.directory.api.ldap.codec.protocol.mina.LdapProtocolCodecFilter;
+import org.apache.directory.api.ldap.extras.controls.syncrepl.syncRequest.SyncRequestValue;
+import org.apache.directory.api.ldap.extras.extended.startTls.StartTlsRequest;
 import org.apache.directory.api.ldap.extras.extended.startTls.StartTlsRequestImpl;
 import org.apache.directory.api.ldap.model.constants.LdapConstants;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
@@ -106,6 +115,7 @@ import org.apache.directory.api.ldap.model.message.ExtendedResponse;
 import org.apache.directory.api.ldap.model.message.IntermediateResponse;
 import org.apache.directory.api.ldap.model.message.LdapResult;
 import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
 import org.apache.directory.api.ldap.model.message.ModifyDnRequest;
 import org.apache.directory.api.ldap.model.message.ModifyDnRequestImpl;
 import org.apache.directory.api.ldap.model.message.ModifyDnResponse;
@@ -117,6 +127,7 @@ import org.apache.directory.api.ldap.model.message.OpaqueExtendedResponse;
 import org.apache.directory.api.ldap.model.message.Request;
 import org.apache.directory.api.ldap.model.message.Response;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
 import org.apache.directory.api.ldap.model.message.SearchRequest;
 import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
 import org.apache.directory.api.ldap.model.message.SearchResultDone;
@@ -127,6 +138,7 @@ import org.apache.directory.api.ldap.model.message.UnbindRequest;
 import org.apache.directory.api.ldap.model.message.UnbindRequestImpl;
 import org.apache.directory.api.ldap.model.message.controls.ManageDsaITImpl;
 import org.apache.directory.api.ldap.model.message.controls.OpaqueControl;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearch;
 import org.apache.directory.api.ldap.model.message.extended.AddNoDResponse;
 import org.apache.directory.api.ldap.model.message.extended.BindNoDResponse;
 import org.apache.directory.api.ldap.model.message.extended.CompareNoDResponse;
@@ -150,6 +162,7 @@ import org.apache.directory.api.util.StringConstants;
 import org.apache.directory.api.util.Strings;
 import org.apache.directory.ldap.client.api.callback.SaslCallbackHandler;
 import org.apache.directory.ldap.client.api.exception.InvalidConnectionException;
+import org.apache.directory.ldap.client.api.exception.LdapConnectionTimeOutException;
 import org.apache.directory.ldap.client.api.future.AddFuture;
 import org.apache.directory.ldap.client.api.future.BindFuture;
 import org.apache.directory.ldap.client.api.future.CompareFuture;
@@ -158,8 +171,11 @@ import org.apache.directory.ldap.client.api.future.ExtendedFuture;
 import org.apache.directory.ldap.client.api.future.HandshakeFuture;
 import org.apache.directory.ldap.client.api.future.ModifyDnFuture;
 import org.apache.directory.ldap.client.api.future.ModifyFuture;
+import org.apache.directory.ldap.client.api.future.MultipleResponseFuture;
 import org.apache.directory.ldap.client.api.future.ResponseFuture;
 import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.apache.directory.ldap.client.api.metrics.LdapMetricsFilter;
+import org.apache.directory.ldap.client.api.metrics.LdapMetricsListener;
 import org.apache.mina.core.filterchain.IoFilter;
 import org.apache.mina.core.future.CloseFuture;
 import org.apache.mina.core.future.ConnectFuture;
@@ -167,7 +183,6 @@ import org.apache.mina.core.future.WriteFuture;
 import org.apache.mina.core.service.IoConnector;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.FilterEvent;
-import org.apache.mina.filter.codec.ProtocolCodecFilter;
 import org.apache.mina.filter.codec.ProtocolEncoderException;
 import org.apache.mina.filter.ssl.SslEvent;
 import org.apache.mina.filter.ssl.SslFilter;
@@ -204,6 +219,9 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     /** The connector open with the remote server */
     private IoConnector connector;
 
+    /** The connector shared with other connections, if any */
+    private SharedLdapConnector sharedConnector;
+
     /** A mutex used to avoid a double close of the connector */
     private ReentrantLock connectorMutex = new ReentrantLock();
 
@@ -213,8 +231,24 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     private IoSession ldapSession;
 
-    /** a map to hold the ResponseFutures for all operations */
-    private Map<Integer, ResponseFuture<? extends Response>> futureMap = new ConcurrentHashMap<>();
+    /** The number of slots of the table holding the ResponseFutures */
+    private static final int FUTURE_TABLE_CAPACITY = 1024;
+
+    /** a table to hold the ResponseFutures for all operations, indexed by their messageId */
+    private ResponseFutureTable futureTable = new ResponseFutureTable( FUTURE_TABLE_CAPACITY );
+
+    /** The duration of a tick of the timeout wheel, in milliseconds */
+    private static final long TIMEOUT_TICK_DURATION = 100L;
+
+    /** The number of ticks of a timeout wheel rotation */
+    private static final int TIMEOUT_TICKS_PER_WHEEL = 512;
+
+    /** The timer expiring the pending requests, shared by all the connections */
+    private static final ResponseTimeoutWheel TIMEOUT_WHEEL = new ResponseTimeoutWheel( TIMEOUT_TICK_DURATION,
+        TIMEOUT_TICKS_PER_WHEEL, "LdapConnectionTimeout" );
+
+    /** The callback expiring the pending requests of this connection */
+    private final ResponseTimeoutWheel.Expirer expirer = this::expire;
 
     /** list of controls supported by the server */
     private List<String> supportedControls;
@@ -222,6 +256,9 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     /** The ROOT DSE entry */
     private Entry rootDse;
 
+    /** The cache of the server capabilities shared with other connections, if any */
+    private ServerCapabilityCache capabilityCache;
+
     /** A flag indicating that the BindRequest has been issued and successfully authenticated the user */
     private AtomicBoolean authenticated = new AtomicBoolean( false );
 
@@ -233,8 +270,8 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     private List<ConnectionClosedEventListener> conCloseListeners;
 
-    /** The Ldap codec protocol filter */
-    private IoFilter ldapProtocolFilter = new ProtocolCodecFilter( codec.getProtocolCodecFactory() );
+    /** The Ldap codec protocol filter, which gives the buffers of a pooled codec factory back once written */
+    private IoFilter ldapProtocolFilter = new LdapProtocolCodecFilter( codec.getProtocolCodecFactory() );
 
     /** the SslFilter key */
     private static final String SSL_FILTER_KEY = "sslFilter";
@@ -247,6 +284,12 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     
     /** A future used to block any action until the handhake is completed */
     private HandshakeFuture handshakeFuture;
+
+    /** The listener notified of the activity of the connection, if any */
+    private LdapMetricsListener metricsListener;
+
+    /** The metrics filter key */
+    private static final String METRICS_FILTER_KEY = "ldapMetrics";
     
     // ~~~~~~~~~~~~~~~~~ common error messages ~~~~~~~~~~~~~~~~~~~~~~~~~~
     static final String TIME_OUT_ERROR = I18n.err( I18n.ERR_04170_TIMEOUT_OCCURED );
@@ -293,6 +336,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         }
         
         this.timeout = config.getTimeout();
+        this.metricsListener = config.getMetricsListener();
     }
 
 
@@ -500,6 +544,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     {
         // Use only one thread inside the connector
         connector = new NioSocketConnector( 1 );
+        connector.setConnectTimeoutMillis( timeout );
         
         if ( connectionConfig != null )
         {
@@ -510,7 +555,12 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             ( ( SocketSessionConfig ) connector.getSessionConfig() ).setReuseAddress( true );
         }
 
-        // Add the codec to the chain
+        // Add the codec to the chain, after the filter counting the exchanged bytes
+        if ( metricsListener != null )
+        {
+            connector.getFilterChain().addLast( METRICS_FILTER_KEY, new LdapMetricsFilter( metricsListener ) );
+        }
+
         connector.getFilterChain().addLast( "ldapCodec", ldapProtocolFilter );
 
         // If we use SSL, we have to add the SslFilter to the chain
@@ -577,19 +627,119 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
 
     private void addToFutureMap( int messageId, ResponseFuture<? extends Response> future )
+    {
+        addToFutureMap( messageId, future, timeout );
+    }
+
+
+    /**
+     * Stores the future of a request, and schedules its expiration
+     *
+     * @param messageId The request messageId
+     * @param future The request future
+     * @param requestTimeout The time to wait for the response, in milliseconds
+     */
+    private void addToFutureMap( int messageId, ResponseFuture<? extends Response> future, long requestTimeout )
     {
         if ( LOG.isDebugEnabled() )
         {
             LOG.debug( I18n.msg( I18n.MSG_04106_ADDING, messageId, future.getClass().getName() ) );
         }
         
-        futureMap.put( messageId, future );
+        // The expiration is cancelled when the future is removed from the table
+        futureTable.put( messageId, future, TIMEOUT_WHEEL.schedule( messageId, future, requestTimeout, expirer ) );
+    }
+
+
+    /**
+     * Expires a request whose timeout has elapsed : an AbandonRequest is sent, and
+     * its future is cancelled, with a {@link LdapConnectionTimeOutException} cause.
+     * The Bind and StartTLS requests can't be abandoned (RFC 4511, section 4.11), so
+     * their future is cancelled without sending an AbandonRequest.
+     * A request returning many responses, like a search, only expires when no response
+     * has been received or consumed during the timeout.
+     *
+     * @param messageId The request messageId
+     * @param future The request future
+     * @param requestTimeout The request timeout, in milliseconds
+     * @return The delay before the request must be checked again, or 0 if it has been
+     * expired or completed
+     */
+    private long expire( int messageId, ResponseFuture<?> future, long requestTimeout )
+    {
+        // The request may have been completed or abandoned in the meantime
+        if ( futureTable.get( messageId ) != future )
+        {
+            return 0L;
+        }
+
+        if ( future instanceof MultipleResponseFuture )
+        {
+            long idle = TimeUnit.NANOSECONDS.toMillis(
+                System.nanoTime() - ( ( MultipleResponseFuture<?> ) future ).getLastActivity() );
+
+            if ( idle < requestTimeout )
+            {
+                return requestTimeout - idle;
+            }
+        }
+
+        if ( LOG.isWarnEnabled() )
+        {
+            LOG.warn( I18n.err( I18n.ERR_04112_OP_FAILED_TIMEOUT, future.getClass().getSimpleName() ) );
+        }
+
+        future.setCause( new LdapConnectionTimeOutException( TIME_OUT_ERROR ) );
+
+        if ( metricsListener != null )
+        {
+            metricsListener.requestExpired();
+        }
+
+        if ( connected.get() && isAbandonable( future ) )
+        {
+            abandon( messageId );
+        }
+        else if ( getFromFutureMap( messageId ) != null )
+        {
+            future.cancel();
+            requestAbandoned();
+        }
+
+        return 0L;
+    }
+
+
+    /**
+     * Tells if the request associated with a future can be abandoned. The Bind, Unbind
+     * and StartTLS requests can't be (RFC 4511, section 4.11), and Unbind requests
+     * have no future.
+     *
+     * @param future The request future
+     * @return <code>true</code> if an AbandonRequest can be sent for this request
+     */
+    private static boolean isAbandonable( ResponseFuture<?> future )
+    {
+        if ( future instanceof BindFuture )
+        {
+            return false;
+        }
+
+        if ( future instanceof ExtendedFuture )
+        {
+            ExtendedRequest extendedRequest = ( ( ExtendedFuture ) future ).getExtendedRequest();
+
+            return ( extendedRequest == null )
+                || !StartTlsRequest.EXTENSION_OID.equals( extendedRequest.getRequestName() );
+        }
+
+        return true;
     }
 
 
     private ResponseFuture<? extends Response> getFromFutureMap( int messageId )
     {
-        ResponseFuture<? extends Response> future = futureMap.remove( messageId );
+        ResponseFuture<? extends Response> future = futureTable.remove( messageId );
 
         if ( LOG.isDebugEnabled() && ( future != null ) )
         {
@@ -602,7 +752,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
     private ResponseFuture<? extends Response> peekFromFutureMap( int messageId )
     {
-        ResponseFuture<? extends Response> future = futureMap.get( messageId );
+        ResponseFuture<? extends Response> future = futureTable.get( messageId );
 
         // future can be null if there was a abandon operation on that messageId
         if ( LOG.isDebugEnabled() && ( future != null ) )
@@ -614,6 +764,26 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     }
 
 
+    /**
+     * Gets the time after which a search which does not receive any response expires.
+     * The searches without time limit expire when they haven't received any response
+     * during the connection timeout. The persistent and the syncrepl searches, whose
+     * responses are spaced by long idle periods, never expire.
+     *
+     * @param searchRequest The search request
+     * @return The time after which the search expires, in milliseconds, or 0 if it never expires
+     */
+    private long getSearchExpiration( SearchRequest searchRequest )
+    {
+        if ( searchRequest.hasControl( PersistentSearch.OID ) || searchRequest.hasControl( SyncRequestValue.OID ) )
+        {
+            return 0L;
+        }
+
+        return getTimeout( timeout, searchRequest.getTimeLimit() );
+    }
+
+
     /**
      * Get the largest timeout from the search time limit and the connection
      * timeout.
@@ -655,7 +825,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         // Build the connection address
         SocketAddress address = new InetSocketAddress( config.getLdapHost(), config.getLdapPort() );
         long maxRetry = System.currentTimeMillis() + timeout;
-        ConnectFuture connectionFuture = connector.connect( address );
+        ConnectFuture connectionFuture = openSession( address );
         boolean result = false;
 
         while ( maxRetry > System.currentTimeMillis() )
@@ -667,8 +837,11 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             }
             catch ( InterruptedException e )
             {
-                connector.dispose();
-                connector = null;
+                if ( connector != null )
+                {
+                    connector.dispose();
+                    connector = null;
+                }
     
                 if ( LOG.isDebugEnabled() )
                 {
@@ -731,14 +904,69 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         
         if ( connectionFuture == null )
         {
-            connector.dispose();
+            if ( connector != null )
+            {
+                connector.dispose();
+            }
+
             throw new InvalidConnectionException( I18n.err( I18n.ERR_04109_CANNOT_CONNECT ) );
         }
 
+        if ( !connectionFuture.isDone() )
+        {
+            // Give up : the session established after the timeout will be closed
+            connectionFuture.cancel();
+        }
+
         return connectionFuture;
     }
     
     
+    /**
+     * Opens the session, with the connection own connector or with the shared connector.
+     * In the latter case, the session filter chain is set up when the session is created.
+     */
+    private ConnectFuture openSession( SocketAddress address ) throws LdapException
+    {
+        if ( sharedConnector == null )
+        {
+            return connector.connect( address );
+        }
+
+        final SslFilter sslFilter;
+
+        if ( config.isUseSsl() )
+        {
+            sslFilter = createSslFilter();
+            handshakeFuture = new HandshakeFuture();
+        }
+        else
+        {
+            sslFilter = null;
+        }
+
+        return sharedConnector.connect( address, this, ( session, future ) ->
+        {
+            if ( connectionConfig != null )
+            {
+                ( ( SocketSessionConfig ) session.getConfig() ).setAll( connectionConfig );
+            }
+
+            if ( sslFilter != null )
+            {
+                session.getFilterChain().addFirst( SSL_FILTER_KEY, sslFilter );
+            }
+
+            if ( metricsListener != null )
+            {
+                session.getFilterChain().addLast( METRICS_FILTER_KEY, new LdapMetricsFilter( metricsListener ) );
+            }
+
+            session.getFilterChain().addLast( "ldapCodec", ldapProtocolFilter );
+        } );
+    }
+
+
     /**
      * Close the connection and generate the appropriate exception
      */
@@ -830,7 +1058,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                 LOG.debug( I18n.msg( I18n.MSG_04137_NOD_RECEIVED ) );
             }
 
-            for ( ResponseFuture<?> responseFuture : futureMap.values() )
+            for ( ResponseFuture<?> responseFuture : futureTable.values() )
             {
                 if ( LOG.isDebugEnabled() )
                 {
@@ -838,6 +1066,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                 }
 
                 responseFuture.cancel();
+                requestAbandoned();
 
                 try
                 {
@@ -879,10 +1108,10 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     LOG.error( I18n.err( I18n.ERR_04113_ERROR_PROCESSING_NOD, responseFuture ), e );
                 }
 
-                futureMap.remove( messageId.get() );
+                futureTable.remove( messageId.get() );
             }
 
-            futureMap.clear();
+            futureTable.clear();
         } );
     }
     
@@ -933,7 +1162,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         }
 
         // Create the connector if needed
-        if ( connector == null )
+        if ( ( connector == null ) && ( sharedConnector == null ) )
         {
             createConnector();
         }
@@ -1150,6 +1379,15 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     @Override
     public AddFuture addAsync( AddRequest addRequest ) throws LdapException
+    {
+        return addAsync( addRequest, true );
+    }
+
+
+    /**
+     * Sends a AddRequest, waiting for the request to be written if required
+     */
+    private AddFuture addAsync( AddRequest addRequest, boolean waitForWrite ) throws LdapException
     {
         if ( addRequest == null )
         {
@@ -1187,7 +1425,14 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         addToFutureMap( newId, addFuture );
 
         // Send the request to the server
-        writeRequest( addRequest );
+        if ( waitForWrite )
+        {
+            writeRequest( addRequest );
+        }
+        else
+        {
+            sendRequest( addRequest );
+        }
 
         // Ok, done return the future
         return addFuture;
@@ -1277,6 +1522,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             }
             
             rf.cancel( true );
+            requestAbandoned();
         }
         else
         {
@@ -2266,6 +2512,17 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     @Override
     public SearchFuture searchAsync( SearchRequest searchRequest ) throws LdapException
+    {
+        return searchAsync( searchRequest, null );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchFuture searchAsync( SearchRequest searchRequest, Consumer<? super Response> listener )
+        throws LdapException
     {
         if ( searchRequest == null )
         {
@@ -2311,8 +2568,19 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             LOG.debug( I18n.msg( I18n.MSG_04104_SENDING_REQUEST, searchRequest ) );
         }
 
-        SearchFuture searchFuture = new SearchFuture( this, searchRequest.getMessageId() );
-        addToFutureMap( searchRequest.getMessageId(), searchFuture );
+        SearchFuture searchFuture;
+
+        if ( listener == null )
+        {
+            searchFuture = new SearchFuture( this, searchRequest.getMessageId(), ldapSession,
+                config.getMaxSearchQueueSize() );
+        }
+        else
+        {
+            searchFuture = new SearchFuture( this, searchRequest.getMessageId(), listener );
+        }
+
+        addToFutureMap( searchRequest.getMessageId(), searchFuture, getSearchExpiration( searchRequest ) );
 
         // Send the request to the server
         writeRequest( searchRequest );
@@ -2355,6 +2623,156 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchCursor searchPaged( SearchRequest searchRequest, int pageSize ) throws LdapException
+    {
+        if ( searchRequest == null )
+        {
+            String msg = I18n.err( I18n.ERR_04130_CANNOT_PROCESS_NULL_SEARCH_REQ );
+            
+            if ( LOG.isDebugEnabled() )
+            {
+                LOG.debug( msg );
+            }
+            
+            throw new IllegalArgumentException( msg );
+        }
+
+        if ( pageSize <= 0 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04186_INVALID_PAGE_SIZE, pageSize ) );
+        }
+
+        long searchTimeout = getTimeout( timeout, searchRequest.getTimeLimit() );
+
+        return new PagedSearchCursorImpl( this, searchRequest, pageSize, searchTimeout, TimeUnit.MILLISECONDS );
+    }
+
+
+    //------------------------ The LDAP operations ------------------------//
+    // Batch operations                                                    //
+    //---------------------------------------------------------------------//
+    /**
+     * {@inheritDoc}
+     * <br>
+     * This implementation does not await the writes of the requests, so that the pending
+     * requests are flushed together, and keeps the window full : a new request is sent
+     * as soon as the oldest one has received its response.
+     */
+    @Override
+    public void batch( Iterator<? extends Request> requests,
+        BiConsumer<? super Request, ? super ResultResponse> handler ) throws LdapException
+    {
+        int window = config.getBatchWindow();
+        Deque<Request> pendingRequests = new ArrayDeque<>( window );
+        Deque<ResponseFuture<?>> pendingFutures = new ArrayDeque<>( window );
+
+        try
+        {
+            while ( requests.hasNext() )
+            {
+                // Wait for the oldest response when the window is full
+                if ( pendingFutures.size() >= window )
+                {
+                    handler.accept( pendingRequests.poll(), getBatchResponse( pendingFutures.poll() ) );
+                }
+
+                Request request = requests.next();
+                pendingFutures.add( sendBatchRequest( request ) );
+                pendingRequests.add( request );
+            }
+
+            while ( !pendingFutures.isEmpty() )
+            {
+                handler.accept( pendingRequests.poll(), getBatchResponse( pendingFutures.poll() ) );
+            }
+        }
+        finally
+        {
+            // The batch has failed : abandon the requests still pending
+            for ( ResponseFuture<?> future : pendingFutures )
+            {
+                if ( !future.isDone() && !future.isCancelled() )
+                {
+                    future.cancel( true );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Sends a batched request, without waiting for it to be written
+     */
+    private ResponseFuture<?> sendBatchRequest( Request request ) throws LdapException
+    {
+        if ( request instanceof AddRequest )
+        {
+            return addAsync( ( AddRequest ) request, false );
+        }
+        else if ( request instanceof ModifyRequest )
+        {
+            return modifyAsync( ( ModifyRequest ) request, false );
+        }
+        else if ( request instanceof ModifyDnRequest )
+        {
+            return modifyDnAsync( ( ModifyDnRequest ) request, false );
+        }
+        else if ( request instanceof DeleteRequest )
+        {
+            return deleteAsync( ( DeleteRequest ) request, false );
+        }
+
+        String msg = I18n.err( I18n.ERR_04185_UNSUPPORTED_BATCH_REQUEST,
+            request == null ? null : request.getClass().getName() );
+
+        if ( LOG.isDebugEnabled() )
+        {
+            LOG.debug( msg );
+        }
+
+        throw new IllegalArgumentException( msg );
+    }
+
+
+    /**
+     * Waits for the response of a batched request. The response is null if the request
+     * has been abandoned, and an InvalidConnectionException is thrown if the connection
+     * has been closed before the response has been received.
+     */
+    private ResultResponse getBatchResponse( ResponseFuture<?> future ) throws LdapException
+    {
+        try
+        {
+            // The request is abandoned by the timeout wheel if the timeout elapses,
+            // which wakes us up with a null response
+            ResultResponse response = ( ResultResponse ) future.get( timeout, TimeUnit.MILLISECONDS );
+
+            // The pending requests are cancelled when the session is closed, we may also
+            // get the NoticeOfDisconnect response set by the close listener
+            if ( ( ( response == null ) || future.isCancelled() ) && !isConnected() )
+            {
+                throw new InvalidConnectionException( I18n.err( I18n.ERR_04160_SESSION_HAS_BEEN_CLOSED ) );
+            }
+
+            return future.isCancelled() ? null : response;
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new LdapException( NO_RESPONSE_ERROR, ie );
+        }
+        catch ( ExecutionException | TimeoutException e )
+        {
+            throw new LdapException( NO_RESPONSE_ERROR, e );
+        }
+    }
+
+
     //------------------------ The LDAP operations ------------------------//
     // Unbind operations                                                   //
     //---------------------------------------------------------------------//
@@ -2389,9 +2807,10 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         authenticated.set( false );
 
         // Close all the Future for this session
-        for ( ResponseFuture<? extends Response> responseFuture : futureMap.values() )
+        for ( ResponseFuture<? extends Response> responseFuture : futureTable.values() )
         {
             responseFuture.cancel();
+            requestAbandoned();
         }
 
         // clear the mappings
@@ -2424,6 +2843,62 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     }
 
 
+    /**
+     * @return The listener notified of the activity of this connection, null if none
+     */
+    public LdapMetricsListener getMetricsListener()
+    {
+        return metricsListener;
+    }
+
+
+    /**
+     * Sets the listener notified of the activity of this connection. It replaces the
+     * listener of the configuration, and must be set before the connection is opened
+     * to count the exchanged bytes.
+     *
+     * @param metricsListener The listener, or null to disable the metrics
+     */
+    public void setMetricsListener( LdapMetricsListener metricsListener )
+    {
+        this.metricsListener = metricsListener;
+    }
+
+
+    /**
+     * @return The cache of the server capabilities shared with other connections, null if none
+     */
+    public ServerCapabilityCache getCapabilityCache()
+    {
+        return capabilityCache;
+    }
+
+
+    /**
+     * Sets the cache of the server capabilities shared with other connections. The
+     * supported controls and the schema are then read from the cache, instead of being
+     * read from the server by each connection.
+     *
+     * @param capabilityCache The cache, or null to read the capabilities from the server
+     */
+    public void setCapabilityCache( ServerCapabilityCache capabilityCache )
+    {
+        this.capabilityCache = capabilityCache;
+    }
+
+
+    /**
+     * Set the connector shared with other connections. The connection opens its
+     * session with this connector instead of creating its own one.
+     *
+     * @param sharedConnector The shared connector to use
+     */
+    void setSharedConnector( SharedLdapConnector sharedConnector )
+    {
+        this.sharedConnector = sharedConnector;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -2467,7 +2942,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             {
                 int messageId = ( ( MessageEncoderException ) realCause ).getMessageId();
 
-                ResponseFuture<?> response = futureMap.get( messageId );
+                ResponseFuture<?> response = futureTable.get( messageId );
                 response.cancel( true );
                 response.setCause( realCause );
             }
@@ -2528,7 +3003,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         addFuture.set( addResponse );
 
         // Remove the future from the map
-        removeFromFutureMaps( responseId );
+        removeFromFutureMaps( responseId, addResponse );
     }
 
 
@@ -2567,7 +3042,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         bindFuture.set( bindResponse );
 
         // Remove the future from the map
-        removeFromFutureMaps( responseId );
+        removeFromFutureMaps( responseId, bindResponse );
     }
 
 
@@ -2601,7 +3076,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         compareFuture.set( compareResponse );
 
         // Remove the future from the map
-        removeFromFutureMaps( responseId );
+        removeFromFutureMaps( responseId, compareResponse );
     }
 
 
@@ -2634,7 +3109,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         deleteFuture.set( deleteResponse );
 
         // Remove the future from the map
-        removeFromFutureMaps( responseId );
+        removeFromFutureMaps( responseId, deleteResponse );
     }
 
 
@@ -2670,7 +3145,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         extendedFuture.set( extendedResponse );
 
         // Remove the future from the map
-        removeFromFutureMaps( responseId );
+        removeFromFutureMaps( responseId, extendedResponse );
     }
 
 
@@ -2739,7 +3214,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         modifyFuture.set( modifyResponse );
 
         // Remove the future from the map
-        removeFromFutureMaps( responseId );
+        removeFromFutureMaps( responseId, modifyResponse );
     }
 
 
@@ -2772,7 +3247,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         modifyDnFuture.set( modifyDnResponse );
 
         // Remove the future from the map
-        removeFromFutureMaps( responseId );
+        removeFromFutureMaps( responseId, modifyDnResponse );
     }
 
 
@@ -2805,7 +3280,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         searchFuture.set( searchResultDone );
 
         // Remove the future from the map
-        removeFromFutureMaps( responseId );
+        removeFromFutureMaps( responseId, searchResultDone );
     }
 
 
@@ -2822,7 +3297,17 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     {
         if ( schemaManager != null )
         {
-            searchResultEntry.setEntry( new DefaultEntry( schemaManager, searchResultEntry.getEntry() ) );
+            Entry entry = searchResultEntry.getEntry();
+
+            if ( entry instanceof LazyEntry )
+            {
+                // The values will be normalized when their attribute is accessed
+                ( ( LazyEntry ) entry ).applySchemaManager( schemaManager );
+            }
+            else
+            {
+                searchResultEntry.setEntry( new DefaultEntry( schemaManager, entry ) );
+            }
         }
 
         if ( LOG.isDebugEnabled() )
@@ -2900,6 +3385,11 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             return;
         }
 
+        if ( metricsListener != null )
+        {
+            metricsListener.responseReceived( response.getType() );
+        }
+
         switch ( response.getType() )
         {
             case ADD_RESPONSE:
@@ -3172,6 +3662,15 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     @Override
     public ModifyFuture modifyAsync( ModifyRequest modRequest ) throws LdapException
+    {
+        return modifyAsync( modRequest, true );
+    }
+
+
+    /**
+     * Sends a ModifyRequest, waiting for the request to be written if required
+     */
+    private ModifyFuture modifyAsync( ModifyRequest modRequest, boolean waitForWrite ) throws LdapException
     {
         if ( modRequest == null )
         {
@@ -3209,7 +3708,14 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         addToFutureMap( newId, modifyFuture );
 
         // Send the request to the server
-        writeRequest( modRequest );
+        if ( waitForWrite )
+        {
+            writeRequest( modRequest );
+        }
+        else
+        {
+            sendRequest( modRequest );
+        }
 
         // Ok, done return the future
         return modifyFuture;
@@ -3562,6 +4068,15 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     @Override
     public ModifyDnFuture modifyDnAsync( ModifyDnRequest modDnRequest ) throws LdapException
+    {
+        return modifyDnAsync( modDnRequest, true );
+    }
+
+
+    /**
+     * Sends a ModifyDnRequest, waiting for the request to be written if required
+     */
+    private ModifyDnFuture modifyDnAsync( ModifyDnRequest modDnRequest, boolean waitForWrite ) throws LdapException
     {
         if ( modDnRequest == null )
         {
@@ -3611,7 +4126,14 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         addToFutureMap( newId, modifyDnFuture );
 
         // Send the request to the server
-        writeRequest( modDnRequest );
+        if ( waitForWrite )
+        {
+            writeRequest( modDnRequest );
+        }
+        else
+        {
+            sendRequest( modDnRequest );
+        }
 
         // Ok, done return the future
         return modifyDnFuture;
@@ -3786,6 +4308,15 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     @Override
     public DeleteFuture deleteAsync( DeleteRequest deleteRequest ) throws LdapException
+    {
+        return deleteAsync( deleteRequest, true );
+    }
+
+
+    /**
+     * Sends a DeleteRequest, waiting for the request to be written if required
+     */
+    private DeleteFuture deleteAsync( DeleteRequest deleteRequest, boolean waitForWrite ) throws LdapException
     {
         if ( deleteRequest == null )
         {
@@ -3824,7 +4355,14 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         addToFutureMap( newId, deleteFuture );
 
         // Send the request to the server
-        writeRequest( deleteRequest );
+        if ( waitForWrite )
+        {
+            writeRequest( deleteRequest );
+        }
+        else
+        {
+            sendRequest( deleteRequest );
+        }
 
         // Ok, done return the future
         return deleteFuture;
@@ -4412,17 +4950,31 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     @Override
     public List<String> getSupportedControls() throws LdapException
     {
-        if ( supportedControls != null )
+        if ( capabilityCache != null )
         {
-            return supportedControls;
+            return capabilityCache.getSupportedControls( this );
         }
 
-        if ( rootDse == null )
+        if ( supportedControls == null )
         {
-            fetchRootDSE();
+            supportedControls = fetchSupportedControls();
         }
 
-        supportedControls = new ArrayList<>();
+        return supportedControls;
+    }
+
+
+    /**
+     * Reads the controls supported by the server from its RootDSE
+     *
+     * @return The list of the supported controls OIDs
+     * @throws LdapException If the RootDSE can't be read
+     */
+    List<String> fetchSupportedControls() throws LdapException
+    {
+        fetchRootDSE();
+
+        List<String> controls = new ArrayList<>();
 
         Attribute attr = rootDse.get( SchemaConstants.SUPPORTED_CONTROL_AT );
 
@@ -4435,16 +4987,16 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
             attr = rootDse.get( SchemaConstants.SUPPORTED_CONTROL_AT );
             if ( attr == null )
             {
-                return supportedControls;
+                return controls;
             }
         }
         
         for ( Value value : attr )
         {
-            supportedControls.add( value.getString() );
+            controls.add( value.getString() );
         }
 
-        return supportedControls;
+        return controls;
     }
 
 
@@ -4454,7 +5006,14 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     @Override
     public void loadSchema() throws LdapException
     {
-        loadSchema( new DefaultSchemaLoader( this ) );
+        if ( capabilityCache != null )
+        {
+            applySchemaManager( capabilityCache.getSchemaManager( this, false ) );
+        }
+        else
+        {
+            loadSchema( new DefaultSchemaLoader( this ) );
+        }
     }
 
 
@@ -4464,7 +5023,14 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     @Override
     public void loadSchemaRelaxed() throws LdapException
     {
-        loadSchema( new DefaultSchemaLoader( this, true ) );
+        if ( capabilityCache != null )
+        {
+            applySchemaManager( capabilityCache.getSchemaManager( this, true ) );
+        }
+        else
+        {
+            loadSchema( new DefaultSchemaLoader( this, true ) );
+        }
     }
 
 
@@ -4475,6 +5041,19 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      * @throws LdapException If the schema loading failed
      */
     public void loadSchema( SchemaLoader loader ) throws LdapException
+    {
+        applySchemaManager( createSchemaManager( loader ) );
+    }
+
+
+    /**
+     * Creates a SchemaManager, loading all the enabled schemas with the specified schema loader
+     *
+     * @param loader the {@link SchemaLoader} to be used to load schema
+     * @return The SchemaManager
+     * @throws LdapException If the schema loading failed
+     */
+    SchemaManager createSchemaManager( SchemaLoader loader ) throws LdapException
     {
         try
         {
@@ -4494,13 +5073,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                 throw new LdapException( msg );
             }
 
-            schemaManager = tmp;
-
-            // Change the container's BinaryDetector
-            ldapSession.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR,
-                new LdapMessageContainer<>( codec,
-                    new SchemaBinaryAttributeDetector( schemaManager ) ) );
-
+            return tmp;
         }
         catch ( LdapException le )
         {
@@ -4514,6 +5087,20 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     }
 
 
+    /**
+     * Uses a SchemaManager to decode the responses
+     */
+    private void applySchemaManager( SchemaManager schemaManager )
+    {
+        this.schemaManager = schemaManager;
+
+        // Change the container's BinaryDetector
+        ldapSession.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR,
+            new LdapMessageContainer<>( codec,
+                new SchemaBinaryAttributeDetector( schemaManager ) ) );
+    }
+
+
     /**
      * parses the given schema file present in OpenLDAP schema format
      * and adds all the SchemaObjects present in it to the SchemaManager
@@ -4666,10 +5253,67 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      * from future and response queue maps
      *
      * @param msgId id of the message
+     * @param response The final response of the request
      */
-    private void removeFromFutureMaps( int msgId )
+    private void removeFromFutureMaps( int msgId, ResultResponse response )
     {
-        getFromFutureMap( msgId );
+        ResponseFuture<? extends Response> future = getFromFutureMap( msgId );
+
+        // The request may have been abandoned in the meantime
+        if ( ( metricsListener != null ) && ( future != null ) )
+        {
+            metricsListener.requestCompleted( getRequestType( response.getType() ),
+                response.getLdapResult().getResultCode(), System.nanoTime() - future.getCreationTime() );
+        }
+    }
+
+
+    /**
+     * Gets the type of the request a final response is returned for
+     */
+    private static MessageTypeEnum getRequestType( MessageTypeEnum responseType )
+    {
+        switch ( responseType )
+        {
+            case ADD_RESPONSE:
+                return MessageTypeEnum.ADD_REQUEST;
+
+            case BIND_RESPONSE:
+                return MessageTypeEnum.BIND_REQUEST;
+
+            case COMPARE_RESPONSE:
+                return MessageTypeEnum.COMPARE_REQUEST;
+
+            case DEL_RESPONSE:
+                return MessageTypeEnum.DEL_REQUEST;
+
+            case EXTENDED_RESPONSE:
+                return MessageTypeEnum.EXTENDED_REQUEST;
+
+            case MODIFY_RESPONSE:
+                return MessageTypeEnum.MODIFY_REQUEST;
+
+            case MODIFYDN_RESPONSE:
+                return MessageTypeEnum.MODIFYDN_REQUEST;
+
+            case SEARCH_RESULT_DONE:
+                return MessageTypeEnum.SEARCH_REQUEST;
+
+            default:
+                return responseType;
+        }
+    }
+
+
+    /**
+     * Notifies the metrics listener, if any, that a pending request has been abandoned
+     */
+    private void requestAbandoned()
+    {
+        if ( metricsListener != null )
+        {
+            metricsListener.requestAbandoned();
+        }
     }
 
 
@@ -4678,7 +5322,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
      */
     private void clearMaps()
     {
-        futureMap.clear();
+        futureTable.clear();
     }
 
 
@@ -4688,7 +5332,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     @Override
     public boolean isRequestCompleted( int messageId )
     {
-        ResponseFuture<?> responseFuture = futureMap.get( messageId );
+        ResponseFuture<?> responseFuture = futureTable.get( messageId );
         
         return responseFuture == null;
     }
@@ -4700,7 +5344,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     @Override
     public boolean doesFutureExistFor( int messageId )
     {
-        ResponseFuture<?> responseFuture = futureMap.get( messageId );
+        ResponseFuture<?> responseFuture = futureTable.get( messageId );
         return responseFuture != null;
     }
 
@@ -4746,6 +5390,23 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                 codec, config.getBinaryAttributeDetector() );
 
         session.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR, ldapMessageContainer );
+
+        if ( config.isSlicedValues() )
+        {
+            session.setAttribute( LdapDecoder.SLICED_VALUES_ATTR, Boolean.TRUE );
+        }
+
+        if ( config.isLazyEntries() )
+        {
+            session.setAttribute( LdapDecoder.LAZY_ENTRIES_ATTR, Boolean.TRUE );
+        }
+
+        // The lazy entries are produced by the single-pass decoder
+        if ( config.isFastPathDecoding() || config.isLazyEntries() )
+        {
+            session.setAttribute( LdapDecoder.FAST_PATH_ATTR, Boolean.TRUE );
+        }
+
         connected.set( true );
     }
 
@@ -4854,11 +5515,12 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
 
     /**
-     * Adds {@link SslFilter} to the IOConnector or IOSession's filter chain
+     * Creates the {@link SslFilter} from the configuration
      * 
-     * @throws LdapException If the SSL filter addition failed
+     * @return The SSL filter
+     * @throws LdapException If the SSL filter creation failed
      */
-    private void addSslFilter() throws LdapException
+    private SslFilter createSslFilter() throws LdapException
     {
         try
         {
@@ -4898,6 +5560,28 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     { "TLSv1", "TLSv1.1", "TLSv1.2" } );
             }
 
+            return sslFilter;
+        }
+        catch ( Exception e )
+        {
+            String msg = I18n.err( I18n.ERR_04122_SSL_CONTEXT_INIT_FAILURE );
+            LOG.error( msg, e );
+            throw new LdapException( msg, e );
+        }
+    }
+
+
+    /**
+     * Adds {@link SslFilter} to the IOConnector or IOSession's filter chain
+     * 
+     * @throws LdapException If the SSL filter addition failed
+     */
+    private void addSslFilter() throws LdapException
+    {
+        SslFilter sslFilter = createSslFilter();
+
+        try
+        {
             // for LDAPS/TLS
             handshakeFuture = new HandshakeFuture();
             
@@ -5128,6 +5812,25 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     }
 
 
+    /**
+     * Sends a request to the server, without waiting for it to be written. The
+     * pending writes are flushed together by the session I/O processor.
+     * 
+     * @param request The request to send
+     * @return The future notified when the request has been written
+     */
+    private WriteFuture sendRequest( Request request )
+    {
+        // Record the request before sending it, as the response may be received at once
+        if ( metricsListener != null )
+        {
+            metricsListener.requestSent( request.getType() );
+        }
+
+        return ldapSession.write( request );
+    }
+
+
     /**
      * A reusable code block to be used in various bind methods
      * 
@@ -5137,7 +5840,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     private void writeRequest( Request request ) throws LdapException
     {
         // Send the request to the server
-        WriteFuture writeFuture = ldapSession.write( request );
+        WriteFuture writeFuture = sendRequest( request );
 
         long localTimeout = timeout;
 
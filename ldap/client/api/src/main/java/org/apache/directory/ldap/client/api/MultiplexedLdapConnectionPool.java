@@ -0,0 +1,481 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.ldap.client.api.metrics.LdapMetricsListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A pool sharing a small set of bound connections between many threads. Unlike the
+ * {@link LdapConnectionPool}, which lends each connection to a single borrower, a
+ * connection is lent to up to <code>maxOutstanding</code> borrowers at the same time,
+ * which send their requests concurrently: the responses are dispatched to each
+ * request future using the message ID.
+ * <br>
+ * A borrowed connection is the one having the fewest borrowers. When all the
+ * connections have <code>maxOutstanding</code> borrowers, {@link #getConnection()}
+ * waits until one of them is released. The connections are created when needed, and
+ * replaced when they have been disconnected.
+ * <br>
+ * As a connection is shared, the borrowers must not change its state: they must
+ * not bind, unbind, close it or start TLS on it. They must release it once
+ * their requests are completed.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class MultiplexedLdapConnectionPool implements Closeable
+{
+    /** This class logger */
+    private static final Logger LOG = LoggerFactory.getLogger( MultiplexedLdapConnectionPool.class );
+
+    /** The factory creating the bound connections */
+    private final LdapConnectionFactory factory;
+
+    /** The maximum number of borrowers of a connection */
+    private final int maxOutstanding;
+
+    /** The pooled connections, null until they are created */
+    private final AtomicReferenceArray<PooledConnection> slots;
+
+    /** The locks used when a connection is created. A monitor would pin the virtual threads creating it */
+    private final Lock[] slotLocks;
+
+    /** The pooled connections, including the retired ones which are still borrowed */
+    private final Map<LdapConnection, PooledConnection> pooledConnections = new ConcurrentHashMap<>();
+
+    /** One permit per possible borrower */
+    private final Semaphore permits;
+
+    /** The time to wait for a connection, in milliseconds */
+    private long maxWait = LdapConnectionConfig.DEFAULT_TIMEOUT;
+
+    /** Tells if the pool has been closed */
+    private volatile boolean closed;
+
+    /** The listener notified when a connection is borrowed, if any */
+    private volatile LdapMetricsListener metricsListener;
+
+
+    /**
+     * A pooled connection and its number of borrowers
+     */
+    private static final class PooledConnection
+    {
+        /** The connection */
+        private final LdapAsyncConnection connection;
+
+        /** The number of borrowers */
+        private final AtomicInteger borrowers = new AtomicInteger();
+
+        /** Tells if the connection has been replaced in the pool */
+        private volatile boolean retired;
+
+
+        private PooledConnection( LdapAsyncConnection connection )
+        {
+            this.connection = connection;
+        }
+    }
+
+
+    /**
+     * Creates a new instance of MultiplexedLdapConnectionPool.
+     *
+     * @param factory The factory creating the connections. They must be asynchronous and bound.
+     * @param size The number of connections
+     * @param maxOutstanding The maximum number of borrowers of a connection
+     */
+    public MultiplexedLdapConnectionPool( LdapConnectionFactory factory, int size, int maxOutstanding )
+    {
+        if ( ( size <= 0 ) || ( maxOutstanding <= 0 ) )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04184_INVALID_POOL_SIZE, size, maxOutstanding ) );
+        }
+
+        this.factory = factory;
+        this.maxOutstanding = maxOutstanding;
+        slots = new AtomicReferenceArray<>( size );
+        slotLocks = new Lock[size];
+
+        for ( int i = 0; i < size; i++ )
+        {
+            slotLocks[i] = new ReentrantLock();
+        }
+
+        permits = new Semaphore( size * maxOutstanding );
+    }
+
+
+    /**
+     * Borrows the connection having the fewest borrowers, waiting up to the pool
+     * <code>maxWait</code> if all of them have <code>maxOutstanding</code> borrowers.
+     *
+     * @return A bound connection, which must be released with {@link #releaseConnection(LdapConnection)}
+     * @throws LdapException If no connection is available, or if a connection can't be created
+     */
+    public LdapAsyncConnection getConnection() throws LdapException
+    {
+        if ( closed )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04181_POOL_CLOSED ) );
+        }
+
+        long start = System.nanoTime();
+
+        try
+        {
+            if ( !permits.tryAcquire( maxWait, TimeUnit.MILLISECONDS ) )
+            {
+                throw new LdapException( LdapNetworkConnection.TIME_OUT_ERROR );
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new LdapException( ie.getMessage(), ie );
+        }
+
+        try
+        {
+            LdapAsyncConnection connection = borrow().connection;
+
+            if ( metricsListener != null )
+            {
+                metricsListener.connectionBorrowed( System.nanoTime() - start );
+            }
+
+            return connection;
+        }
+        catch ( LdapException | RuntimeException e )
+        {
+            permits.release();
+
+            throw e;
+        }
+    }
+
+
+    /**
+     * Selects the connection having the fewest borrowers, and increments its number of
+     * borrowers. The permit held by the caller guarantees that one of the connections
+     * has less than maxOutstanding borrowers.
+     */
+    private PooledConnection borrow() throws LdapException
+    {
+        while ( true )
+        {
+            int selected = 0;
+            long lowestLoad = Long.MAX_VALUE;
+
+            for ( int i = 0; i < slots.length(); i++ )
+            {
+                PooledConnection pooledConnection = slots.get( i );
+                long load;
+
+                if ( pooledConnection == null )
+                {
+                    // An idle connection is preferred to a new one
+                    load = 1L;
+                }
+                else if ( !pooledConnection.connection.isConnected() )
+                {
+                    // A disconnected connection is replaced first
+                    load = -1L;
+                }
+                else
+                {
+                    load = 2L * pooledConnection.borrowers.get();
+                }
+
+                if ( load < lowestLoad )
+                {
+                    selected = i;
+                    lowestLoad = load;
+                }
+            }
+
+            PooledConnection pooledConnection = slots.get( selected );
+
+            if ( ( pooledConnection == null ) || !pooledConnection.connection.isConnected() )
+            {
+                pooledConnection = open( selected, pooledConnection );
+            }
+
+            int borrowers = pooledConnection.borrowers.get();
+
+            if ( ( borrowers < maxOutstanding ) && pooledConnection.borrowers.compareAndSet( borrowers, borrowers + 1 ) )
+            {
+                if ( !pooledConnection.retired )
+                {
+                    return pooledConnection;
+                }
+
+                // The connection has been replaced in the meantime
+                giveBack( pooledConnection );
+            }
+        }
+    }
+
+
+    /**
+     * Creates the connection of a slot, retiring the one it replaces
+     */
+    private PooledConnection open( int slot, PooledConnection replaced ) throws LdapException
+    {
+        slotLocks[slot].lock();
+
+        try
+        {
+            PooledConnection current = slots.get( slot );
+
+            // Another thread may have created the connection
+            if ( ( current != replaced ) && ( current != null ) && current.connection.isConnected() )
+            {
+                return current;
+            }
+
+            if ( closed )
+            {
+                throw new LdapException( I18n.err( I18n.ERR_04181_POOL_CLOSED ) );
+            }
+
+            LdapConnection connection = factory.newLdapConnection();
+
+            if ( !( connection instanceof LdapAsyncConnection ) )
+            {
+                closeQuietly( connection );
+
+                throw new LdapException( I18n.err( I18n.ERR_04182_NOT_AN_ASYNC_CONNECTION,
+                    connection.getClass().getName() ) );
+            }
+
+            PooledConnection pooledConnection = new PooledConnection( ( LdapAsyncConnection ) connection );
+            pooledConnections.put( connection, pooledConnection );
+            slots.set( slot, pooledConnection );
+
+            if ( current != null )
+            {
+                current.retired = true;
+
+                if ( current.borrowers.get() == 0 )
+                {
+                    discard( current );
+                }
+            }
+
+            return pooledConnection;
+        }
+        finally
+        {
+            slotLocks[slot].unlock();
+        }
+    }
+
+
+    /**
+     * Releases a connection borrowed from this pool.
+     *
+     * @param connection The connection to release
+     */
+    public void releaseConnection( LdapConnection connection )
+    {
+        PooledConnection pooledConnection = pooledConnections.get( connection );
+
+        if ( pooledConnection == null )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04183_NOT_A_POOLED_CONNECTION, connection ) );
+        }
+
+        giveBack( pooledConnection );
+        permits.release();
+    }
+
+
+    /**
+     * Decrements the number of borrowers of a connection, discarding it if it
+     * has been retired and if it is not borrowed anymore
+     */
+    private void giveBack( PooledConnection pooledConnection )
+    {
+        if ( ( pooledConnection.borrowers.decrementAndGet() == 0 ) && pooledConnection.retired )
+        {
+            discard( pooledConnection );
+        }
+    }
+
+
+    /**
+     * Removes a connection from the pool and closes it
+     */
+    private void discard( PooledConnection pooledConnection )
+    {
+        if ( pooledConnections.remove( pooledConnection.connection ) != null )
+        {
+            closeQuietly( pooledConnection.connection );
+        }
+    }
+
+
+    private static void closeQuietly( LdapConnection connection )
+    {
+        try
+        {
+            connection.close();
+        }
+        catch ( IOException ioe )
+        {
+            LOG.error( I18n.err( I18n.ERR_04103_UNABLE_TO_CLOSE_FAILED_CONNECTION, ioe.getMessage() ), ioe );
+        }
+    }
+
+
+    /**
+     * @return The number of connections currently lent to at least one borrower
+     */
+    public int getNumActive()
+    {
+        int active = 0;
+
+        for ( PooledConnection pooledConnection : pooledConnections.values() )
+        {
+            if ( pooledConnection.borrowers.get() > 0 )
+            {
+                active++;
+            }
+        }
+
+        return active;
+    }
+
+
+    /**
+     * @return The number of borrowers of all the connections
+     */
+    public int getNumBorrowers()
+    {
+        int borrowers = 0;
+
+        for ( PooledConnection pooledConnection : pooledConnections.values() )
+        {
+            borrowers += pooledConnection.borrowers.get();
+        }
+
+        return borrowers;
+    }
+
+
+    /**
+     * @return The maximum time to wait for a connection, in milliseconds
+     */
+    public long getMaxWait()
+    {
+        return maxWait;
+    }
+
+
+    /**
+     * Sets the maximum time to wait for a connection when all of them have
+     * <code>maxOutstanding</code> borrowers.
+     *
+     * @param maxWait The maximum time to wait for a connection, in milliseconds
+     */
+    public void setMaxWait( long maxWait )
+    {
+        this.maxWait = maxWait;
+    }
+
+
+    /**
+     * @return The listener notified when a connection is borrowed, null if none
+     */
+    public LdapMetricsListener getMetricsListener()
+    {
+        return metricsListener;
+    }
+
+
+    /**
+     * Sets the listener notified when a connection is borrowed, with the time spent
+     * waiting for it.
+     *
+     * @param metricsListener The listener, or null to disable the metrics
+     */
+    public void setMetricsListener( LdapMetricsListener metricsListener )
+    {
+        this.metricsListener = metricsListener;
+    }
+
+
+    /**
+     * Closes all the connections. They must not be used anymore.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+
+        for ( int i = 0; i < slots.length(); i++ )
+        {
+            slotLocks[i].lock();
+
+            try
+            {
+                slots.set( i, null );
+            }
+            finally
+            {
+                slotLocks[i].unlock();
+            }
+        }
+
+        for ( PooledConnection pooledConnection : pooledConnections.values() )
+        {
+            try
+            {
+                // https://tools.ietf.org/html/rfc2251#section-4.3
+                // unbind closes the connection so no need to close
+                pooledConnection.connection.unBind();
+            }
+            catch ( LdapException e )
+            {
+                LOG.error( I18n.err( I18n.ERR_04100_UNABLE_TO_UNBIND, e.getMessage() ) );
+            }
+        }
+
+        pooledConnections.clear();
+    }
+}
@@ -0,0 +1,567 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.Loggers;
+import org.apache.directory.api.ldap.model.cursor.AbstractCursor;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Control;
+import org.apache.directory.api.ldap.model.message.IntermediateResponse;
+import org.apache.directory.api.ldap.model.message.Referral;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A Cursor iterating over the entries of a paged search. Each page is requested with a
+ * PagedResults control carrying the cookie returned with the previous page, and read
+ * with a {@link SearchCursorImpl}. The next page is requested as soon as the
+ * SearchResultDone of the current one has been received, so that the server
+ * processes it while the entries of the current page are consumed.
+ * <br>
+ * When the cursor is created on a {@link LdapConnection}, which can't send a request
+ * without waiting for its result, the pages are read with
+ * {@link LdapConnection#search(SearchRequest)} and the next page is only requested
+ * once the entries of the current one have all been consumed.
+ * <br>
+ * The SearchResultDone of the intermediate pages are not returned : the cursor is done
+ * when the last page, the one without a cookie, has been read, or when a page has been
+ * completed with an error. {@link #getSearchResultDone()} then returns its SearchResultDone.
+ * 
+ * Note: This is a forward only cursor hence the only valid operations are next(), get() and close() 
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class PagedSearchCursorImpl extends AbstractCursor<Response> implements SearchCursor
+{
+    /** A dedicated log for cursors */
+    private static final Logger LOG_CURSOR = LoggerFactory.getLogger( Loggers.CURSOR_LOG.getName() );
+
+    /** The connection the pages are requested on */
+    private final LdapConnection connection;
+
+    /** The connection the pages are requested on, if they can be prefetched */
+    private final LdapAsyncConnection asyncConnection;
+
+    /** The search request, a copy of which is sent for each page */
+    private final SearchRequest searchRequest;
+
+    /** The number of entries per page */
+    private final int pageSize;
+
+    /** wait time while polling for a SearchResponse */
+    private final long timeout;
+
+    /** time units of timeout value */
+    private final TimeUnit timeUnit;
+
+    /** The future of the page being read */
+    private SearchFuture pageFuture;
+
+    /** The cursor on the page being read */
+    private SearchCursor pageCursor;
+
+    /** The future of the next page, if it has already been requested */
+    private SearchFuture nextPageFuture;
+
+    /** Tells if the page being read is the last one */
+    private boolean lastPage;
+
+    /** the done flag */
+    private boolean done;
+
+    /** a reference to hold the SearchResultDone response of the last page */
+    private SearchResultDone searchDoneResp;
+
+
+    /**
+     * Instantiates a new paged search cursor, and requests the first page.
+     *
+     * @param connection The connection used to send the search requests
+     * @param searchRequest The search request
+     * @param pageSize The number of entries per page
+     * @param timeout the timeout
+     * @param timeUnit the time unit
+     * @throws LdapException If the first page can't be requested
+     */
+    public PagedSearchCursorImpl( LdapAsyncConnection connection, SearchRequest searchRequest, int pageSize,
+        long timeout, TimeUnit timeUnit ) throws LdapException
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04170_CREATING_SEARCH_CURSOR, this ) );
+        }
+
+        this.connection = connection;
+        this.asyncConnection = connection;
+        this.searchRequest = searchRequest;
+        this.pageSize = pageSize;
+        this.timeout = timeout;
+        this.timeUnit = timeUnit;
+
+        pageFuture = requestPage( Strings.EMPTY_BYTES );
+        pageCursor = new SearchCursorImpl( pageFuture, timeout, timeUnit );
+    }
+
+
+    /**
+     * Instantiates a new paged search cursor reading the pages one after the other,
+     * and requests the first page. The next page is requested when the entries of
+     * the current one have been consumed.
+     *
+     * @param connection The connection used to send the search requests
+     * @param searchRequest The search request
+     * @param pageSize The number of entries per page
+     * @throws LdapException If the first page can't be requested
+     */
+    public PagedSearchCursorImpl( LdapConnection connection, SearchRequest searchRequest, int pageSize )
+        throws LdapException
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04170_CREATING_SEARCH_CURSOR, this ) );
+        }
+
+        this.connection = connection;
+        this.asyncConnection = null;
+        this.searchRequest = searchRequest;
+        this.pageSize = pageSize;
+        this.timeout = 0L;
+        this.timeUnit = TimeUnit.MILLISECONDS;
+
+        pageCursor = connection.search( createPageRequest( Strings.EMPTY_BYTES ) );
+    }
+
+
+    /**
+     * Sends the search request for a page. A copy of the search request is sent, so
+     * that the caller's request is not modified.
+     */
+    private SearchFuture requestPage( byte[] cookie ) throws LdapException
+    {
+        return asyncConnection.searchAsync( createPageRequest( cookie ) );
+    }
+
+
+    /**
+     * Creates the search request of a page, a copy of the search request with a
+     * PagedResults control
+     */
+    private SearchRequest createPageRequest( byte[] cookie )
+    {
+        PagedResults pagedResults = new PagedResultsImpl();
+        pagedResults.setSize( pageSize );
+        pagedResults.setCookie( cookie );
+
+        SearchRequest pageRequest = copy( searchRequest );
+        pageRequest.addControl( pagedResults );
+
+        return pageRequest;
+    }
+
+
+    /**
+     * Creates a copy of a search request, with the same controls
+     *
+     * @param searchRequest The search request to copy
+     * @return The copy
+     */
+    static SearchRequest copy( SearchRequest searchRequest )
+    {
+        SearchRequest copy = new SearchRequestImpl();
+        copy.setBase( searchRequest.getBase() );
+        copy.setScope( searchRequest.getScope() );
+        copy.setFilter( searchRequest.getFilter() );
+        copy.setDerefAliases( searchRequest.getDerefAliases() );
+        copy.setSizeLimit( searchRequest.getSizeLimit() );
+        copy.setTimeLimit( searchRequest.getTimeLimit() );
+        copy.setTypesOnly( searchRequest.getTypesOnly() );
+        copy.addAttributes( searchRequest.getAttributes().toArray( new String[0] ) );
+        copy.addAllControls( searchRequest.getControls().values().toArray( new Control[0] ) );
+
+        if ( searchRequest.isFollowReferrals() )
+        {
+            copy.followReferrals();
+        }
+        else if ( searchRequest.isIgnoreReferrals() )
+        {
+            copy.ignoreReferrals();
+        }
+
+        return copy;
+    }
+
+
+    /**
+     * Gets the cookie to send to get the page following the one completed by a
+     * SearchResultDone.
+     *
+     * @return The cookie, or null if there is no more page
+     */
+    private static byte[] getCookie( SearchResultDone pageDone )
+    {
+        if ( pageDone.getLdapResult().getResultCode() != ResultCodeEnum.SUCCESS )
+        {
+            return null;
+        }
+
+        Control control = pageDone.getControl( PagedResults.OID );
+
+        if ( !( control instanceof PagedResults ) || Strings.isEmpty( ( ( PagedResults ) control ).getCookie() ) )
+        {
+            return null;
+        }
+
+        return ( ( PagedResults ) control ).getCookie();
+    }
+
+
+    /**
+     * Requests the next page if the SearchResultDone of the current one has been received
+     */
+    private void prefetch() throws LdapException
+    {
+        if ( ( asyncConnection == null ) || ( nextPageFuture != null ) || lastPage || !pageFuture.isDone()
+            || pageFuture.isCancelled() )
+        {
+            return;
+        }
+
+        Response pageDone = pageFuture.toCompletableFuture().getNow( null );
+
+        if ( !( pageDone instanceof SearchResultDone ) )
+        {
+            return;
+        }
+
+        byte[] cookie = getCookie( ( SearchResultDone ) pageDone );
+
+        if ( cookie == null )
+        {
+            lastPage = true;
+        }
+        else
+        {
+            nextPageFuture = requestPage( cookie );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean next() throws LdapException, CursorException
+    {
+        if ( done )
+        {
+            return false;
+        }
+
+        while ( true )
+        {
+            prefetch();
+
+            if ( pageCursor.next() )
+            {
+                return true;
+            }
+
+            SearchResultDone pageDone = pageCursor.getSearchResultDone();
+
+            // The page has been cancelled
+            if ( pageDone == null )
+            {
+                done = true;
+
+                return false;
+            }
+
+            byte[] cookie = getCookie( pageDone );
+
+            if ( cookie == null )
+            {
+                done = true;
+                searchDoneResp = pageDone;
+
+                return false;
+            }
+
+            if ( asyncConnection == null )
+            {
+                pageCursor = connection.search( createPageRequest( cookie ) );
+
+                continue;
+            }
+
+            if ( nextPageFuture == null )
+            {
+                nextPageFuture = requestPage( cookie );
+            }
+
+            pageFuture = nextPageFuture;
+            pageCursor = new SearchCursorImpl( pageFuture, timeout, timeUnit );
+            nextPageFuture = null;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response get() throws CursorException
+    {
+        return pageCursor.get();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchResultDone getSearchResultDone()
+    {
+        return searchDoneResp;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available()
+    {
+        return !done && pageCursor.available();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        close( null );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close( Exception cause ) throws IOException
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04171_CLOSING_SEARCH_CURSOR, this ) );
+        }
+
+        // Abandon the pages which are still pending
+        if ( ( nextPageFuture != null ) && !nextPageFuture.isCancelled() )
+        {
+            nextPageFuture.cancel( true );
+        }
+
+        pageCursor.close( cause );
+
+        if ( cause != null )
+        {
+            super.close( cause );
+        }
+        else
+        {
+            super.close();
+        }
+    }
+
+
+    // rest of all operations will throw UnsupportedOperationException
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void after( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "after( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterLast() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "afterLast()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void before( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "before( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeFirst() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "beforeFirst()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean first() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "first()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean last() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "last()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean previous() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "previous()" ) ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDone()
+    {
+        return done;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReferral()
+    {
+        return pageCursor.isReferral();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Referral getReferral() throws LdapException
+    {
+        return pageCursor.getReferral();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEntry()
+    {
+        return pageCursor.isEntry();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getEntry() throws LdapException
+    {
+        return pageCursor.getEntry();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIntermediate()
+    {
+        return pageCursor.isIntermediate();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IntermediateResponse getIntermediate() throws LdapException
+    {
+        return pageCursor.getIntermediate();
+    }
+}
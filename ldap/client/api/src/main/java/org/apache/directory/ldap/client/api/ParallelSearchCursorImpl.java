@@ -0,0 +1,513 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.Loggers;
+import org.apache.directory.api.ldap.model.cursor.AbstractCursor;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.InvalidCursorPositionException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapReferralException;
+import org.apache.directory.api.ldap.model.message.IntermediateResponse;
+import org.apache.directory.api.ldap.model.message.Referral;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * The Cursor merging the responses of the searches run by a {@link ParallelSearchExecutor}.
+ * The searching threads store the responses in a bounded buffer, and wait when it's full,
+ * until the responses are consumed or the cursor is closed. The responses of the different
+ * branches are interleaved.
+ * <br>
+ * The SearchResultDone returned once the cursor is done is the first unsuccessful one, if
+ * any, or the one of the base entry search.
+ * 
+ * Note: This is a forward only cursor hence the only valid operations are next(), get() and close() 
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class ParallelSearchCursorImpl extends AbstractCursor<Response> implements SearchCursor
+{
+    /** A dedicated log for cursors */
+    private static final Logger LOG_CURSOR = LoggerFactory.getLogger( Loggers.CURSOR_LOG.getName() );
+
+    /** The marker stored in the buffer once all the searches are completed */
+    private static final Response END = new SearchResultDoneImpl();
+
+    /** The time the searching threads wait for some room in the buffer before checking if the cursor is closed */
+    private static final long OFFER_TIMEOUT = 100L;
+
+    /** The responses not consumed yet */
+    private final BlockingQueue<Response> buffer;
+
+    /** The number of searching tasks still running */
+    private final AtomicInteger runningTasks;
+
+    /** The first failure of a searching task */
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    /** The first unsuccessful SearchResultDone */
+    private final AtomicReference<SearchResultDone> errorDone = new AtomicReference<>();
+
+    /** The SearchResultDone of the base entry search */
+    private volatile SearchResultDone baseDone;
+
+    /** Tells if the searches must be stopped */
+    private volatile boolean cancelled;
+
+    /** a reference to hold the response being read */
+    private Response response;
+
+    /** the done flag */
+    private boolean done;
+
+    /** a reference to hold the SearchResultDone response */
+    private SearchResultDone searchDoneResp;
+
+
+    /**
+     * Instantiates a new parallel search cursor.
+     *
+     * @param bufferSize The maximum number of responses waiting to be consumed
+     * @param tasks The number of searching tasks
+     */
+    ParallelSearchCursorImpl( int bufferSize, int tasks )
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04170_CREATING_SEARCH_CURSOR, this ) );
+        }
+
+        buffer = new ArrayBlockingQueue<>( bufferSize );
+        runningTasks = new AtomicInteger( tasks );
+    }
+
+
+    /**
+     * Stores a response, waiting for some room in the buffer.
+     *
+     * @param searchResponse The response to store
+     * @return <code>false</code> if the cursor has been closed, or if a search has failed
+     * @throws InterruptedException If the thread has been interrupted
+     */
+    boolean offer( Response searchResponse ) throws InterruptedException
+    {
+        while ( !cancelled )
+        {
+            if ( buffer.offer( searchResponse, OFFER_TIMEOUT, TimeUnit.MILLISECONDS ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Records the SearchResultDone of a search.
+     *
+     * @param searchDone The SearchResultDone
+     * @param isBase Tells if it's the base entry search. A branch having been removed
+     * since it has been found is ignored.
+     * @return <code>true</code> if the search was successful
+     */
+    boolean searchDone( SearchResultDone searchDone, boolean isBase )
+    {
+        ResultCodeEnum resultCode = searchDone.getLdapResult().getResultCode();
+
+        if ( isBase )
+        {
+            baseDone = searchDone;
+        }
+
+        if ( ( resultCode == ResultCodeEnum.SUCCESS )
+            || ( !isBase && ( resultCode == ResultCodeEnum.NO_SUCH_OBJECT ) ) )
+        {
+            return true;
+        }
+
+        errorDone.compareAndSet( null, searchDone );
+
+        return false;
+    }
+
+
+    /**
+     * Records the failure of a search, and stops the other ones.
+     *
+     * @param cause The failure cause
+     */
+    void fail( Exception cause )
+    {
+        if ( failure.compareAndSet( null, cause ) )
+        {
+            cancelled = true;
+            buffer.clear();
+        }
+    }
+
+
+    /**
+     * @return <code>true</code> if the searches must be stopped
+     */
+    boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+
+    /**
+     * Signals that a searching task is completed. The last one marks the end of the responses.
+     *
+     * @throws InterruptedException If the thread has been interrupted
+     */
+    void taskCompleted() throws InterruptedException
+    {
+        if ( runningTasks.decrementAndGet() == 0 )
+        {
+            while ( !buffer.offer( END, OFFER_TIMEOUT, TimeUnit.MILLISECONDS ) )
+            {
+                if ( cancelled )
+                {
+                    buffer.clear();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean next() throws LdapException, CursorException
+    {
+        if ( done )
+        {
+            return false;
+        }
+
+        try
+        {
+            response = buffer.take();
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new LdapException( ie.getMessage(), ie );
+        }
+
+        if ( response != END )
+        {
+            return true;
+        }
+
+        done = true;
+        response = null;
+
+        Exception cause = failure.get();
+
+        if ( cause instanceof LdapException )
+        {
+            throw ( LdapException ) cause;
+        }
+        else if ( cause != null )
+        {
+            throw new LdapException( cause.getMessage(), cause );
+        }
+
+        searchDoneResp = errorDone.get();
+
+        if ( searchDoneResp == null )
+        {
+            searchDoneResp = baseDone;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Response get() throws InvalidCursorPositionException
+    {
+        if ( !available() )
+        {
+            throw new InvalidCursorPositionException();
+        }
+
+        return response;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchResultDone getSearchResultDone()
+    {
+        return searchDoneResp;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean available()
+    {
+        return response != null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException
+    {
+        close( null );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close( Exception cause ) throws IOException
+    {
+        if ( LOG_CURSOR.isDebugEnabled() )
+        {
+            LOG_CURSOR.debug( I18n.msg( I18n.MSG_04171_CLOSING_SEARCH_CURSOR, this ) );
+        }
+
+        // Stop the searches still running
+        cancelled = true;
+        buffer.clear();
+
+        if ( cause != null )
+        {
+            super.close( cause );
+        }
+        else
+        {
+            super.close();
+        }
+    }
+
+
+    // rest of all operations will throw UnsupportedOperationException
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void after( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "after( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterLast() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "afterLast()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void before( Response element ) throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "before( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeFirst() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "beforeFirst()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean first() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "first()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean last() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "last()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean previous() throws LdapException, CursorException
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_13102_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "previous()" ) ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDone()
+    {
+        return done;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isReferral()
+    {
+        return response instanceof SearchResultReference;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Referral getReferral() throws LdapException
+    {
+        if ( isReferral() )
+        {
+            return ( ( SearchResultReference ) response ).getReferral();
+        }
+
+        throw new LdapException();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEntry()
+    {
+        return response instanceof SearchResultEntry;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Entry getEntry() throws LdapException
+    {
+        if ( isEntry() )
+        {
+            return ( ( SearchResultEntry ) response ).getEntry();
+        }
+        
+        if ( isReferral() )
+        {
+            Referral referral = ( ( SearchResultReference ) response ).getReferral();
+            throw new LdapReferralException( referral.getLdapUrls() );
+        }
+
+        throw new LdapException();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isIntermediate()
+    {
+        return response instanceof IntermediateResponse;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IntermediateResponse getIntermediate() throws LdapException
+    {
+        if ( isIntermediate() )
+        {
+            return ( IntermediateResponse ) response;
+        }
+
+        throw new LdapException();
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.cursor.CursorException;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.filter.PresenceNode;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Runs the subtree searches in parallel on several connections borrowed from a
+ * {@link LdapConnectionPool}. A subtree search is split in branches : the base entry
+ * is searched first, then its children are enumerated with a one level search, and
+ * the subtree of each child is searched on one of the <code>parallelism</code>
+ * connections, as soon as the child is found. The responses of all the branches are
+ * merged in a single cursor, buffering up to <code>bufferSize</code> responses : the
+ * searching threads wait when the buffer is full, until the responses are consumed.
+ * <br>
+ * The searches having another scope are run on a single connection, using the same
+ * cursor. As each branch is a separate search, the size and time limits apply
+ * to each branch, and the entries of the branches are interleaved.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ParallelSearchExecutor implements Closeable
+{
+    /** This class logger */
+    private static final Logger LOG = LoggerFactory.getLogger( ParallelSearchExecutor.class );
+
+    /** The marker telling the searching threads that all the branches have been found */
+    private static final Dn NO_MORE_BRANCHES = new Dn();
+
+    /** The pool the connections are borrowed from */
+    private final LdapConnectionPool connectionPool;
+
+    /** The number of branches searched in parallel */
+    private final int parallelism;
+
+    /** The maximum number of responses waiting to be consumed */
+    private final int bufferSize;
+
+    /** The threads running the searches */
+    private final ExecutorService executor;
+
+
+    /**
+     * Creates a new instance of ParallelSearchExecutor.
+     *
+     * @param connectionPool The pool the connections are borrowed from
+     * @param parallelism The number of branches searched in parallel. One more connection is
+     * used to enumerate the branches.
+     * @param bufferSize The maximum number of responses waiting to be consumed, per search
+     */
+    public ParallelSearchExecutor( LdapConnectionPool connectionPool, int parallelism, int bufferSize )
+    {
+        if ( ( parallelism <= 0 ) || ( bufferSize <= 0 ) )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04187_INVALID_PARALLEL_SEARCH_CONFIG,
+                parallelism, bufferSize ) );
+        }
+
+        this.connectionPool = connectionPool;
+        this.parallelism = parallelism;
+        this.bufferSize = bufferSize;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        executor = Executors.newCachedThreadPool( runnable ->
+        {
+            Thread thread = new Thread( runnable, "ParallelSearch-" + threadNumber.incrementAndGet() );
+            thread.setDaemon( true );
+
+            return thread;
+        } );
+    }
+
+
+    /**
+     * Performs a search, splitting it in branches searched in parallel if its scope is
+     * SUBTREE. The connections are borrowed when the search is started, and released
+     * when it's completed, or when the returned cursor is closed.
+     *
+     * @param searchRequest The search request object containing all the needed information
+     * @return a search cursor on the merged result of the branches.
+     * @throws LdapException if some error occurred
+     */
+    public SearchCursor search( SearchRequest searchRequest ) throws LdapException
+    {
+        if ( searchRequest == null )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04130_CANNOT_PROCESS_NULL_SEARCH_REQ ) );
+        }
+
+        if ( searchRequest.getBase() == null )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_04131_CANNOT_PROCESS_SEARCH_NULL_DN ) );
+        }
+
+        if ( executor.isShutdown() )
+        {
+            throw new LdapException( I18n.err( I18n.ERR_04188_PARALLEL_SEARCH_EXECUTOR_CLOSED ) );
+        }
+
+        if ( searchRequest.getScope() != SearchScope.SUBTREE )
+        {
+            ParallelSearchCursorImpl cursor = new ParallelSearchCursorImpl( bufferSize, 1 );
+            SearchRequest request = copy( searchRequest, searchRequest.getBase(), searchRequest.getScope() );
+            executor.execute( () -> searchAll( request, cursor ) );
+
+            return cursor;
+        }
+
+        ParallelSearchCursorImpl cursor = new ParallelSearchCursorImpl( bufferSize, parallelism + 1 );
+        BlockingQueue<Dn> branches = new LinkedBlockingQueue<>();
+
+        executor.execute( () -> enumerateBranches( searchRequest, branches, cursor ) );
+
+        for ( int i = 0; i < parallelism; i++ )
+        {
+            executor.execute( () -> searchBranches( searchRequest, branches, cursor ) );
+        }
+
+        return cursor;
+    }
+
+
+    /**
+     * Runs a whole search on a single connection
+     */
+    private void searchAll( SearchRequest searchRequest, ParallelSearchCursorImpl cursor )
+    {
+        LdapConnection connection = null;
+
+        try
+        {
+            connection = connectionPool.getConnection();
+            search( connection, searchRequest, cursor, true );
+        }
+        catch ( Exception e )
+        {
+            cursor.fail( e );
+        }
+        finally
+        {
+            completeTask( connection, cursor );
+        }
+    }
+
+
+    /**
+     * Searches the base entry, and stores its children in the branches queue
+     */
+    private void enumerateBranches( SearchRequest searchRequest, BlockingQueue<Dn> branches,
+        ParallelSearchCursorImpl cursor )
+    {
+        LdapConnection connection = null;
+
+        try
+        {
+            connection = connectionPool.getConnection();
+
+            // The base entry is the only one which does not belong to a branch
+            SearchRequest baseRequest = copy( searchRequest, searchRequest.getBase(), SearchScope.OBJECT );
+
+            if ( search( connection, baseRequest, cursor, true ) )
+            {
+                SearchRequest childrenRequest = new SearchRequestImpl();
+                childrenRequest.setBase( searchRequest.getBase() );
+                childrenRequest.setScope( SearchScope.ONELEVEL );
+                childrenRequest.setFilter( new PresenceNode( SchemaConstants.OBJECT_CLASS_AT ) );
+                childrenRequest.setDerefAliases( searchRequest.getDerefAliases() );
+                childrenRequest.addAttributes( SchemaConstants.NO_ATTRIBUTE );
+
+                try ( SearchCursor children = connection.search( childrenRequest ) )
+                {
+                    while ( !cursor.isCancelled() && children.next() )
+                    {
+                        if ( children.isEntry() )
+                        {
+                            branches.add( children.getEntry().getDn() );
+                        }
+                    }
+
+                    SearchResultDone childrenDone = children.getSearchResultDone();
+
+                    if ( childrenDone != null )
+                    {
+                        cursor.searchDone( childrenDone, false );
+                    }
+                }
+            }
+        }
+        catch ( Exception e )
+        {
+            cursor.fail( e );
+        }
+        finally
+        {
+            for ( int i = 0; i < parallelism; i++ )
+            {
+                branches.add( NO_MORE_BRANCHES );
+            }
+
+            completeTask( connection, cursor );
+        }
+    }
+
+
+    /**
+     * Searches the subtree of the branches taken from the queue, until all the branches
+     * have been searched. The connection is borrowed when the first branch is found.
+     */
+    private void searchBranches( SearchRequest searchRequest, BlockingQueue<Dn> branches,
+        ParallelSearchCursorImpl cursor )
+    {
+        LdapConnection connection = null;
+
+        try
+        {
+            Dn branch;
+
+            while ( ( branch = branches.take() ) != NO_MORE_BRANCHES )
+            {
+                if ( cursor.isCancelled() )
+                {
+                    break;
+                }
+
+                if ( connection == null )
+                {
+                    connection = connectionPool.getConnection();
+                }
+
+                search( connection, copy( searchRequest, branch, SearchScope.SUBTREE ), cursor, false );
+            }
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+            cursor.fail( ie );
+        }
+        catch ( Exception e )
+        {
+            cursor.fail( e );
+        }
+        finally
+        {
+            completeTask( connection, cursor );
+        }
+    }
+
+
+    /**
+     * Runs a search, storing its responses in the cursor
+     *
+     * @return <code>true</code> if the search was successful and if the cursor is still open
+     */
+    private static boolean search( LdapConnection connection, SearchRequest searchRequest,
+        ParallelSearchCursorImpl cursor, boolean isBase )
+        throws LdapException, CursorException, IOException, InterruptedException
+    {
+        try ( SearchCursor searchCursor = connection.search( searchRequest ) )
+        {
+            while ( searchCursor.next() )
+            {
+                if ( !cursor.offer( searchCursor.get() ) )
+                {
+                    // Closing the search cursor abandons the search
+                    return false;
+                }
+            }
+
+            SearchResultDone searchDone = searchCursor.getSearchResultDone();
+
+            return ( searchDone != null ) && cursor.searchDone( searchDone, isBase );
+        }
+    }
+
+
+    /**
+     * Releases the connection used by a task, and signals its completion to the cursor
+     */
+    private void completeTask( LdapConnection connection, ParallelSearchCursorImpl cursor )
+    {
+        if ( connection != null )
+        {
+            try
+            {
+                connectionPool.releaseConnection( connection );
+            }
+            catch ( LdapException e )
+            {
+                LOG.error( e.getMessage(), e );
+            }
+        }
+
+        try
+        {
+            cursor.taskCompleted();
+        }
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Creates a copy of a search request, with another base and scope
+     */
+    private static SearchRequest copy( SearchRequest searchRequest, Dn base, SearchScope scope )
+    {
+        SearchRequest copy = PagedSearchCursorImpl.copy( searchRequest );
+        copy.setBase( base );
+        copy.setScope( scope );
+
+        return copy;
+    }
+
+
+    /**
+     * Stops the searching threads. The searches still running are interrupted.
+     */
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
+
+
+/**
+ * The table holding the pending ResponseFutures of a connection, indexed by their
+ * messageId. As the messageIds are allocated incrementally, the futures are stored
+ * in a ring of slots, the slot being the messageId modulo the table capacity, so
+ * that storing and fetching a future is lock-free. Each slot holds an immutable
+ * (messageId, future) entry, which is claimed and released atomically, so that two
+ * threads removing the same messageId can't remove the future of another request
+ * stored in the same slot in the meantime. When a slot is already used by another
+ * pending request (which happens when more than the table capacity requests are in
+ * flight), the future is stored in an overflow map.
+ * <br>
+ * The expiration of a request scheduled on the {@link ResponseTimeoutWheel} can be
+ * stored with its future : it's cancelled when the future is removed or replaced.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class ResponseFutureTable
+{
+    /**
+     * A future stored in a slot, with its messageId
+     */
+    private static final class Entry
+    {
+        /** The messageId */
+        private final int messageId;
+
+        /** The future */
+        private final ResponseFuture<?> future;
+
+        /** The future expiration, null if it never expires */
+        private final ResponseTimeoutWheel.Timeout timeout;
+
+
+        private Entry( int messageId, ResponseFuture<?> future, ResponseTimeoutWheel.Timeout timeout )
+        {
+            this.messageId = messageId;
+            this.future = future;
+            this.timeout = timeout;
+        }
+
+
+        /**
+         * Cancels the future expiration, the future being no more pending
+         */
+        private void release()
+        {
+            if ( timeout != null )
+            {
+                timeout.cancel();
+            }
+        }
+    }
+
+    /** The entries stored in the slots, null for a free slot */
+    private final AtomicReferenceArray<Entry> entries;
+
+    /** The mask used to compute the slot of a messageId */
+    private final int mask;
+
+    /** The futures which can't be stored in a slot */
+    private final Map<Integer, Entry> overflow = new ConcurrentHashMap<>();
+
+
+    /**
+     * Creates a new ResponseFutureTable instance
+     *
+     * @param capacity The number of slots, rounded up to the next power of two
+     */
+    ResponseFutureTable( int capacity )
+    {
+        int size = Integer.highestOneBit( Math.max( 1, capacity - 1 ) ) << 1;
+
+        entries = new AtomicReferenceArray<>( size );
+        mask = size - 1;
+    }
+
+
+    /**
+     * Stores a future. If a future is already stored for the messageId, it's replaced.
+     *
+     * @param messageId The messageId
+     * @param future The future to store
+     */
+    void put( int messageId, ResponseFuture<?> future )
+    {
+        put( messageId, future, null );
+    }
+
+
+    /**
+     * Stores a future, with its expiration. If a future is already stored for the messageId,
+     * it's replaced, and its expiration is cancelled.
+     *
+     * @param messageId The messageId
+     * @param future The future to store
+     * @param timeout The future expiration, or null if it never expires
+     */
+    void put( int messageId, ResponseFuture<?> future, ResponseTimeoutWheel.Timeout timeout )
+    {
+        int slot = messageId & mask;
+        Entry newEntry = new Entry( messageId, future, timeout );
+
+        while ( true )
+        {
+            Entry entry = entries.get( slot );
+
+            if ( ( entry != null ) && ( entry.messageId != messageId ) )
+            {
+                // The slot is used by another request
+                release( overflow.put( messageId, newEntry ) );
+
+                return;
+            }
+
+            if ( entries.compareAndSet( slot, entry, newEntry ) )
+            {
+                release( entry );
+
+                // A future previously stored in the overflow map for this messageId is replaced
+                if ( !overflow.isEmpty() )
+                {
+                    release( overflow.remove( messageId ) );
+                }
+
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Gets the future stored for a messageId
+     *
+     * @param messageId The messageId
+     * @return The stored future, or null if there is none
+     */
+    ResponseFuture<?> get( int messageId )
+    {
+        Entry entry = entries.get( messageId & mask );
+
+        if ( ( entry != null ) && ( entry.messageId == messageId ) )
+        {
+            return entry.future;
+        }
+
+        if ( overflow.isEmpty() )
+        {
+            return null;
+        }
+
+        entry = overflow.get( messageId );
+
+        return entry == null ? null : entry.future;
+    }
+
+
+    /**
+     * Removes the future stored for a messageId
+     *
+     * @param messageId The messageId
+     * @return The removed future, or null if there was none
+     */
+    ResponseFuture<?> remove( int messageId )
+    {
+        int slot = messageId & mask;
+        Entry entry = entries.get( slot );
+
+        while ( ( entry != null ) && ( entry.messageId == messageId ) )
+        {
+            // Only the thread which releases the entry gets its future
+            if ( entries.compareAndSet( slot, entry, null ) )
+            {
+                release( entry );
+
+                return entry.future;
+            }
+
+            entry = entries.get( slot );
+        }
+
+        if ( overflow.isEmpty() )
+        {
+            return null;
+        }
+
+        entry = overflow.remove( messageId );
+
+        if ( entry == null )
+        {
+            return null;
+        }
+
+        release( entry );
+
+        return entry.future;
+    }
+
+
+    /**
+     * @return A snapshot of the stored futures
+     */
+    List<ResponseFuture<?>> values()
+    {
+        List<ResponseFuture<?>> values = new ArrayList<>();
+
+        for ( Entry entry : overflow.values() )
+        {
+            values.add( entry.future );
+        }
+
+        for ( int slot = 0; slot < entries.length(); slot++ )
+        {
+            Entry entry = entries.get( slot );
+
+            if ( entry != null )
+            {
+                values.add( entry.future );
+            }
+        }
+
+        return values;
+    }
+
+
+    /**
+     * Removes all the stored futures
+     */
+    void clear()
+    {
+        for ( int slot = 0; slot < entries.length(); slot++ )
+        {
+            release( entries.getAndSet( slot, null ) );
+        }
+
+        for ( Entry entry : overflow.values() )
+        {
+            release( entry );
+        }
+
+        overflow.clear();
+    }
+
+
+    /**
+     * Cancels the expiration of a removed entry
+     *
+     * @param entry The removed entry, or null
+     */
+    private static void release( Entry entry )
+    {
+        if ( entry != null )
+        {
+            entry.release();
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A hashed wheel timer expiring the pending requests of the connections. Each request
+ * is scheduled once, when it is sent, and the wheel thread calls the {@link Expirer}
+ * of its connection when its timeout has elapsed, unless its future is done or
+ * cancelled in the meantime. A single wheel, and so a single thread, is shared by
+ * all the connections.
+ * <br>
+ * The wheel is a ring of buckets, each of them covering one tick. A request is stored
+ * in the bucket of its deadline, with the number of wheel rotations to wait for. The
+ * requests completed before their deadline are removed when their bucket is visited,
+ * so scheduling and completing a request never takes a lock. A completed request is
+ * {@link Timeout#cancel() cancelled}, so that its bucket entry does not hold its future
+ * and its responses until then.
+ * <br>
+ * The wheel thread is a daemon thread, started when the first request is scheduled.
+ * The connections share a single static wheel, which is never stopped when a connection
+ * is closed : the requests of a closed connection are simply expired or discarded when
+ * their bucket is visited.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class ResponseTimeoutWheel
+{
+    /** This class logger */
+    private static final Logger LOG = LoggerFactory.getLogger( ResponseTimeoutWheel.class );
+
+    /**
+     * The callback invoked when the timeout of a request has elapsed
+     */
+    interface Expirer
+    {
+        /**
+         * Expires a request.
+         *
+         * @param messageId The request messageId
+         * @param future The request future
+         * @param timeout The request timeout, in milliseconds
+         * @return The delay before the request must be checked again, in milliseconds, or
+         * 0 if it has been expired or completed
+         */
+        long expire( int messageId, ResponseFuture<?> future, long timeout );
+    }
+
+    /** The longest timeout, in milliseconds. The requests having a longer timeout never expire */
+    private static final long MAX_TIMEOUT = TimeUnit.DAYS.toMillis( 365L );
+
+    /** The duration of a tick, in milliseconds */
+    private final long tickDuration;
+
+    /** The number of buckets, a power of two */
+    private final int wheelSize;
+
+    /** The name of the wheel thread */
+    private final String threadName;
+
+    /** The requests scheduled since the last tick */
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+    /** The current worker, null when the wheel is stopped */
+    private volatile Worker worker;
+
+
+    /**
+     * A scheduled request
+     */
+    static final class Timeout
+    {
+        /** The request messageId */
+        private final int messageId;
+
+        /** The request future, null once the timeout is cancelled */
+        private volatile ResponseFuture<?> future;
+
+        /** The request timeout, in milliseconds */
+        private final long timeout;
+
+        /** The callback expiring the request, null once the timeout is cancelled */
+        private volatile Expirer expirer;
+
+        /** The date the request expires at, in nanoseconds */
+        private long deadline;
+
+        /** The number of wheel rotations before the request expires */
+        private long rounds;
+
+        /** The next request in the same bucket */
+        private Timeout next;
+
+
+        private Timeout( int messageId, ResponseFuture<?> future, long timeout, Expirer expirer, long delay )
+        {
+            this.messageId = messageId;
+            this.future = future;
+            this.timeout = timeout;
+            this.expirer = expirer;
+            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( delay );
+        }
+
+
+        /**
+         * Cancels the timeout of a completed request. The request is not expired, and
+         * the references to its future and to its connection are dropped right away, the
+         * entry being removed from the wheel when its bucket is visited.
+         */
+        void cancel()
+        {
+            future = null;
+            expirer = null;
+        }
+    }
+
+
+    /**
+     * Creates a new ResponseTimeoutWheel instance
+     *
+     * @param tickDuration The duration of a tick, in milliseconds
+     * @param ticksPerWheel The number of ticks of a wheel rotation, rounded up to the next power of two
+     * @param threadName The name of the wheel thread
+     */
+    ResponseTimeoutWheel( long tickDuration, int ticksPerWheel, String threadName )
+    {
+        this.tickDuration = tickDuration;
+        this.wheelSize = Integer.highestOneBit( Math.max( 1, ticksPerWheel - 1 ) ) << 1;
+        this.threadName = threadName;
+    }
+
+
+    /**
+     * Schedules the expiration of a request
+     *
+     * @param messageId The request messageId
+     * @param future The request future
+     * @param timeout The request timeout, in milliseconds. The request never expires if the
+     * timeout is negative, 0, or longer than a year.
+     * @param expirer The callback invoked when the timeout of the request has elapsed
+     * @return The scheduled timeout, to cancel when the request is completed, or null if
+     * the request never expires
+     */
+    Timeout schedule( int messageId, ResponseFuture<?> future, long timeout, Expirer expirer )
+    {
+        if ( ( timeout <= 0L ) || ( timeout > MAX_TIMEOUT ) )
+        {
+            return null;
+        }
+
+        Timeout scheduled = new Timeout( messageId, future, timeout, expirer, timeout );
+        pending.add( scheduled );
+
+        if ( worker == null )
+        {
+            start();
+        }
+
+        return scheduled;
+    }
+
+
+    /**
+     * Starts the wheel thread, if it's not already running
+     */
+    private synchronized void start()
+    {
+        if ( worker == null )
+        {
+            worker = new Worker();
+
+            Thread thread = new Thread( worker, threadName );
+            thread.setDaemon( true );
+            worker.thread = thread;
+            thread.start();
+        }
+    }
+
+
+    /**
+     * Stops the wheel thread, and discards the scheduled requests. The wheel is
+     * restarted when a request is scheduled.
+     */
+    synchronized void stop()
+    {
+        if ( worker != null )
+        {
+            worker.thread.interrupt();
+            worker = null;
+        }
+
+        pending.clear();
+    }
+
+
+    /**
+     * @return <code>true</code> if the wheel thread is running
+     */
+    boolean isStarted()
+    {
+        return worker != null;
+    }
+
+
+    /**
+     * The wheel thread. Each started thread has its own buckets, which are only accessed
+     * by this thread.
+     */
+    private final class Worker implements Runnable
+    {
+        /** The buckets, each one being a list of requests */
+        private final Timeout[] buckets = new Timeout[wheelSize];
+
+        /** The date the wheel has been started at, in nanoseconds */
+        private final long startTime = System.nanoTime();
+
+        /** The thread running this worker */
+        private Thread thread;
+
+        /** The number of elapsed ticks */
+        private long tick;
+
+
+        @Override
+        public void run()
+        {
+            long tickNanos = TimeUnit.MILLISECONDS.toNanos( tickDuration );
+
+            while ( worker == this )
+            {
+                long sleep = startTime + ( tick + 1 ) * tickNanos - System.nanoTime();
+
+                if ( sleep > 0L )
+                {
+                    try
+                    {
+                        TimeUnit.NANOSECONDS.sleep( sleep );
+                    }
+                    catch ( InterruptedException ie )
+                    {
+                        // The wheel has been stopped
+                        continue;
+                    }
+                }
+
+                transferPending( tickNanos );
+                expireBucket( ( int ) ( tick & ( wheelSize - 1 ) ) );
+                tick++;
+            }
+        }
+
+
+        /**
+         * Stores the requests scheduled since the last tick in their bucket
+         */
+        private void transferPending( long tickNanos )
+        {
+            Timeout timeout;
+
+            while ( ( timeout = pending.poll() ) != null )
+            {
+                long expirationTick = Math.max( ( timeout.deadline - startTime ) / tickNanos, tick );
+                int bucket = ( int ) ( expirationTick & ( wheelSize - 1 ) );
+
+                timeout.rounds = ( expirationTick - tick ) / wheelSize;
+                timeout.next = buckets[bucket];
+                buckets[bucket] = timeout;
+            }
+        }
+
+
+        /**
+         * Expires the requests of a bucket whose deadline has elapsed, and removes
+         * the completed and cancelled ones
+         */
+        private void expireBucket( int bucket )
+        {
+            Timeout previous = null;
+            Timeout timeout = buckets[bucket];
+            long now = System.nanoTime();
+
+            while ( timeout != null )
+            {
+                Timeout next = timeout.next;
+                ResponseFuture<?> future = timeout.future;
+                boolean remove;
+
+                if ( ( future == null ) || future.isDone() || future.isCancelled() )
+                {
+                    remove = true;
+                }
+                else if ( ( timeout.rounds > 0 ) || ( timeout.deadline - now > 0L ) )
+                {
+                    if ( timeout.rounds > 0 )
+                    {
+                        timeout.rounds--;
+                    }
+
+                    remove = false;
+                }
+                else
+                {
+                    remove = true;
+                    expire( timeout, future );
+                }
+
+                if ( remove )
+                {
+                    if ( previous == null )
+                    {
+                        buckets[bucket] = next;
+                    }
+                    else
+                    {
+                        previous.next = next;
+                    }
+                }
+                else
+                {
+                    previous = timeout;
+                }
+
+                timeout = next;
+            }
+        }
+
+
+        /**
+         * Calls the expirer, rescheduling the request if it's not expired
+         */
+        private void expire( Timeout timeout, ResponseFuture<?> future )
+        {
+            Expirer expirer = timeout.expirer;
+
+            if ( expirer == null )
+            {
+                // Cancelled in the meantime
+                return;
+            }
+
+            try
+            {
+                long delay = expirer.expire( timeout.messageId, future, timeout.timeout );
+
+                if ( delay > 0L )
+                {
+                    // The same timeout is rescheduled, so that the request can still cancel it
+                    timeout.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( delay );
+                    pending.add( timeout );
+                }
+            }
+            catch ( RuntimeException re )
+            {
+                // Don't let an exception kill the wheel thread
+                LOG.error( re.getMessage(), re );
+            }
+        }
+    }
+}
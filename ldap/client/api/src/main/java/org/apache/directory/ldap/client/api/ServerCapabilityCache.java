@@ -0,0 +1,229 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+
+
+/**
+ * A cache of the capabilities of the servers, shared by the connections created by one
+ * or several {@link DefaultLdapConnectionFactory}. It stores, per server, the controls
+ * supported by the server, read from its RootDSE, and the SchemaManagers loaded from its
+ * subschema subentry. A connection using the cache reads them from the server only if
+ * they have not been read by another connection to the same server for less than the
+ * cache <code>ttl</code>.
+ * <br>
+ * The servers are identified by their host and port. The cached SchemaManagers are
+ * shared by the connections : adding a schema to one of them with
+ * {@link LdapNetworkConnection#addSchema(java.io.File)} changes it for all the
+ * connections.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ServerCapabilityCache
+{
+    /** The default time the capabilities are kept, in milliseconds */
+    public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis( 15L );
+
+    /** The time the capabilities are kept, in nanoseconds */
+    private final long ttlNanos;
+
+    /** The capabilities, per server */
+    private final Map<String, ServerCapabilities> servers = new ConcurrentHashMap<>();
+
+
+    /**
+     * Reads a capability from a server
+     *
+     * @param <T> The capability type
+     */
+    private interface Loader<T>
+    {
+        T load() throws LdapException;
+    }
+
+
+    /**
+     * A cached capability, read from the server when it has expired
+     *
+     * @param <T> The capability type
+     */
+    private final class CachedCapability<T>
+    {
+        /** The capability, null until it has been read */
+        private T value;
+
+        /** The date the capability has been read at, in nanoseconds */
+        private long loadTime;
+
+        /** The lock held while the capability is read */
+        private final Lock lock = new ReentrantLock();
+
+
+        /**
+         * Gets the capability, reading it if it has expired. The concurrent readers wait
+         * until the capability has been read by the first one.
+         */
+        private T get( Loader<T> loader ) throws LdapException
+        {
+            lock.lock();
+
+            try
+            {
+                if ( ( value == null ) || ( System.nanoTime() - loadTime > ttlNanos ) )
+                {
+                    value = loader.load();
+                    loadTime = System.nanoTime();
+                }
+
+                return value;
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * The capabilities of a server
+     */
+    private final class ServerCapabilities
+    {
+        /** The controls supported by the server */
+        private final CachedCapability<List<String>> supportedControls = new CachedCapability<>();
+
+        /** The schema of the server */
+        private final CachedCapability<SchemaManager> schemaManager = new CachedCapability<>();
+
+        /** The schema of the server, loaded in relaxed mode */
+        private final CachedCapability<SchemaManager> relaxedSchemaManager = new CachedCapability<>();
+    }
+
+
+    /**
+     * Creates a new instance of ServerCapabilityCache, keeping the capabilities
+     * {@link #DEFAULT_TTL} milliseconds.
+     */
+    public ServerCapabilityCache()
+    {
+        this( DEFAULT_TTL );
+    }
+
+
+    /**
+     * Creates a new instance of ServerCapabilityCache.
+     *
+     * @param ttl The time the capabilities are kept before being read again, in milliseconds
+     */
+    public ServerCapabilityCache( long ttl )
+    {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos( ttl );
+    }
+
+
+    /**
+     * Gets the controls supported by the server a connection is connected to.
+     *
+     * @param connection The connection, used to read the RootDSE if needed
+     * @return The unmodifiable list of the supported controls OIDs
+     * @throws LdapException If the RootDSE can't be read
+     */
+    List<String> getSupportedControls( LdapNetworkConnection connection ) throws LdapException
+    {
+        return getServerCapabilities( connection ).supportedControls.get(
+            () -> Collections.unmodifiableList( connection.fetchSupportedControls() ) );
+    }
+
+
+    /**
+     * Gets the SchemaManager of the server a connection is connected to.
+     *
+     * @param connection The connection, used to read the schema if needed
+     * @param relaxed Tells if the schema must be loaded in relaxed mode
+     * @return The SchemaManager
+     * @throws LdapException If the schema can't be loaded
+     */
+    SchemaManager getSchemaManager( LdapNetworkConnection connection, boolean relaxed ) throws LdapException
+    {
+        ServerCapabilities serverCapabilities = getServerCapabilities( connection );
+        CachedCapability<SchemaManager> cached = relaxed ? serverCapabilities.relaxedSchemaManager
+            : serverCapabilities.schemaManager;
+
+        return cached.get( () -> connection.createSchemaManager( new DefaultSchemaLoader( connection, relaxed ) ) );
+    }
+
+
+    private ServerCapabilities getServerCapabilities( LdapNetworkConnection connection )
+    {
+        LdapConnectionConfig config = connection.getConfig();
+
+        return servers.computeIfAbsent( getServerKey( config.getLdapHost(), config.getLdapPort() ),
+            key -> new ServerCapabilities() );
+    }
+
+
+    private static String getServerKey( String host, int port )
+    {
+        return host + ':' + port;
+    }
+
+
+    /**
+     * Discards the capabilities of a server. They will be read again by the next
+     * connection using them.
+     *
+     * @param host The server host
+     * @param port The server port
+     */
+    public void invalidate( String host, int port )
+    {
+        servers.remove( getServerKey( host, port ) );
+    }
+
+
+    /**
+     * Discards the capabilities of all the servers.
+     */
+    public void invalidateAll()
+    {
+        servers.clear();
+    }
+
+
+    /**
+     * @return The time the capabilities are kept before being read again, in milliseconds
+     */
+    public long getTtl()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( ttlNanos );
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.net.SocketAddress;
+
+import org.apache.mina.core.future.ConnectFuture;
+import org.apache.mina.core.future.IoFutureListener;
+import org.apache.mina.core.service.IoHandler;
+import org.apache.mina.core.service.IoHandlerAdapter;
+import org.apache.mina.core.session.IdleStatus;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.session.IoSessionInitializer;
+import org.apache.mina.filter.FilterEvent;
+import org.apache.mina.transport.socket.SocketSessionConfig;
+import org.apache.mina.transport.socket.nio.NioSocketConnector;
+
+
+/**
+ * A connector shared by many LdapNetworkConnections, so that they use the same
+ * I/O processor threads instead of each of them creating its own connector and
+ * its own threads. The events of a session are dispatched to the connection
+ * which has opened it, and each session has its own filter chain.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class SharedLdapConnector
+{
+    /** The session attribute holding the connection handling the session events */
+    private static final String HANDLER_ATTR = "LDAP-connectionHandler";
+
+    /** The underlying connector */
+    private final NioSocketConnector connector;
+
+
+    /**
+     * Creates a new SharedLdapConnector instance
+     *
+     * @param ioThreads The number of I/O processor threads, or 0 to use one thread per core
+     * @param connectTimeout The maximum time to establish a session, in milliseconds
+     */
+    SharedLdapConnector( int ioThreads, long connectTimeout )
+    {
+        int processorCount = ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors();
+
+        connector = new NioSocketConnector( processorCount );
+
+        if ( connectTimeout > 0L )
+        {
+            connector.setConnectTimeoutMillis( connectTimeout );
+        }
+
+        ( ( SocketSessionConfig ) connector.getSessionConfig() ).setReuseAddress( true );
+        connector.setHandler( new DispatchingHandler() );
+    }
+
+
+    /**
+     * Opens a session for a connection. If the returned future is canceled, because the
+     * connection has given up waiting for it, the session established afterward is closed
+     * without its events being dispatched to the connection.
+     *
+     * @param address The server address
+     * @param handler The connection which will handle the session events
+     * @param initializer The initializer setting up the session filter chain and configuration
+     * @return The connection future
+     */
+    ConnectFuture connect( SocketAddress address, final IoHandler handler,
+        final IoSessionInitializer<ConnectFuture> initializer )
+    {
+        return connector.connect( address, ( session, future ) ->
+        {
+            session.setAttribute( HANDLER_ATTR, handler );
+            initializer.initializeSession( session, future );
+
+            // Called immediately if the future has already been canceled
+            future.addListener( ( IoFutureListener<ConnectFuture> ) connectFuture ->
+            {
+                if ( connectFuture.isCanceled() )
+                {
+                    session.removeAttribute( HANDLER_ATTR );
+                    session.closeNow();
+                }
+            } );
+        } );
+    }
+
+
+    /**
+     * @return The number of sessions currently opened by this connector
+     */
+    int getManagedSessionCount()
+    {
+        return connector.getManagedSessionCount();
+    }
+
+
+    /**
+     * @return <code>true</code> if the connector has been disposed
+     */
+    boolean isDisposed()
+    {
+        return connector.isDisposed();
+    }
+
+
+    /**
+     * Disposes the connector and its threads. The connections using it must
+     * have been closed.
+     */
+    void dispose()
+    {
+        connector.dispose();
+    }
+
+
+    /**
+     * The handler dispatching the events of a session to the connection owning it
+     */
+    private static final class DispatchingHandler implements IoHandler
+    {
+        /** The handler ignoring the events of the abandoned sessions */
+        private static final IoHandler NO_HANDLER = new IoHandlerAdapter();
+
+
+        private static IoHandler handler( IoSession session )
+        {
+            IoHandler handler = ( IoHandler ) session.getAttribute( HANDLER_ATTR );
+
+            if ( handler == null )
+            {
+                // An abandoned session, the connection does not expect its events
+                return NO_HANDLER;
+            }
+
+            return handler;
+        }
+
+
+        @Override
+        public void sessionCreated( IoSession session ) throws Exception
+        {
+            handler( session ).sessionCreated( session );
+        }
+
+
+        @Override
+        public void sessionOpened( IoSession session ) throws Exception
+        {
+            handler( session ).sessionOpened( session );
+        }
+
+
+        @Override
+        public void sessionClosed( IoSession session ) throws Exception
+        {
+            handler( session ).sessionClosed( session );
+        }
+
+
+        @Override
+        public void sessionIdle( IoSession session, IdleStatus status ) throws Exception
+        {
+            handler( session ).sessionIdle( session, status );
+        }
+
+
+        @Override
+        public void exceptionCaught( IoSession session, Throwable cause ) throws Exception
+        {
+            handler( session ).exceptionCaught( session, cause );
+        }
+
+
+        @Override
+        public void messageReceived( IoSession session, Object message ) throws Exception
+        {
+            handler( session ).messageReceived( session, message );
+        }
+
+
+        @Override
+        public void messageSent( IoSession session, Object message ) throws Exception
+        {
+            handler( session ).messageSent( session, message );
+        }
+
+
+        @Override
+        public void inputClosed( IoSession session ) throws Exception
+        {
+            handler( session ).inputClosed( session );
+        }
+
+
+        @Override
+        public void event( IoSession session, FilterEvent event ) throws Exception
+        {
+            handler( session ).event( session, event );
+        }
+    }
+}
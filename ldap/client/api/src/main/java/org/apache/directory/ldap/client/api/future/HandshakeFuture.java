@@ -24,6 +24,9 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
@@ -37,7 +40,13 @@ public class HandshakeFuture implements Future<Boolean>
     private volatile boolean done = false;
 
     /** flag to determine if this future is cancelled */
-    protected boolean cancelled = false;
+    protected volatile boolean cancelled = false;
+
+    /** The lock protecting the handshake state */
+    private final Lock lock = new ReentrantLock();
+
+    /** The condition signaled when the handshake is completed or cancelled */
+    private final Condition completed = lock.newCondition();
 
     /**
      * Creates a new instance of HandshakeFuture.
@@ -52,24 +61,42 @@ public class HandshakeFuture implements Future<Boolean>
      * Cancel the Future
      *
      */
-    public synchronized void cancel()
+    public void cancel()
     {
-        // set the cancel flag first
-        cancelled = true;
-        
-        // Notify the future
-        notifyAll();
+        lock.lock();
+
+        try
+        {
+            // set the cancel flag first
+            cancelled = true;
+            
+            // Notify the future
+            completed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
     /**
      * Set the Future to done when the TLS handshake has completed
      */
-    public synchronized void secured()
+    public void secured()
     {
-        done = true;
-        
-        notifyAll();
+        lock.lock();
+
+        try
+        {
+            done = true;
+            
+            completed.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
@@ -77,19 +104,13 @@ public class HandshakeFuture implements Future<Boolean>
      * {@inheritDoc}
      */
     @Override
-    public synchronized boolean cancel( boolean mayInterruptIfRunning )
+    public boolean cancel( boolean mayInterruptIfRunning )
     {
-        if ( cancelled )
+        if ( !cancelled )
         {
-            return cancelled;
+            cancel();
         }
 
-        // set the cancel flag first
-        cancelled = true;
-
-        // Notify the future
-        notifyAll();
-
         return cancelled;
     }
 
@@ -98,14 +119,23 @@ public class HandshakeFuture implements Future<Boolean>
      * {@inheritDoc}
      */
     @Override
-    public synchronized Boolean get() throws InterruptedException, ExecutionException
+    public Boolean get() throws InterruptedException, ExecutionException
     {
-        while ( !done && !cancelled )
+        lock.lock();
+
+        try
         {
-            wait();
+            while ( !done && !cancelled )
+            {
+                completed.await();
+            }
+            
+            return done;
+        }
+        finally
+        {
+            lock.unlock();
         }
-        
-        return done;
     }
 
 
@@ -113,11 +143,26 @@ public class HandshakeFuture implements Future<Boolean>
      * {@inheritDoc}
      */
     @Override
-    public synchronized Boolean get( long timeout, TimeUnit unit ) throws InterruptedException, ExecutionException, TimeoutException
+    public Boolean get( long timeout, TimeUnit unit ) throws InterruptedException, ExecutionException, TimeoutException
     {
-        wait( unit.toMillis( timeout ) );
-        
-        return done;
+        long remaining = unit.toNanos( timeout );
+
+        lock.lock();
+
+        try
+        {
+            // The handshake may have been completed before we wait for it
+            while ( !done && !cancelled && ( remaining > 0L ) )
+            {
+                remaining = completed.awaitNanos( remaining );
+            }
+            
+            return done;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
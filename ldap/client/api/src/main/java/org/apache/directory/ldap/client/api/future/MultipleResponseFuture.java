@@ -21,12 +21,21 @@ package org.apache.directory.ldap.client.api.future;
 
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
-import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.message.IntermediateResponse;
 import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
 import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.mina.core.session.AttributeKey;
+import org.apache.mina.core.session.IoSession;
 
 
 /**
@@ -37,6 +46,10 @@ import org.apache.directory.ldap.client.api.LdapConnection;
  */
 public abstract class MultipleResponseFuture<R extends Response> implements ResponseFuture<R>
 {
+    /** The session attribute counting the futures which need the reads to be suspended */
+    private static final AttributeKey READ_SUSPENDERS = new AttributeKey( MultipleResponseFuture.class,
+        "readSuspenders" );
+
     /** the blocking queue holding LDAP responses */
     protected BlockingQueue<R> queue;
 
@@ -52,6 +65,33 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     /** The connection used by the request */
     protected LdapConnection connection;
 
+    /** The session to suspend when the queue is full, if the queue is bounded */
+    private IoSession session;
+
+    /** The number of queued responses above which the session reads are suspended, 0 if unbounded */
+    private int maxQueueSize;
+
+    /** Tells if this future is one of the futures suspending the session reads */
+    private volatile boolean readSuspended;
+
+    /** The lock protecting the suspension and the resumption of the session reads */
+    private final Lock flowControlLock = new ReentrantLock();
+
+    /** The listener the responses are passed to instead of being queued, if any */
+    private Consumer<? super R> listener;
+
+    /** The final response, once received */
+    private volatile R result;
+
+    /** The CompletableFuture completed with the final response, created on demand */
+    private CompletableFuture<R> completableFuture;
+
+    /** The date a response has last been received or consumed, in nanoseconds */
+    private volatile long lastActivity;
+
+    /** The date this future has been created, in nanoseconds */
+    private final long creationTime = System.nanoTime();
+
 
     /**
      * Creates a new instance of ResponseFuture.
@@ -64,6 +104,49 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
         queue = new LinkedBlockingQueue<>();
         this.messageId = messageId;
         this.connection = connection;
+        lastActivity = creationTime;
+    }
+
+
+    /**
+     * Creates a new instance of ResponseFuture, suspending the reads on the session
+     * while more than <code>maxQueueSize</code> responses are waiting to be consumed.
+     * The reads are resumed when half of them have been consumed. As the responses
+     * already read from the socket are still queued, the queue may hold a bit more
+     * than <code>maxQueueSize</code> responses.
+     * <br>
+     * The reads are suspended for the whole session, so the other requests sent on it
+     * stall until the responses are consumed, and may expire meanwhile. When many
+     * futures share the session, the reads are resumed once none of them has a
+     * full queue.
+     *
+     * @param connection The LdapConnection used by the request
+     * @param messageId The associated message ID
+     * @param session The session the responses are read from
+     * @param maxQueueSize The number of queued responses above which the reads are suspended,
+     * 0 for no limit
+     */
+    public MultipleResponseFuture( LdapConnection connection, int messageId, IoSession session, int maxQueueSize )
+    {
+        this( connection, messageId );
+        this.session = session;
+        this.maxQueueSize = ( session == null ) ? 0 : Math.max( 0, maxQueueSize );
+    }
+
+
+    /**
+     * Creates a new instance of ResponseFuture, passing the responses to a listener
+     * instead of queuing them. The listener is called by the thread reading the
+     * responses, in the order they are received, so it should not block.
+     *
+     * @param connection The LdapConnection used by the request
+     * @param messageId The associated message ID
+     * @param listener The listener receiving the responses
+     */
+    public MultipleResponseFuture( LdapConnection connection, int messageId, Consumer<? super R> listener )
+    {
+        this( connection, messageId );
+        this.listener = listener;
     }
 
 
@@ -87,6 +170,8 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
             // then clear the queue, cause the might be some incoming messages before this abandon request
             // hits the server
             queue.clear();
+            resumeRead();
+            completeCancelled();
         }
 
         return cancelled;
@@ -100,7 +185,11 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     @Override
     public R get() throws InterruptedException
     {
-        return queue.take();
+        R response = queue.take();
+        lastActivity = System.nanoTime();
+        checkResumeRead();
+
+        return response;
     }
 
 
@@ -113,7 +202,51 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     @Override
     public void set( R response ) throws InterruptedException
     {
-        queue.add( response );
+        lastActivity = System.nanoTime();
+
+        if ( listener != null )
+        {
+            listener.accept( response );
+        }
+        else
+        {
+            queue.add( response );
+        }
+
+        if ( ( response instanceof ResultResponse ) && !( response instanceof IntermediateResponse ) )
+        {
+            complete( response );
+        }
+
+        if ( ( maxQueueSize > 0 ) && !cancelled && ( queue.size() >= maxQueueSize ) )
+        {
+            flowControlLock.lock();
+
+            try
+            {
+                if ( !readSuspended )
+                {
+                    readSuspended = true;
+                    AtomicInteger suspenders = getSuspenders();
+
+                    // The first future with a full queue suspends the reads
+                    synchronized ( suspenders )
+                    {
+                        if ( suspenders.incrementAndGet() == 1 )
+                        {
+                            session.suspendRead();
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                flowControlLock.unlock();
+            }
+
+            // The responses may have been consumed before the reads were suspended
+            checkResumeRead();
+        }
     }
 
 
@@ -124,7 +257,203 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     @Override
     public R get( long timeout, TimeUnit unit ) throws InterruptedException
     {
-        return queue.poll( timeout, unit );
+        R response = queue.poll( timeout, unit );
+
+        // Polling an empty queue does not keep the request alive
+        if ( response != null )
+        {
+            lastActivity = System.nanoTime();
+        }
+
+        checkResumeRead();
+
+        return response;
+    }
+
+
+    /**
+     * Gets a CompletableFuture completed with the final response of the request, which
+     * is the first {@link ResultResponse} received, the {@link IntermediateResponse}s
+     * excepted : a SearchResultDone for a search, an
+     * ExtendedResponse for an extended operation, or the first BindResponse for a bind.
+     * It's completed exceptionally when the request is cancelled, with the cause of the
+     * cancellation if there is one (an LdapConnectionTimeOutException when the request
+     * has timed out, for instance), or with a {@link CancellationException}. The
+     * CompletableFuture is completed by the thread reading the responses, so the
+     * dependent stages should not block, or use an asynchronous execution.
+     *
+     * @return The CompletableFuture completed with the final response
+     */
+    public CompletableFuture<R> toCompletableFuture()
+    {
+        CompletableFuture<R> created;
+
+        flowControlLock.lock();
+
+        try
+        {
+            if ( completableFuture != null )
+            {
+                return completableFuture;
+            }
+
+            completableFuture = new CompletableFuture<>();
+            created = completableFuture;
+        }
+        finally
+        {
+            flowControlLock.unlock();
+        }
+
+        // The final response may have been received before the CompletableFuture was created
+        if ( result != null )
+        {
+            created.complete( result );
+        }
+        else if ( cancelled )
+        {
+            created.completeExceptionally( getCancellationCause() );
+        }
+
+        return created;
+    }
+
+
+    /**
+     * Stores the final response and completes the CompletableFuture
+     */
+    private void complete( R response )
+    {
+        CompletableFuture<R> toComplete;
+
+        flowControlLock.lock();
+
+        try
+        {
+            if ( result != null )
+            {
+                return;
+            }
+
+            result = response;
+            toComplete = completableFuture;
+        }
+        finally
+        {
+            flowControlLock.unlock();
+        }
+
+        if ( toComplete != null )
+        {
+            toComplete.complete( response );
+        }
+    }
+
+
+    /**
+     * Completes the CompletableFuture exceptionally when the request is cancelled
+     */
+    private void completeCancelled()
+    {
+        CompletableFuture<R> toComplete;
+
+        flowControlLock.lock();
+
+        try
+        {
+            toComplete = completableFuture;
+        }
+        finally
+        {
+            flowControlLock.unlock();
+        }
+
+        if ( toComplete != null )
+        {
+            toComplete.completeExceptionally( getCancellationCause() );
+        }
+    }
+
+
+    /**
+     * @return The cause of the cancellation, or a CancellationException if there is none
+     */
+    private Throwable getCancellationCause()
+    {
+        Throwable cancellationCause = cause;
+
+        return ( cancellationCause != null ) ? cancellationCause : new CancellationException();
+    }
+
+
+    /**
+     * Releases the suspension of the session reads held by this future, if any, when
+     * enough responses have been consumed.
+     */
+    private void checkResumeRead()
+    {
+        if ( readSuspended && ( queue.size() <= maxQueueSize / 2 ) )
+        {
+            resumeRead();
+        }
+    }
+
+
+    /**
+     * Gets the counter of the futures suspending the reads of the session, shared by
+     * all the futures reading from this session.
+     */
+    private AtomicInteger getSuspenders()
+    {
+        AtomicInteger suspenders = ( AtomicInteger ) session.getAttribute( READ_SUSPENDERS );
+
+        if ( suspenders == null )
+        {
+            AtomicInteger created = new AtomicInteger();
+            suspenders = ( AtomicInteger ) session.setAttributeIfAbsent( READ_SUSPENDERS, created );
+
+            if ( suspenders == null )
+            {
+                suspenders = created;
+            }
+        }
+
+        return suspenders;
+    }
+
+
+    /**
+     * Releases the suspension of the session reads held by this future, if any. The
+     * reads are resumed when no other future on the session needs them suspended.
+     */
+    private void resumeRead()
+    {
+        if ( readSuspended )
+        {
+            flowControlLock.lock();
+
+            try
+            {
+                if ( readSuspended )
+                {
+                    readSuspended = false;
+                    AtomicInteger suspenders = getSuspenders();
+
+                    // The last future with a full queue resumes the reads
+                    synchronized ( suspenders )
+                    {
+                        if ( suspenders.decrementAndGet() == 0 )
+                        {
+                            session.resumeRead();
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                flowControlLock.unlock();
+            }
+        }
     }
 
 
@@ -139,14 +468,15 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
 
 
     /**
-     * This operation is not supported in this implementation of Future.
-     * 
      * {@inheritDoc}
+     * 
+     * The future is done when its final response, a {@link ResultResponse} which is not
+     * an {@link IntermediateResponse}, has been received, or when it has been cancelled.
      */
     @Override
     public boolean isDone()
     {
-        throw new UnsupportedOperationException( I18n.err( I18n.ERR_04106_OPERATION_NOT_SUPPORTED ) );
+        return ( result != null ) || cancelled;
     }
 
 
@@ -169,6 +499,29 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     }
 
 
+    /**
+     * Gets the date a response has last been received or consumed. A request stays alive
+     * as long as its responses keep coming, or keep being consumed when the reads are
+     * suspended because the queue is full.
+     *
+     * @return The date of the last activity, as returned by {@link System#nanoTime()}
+     */
+    public long getLastActivity()
+    {
+        return lastActivity;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCreationTime()
+    {
+        return creationTime;
+    }
+
+
     /**
      * Cancel the Future
      *
@@ -177,6 +530,8 @@ public abstract class MultipleResponseFuture<R extends Response> implements Resp
     {
         // set the cancel flag first
         cancelled = true;
+        resumeRead();
+        completeCancelled();
     }
 
 
@@ -60,4 +60,11 @@ public interface ResponseFuture<R extends Response> extends Future<R>
      *
      */
     void cancel();
+
+
+    /**
+     * @return The date this future has been created, just before its request is sent,
+     * as returned by {@link System#nanoTime()}
+     */
+    long getCreationTime();
 }
@@ -20,8 +20,11 @@
 package org.apache.directory.ldap.client.api.future;
 
 
+import java.util.function.Consumer;
+
 import org.apache.directory.api.ldap.model.message.Response;
 import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.mina.core.session.IoSession;
 
 
 /**
@@ -43,6 +46,36 @@ public class SearchFuture extends MultipleResponseFuture<Response>
     }
 
 
+    /**
+     * Creates a new instance of SearchFuture, suspending the reads on the session
+     * while more than <code>maxQueueSize</code> entries are waiting to be consumed.
+     *
+     * @param connection the LDAP connection
+     * @param messageId The associated messageId
+     * @param session The session the responses are read from
+     * @param maxQueueSize The number of queued responses above which the reads are suspended,
+     * 0 for no limit
+     */
+    public SearchFuture( LdapConnection connection, int messageId, IoSession session, int maxQueueSize )
+    {
+        super( connection, messageId, session, maxQueueSize );
+    }
+
+
+    /**
+     * Creates a new instance of SearchFuture, passing the entries, references and the
+     * SearchResultDone to a listener instead of queuing them.
+     *
+     * @param connection the LDAP connection
+     * @param messageId The associated messageId
+     * @param listener The listener receiving the responses
+     */
+    public SearchFuture( LdapConnection connection, int messageId, Consumer<? super Response> listener )
+    {
+        super( connection, messageId, listener );
+    }
+
+
     /**
      * {@inheritDoc}
      */
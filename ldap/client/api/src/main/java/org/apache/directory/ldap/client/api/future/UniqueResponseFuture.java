@@ -19,7 +19,12 @@
  */
 package org.apache.directory.ldap.client.api.future;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.directory.api.ldap.model.message.Response;
 import org.apache.directory.ldap.client.api.LdapConnection;
@@ -51,6 +56,18 @@ public abstract class UniqueResponseFuture<R extends Response> implements Respon
     /** A flag set to TRUE when the response has been received */
     private volatile boolean done = false;
 
+    /** The CompletableFuture completed with the response, created on demand */
+    private CompletableFuture<R> completableFuture;
+
+    /** The date this future has been created, in nanoseconds */
+    private final long creationTime = System.nanoTime();
+
+    /** The lock protecting the response. A monitor would pin the virtual threads waiting for it */
+    private final Lock lock = new ReentrantLock();
+
+    /** The condition signaled when the response is received, or when the request is cancelled */
+    private final Condition responseReceived = lock.newCondition();
+
     /**
      * Creates a new instance of UniqueResponseFuture.
      *
@@ -69,14 +86,23 @@ public abstract class UniqueResponseFuture<R extends Response> implements Respon
      * @throws InterruptedException if the operation has been cancelled by client
      */
     @Override
-    public synchronized R get() throws InterruptedException
+    public R get() throws InterruptedException
     {
-        while ( !done && !cancelled )
+        lock.lock();
+
+        try
         {
-            wait();
+            while ( !done && !cancelled )
+            {
+                responseReceived.await();
+            }
+            
+            return response;
+        }
+        finally
+        {
+            lock.unlock();
         }
-        
-        return response;
     }
 
 
@@ -85,11 +111,26 @@ public abstract class UniqueResponseFuture<R extends Response> implements Respon
      * @throws InterruptedException if the operation has been cancelled by client
      */
     @Override
-    public synchronized R get( long timeout, TimeUnit unit ) throws InterruptedException
+    public R get( long timeout, TimeUnit unit ) throws InterruptedException
     {
-        wait( unit.toMillis( timeout ) );
-        
-        return response;
+        long remaining = unit.toNanos( timeout );
+
+        lock.lock();
+
+        try
+        {
+            // The response may have been received before we wait for it
+            while ( !done && !cancelled && ( remaining > 0L ) )
+            {
+                remaining = responseReceived.awaitNanos( remaining );
+            }
+            
+            return response;
+        }
+        finally
+        {
+            lock.unlock();
+        }
     }
 
 
@@ -99,13 +140,90 @@ public abstract class UniqueResponseFuture<R extends Response> implements Respon
      * @param response The response to add into the Future
      * @throws InterruptedException if the operation has been cancelled by client
      */
-    public synchronized void set( R response ) throws InterruptedException
+    public void set( R response ) throws InterruptedException
     {
-        this.response = response;
-        
-        done = response != null;
-        
-        notifyAll();
+        CompletableFuture<R> toComplete;
+
+        lock.lock();
+
+        try
+        {
+            this.response = response;
+            
+            done = response != null;
+            
+            responseReceived.signalAll();
+
+            toComplete = completableFuture;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        // Complete the CompletableFuture outside of the lock, as it runs the dependent stages
+        if ( toComplete != null )
+        {
+            complete( toComplete );
+        }
+    }
+
+
+    /**
+     * Gets a CompletableFuture completed when the response is received, or completed
+     * exceptionally when the request is cancelled, with the cause of the cancellation if
+     * there is one (an LdapConnectionTimeOutException when the request has timed out, for
+     * instance), or with a {@link CancellationException}. The CompletableFuture is completed
+     * by the thread reading the responses, so the dependent stages should not block, or use
+     * an asynchronous execution.
+     *
+     * @return The CompletableFuture completed with the response
+     */
+    public CompletableFuture<R> toCompletableFuture()
+    {
+        CompletableFuture<R> created;
+
+        lock.lock();
+
+        try
+        {
+            if ( completableFuture != null )
+            {
+                return completableFuture;
+            }
+
+            completableFuture = new CompletableFuture<>();
+            created = completableFuture;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        // The response may have been received before the CompletableFuture was created
+        complete( created );
+
+        return created;
+    }
+
+
+    /**
+     * Completes the CompletableFuture if the response has been received, or if the
+     * request has been cancelled
+     */
+    private void complete( CompletableFuture<R> toComplete )
+    {
+        if ( done )
+        {
+            toComplete.complete( response );
+        }
+        else if ( cancelled )
+        {
+            Throwable cancellationCause = cause;
+
+            toComplete.completeExceptionally( ( cancellationCause != null ) ? cancellationCause
+                : new CancellationException() );
+        }
     }
 
 
@@ -184,6 +302,16 @@ public abstract class UniqueResponseFuture<R extends Response> implements Respon
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCreationTime()
+    {
+        return creationTime;
+    }
+
+
     /**
      * Cancel the Future
      *
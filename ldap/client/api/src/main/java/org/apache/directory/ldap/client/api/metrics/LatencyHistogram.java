@@ -0,0 +1,217 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A histogram recording latencies without taking any lock. The values are counted in
+ * buckets whose width grows with the value, the same way a floating point number is
+ * encoded : each power of two is split in {@value #SUB_BUCKET_COUNT} buckets, so the
+ * value returned for a percentile is at most 1/{@value #SUB_BUCKET_COUNT} above the
+ * recorded value, whatever its magnitude.
+ * <br>
+ * Recording a value only increments a few counters, so it can be done by the threads
+ * processing the requests. The reads are not atomic : a snapshot taken while values
+ * are recorded may include some of them only.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class LatencyHistogram
+{
+    /** The number of bits used to select a bucket within a power of two */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** The number of buckets per power of two */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** The number of buckets covering all the positive long values */
+    private static final int BUCKET_COUNT = ( 64 - SUB_BUCKET_BITS ) * SUB_BUCKET_COUNT;
+
+    /** The number of values recorded in each bucket */
+    private final AtomicLongArray counts = new AtomicLongArray( BUCKET_COUNT );
+
+    /** The number of recorded values */
+    private final LongAdder count = new LongAdder();
+
+    /** The sum of the recorded values */
+    private final LongAdder sum = new LongAdder();
+
+    /** The highest recorded value */
+    private final AtomicLong max = new AtomicLong();
+
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value to record
+     */
+    public void record( long value )
+    {
+        long recorded = Math.max( 0L, value );
+
+        counts.incrementAndGet( bucketOf( recorded ) );
+        count.increment();
+        sum.add( recorded );
+
+        long currentMax = max.get();
+
+        while ( ( recorded > currentMax ) && !max.compareAndSet( currentMax, recorded ) )
+        {
+            currentMax = max.get();
+        }
+    }
+
+
+    /**
+     * Computes the bucket of a value
+     */
+    private static int bucketOf( long value )
+    {
+        if ( value < SUB_BUCKET_COUNT )
+        {
+            return ( int ) value;
+        }
+
+        // The bits below the SUB_BUCKET_BITS highest ones are dropped
+        int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BUCKET_BITS;
+
+        return ( shift + 1 ) * SUB_BUCKET_COUNT + ( int ) ( value >>> shift ) - SUB_BUCKET_COUNT;
+    }
+
+
+    /**
+     * Computes the highest value counted in a bucket
+     */
+    private static long highestValueOf( int bucket )
+    {
+        if ( bucket < SUB_BUCKET_COUNT )
+        {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long subBucket = ( bucket % SUB_BUCKET_COUNT ) + SUB_BUCKET_COUNT;
+
+        return ( ( subBucket + 1 ) << shift ) - 1;
+    }
+
+
+    /**
+     * @return The number of recorded values
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+
+    /**
+     * @return The highest recorded value, 0 if no value has been recorded
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+
+    /**
+     * @return The mean of the recorded values, 0 if no value has been recorded
+     */
+    public double getMean()
+    {
+        long total = count.sum();
+
+        return total == 0L ? 0d : ( double ) sum.sum() / total;
+    }
+
+
+    /**
+     * Gets the value below which a percentage of the recorded values are. The returned
+     * value is the highest value of the bucket the percentile falls in, bounded by the
+     * highest recorded value.
+     *
+     * @param percentile The percentage of values, between 0 and 100
+     * @return The value at this percentile, 0 if no value has been recorded
+     */
+    public long getValueAtPercentile( double percentile )
+    {
+        long total = 0L;
+        long[] snapshot = new long[BUCKET_COUNT];
+
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            snapshot[i] = counts.get( i );
+            total += snapshot[i];
+        }
+
+        if ( total == 0L )
+        {
+            return 0L;
+        }
+
+        double bounded = Math.min( 100d, Math.max( 0d, percentile ) );
+        long rank = Math.max( 1L, ( long ) Math.ceil( bounded * total / 100d ) );
+        long seen = 0L;
+
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            seen += snapshot[i];
+
+            if ( seen >= rank )
+            {
+                return Math.min( highestValueOf( i ), max.get() );
+            }
+        }
+
+        return max.get();
+    }
+
+
+    /**
+     * Discards all the recorded values
+     */
+    public void reset()
+    {
+        for ( int i = 0; i < BUCKET_COUNT; i++ )
+        {
+            counts.set( i, 0L );
+        }
+
+        count.reset();
+        sum.reset();
+        max.set( 0L );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "LatencyHistogram[count=" + getCount() + ", mean=" + getMean() + ", p50=" + getValueAtPercentile( 50d )
+            + ", p99=" + getValueAtPercentile( 99d ) + ", max=" + getMax() + "]";
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+
+
+/**
+ * A {@link LdapMetricsListener} recording the activity of connections and pools : the
+ * number of requests and the latency histogram of each request type, the errors, the
+ * timeouts, the requests in flight, the bytes and PDUs exchanged, and the time spent
+ * waiting for a pooled connection.
+ * <br>
+ * An instance set on a single connection gives the metrics of this connection. An
+ * instance shared by the connections of a pool, and by the pool itself, gives the
+ * aggregated metrics of the pool. The metrics can be exposed through JMX with
+ * {@link #registerMBean(String)}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapConnectionMetrics implements LdapMetricsListener, LdapConnectionMetricsMBean
+{
+    /** The request types expecting a response */
+    private static final MessageTypeEnum[] REQUEST_TYPES =
+        {
+            MessageTypeEnum.ADD_REQUEST,
+            MessageTypeEnum.BIND_REQUEST,
+            MessageTypeEnum.COMPARE_REQUEST,
+            MessageTypeEnum.DEL_REQUEST,
+            MessageTypeEnum.EXTENDED_REQUEST,
+            MessageTypeEnum.MODIFYDN_REQUEST,
+            MessageTypeEnum.MODIFY_REQUEST,
+            MessageTypeEnum.SEARCH_REQUEST
+        };
+
+    /** The metrics of each request type. The map is never modified once created */
+    private final Map<MessageTypeEnum, OperationMetrics> operations = new EnumMap<>( MessageTypeEnum.class );
+
+    /** The number of completed requests which have failed */
+    private final LongAdder errors = new LongAdder();
+
+    /** The number of expired requests */
+    private final LongAdder timeouts = new LongAdder();
+
+    /** The number of requests waiting for their final response */
+    private final AtomicLong inFlight = new AtomicLong();
+
+    /** The number of bytes written */
+    private final LongAdder bytesWritten = new LongAdder();
+
+    /** The number of bytes read */
+    private final LongAdder bytesRead = new LongAdder();
+
+    /** The number of response PDUs received */
+    private final LongAdder pdusReceived = new LongAdder();
+
+    /** The time spent waiting for a pooled connection */
+    private final LatencyHistogram borrowWait = new LatencyHistogram();
+
+    /** The name this instance has been registered with, if any */
+    private ObjectName objectName;
+
+
+    /**
+     * The metrics of a request type
+     */
+    private static final class OperationMetrics
+    {
+        /** The number of requests sent */
+        private final LongAdder requests = new LongAdder();
+
+        /** The latency of the completed requests, in nanoseconds */
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+
+    /**
+     * Creates a new LdapConnectionMetrics instance
+     */
+    public LdapConnectionMetrics()
+    {
+        for ( MessageTypeEnum requestType : REQUEST_TYPES )
+        {
+            operations.put( requestType, new OperationMetrics() );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void requestSent( MessageTypeEnum requestType )
+    {
+        OperationMetrics operation = operations.get( requestType );
+
+        if ( operation != null )
+        {
+            operation.requests.increment();
+        }
+
+        inFlight.incrementAndGet();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void responseReceived( MessageTypeEnum responseType )
+    {
+        pdusReceived.increment();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void requestCompleted( MessageTypeEnum requestType, ResultCodeEnum resultCode, long latency )
+    {
+        OperationMetrics operation = operations.get( requestType );
+
+        if ( operation != null )
+        {
+            operation.latency.record( latency );
+        }
+
+        if ( ( resultCode != null ) && ( resultCode != ResultCodeEnum.SUCCESS ) )
+        {
+            errors.increment();
+        }
+
+        inFlight.decrementAndGet();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void requestAbandoned()
+    {
+        inFlight.decrementAndGet();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void requestExpired()
+    {
+        timeouts.increment();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bytesWritten( int bytes )
+    {
+        bytesWritten.add( bytes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void bytesRead( int bytes )
+    {
+        bytesRead.add( bytes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void connectionBorrowed( long waitTime )
+    {
+        borrowWait.record( waitTime );
+    }
+
+
+    /**
+     * Gets the latency histogram of a request type.
+     *
+     * @param requestType The request type
+     * @return The latencies of the completed requests, in nanoseconds, or null if the
+     * request type does not expect a response
+     */
+    public LatencyHistogram getLatencyHistogram( MessageTypeEnum requestType )
+    {
+        OperationMetrics operation = operations.get( requestType );
+
+        return operation == null ? null : operation.latency;
+    }
+
+
+    /**
+     * @return The time spent waiting for a pooled connection, in nanoseconds
+     */
+    public LatencyHistogram getBorrowWaitHistogram()
+    {
+        return borrowWait;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRequestCount()
+    {
+        long count = 0L;
+
+        for ( OperationMetrics operation : operations.values() )
+        {
+            count += operation.requests.sum();
+        }
+
+        return count;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getErrorCount()
+    {
+        return errors.sum();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimeoutCount()
+    {
+        return timeouts.sum();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getInFlight()
+    {
+        return inFlight.get();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBytesWritten()
+    {
+        return bytesWritten.sum();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBytesRead()
+    {
+        return bytesRead.sum();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getPdusReceived()
+    {
+        return pdusReceived.sum();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBorrowCount()
+    {
+        return borrowWait.getCount();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBorrowWait99thPercentile()
+    {
+        return TimeUnit.NANOSECONDS.toMicros( borrowWait.getValueAtPercentile( 99d ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] getOperations()
+    {
+        List<String> names = new ArrayList<>();
+
+        for ( Map.Entry<MessageTypeEnum, OperationMetrics> operation : operations.entrySet() )
+        {
+            if ( operation.getValue().requests.sum() > 0L )
+            {
+                names.add( operation.getKey().name() );
+            }
+        }
+
+        return names.toArray( new String[names.size()] );
+    }
+
+
+    /**
+     * Gets the metrics of an operation from its name
+     */
+    private OperationMetrics getOperation( String operation )
+    {
+        OperationMetrics operationMetrics = operations.get( MessageTypeEnum.valueOf( operation ) );
+
+        if ( operationMetrics == null )
+        {
+            throw new IllegalArgumentException( operation );
+        }
+
+        return operationMetrics;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRequestCount( String operation )
+    {
+        return getOperation( operation ).requests.sum();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLatencyAtPercentile( String operation, double percentile )
+    {
+        return TimeUnit.NANOSECONDS.toMicros( getOperation( operation ).latency.getValueAtPercentile( percentile ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getMeanLatency( String operation )
+    {
+        return getOperation( operation ).latency.getMean() / 1000d;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset()
+    {
+        for ( OperationMetrics operation : operations.values() )
+        {
+            operation.requests.reset();
+            operation.latency.reset();
+        }
+
+        errors.reset();
+        timeouts.reset();
+        bytesWritten.reset();
+        bytesRead.reset();
+        pdusReceived.reset();
+        borrowWait.reset();
+    }
+
+
+    /**
+     * Registers this instance in the platform MBean server.
+     *
+     * @param name The MBean name, like <code>org.apache.directory.ldap.client:type=LdapConnectionMetrics,name=pool</code>
+     * @return The registered MBean name
+     * @throws JMException If the instance can't be registered
+     */
+    public synchronized ObjectName registerMBean( String name ) throws JMException
+    {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        objectName = mbeanServer.registerMBean( this, new ObjectName( name ) ).getObjectName();
+
+        return objectName;
+    }
+
+
+    /**
+     * Unregisters this instance from the platform MBean server, if it has been registered.
+     *
+     * @throws JMException If the instance can't be unregistered
+     */
+    public synchronized void unregisterMBean() throws JMException
+    {
+        if ( objectName != null )
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+            objectName = null;
+        }
+    }
+}
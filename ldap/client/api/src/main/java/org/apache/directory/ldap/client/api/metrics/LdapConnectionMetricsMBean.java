@@ -0,0 +1,124 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+/**
+ * The JMX view of {@link LdapConnectionMetrics}. The operation names are the LDAP
+ * request types, like <code>SEARCH_REQUEST</code>, and the latencies are expressed in
+ * microseconds.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface LdapConnectionMetricsMBean
+{
+    /**
+     * @return The number of requests sent
+     */
+    long getRequestCount();
+
+
+    /**
+     * @return The number of completed requests whose result code is not SUCCESS
+     */
+    long getErrorCount();
+
+
+    /**
+     * @return The number of requests which have timed out
+     */
+    long getTimeoutCount();
+
+
+    /**
+     * @return The number of requests waiting for their final response
+     */
+    long getInFlight();
+
+
+    /**
+     * @return The number of encoded bytes written
+     */
+    long getBytesWritten();
+
+
+    /**
+     * @return The number of bytes read, before being decoded
+     */
+    long getBytesRead();
+
+
+    /**
+     * @return The number of response PDUs received
+     */
+    long getPdusReceived();
+
+
+    /**
+     * @return The number of connections borrowed from a pool
+     */
+    long getBorrowCount();
+
+
+    /**
+     * @return The 99th percentile of the time spent waiting for a connection, in microseconds
+     */
+    long getBorrowWait99thPercentile();
+
+
+    /**
+     * @return The request types having been sent
+     */
+    String[] getOperations();
+
+
+    /**
+     * Gets the number of requests of a type
+     *
+     * @param operation The request type
+     * @return The number of requests sent
+     */
+    long getRequestCount( String operation );
+
+
+    /**
+     * Gets the latency of a request type at a percentile
+     *
+     * @param operation The request type
+     * @param percentile The percentile, between 0 and 100
+     * @return The latency at this percentile, in microseconds
+     */
+    long getLatencyAtPercentile( String operation, double percentile );
+
+
+    /**
+     * Gets the mean latency of a request type
+     *
+     * @param operation The request type
+     * @return The mean latency, in microseconds
+     */
+    double getMeanLatency( String operation );
+
+
+    /**
+     * Discards all the recorded metrics, except the number of requests in flight
+     */
+    void reset();
+}
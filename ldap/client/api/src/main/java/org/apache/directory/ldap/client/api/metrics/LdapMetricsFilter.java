@@ -0,0 +1,83 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.WriteRequest;
+
+
+/**
+ * A filter counting the bytes exchanged on a session. It's inserted between the
+ * codec and the socket (or the SSL filter), so that it counts the encoded PDUs
+ * whatever the transport security.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapMetricsFilter extends IoFilterAdapter
+{
+    /** The listener notified of the bytes exchanged */
+    private final LdapMetricsListener listener;
+
+
+    /**
+     * Creates a new LdapMetricsFilter instance
+     *
+     * @param listener The listener notified of the bytes exchanged
+     */
+    public LdapMetricsFilter( LdapMetricsListener listener )
+    {
+        this.listener = listener;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void messageReceived( NextFilter nextFilter, IoSession session, Object message ) throws Exception
+    {
+        if ( message instanceof IoBuffer )
+        {
+            listener.bytesRead( ( ( IoBuffer ) message ).remaining() );
+        }
+
+        nextFilter.messageReceived( session, message );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void filterWrite( NextFilter nextFilter, IoSession session, WriteRequest writeRequest ) throws Exception
+    {
+        Object message = writeRequest.getMessage();
+
+        if ( message instanceof IoBuffer )
+        {
+            listener.bytesWritten( ( ( IoBuffer ) message ).remaining() );
+        }
+
+        nextFilter.filterWrite( session, writeRequest );
+    }
+}
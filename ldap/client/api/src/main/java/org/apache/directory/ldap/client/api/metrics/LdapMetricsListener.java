@@ -0,0 +1,101 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+
+
+/**
+ * A listener notified of the activity of the connections and of the pools. It is
+ * called by the threads sending the requests and by the threads reading the responses,
+ * so its methods must be thread safe and must not block.
+ * <br>
+ * {@link LdapConnectionMetrics} is an implementation recording these events. The same
+ * listener can be set on many connections and on their pool, to get aggregated metrics.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface LdapMetricsListener
+{
+    /**
+     * Called when a request expecting a response has been sent.
+     *
+     * @param requestType The request type
+     */
+    void requestSent( MessageTypeEnum requestType );
+
+
+    /**
+     * Called when a response PDU has been received for a pending request. A request may
+     * receive many PDUs, like the entries returned by a search.
+     *
+     * @param responseType The response type
+     */
+    void responseReceived( MessageTypeEnum responseType );
+
+
+    /**
+     * Called when the final response of a request has been received.
+     *
+     * @param requestType The request type
+     * @param resultCode The result code of the response
+     * @param latency The time elapsed since the request has been sent, in nanoseconds
+     */
+    void requestCompleted( MessageTypeEnum requestType, ResultCodeEnum resultCode, long latency );
+
+
+    /**
+     * Called when a pending request has been abandoned, because the client has cancelled
+     * it, because it has timed out or because the connection has been closed.
+     */
+    void requestAbandoned();
+
+
+    /**
+     * Called when a request has timed out. The request is then abandoned.
+     */
+    void requestExpired();
+
+
+    /**
+     * Called when encoded PDUs have been written to the session.
+     *
+     * @param bytes The number of bytes written
+     */
+    void bytesWritten( int bytes );
+
+
+    /**
+     * Called when bytes have been read from the session, before being decoded.
+     *
+     * @param bytes The number of bytes read
+     */
+    void bytesRead( int bytes );
+
+
+    /**
+     * Called when a connection has been borrowed from a pool.
+     *
+     * @param waitTime The time spent waiting for the connection, in nanoseconds
+     */
+    void connectionBorrowed( long waitTime );
+}
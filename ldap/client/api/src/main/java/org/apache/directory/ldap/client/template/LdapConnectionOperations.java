@@ -21,6 +21,7 @@ package org.apache.directory.ldap.client.template;
 
 
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.apache.directory.api.ldap.model.entry.Attribute;
 import org.apache.directory.api.ldap.model.message.AddRequest;
@@ -445,6 +446,25 @@ public interface LdapConnectionOperations
         EntryMapper<T> entryMapper );
 
 
+    /**
+     * Searches for the entries matching the supplied 
+     * <code>searchRequest</code> page by page, feeding each entry into the 
+     * <code>entryMapper</code> and passing the mapped entry to the 
+     * <code>consumer</code> as soon as it has been received. The entries are
+     * not accumulated, and the next page is requested while the current one is
+     * consumed, which makes it suitable for very large results.
+     *
+     * @param searchRequest The search request
+     * @param pageSize The number of entries per page
+     * @param entryMapper The mapper
+     * @param consumer The consumer of the mapped entries
+     * @param <T> The type of the mapped entry
+     * @see org.apache.directory.ldap.client.api.LdapConnection#searchPaged(SearchRequest, int)
+     */
+    <T> void searchPaged( SearchRequest searchRequest, int pageSize,
+        EntryMapper<T> entryMapper, Consumer<? super T> consumer );
+
+
     /**
      * Searches for the first entry matching the supplied criteria, feeding the 
      * result into the <code>entryMapper</code>.
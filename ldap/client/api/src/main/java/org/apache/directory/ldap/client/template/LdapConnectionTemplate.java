@@ -20,12 +20,15 @@
 package org.apache.directory.ldap.client.template;
 
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.extras.controls.ppolicy.PasswordPolicyResponse;
 import org.apache.directory.api.ldap.extras.controls.ppolicy.PasswordPolicyResponseImpl;
+import org.apache.directory.api.ldap.model.cursor.EntryCursor;
 import org.apache.directory.api.ldap.model.entry.Attribute;
 import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.entry.Value;
@@ -708,6 +711,22 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
     }
 
 
+    private void closeCursor( EntryCursor cursor )
+    {
+        if ( cursor != null )
+        {
+            try
+            {
+                cursor.close();
+            }
+            catch ( IOException e )
+            {
+                throw new LdapRuntimeException( new LdapException( e.getMessage(), e ) );
+            }
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -844,6 +863,37 @@ public class LdapConnectionTemplate implements LdapConnectionOperations, ModelFa
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> void searchPaged( SearchRequest searchRequest, int pageSize,
+        EntryMapper<T> entryMapper, Consumer<? super T> consumer )
+    {
+        LdapConnection connection = null;
+        EntryCursor cursor = null;
+        try
+        {
+            connection = connectionPool.getConnection();
+            cursor = new EntryCursorImpl( connection.searchPaged( searchRequest, pageSize ) );
+
+            for ( Entry entry : cursor )
+            {
+                consumer.accept( entryMapper.map( entry ) );
+            }
+        }
+        catch ( LdapException e )
+        {
+            throw new LdapRuntimeException( e );
+        }
+        finally
+        {
+            closeCursor( cursor );
+            returnLdapConnection( connection );
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,148 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.api.ldap.codec.osgi.DefaultLdapCodecService;
+import org.apache.mina.core.future.ConnectFuture;
+import org.apache.mina.core.service.IoHandler;
+import org.apache.mina.filter.codec.ProtocolCodecFactory;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+
+/**
+ * Tests the DefaultLdapConnectionFactory.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DefaultLdapConnectionFactoryTest
+{
+    @Test
+    public void testSharedConnector() throws Exception
+    {
+        try ( ServerSocket server = new ServerSocket( 0, 10, InetAddress.getLoopbackAddress() ) )
+        {
+            LdapConnectionConfig config = new LdapConnectionConfig();
+            config.setLdapHost( server.getInetAddress().getHostAddress() );
+            config.setLdapPort( server.getLocalPort() );
+            config.setSharedConnector( true );
+            config.setIoThreads( 2 );
+
+            DefaultLdapConnectionFactory factory = new DefaultLdapConnectionFactory( config );
+
+            // No message is exchanged, the codec is never used
+            DefaultLdapCodecService codec = new DefaultLdapCodecService();
+            codec.registerProtocolCodecFactory( Mockito.mock( ProtocolCodecFactory.class ) );
+            factory.setLdapApiService( codec );
+            List<LdapConnection> connections = new ArrayList<>();
+            List<Socket> sockets = new ArrayList<>();
+
+            try
+            {
+                for ( int i = 0; i < 3; i++ )
+                {
+                    LdapConnection connection = factory.newUnboundLdapConnection();
+                    assertTrue( connection.connect() );
+                    sockets.add( server.accept() );
+                    connections.add( connection );
+                }
+
+                for ( LdapConnection connection : connections )
+                {
+                    assertTrue( connection.isConnected() );
+                }
+
+                assertEquals( 3, factory.getSharedConnector().getManagedSessionCount() );
+
+                // Closing a connection does not close the others
+                connections.get( 0 ).close();
+
+                assertFalse( connections.get( 0 ).isConnected() );
+                assertTrue( connections.get( 1 ).isConnected() );
+                assertTrue( connections.get( 2 ).isConnected() );
+            }
+            finally
+            {
+                for ( LdapConnection connection : connections )
+                {
+                    connection.close();
+                }
+
+                for ( Socket socket : sockets )
+                {
+                    socket.close();
+                }
+
+                factory.dispose();
+            }
+        }
+    }
+
+
+    @Test
+    public void testSharedConnectorAbandonedSession() throws Exception
+    {
+        try ( ServerSocket server = new ServerSocket( 0, 10, InetAddress.getLoopbackAddress() ) )
+        {
+            SharedLdapConnector connector = new SharedLdapConnector( 1, 5000L );
+            IoHandler handler = Mockito.mock( IoHandler.class );
+
+            try
+            {
+                // The connection gives up before the session is established
+                ConnectFuture future = connector.connect( server.getLocalSocketAddress(), handler,
+                    ( session, connectFuture ) -> connectFuture.cancel() );
+
+                try ( Socket socket = server.accept() )
+                {
+                    assertTrue( future.awaitUninterruptibly( 5000L ) );
+                    long deadline = System.currentTimeMillis() + 5000L;
+
+                    while ( ( connector.getManagedSessionCount() > 0 ) && ( System.currentTimeMillis() < deadline ) )
+                    {
+                        Thread.sleep( 10L );
+                    }
+
+                    // The late session is closed, and the connection does not see it
+                    assertTrue( future.isCanceled() );
+                    assertNull( future.getSession() );
+                    assertEquals( 0, connector.getManagedSessionCount() );
+                    Mockito.verifyZeroInteractions( handler );
+                }
+            }
+            finally
+            {
+                connector.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+
+import org.apache.directory.api.ldap.codec.api.DefaultConfigurableBinaryAttributeDetector;
+import org.apache.directory.api.ldap.codec.api.LazyEntry;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.schema.manager.impl.DefaultSchemaManager;
+import org.apache.directory.api.util.Strings;
+import org.junit.Test;
+
+
+/**
+ * Tests the schema aware LazyEntry, as the connection uses it.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LazyEntrySchemaTest
+{
+    /**
+     * Encodes a PartialAttributeList, the type and the values being short
+     */
+    private static byte[] encode( String[]... attributes )
+    {
+        ByteArrayOutputStream partialAttributeList = new ByteArrayOutputStream();
+
+        for ( String[] attribute : attributes )
+        {
+            ByteArrayOutputStream vals = new ByteArrayOutputStream();
+
+            for ( int i = 1; i < attribute.length; i++ )
+            {
+                writeTlv( vals, 0x04, Strings.getBytesUtf8( attribute[i] ) );
+            }
+
+            ByteArrayOutputStream partialAttribute = new ByteArrayOutputStream();
+            writeTlv( partialAttribute, 0x04, Strings.getBytesUtf8( attribute[0] ) );
+            writeTlv( partialAttribute, 0x31, vals.toByteArray() );
+            writeTlv( partialAttributeList, 0x30, partialAttribute.toByteArray() );
+        }
+
+        return partialAttributeList.toByteArray();
+    }
+
+
+    private static void writeTlv( ByteArrayOutputStream stream, int tag, byte[] value )
+    {
+        stream.write( tag );
+        stream.write( value.length );
+        stream.write( value, 0, value.length );
+    }
+
+
+    /**
+     * Test that an attribute which can't be normalized stays in the entry
+     */
+    @Test
+    public void testInvalidValueStaysPending() throws Exception
+    {
+        LazyEntry entry = LazyEntry.create( new Dn( "cn=test" ), encode(
+            new String[]
+                { "cn", "test" },
+            new String[]
+                { "createTimestamp", "not a date" } ),
+            new DefaultConfigurableBinaryAttributeDetector() );
+
+        entry.applySchemaManager( new DefaultSchemaManager() );
+
+        // Every access fails, the attribute is not lost
+        for ( int i = 0; i < 2; i++ )
+        {
+            try
+            {
+                entry.get( "createTimestamp" );
+                fail();
+            }
+            catch ( RuntimeException re )
+            {
+                // Expected
+            }
+
+            assertTrue( entry.containsAttribute( "createTimestamp" ) );
+            assertEquals( 2, entry.size() );
+        }
+
+        assertEquals( "test", entry.get( "cn" ).getString() );
+        assertEquals( 1, entry.getPendingCount() );
+    }
+}
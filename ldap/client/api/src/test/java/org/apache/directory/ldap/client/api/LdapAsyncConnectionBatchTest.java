@@ -0,0 +1,204 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.AddRequest;
+import org.apache.directory.api.ldap.model.message.AddRequestImpl;
+import org.apache.directory.api.ldap.model.message.AddResponse;
+import org.apache.directory.api.ldap.model.message.AddResponseImpl;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteRequestImpl;
+import org.apache.directory.api.ldap.model.message.Request;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
+import org.apache.directory.ldap.client.api.exception.InvalidConnectionException;
+import org.apache.directory.ldap.client.api.future.AddFuture;
+import org.apache.directory.ldap.client.api.future.DeleteFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+
+/**
+ * Test the default batch implementation of LdapAsyncConnection
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapAsyncConnectionBatchTest
+{
+    /**
+     * A connection using the default batch implementation
+     */
+    public abstract static class DefaultBatchConnection implements LdapAsyncConnection
+    {
+        @Override
+        public void batch( Iterator<? extends Request> requests,
+            BiConsumer<? super Request, ? super ResultResponse> handler ) throws LdapException
+        {
+            LdapAsyncConnection.super.batch( requests, handler );
+        }
+    }
+
+    /** The connection */
+    private DefaultBatchConnection connection;
+
+    /** The sent requests which haven't been handled yet */
+    private AtomicInteger outstanding;
+
+    /** The highest number of sent requests not handled yet */
+    private AtomicInteger maxOutstanding;
+
+    /** The delete futures */
+    private List<DeleteFuture> deleteFutures;
+
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception
+    {
+        LdapConnectionConfig config = new LdapConnectionConfig();
+        config.setBatchWindow( 2 );
+        config.setTimeout( 200L );
+
+        outstanding = new AtomicInteger();
+        maxOutstanding = new AtomicInteger();
+        deleteFutures = new ArrayList<>();
+        connection = Mockito.mock( DefaultBatchConnection.class );
+
+        Mockito.doCallRealMethod().when( connection ).batch( Mockito.any( Iterator.class ),
+            Mockito.any( BiConsumer.class ) );
+        Mockito.when( connection.getConfig() ).thenReturn( config );
+        Mockito.when( connection.isConnected() ).thenReturn( true );
+
+        // The adds are answered immediately
+        Mockito.when( connection.addAsync( Mockito.any( AddRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            AddRequest request = ( AddRequest ) invocation.getArguments()[0];
+            maxOutstanding.accumulateAndGet( outstanding.incrementAndGet(), Math::max );
+
+            AddFuture future = new AddFuture( connection, request.getMessageId() );
+            future.set( new AddResponseImpl( request.getMessageId() ) );
+
+            return future;
+        } );
+
+        // The deletes are never answered
+        Mockito.when( connection.deleteAsync( Mockito.any( DeleteRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            DeleteRequest request = ( DeleteRequest ) invocation.getArguments()[0];
+            maxOutstanding.accumulateAndGet( outstanding.incrementAndGet(), Math::max );
+
+            DeleteFuture future = new DeleteFuture( connection, request.getMessageId() );
+            deleteFutures.add( future );
+
+            return future;
+        } );
+    }
+
+
+    @Test
+    public void testBatch() throws Exception
+    {
+        List<Request> requests = new ArrayList<>();
+
+        for ( int i = 1; i <= 5; i++ )
+        {
+            requests.add( new AddRequestImpl().setMessageId( i ) );
+        }
+
+        List<Request> handled = new ArrayList<>();
+        List<ResultResponse> responses = new ArrayList<>();
+
+        connection.batch( requests.iterator(), ( request, response ) ->
+        {
+            outstanding.decrementAndGet();
+            handled.add( request );
+            responses.add( response );
+        } );
+
+        // The responses are handled in the requests order, one window after the other
+        assertEquals( requests, handled );
+        assertEquals( 2, maxOutstanding.get() );
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            assertTrue( responses.get( i ) instanceof AddResponse );
+            assertEquals( i + 1, responses.get( i ).getMessageId() );
+        }
+    }
+
+
+    @Test
+    public void testBatchTimeout() throws Exception
+    {
+        Request add1 = new AddRequestImpl().setMessageId( 1 );
+        Request delete = new DeleteRequestImpl().setMessageId( 2 );
+        Request add2 = new AddRequestImpl().setMessageId( 3 );
+
+        List<ResultResponse> responses = new ArrayList<>();
+
+        connection.batch( Arrays.asList( add1, delete, add2 ).iterator(),
+            ( request, response ) -> responses.add( response ) );
+
+        // The request which has timed out is abandoned, and gets a null response
+        assertEquals( 3, responses.size() );
+        assertEquals( 1, responses.get( 0 ).getMessageId() );
+        assertNull( responses.get( 1 ) );
+        assertEquals( 3, responses.get( 2 ).getMessageId() );
+        assertTrue( deleteFutures.get( 0 ).isCancelled() );
+        Mockito.verify( connection ).abandon( 2 );
+    }
+
+
+    @Test
+    public void testBatchDisconnected() throws Exception
+    {
+        Mockito.when( connection.isConnected() ).thenReturn( false );
+
+        Request delete = new DeleteRequestImpl().setMessageId( 1 );
+        List<Request> handled = new ArrayList<>();
+
+        try
+        {
+            connection.batch( Arrays.asList( delete ).iterator(), ( request, response ) -> handled.add( request ) );
+            fail();
+        }
+        catch ( InvalidConnectionException ice )
+        {
+            // Expected
+        }
+
+        assertTrue( handled.isEmpty() );
+        assertTrue( deleteFutures.get( 0 ).isCancelled() );
+    }
+}
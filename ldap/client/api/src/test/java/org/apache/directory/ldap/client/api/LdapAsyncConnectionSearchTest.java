@@ -0,0 +1,146 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.ldap.client.api.exception.LdapConnectionTimeOutException;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+
+/**
+ * Test the default searchAsync with a listener implementation of LdapAsyncConnection
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapAsyncConnectionSearchTest
+{
+    /**
+     * A connection using the default searchAsync with a listener implementation
+     */
+    public abstract static class DefaultSearchConnection implements LdapAsyncConnection
+    {
+        @Override
+        public SearchFuture searchAsync( SearchRequest searchRequest, Consumer<? super Response> listener )
+            throws LdapException
+        {
+            return LdapAsyncConnection.super.searchAsync( searchRequest, listener );
+        }
+    }
+
+    /** The connection */
+    private DefaultSearchConnection connection;
+
+    /** The future of the sent search */
+    private SearchFuture searchFuture;
+
+    /** The responses passed to the listener */
+    private List<Response> received;
+
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception
+    {
+        connection = Mockito.mock( DefaultSearchConnection.class );
+        received = new CopyOnWriteArrayList<>();
+
+        Mockito.doCallRealMethod().when( connection ).searchAsync( Mockito.any( SearchRequest.class ),
+            Mockito.any( Consumer.class ) );
+        Mockito.when( connection.searchAsync( Mockito.any( SearchRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            SearchRequest request = ( SearchRequest ) invocation.getArguments()[0];
+            request.setMessageId( 1 );
+            searchFuture = new SearchFuture( connection, 1 );
+
+            return searchFuture;
+        } );
+    }
+
+
+    @Test
+    public void testListener() throws Exception
+    {
+        SearchFuture future = connection.searchAsync( new SearchRequestImpl(), received::add );
+
+        searchFuture.set( new SearchResultEntryImpl( 1 ) );
+        searchFuture.set( new SearchResultEntryImpl( 1 ) );
+
+        // The responses are passed with the SearchResultDone
+        assertTrue( received.isEmpty() );
+        assertFalse( future.isDone() );
+
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        searchFuture.set( done );
+
+        assertEquals( 3, received.size() );
+        assertTrue( received.get( 0 ) instanceof SearchResultEntryImpl );
+        assertTrue( received.get( 1 ) instanceof SearchResultEntryImpl );
+        assertSame( done, received.get( 2 ) );
+        assertTrue( future.isDone() );
+        assertSame( done, future.toCompletableFuture().get() );
+    }
+
+
+    @Test
+    public void testCancelled() throws Exception
+    {
+        SearchFuture future = connection.searchAsync( new SearchRequestImpl(), received::add );
+
+        searchFuture.set( new SearchResultEntryImpl( 1 ) );
+
+        LdapConnectionTimeOutException timeout = new LdapConnectionTimeOutException( "timeout" );
+        searchFuture.setCause( timeout );
+        searchFuture.cancel();
+
+        assertTrue( future.isCancelled() );
+        assertTrue( received.isEmpty() );
+
+        try
+        {
+            future.toCompletableFuture().get();
+            fail();
+        }
+        catch ( ExecutionException ee )
+        {
+            assertSame( timeout, ee.getCause() );
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.directory.api.ldap.codec.osgi.DefaultLdapCodecService;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+
+/**
+ * Tests the warm-up and the background maintenance of the LdapConnectionPool.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapConnectionPoolTest
+{
+    /** The time it takes to create a connection, in milliseconds */
+    private static final long CREATION_TIME = 200L;
+
+    /** The number of created connections */
+    private AtomicInteger created;
+
+    /** The number of connections being created */
+    private AtomicInteger creating;
+
+    /** The highest number of connections created at the same time */
+    private AtomicInteger maxCreating;
+
+    /** The number of validations */
+    private AtomicInteger validations;
+
+    /** The factory creating mocked connections */
+    private LdapConnectionFactory connectionFactory;
+
+
+    @Before
+    public void setup() throws Exception
+    {
+        created = new AtomicInteger();
+        creating = new AtomicInteger();
+        maxCreating = new AtomicInteger();
+        validations = new AtomicInteger();
+        connectionFactory = Mockito.mock( LdapConnectionFactory.class );
+
+        Mockito.when( connectionFactory.newLdapConnection() ).thenAnswer( invocation ->
+        {
+            int current = creating.incrementAndGet();
+            maxCreating.accumulateAndGet( current, Math::max );
+            Thread.sleep( CREATION_TIME );
+            creating.decrementAndGet();
+            created.incrementAndGet();
+
+            LdapConnection connection = Mockito.mock( LdapConnection.class );
+            Mockito.when( connection.isConnected() ).thenReturn( true );
+            Mockito.when( connection.isAuthenticated() ).thenReturn( true );
+            Mockito.when( connection.lookup( Dn.ROOT_DSE, SchemaConstants.NO_ATTRIBUTE ) ).thenAnswer( lookup ->
+            {
+                validations.incrementAndGet();
+
+                return new DefaultEntry( Dn.ROOT_DSE );
+            } );
+
+            return connection;
+        } );
+    }
+
+
+    private LdapConnectionPool newPool( int minIdle )
+    {
+        GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
+        poolConfig.setMinIdle( minIdle );
+        poolConfig.setMaxTotal( 8 );
+
+        return new LdapConnectionPool( new ValidatingPoolableLdapConnectionFactory( connectionFactory ), poolConfig );
+    }
+
+
+    @Test
+    public void testWarmUp() throws Exception
+    {
+        LdapConnectionPool pool = newPool( 6 );
+
+        try
+        {
+            long start = System.nanoTime();
+            pool.warmUp();
+            long duration = ( System.nanoTime() - start ) / 1000000L;
+
+            assertEquals( 6, pool.getNumIdle() );
+            assertEquals( 6, created.get() );
+
+            // The connections have been created in parallel
+            assertTrue( maxCreating.get() > 1 );
+            assertTrue( duration < 6 * CREATION_TIME );
+
+            // Nothing is missing anymore
+            pool.warmUp();
+            assertEquals( 6, created.get() );
+
+            // The borrowers don't wait for a connection to be created
+            LdapConnection connection = pool.getConnection();
+            assertEquals( 6, created.get() );
+            pool.releaseConnection( connection );
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+
+    @Test
+    public void testWarmUpWithinMaxTotal() throws Exception
+    {
+        LdapConnectionPool pool = newPool( 12 );
+
+        try
+        {
+            pool.warmUp();
+
+            assertEquals( 8, pool.getNumIdle() );
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+
+    @Test
+    public void testMaintenance() throws Exception
+    {
+        LdapConnectionPool pool = newPool( 2 );
+        pool.setTestOnBorrow( true );
+
+        try
+        {
+            pool.warmUp();
+            pool.startMaintenance( 50L, CREATION_TIME );
+
+            // Validating on borrow is disabled
+            int validationsBefore = validations.get();
+            pool.releaseConnection( pool.getConnection() );
+            assertEquals( validationsBefore, validations.get() );
+
+            // The idle connections are validated and retired in the background, and replaced
+            Thread.sleep( 5 * CREATION_TIME );
+
+            assertTrue( validations.get() > validationsBefore );
+            assertTrue( created.get() > 2 );
+            assertTrue( pool.getDestroyedByEvictorCount() > 0 );
+
+            pool.stopMaintenance();
+
+            // The previous settings are restored, the connections are validated on borrow again
+            assertTrue( pool.getTestOnBorrow() );
+            assertFalse( pool.getTestWhileIdle() );
+            assertEquals( -1L, pool.getTimeBetweenEvictionRunsMillis() );
+
+            // Let a running eviction end
+            Thread.sleep( 2 * 50L );
+            validationsBefore = validations.get();
+            pool.releaseConnection( pool.getConnection() );
+            assertEquals( validationsBefore + 1, validations.get() );
+        }
+        finally
+        {
+            pool.close();
+        }
+    }
+
+
+    @Test
+    public void testCloseDisposesTheSharedConnector() throws Exception
+    {
+        LdapConnectionConfig config = new LdapConnectionConfig();
+        config.setSharedConnector( true );
+        config.setIoThreads( 1 );
+
+        LdapConnectionPool pool = new LdapConnectionPool( config, new DefaultLdapCodecService(), 1000L );
+        DefaultLdapConnectionFactory factory = ( DefaultLdapConnectionFactory )
+            ( ( AbstractPoolableLdapConnectionFactory ) pool.getFactory() ).connectionFactory;
+        SharedLdapConnector connector = factory.getSharedConnector();
+
+        assertFalse( connector.isDisposed() );
+
+        pool.close();
+
+        assertTrue( connector.isDisposed() );
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.directory.api.ldap.codec.osgi.DefaultLdapCodecService;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.message.AddRequestImpl;
+import org.apache.directory.api.ldap.model.message.AddResponseImpl;
+import org.apache.directory.api.ldap.model.message.DeleteRequestImpl;
+import org.apache.directory.api.ldap.model.message.DeleteResponseImpl;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.api.ldap.model.message.ModifyRequestImpl;
+import org.apache.directory.api.ldap.model.message.ModifyResponseImpl;
+import org.apache.directory.api.ldap.model.message.Request;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.exception.InvalidConnectionException;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.CumulativeProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolCodecFactory;
+import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderOutput;
+import org.apache.mina.filter.codec.ProtocolEncoder;
+import org.apache.mina.filter.codec.ProtocolEncoderAdapter;
+import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the LdapNetworkConnection batch operations. The requests are exchanged with
+ * a fake server using a simple codec : each PDU is a messageId followed by the request
+ * type, or by the result code for a response.
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapNetworkConnectionBatchTest
+{
+    /** The number of requests the server reads before answering them */
+    private static final int WINDOW = 5;
+
+    private ServerSocket server;
+
+    private Thread serverThread;
+
+    private LdapNetworkConnection connection;
+
+    /** The number of requests received by the server */
+    private volatile int received;
+
+    /** The largest number of requests received by the server before it answers them */
+    private volatile int largestGroup;
+
+    /** Tells the server to close the connection instead of answering the requests */
+    private volatile boolean disconnect;
+
+
+    /**
+     * The codec used by the client
+     */
+    private static final class TestCodecFactory implements ProtocolCodecFactory
+    {
+        @Override
+        public ProtocolEncoder getEncoder( IoSession session )
+        {
+            return new ProtocolEncoderAdapter()
+            {
+                @Override
+                public void encode( IoSession session, Object message, ProtocolEncoderOutput out )
+                {
+                    Message request = ( Message ) message;
+                    IoBuffer buffer = IoBuffer.allocate( 8 );
+                    buffer.putInt( request.getMessageId() );
+                    buffer.putInt( request.getType().ordinal() );
+                    buffer.flip();
+                    out.write( buffer );
+                }
+            };
+        }
+
+
+        @Override
+        public ProtocolDecoder getDecoder( IoSession session )
+        {
+            return new CumulativeProtocolDecoder()
+            {
+                @Override
+                protected boolean doDecode( IoSession session, IoBuffer in, ProtocolDecoderOutput out )
+                {
+                    if ( in.remaining() < 12 )
+                    {
+                        return false;
+                    }
+
+                    int messageId = in.getInt();
+                    MessageTypeEnum requestType = MessageTypeEnum.values()[in.getInt()];
+                    ResultCodeEnum resultCode = ResultCodeEnum.getResultCode( in.getInt() );
+                    ResultResponse response;
+
+                    switch ( requestType )
+                    {
+                        case ADD_REQUEST:
+                            response = new AddResponseImpl( messageId );
+                            break;
+
+                        case MODIFY_REQUEST:
+                            response = new ModifyResponseImpl( messageId );
+                            break;
+
+                        default:
+                            response = new DeleteResponseImpl( messageId );
+                            break;
+                    }
+
+                    response.getLdapResult().setResultCode( resultCode );
+                    out.write( response );
+
+                    return true;
+                }
+            };
+        }
+    }
+
+
+    @Before
+    public void startServer() throws Exception
+    {
+        server = new ServerSocket( 0, 10, InetAddress.getLoopbackAddress() );
+
+        // The server answers the requests by groups of WINDOW requests, or when no more
+        // request is coming
+        serverThread = new Thread( () ->
+        {
+            try ( Socket socket = server.accept() )
+            {
+                DataInputStream in = new DataInputStream( socket.getInputStream() );
+                DataOutputStream out = new DataOutputStream( socket.getOutputStream() );
+                List<int[]> pending = new ArrayList<>();
+
+                while ( true )
+                {
+                    pending.add( new int[]
+                        { in.readInt(), in.readInt() } );
+                    received++;
+
+                    if ( in.available() == 0 )
+                    {
+                        Thread.sleep( 100L );
+                    }
+
+                    if ( disconnect )
+                    {
+                        return;
+                    }
+
+                    if ( ( pending.size() == WINDOW ) || ( in.available() == 0 ) )
+                    {
+                        largestGroup = Math.max( largestGroup, pending.size() );
+
+                        for ( int[] request : pending )
+                        {
+                            out.writeInt( request[0] );
+                            out.writeInt( request[1] );
+                            out.writeInt( request[1] == MessageTypeEnum.DEL_REQUEST.ordinal()
+                                ? ResultCodeEnum.NO_SUCH_OBJECT.getResultCode()
+                                : ResultCodeEnum.SUCCESS.getResultCode() );
+                        }
+
+                        out.flush();
+                        pending.clear();
+                    }
+                }
+            }
+            catch ( IOException | InterruptedException e )
+            {
+                // The client is gone
+            }
+        } );
+        serverThread.start();
+
+        LdapConnectionConfig config = new LdapConnectionConfig();
+        config.setLdapHost( server.getInetAddress().getHostAddress() );
+        config.setLdapPort( server.getLocalPort() );
+        config.setBatchWindow( WINDOW );
+        config.setTimeout( 5000L );
+
+        DefaultLdapCodecService codec = new DefaultLdapCodecService();
+        codec.registerProtocolCodecFactory( new TestCodecFactory() );
+        connection = new LdapNetworkConnection( config, codec );
+        connection.connect();
+    }
+
+
+    @After
+    public void stopServer() throws Exception
+    {
+        connection.close();
+        server.close();
+        serverThread.join( 5000L );
+    }
+
+
+    @Test
+    public void testBatch() throws Exception
+    {
+        List<Request> requests = new ArrayList<>();
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            requests.add( new AddRequestImpl().setEntry( new DefaultEntry( "cn=user" + i + ",dc=example,dc=com" ) ) );
+            requests.add( new ModifyRequestImpl().setName( new Dn( "cn=user" + i + ",dc=example,dc=com" ) ) );
+            requests.add( new DeleteRequestImpl().setName( new Dn( "cn=user" + i + ",dc=example,dc=com" ) ) );
+        }
+
+        List<ResultResponse> responses = connection.batch( requests.iterator() );
+
+        assertEquals( requests.size(), responses.size() );
+        assertEquals( requests.size(), received );
+
+        // The requests have been sent without waiting for the responses
+        assertEquals( WINDOW, largestGroup );
+
+        for ( int i = 0; i < requests.size(); i++ )
+        {
+            ResultResponse response = responses.get( i );
+
+            assertEquals( requests.get( i ).getMessageId(), response.getMessageId() );
+            assertEquals( requests.get( i ) instanceof DeleteRequestImpl ? ResultCodeEnum.NO_SUCH_OBJECT
+                : ResultCodeEnum.SUCCESS, response.getLdapResult().getResultCode() );
+        }
+
+        // The handler gets the requests in order
+        List<Request> handled = new ArrayList<>();
+        connection.batch( requests.iterator(), ( request, response ) -> handled.add( request ) );
+
+        assertEquals( requests, handled );
+    }
+
+
+    @Test
+    public void testUnsupportedRequest() throws Exception
+    {
+        Request add = new AddRequestImpl().setEntry( new DefaultEntry( "cn=user,dc=example,dc=com" ) );
+
+        try
+        {
+            connection.batch( Arrays.asList( add, new SearchRequestImpl() ).iterator() );
+            fail();
+        }
+        catch ( IllegalArgumentException iae )
+        {
+            // Expected
+        }
+
+        // The request sent before the invalid one has been abandoned
+        assertTrue( connection.isRequestCompleted( add.getMessageId() ) );
+    }
+
+
+    @Test
+    public void testDisconnect() throws Exception
+    {
+        List<Request> requests = new ArrayList<>();
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            requests.add( new AddRequestImpl().setEntry( new DefaultEntry( "cn=user" + i + ",dc=example,dc=com" ) ) );
+        }
+
+        disconnect = true;
+        long start = System.currentTimeMillis();
+
+        try
+        {
+            connection.batch( requests.iterator() );
+            fail();
+        }
+        catch ( InvalidConnectionException ice )
+        {
+            // Expected : the requests have not timed out
+        }
+
+        // We have not waited for the timeout
+        assertTrue( System.currentTimeMillis() - start < 5000L );
+    }
+}
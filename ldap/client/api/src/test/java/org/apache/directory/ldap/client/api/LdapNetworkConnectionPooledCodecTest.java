@@ -0,0 +1,99 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import org.apache.directory.api.asn1.util.Asn1BufferPool;
+import org.apache.directory.api.ldap.codec.osgi.DefaultLdapCodecService;
+import org.apache.directory.api.ldap.codec.protocol.mina.LdapProtocolCodecFactory;
+import org.junit.Test;
+
+
+/**
+ * Tests a LdapNetworkConnection using a codec factory encoding the requests into pooled
+ * buffers. The requests are sent to a fake server which never answers them.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapNetworkConnectionPooledCodecTest
+{
+    @Test
+    public void testPooledBuffersAreReleased() throws Exception
+    {
+        try ( ServerSocket server = new ServerSocket( 0, 10, InetAddress.getLoopbackAddress() ) )
+        {
+            Thread serverThread = new Thread( () ->
+            {
+                try ( Socket socket = server.accept() )
+                {
+                    InputStream in = socket.getInputStream();
+
+                    while ( in.read() != -1 )
+                    {
+                        // The requests are ignored
+                    }
+                }
+                catch ( IOException e )
+                {
+                    // The client is gone
+                }
+            } );
+            serverThread.start();
+
+            LdapConnectionConfig config = new LdapConnectionConfig();
+            config.setLdapHost( server.getInetAddress().getHostAddress() );
+            config.setLdapPort( server.getLocalPort() );
+
+            Asn1BufferPool pool = new Asn1BufferPool();
+            DefaultLdapCodecService codec = new DefaultLdapCodecService();
+            codec.registerProtocolCodecFactory( new LdapProtocolCodecFactory( codec, pool, false ) );
+
+            try ( LdapNetworkConnection connection = new LdapNetworkConnection( config, codec ) )
+            {
+                connection.connect();
+
+                for ( int i = 1; i <= 10; i++ )
+                {
+                    connection.abandon( i );
+                }
+
+                // The buffers return to the pool once written
+                long deadline = System.currentTimeMillis() + 5000L;
+
+                while ( ( pool.getAvailable() == 0 ) && ( System.currentTimeMillis() < deadline ) )
+                {
+                    Thread.sleep( 10L );
+                }
+
+                assertTrue( pool.getAvailable() > 0 );
+            }
+
+            serverThread.join( 5000L );
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.codec.osgi.DefaultLdapCodecService;
+import org.apache.directory.api.ldap.extras.extended.startTls.StartTlsRequest;
+import org.apache.directory.api.ldap.extras.extended.startTls.StartTlsRequestImpl;
+import org.apache.directory.api.ldap.model.message.BindRequest;
+import org.apache.directory.api.ldap.model.message.BindRequestImpl;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.PersistentSearchImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.future.BindFuture;
+import org.apache.directory.ldap.client.api.future.ExtendedFuture;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.CumulativeProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolCodecFactory;
+import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.apache.mina.filter.codec.ProtocolDecoderOutput;
+import org.apache.mina.filter.codec.ProtocolEncoder;
+import org.apache.mina.filter.codec.ProtocolEncoderAdapter;
+import org.apache.mina.filter.codec.ProtocolEncoderOutput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the expiration of the LdapNetworkConnection searches. The requests are sent
+ * to a fake server which never answers them, using a simple codec : each PDU is a
+ * messageId followed by the request type.
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapNetworkConnectionTimeoutTest
+{
+    private ServerSocket server;
+
+    private Thread serverThread;
+
+    private LdapNetworkConnection connection;
+
+    /** The type of the requests received by the server */
+    private final List<Integer> receivedTypes = new CopyOnWriteArrayList<>();
+
+
+    /**
+     * The codec used by the client
+     */
+    private static final class TestCodecFactory implements ProtocolCodecFactory
+    {
+        @Override
+        public ProtocolEncoder getEncoder( IoSession session )
+        {
+            return new ProtocolEncoderAdapter()
+            {
+                @Override
+                public void encode( IoSession session, Object message, ProtocolEncoderOutput out )
+                {
+                    Message request = ( Message ) message;
+                    IoBuffer buffer = IoBuffer.allocate( 8 );
+                    buffer.putInt( request.getMessageId() );
+                    buffer.putInt( request.getType().ordinal() );
+                    buffer.flip();
+                    out.write( buffer );
+                }
+            };
+        }
+
+
+        @Override
+        public ProtocolDecoder getDecoder( IoSession session )
+        {
+            return new CumulativeProtocolDecoder()
+            {
+                @Override
+                protected boolean doDecode( IoSession session, IoBuffer in, ProtocolDecoderOutput out )
+                {
+                    // The server never answers
+                    return false;
+                }
+            };
+        }
+    }
+
+
+    @Before
+    public void startServer() throws Exception
+    {
+        server = new ServerSocket( 0, 10, InetAddress.getLoopbackAddress() );
+
+        serverThread = new Thread( () ->
+        {
+            try ( Socket socket = server.accept() )
+            {
+                DataInputStream in = new DataInputStream( socket.getInputStream() );
+
+                while ( true )
+                {
+                    in.readInt();
+                    receivedTypes.add( in.readInt() );
+                }
+            }
+            catch ( IOException e )
+            {
+                // The client is gone
+            }
+        } );
+        serverThread.start();
+
+        LdapConnectionConfig config = new LdapConnectionConfig();
+        config.setLdapHost( server.getInetAddress().getHostAddress() );
+        config.setLdapPort( server.getLocalPort() );
+        config.setTimeout( 200L );
+
+        DefaultLdapCodecService codec = new DefaultLdapCodecService();
+        codec.registerProtocolCodecFactory( new TestCodecFactory() );
+        connection = new LdapNetworkConnection( config, codec );
+        connection.connect();
+    }
+
+
+    @After
+    public void stopServer() throws Exception
+    {
+        connection.close();
+        server.close();
+        serverThread.join( 5000L );
+    }
+
+
+    private static SearchRequest newSearchRequest( int timeLimit ) throws Exception
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( new Dn( "dc=example,dc=com" ) );
+        searchRequest.setFilter( "(objectClass=*)" );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setTimeLimit( timeLimit );
+
+        return searchRequest;
+    }
+
+
+    @Test
+    public void testIdlePersistentSearchDoesNotExpire() throws Exception
+    {
+        // A search with a time limit expires once it's idle for more than its time limit
+        SearchRequest search = newSearchRequest( 1 );
+        SearchFuture searchFuture = connection.searchAsync( search );
+
+        // The persistent searches never expire
+        SearchRequest persistentSearch = newSearchRequest( 1 );
+        persistentSearch.addControl( new PersistentSearchImpl() );
+        SearchFuture persistentSearchFuture = connection.searchAsync( persistentSearch );
+
+        // The caller polling for the responses does not keep the search alive
+        for ( int i = 0; i < 15; i++ )
+        {
+            searchFuture.get( 100L, TimeUnit.MILLISECONDS );
+        }
+
+        Thread.sleep( 500L );
+
+        assertTrue( searchFuture.isCancelled() );
+        assertTrue( connection.isRequestCompleted( search.getMessageId() ) );
+
+        assertFalse( persistentSearchFuture.isCancelled() );
+        assertFalse( connection.isRequestCompleted( persistentSearch.getMessageId() ) );
+    }
+
+
+    @Test
+    public void testIdleUnlimitedSearchExpires() throws Exception
+    {
+        // A search without time limit expires once it's idle for more than the connection timeout
+        SearchRequest unlimitedSearch = newSearchRequest( 0 );
+        SearchFuture unlimitedSearchFuture = connection.searchAsync( unlimitedSearch );
+
+        Thread.sleep( 800L );
+
+        assertTrue( unlimitedSearchFuture.isCancelled() );
+        assertTrue( connection.isRequestCompleted( unlimitedSearch.getMessageId() ) );
+        assertTrue( receivedTypes.contains( MessageTypeEnum.ABANDON_REQUEST.ordinal() ) );
+    }
+
+
+    @Test
+    public void testExpiredBindAndStartTlsAreNotAbandoned() throws Exception
+    {
+        BindRequest bindRequest = new BindRequestImpl();
+        bindRequest.setName( "cn=test" );
+        bindRequest.setCredentials( "secret" );
+        BindFuture bindFuture = connection.bindAsync( bindRequest );
+
+        StartTlsRequest startTlsRequest = new StartTlsRequestImpl();
+        ExtendedFuture startTlsFuture = connection.extendedAsync( startTlsRequest );
+
+        Thread.sleep( 800L );
+
+        // The requests are expired, but no AbandonRequest is sent for them
+        assertTrue( bindFuture.isCancelled() );
+        assertTrue( startTlsFuture.isCancelled() );
+        assertTrue( connection.isRequestCompleted( bindRequest.getMessageId() ) );
+        assertTrue( connection.isRequestCompleted( startTlsRequest.getMessageId() ) );
+        assertTrue( receivedTypes.contains( MessageTypeEnum.BIND_REQUEST.ordinal() ) );
+        assertFalse( receivedTypes.contains( MessageTypeEnum.ABANDON_REQUEST.ordinal() ) );
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.ldap.client.api.metrics.LdapConnectionMetrics;
+import org.junit.Test;
+
+
+/**
+ * Tests the MultiplexedLdapConnectionPool.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class MultiplexedLdapConnectionPoolTest
+{
+    /**
+     * Creates a factory returning connected mock connections
+     */
+    private static LdapConnectionFactory newFactory( final List<LdapAsyncConnection> created ) throws LdapException
+    {
+        LdapConnectionFactory factory = mock( LdapConnectionFactory.class );
+
+        when( factory.newLdapConnection() ).then( invocation ->
+        {
+            LdapAsyncConnection connection = mock( LdapAsyncConnection.class );
+            when( connection.isConnected() ).thenReturn( true );
+            created.add( connection );
+
+            return connection;
+        } );
+
+        return factory;
+    }
+
+
+    @Test
+    public void testLeastBorrowedConnection() throws Exception
+    {
+        List<LdapAsyncConnection> created = new ArrayList<>();
+        MultiplexedLdapConnectionPool pool = new MultiplexedLdapConnectionPool( newFactory( created ), 2, 3 );
+        pool.setMaxWait( 10L );
+
+        // An idle connection is reused instead of creating a new one
+        LdapAsyncConnection first = pool.getConnection();
+        pool.releaseConnection( first );
+        assertSame( first, pool.getConnection() );
+        assertEquals( 1, created.size() );
+
+        // The borrowers are spread over the connections
+        Set<LdapAsyncConnection> borrowed = new HashSet<>();
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            borrowed.add( pool.getConnection() );
+        }
+
+        assertEquals( 2, created.size() );
+        assertEquals( 2, borrowed.size() );
+        assertEquals( 6, pool.getNumBorrowers() );
+        assertEquals( 2, pool.getNumActive() );
+
+        // All the connections have their maximum number of borrowers
+        try
+        {
+            pool.getConnection();
+            fail();
+        }
+        catch ( LdapException le )
+        {
+            // Expected
+        }
+
+        // The connection with the fewest borrowers is selected
+        LdapAsyncConnection second = created.get( 1 );
+        pool.releaseConnection( second );
+        assertSame( second, pool.getConnection() );
+
+        pool.close();
+        verify( first, times( 1 ) ).unBind();
+        verify( second, times( 1 ) ).unBind();
+    }
+
+
+    @Test
+    public void testDisconnectedConnectionIsReplaced() throws Exception
+    {
+        List<LdapAsyncConnection> created = new ArrayList<>();
+        MultiplexedLdapConnectionPool pool = new MultiplexedLdapConnectionPool( newFactory( created ), 1, 2 );
+
+        LdapAsyncConnection first = pool.getConnection();
+        when( first.isConnected() ).thenReturn( false );
+
+        LdapAsyncConnection second = pool.getConnection();
+        assertNotSame( first, second );
+
+        // The replaced connection is closed once released
+        verify( first, times( 0 ) ).close();
+        pool.releaseConnection( first );
+        verify( first, times( 1 ) ).close();
+
+        try
+        {
+            pool.releaseConnection( first );
+            fail();
+        }
+        catch ( IllegalArgumentException iae )
+        {
+            // Expected
+        }
+
+        pool.releaseConnection( second );
+        assertEquals( 0, pool.getNumBorrowers() );
+        pool.close();
+    }
+
+
+    @Test
+    public void testBorrowMetrics() throws Exception
+    {
+        MultiplexedLdapConnectionPool pool = new MultiplexedLdapConnectionPool( newFactory( new ArrayList<>() ), 1, 2 );
+        LdapConnectionMetrics metrics = new LdapConnectionMetrics();
+        pool.setMetricsListener( metrics );
+        pool.setMaxWait( 10L );
+
+        LdapAsyncConnection connection = pool.getConnection();
+        pool.getConnection();
+
+        try
+        {
+            pool.getConnection();
+            fail();
+        }
+        catch ( LdapException le )
+        {
+            // Expected : the failed borrowing is not recorded
+        }
+
+        pool.releaseConnection( connection );
+
+        assertEquals( 2L, metrics.getBorrowCount() );
+    }
+
+
+    @Test
+    public void testConcurrentBorrowers() throws Exception
+    {
+        List<LdapAsyncConnection> created = Collections.synchronizedList( new ArrayList<LdapAsyncConnection>() );
+        MultiplexedLdapConnectionPool pool = new MultiplexedLdapConnectionPool( newFactory( created ), 4, 8 );
+        pool.setMaxWait( 60000L );
+
+        // Many more borrowers than permits, so that most of them wait for a connection
+        int threads = 128;
+        int loops = 200;
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        List<Thread> borrowers = new ArrayList<>();
+
+        for ( int i = 0; i < threads; i++ )
+        {
+            Thread borrower = new Thread( () ->
+            {
+                for ( int j = 0; j < loops; j++ )
+                {
+                    try
+                    {
+                        LdapConnection connection = pool.getConnection();
+                        borrowed.incrementAndGet();
+                        pool.releaseConnection( connection );
+                    }
+                    catch ( LdapException | RuntimeException e )
+                    {
+                        errors.incrementAndGet();
+                    }
+                }
+            } );
+
+            borrower.start();
+            borrowers.add( borrower );
+        }
+
+        for ( Thread borrower : borrowers )
+        {
+            borrower.join( 60000L );
+            assertFalse( borrower.isAlive() );
+        }
+
+        assertEquals( 0, errors.get() );
+        assertEquals( threads * loops, borrowed.get() );
+        // No connection has been created when a slot was already filled
+        assertTrue( created.size() <= 4 );
+        assertEquals( 0, pool.getNumBorrowers() );
+
+        pool.close();
+    }
+}
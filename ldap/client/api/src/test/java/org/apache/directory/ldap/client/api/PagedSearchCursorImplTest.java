@@ -0,0 +1,303 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+
+/**
+ * Tests the PagedSearchCursorImpl.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class PagedSearchCursorImplTest
+{
+    /** The mocked connection */
+    private LdapAsyncConnection connection;
+
+    /** The future of each requested page */
+    private List<SearchFuture> pages;
+
+    /** The cookie sent with each requested page */
+    private List<byte[]> cookies;
+
+    /** The search request sent for each page */
+    private List<SearchRequest> requests;
+
+
+    @Before
+    public void setup() throws Exception
+    {
+        connection = Mockito.mock( LdapAsyncConnection.class );
+        pages = new ArrayList<>();
+        cookies = new ArrayList<>();
+        requests = new ArrayList<>();
+
+        Mockito.when( connection.searchAsync( Mockito.any( SearchRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            SearchRequest request = ( SearchRequest ) invocation.getArguments()[0];
+            PagedResults pagedResults = ( PagedResults ) request.getControl( PagedResults.OID );
+            assertEquals( 10, pagedResults.getSize() );
+            cookies.add( pagedResults.getCookie() );
+            requests.add( request );
+
+            SearchFuture future = new SearchFuture( connection, pages.size() + 1 );
+            pages.add( future );
+
+            return future;
+        } );
+    }
+
+
+    /**
+     * Sends the entries of a page, and its SearchResultDone
+     */
+    private static void sendPage( SearchFuture page, int nbEntries, ResultCodeEnum resultCode, String cookie )
+        throws InterruptedException
+    {
+        for ( int i = 0; i < nbEntries; i++ )
+        {
+            page.set( new SearchResultEntryImpl( 1 ) );
+        }
+
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( resultCode );
+
+        if ( cookie != null )
+        {
+            PagedResults pagedResults = new PagedResultsImpl();
+            pagedResults.setCookie( Strings.getBytesUtf8( cookie ) );
+            done.addControl( pagedResults );
+        }
+
+        page.set( done );
+    }
+
+
+    @Test
+    public void testAllPages() throws Exception
+    {
+        PagedSearchCursorImpl cursor = new PagedSearchCursorImpl( connection, new SearchRequestImpl(), 10,
+            10000L, TimeUnit.MILLISECONDS );
+
+        assertEquals( 1, pages.size() );
+        sendPage( pages.get( 0 ), 10, ResultCodeEnum.SUCCESS, "page2" );
+
+        // The second page is requested before the first one is consumed
+        assertTrue( cursor.next() );
+        assertTrue( cursor.isEntry() );
+        assertEquals( 2, pages.size() );
+
+        sendPage( pages.get( 1 ), 10, ResultCodeEnum.SUCCESS, "page3" );
+        boolean lastPageSent = false;
+        int count = 1;
+
+        while ( cursor.next() )
+        {
+            assertTrue( cursor.isEntry() );
+            count++;
+
+            if ( !lastPageSent && ( pages.size() == 3 ) )
+            {
+                sendPage( pages.get( 2 ), 5, ResultCodeEnum.SUCCESS, null );
+                lastPageSent = true;
+            }
+        }
+
+        assertEquals( 25, count );
+        assertEquals( 3, pages.size() );
+        assertTrue( cursor.isDone() );
+        assertFalse( cursor.available() );
+        assertEquals( ResultCodeEnum.SUCCESS, cursor.getSearchResultDone().getLdapResult().getResultCode() );
+        assertNull( cursor.getSearchResultDone().getControl( PagedResults.OID ) );
+
+        assertArrayEquals( Strings.EMPTY_BYTES, cookies.get( 0 ) );
+        assertArrayEquals( Strings.getBytesUtf8( "page2" ), cookies.get( 1 ) );
+        assertArrayEquals( Strings.getBytesUtf8( "page3" ), cookies.get( 2 ) );
+
+        cursor.close();
+    }
+
+
+    @Test
+    public void testSearchRequestIsNotModified() throws Exception
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( new Dn( "dc=example,dc=com" ) );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setFilter( "(cn=test)" );
+        searchRequest.addAttributes( "cn", "sn" );
+
+        PagedSearchCursorImpl cursor = new PagedSearchCursorImpl( connection, searchRequest, 10,
+            10000L, TimeUnit.MILLISECONDS );
+
+        sendPage( pages.get( 0 ), 1, ResultCodeEnum.SUCCESS, "page2" );
+        assertTrue( cursor.next() );
+        sendPage( pages.get( 1 ), 1, ResultCodeEnum.SUCCESS, null );
+        assertTrue( cursor.next() );
+        assertFalse( cursor.next() );
+        cursor.close();
+
+        // Each page has been requested with a copy of the search request
+        assertEquals( 2, requests.size() );
+        assertNotSame( requests.get( 0 ), requests.get( 1 ) );
+
+        for ( SearchRequest request : requests )
+        {
+            assertNotSame( searchRequest, request );
+            assertEquals( searchRequest.getBase(), request.getBase() );
+            assertEquals( SearchScope.SUBTREE, request.getScope() );
+            assertEquals( "(cn=test)", request.getFilter().toString() );
+            assertEquals( searchRequest.getAttributes(), request.getAttributes() );
+        }
+
+        assertFalse( searchRequest.hasControl( PagedResults.OID ) );
+    }
+
+
+    @Test
+    public void testPageError() throws Exception
+    {
+        PagedSearchCursorImpl cursor = new PagedSearchCursorImpl( connection, new SearchRequestImpl(), 10,
+            10000L, TimeUnit.MILLISECONDS );
+
+        sendPage( pages.get( 0 ), 2, ResultCodeEnum.UNWILLING_TO_PERFORM, "page2" );
+
+        assertTrue( cursor.next() );
+        assertTrue( cursor.next() );
+        assertFalse( cursor.next() );
+
+        // No page is requested after an error
+        assertEquals( 1, pages.size() );
+        assertEquals( ResultCodeEnum.UNWILLING_TO_PERFORM,
+            cursor.getSearchResultDone().getLdapResult().getResultCode() );
+
+        cursor.close();
+    }
+
+
+    @Test
+    public void testCloseAbandonsPrefetchedPage() throws Exception
+    {
+        PagedSearchCursorImpl cursor = new PagedSearchCursorImpl( connection, new SearchRequestImpl(), 10,
+            10000L, TimeUnit.MILLISECONDS );
+
+        sendPage( pages.get( 0 ), 10, ResultCodeEnum.SUCCESS, "page2" );
+
+        assertTrue( cursor.next() );
+        assertEquals( 2, pages.size() );
+
+        cursor.close();
+
+        assertTrue( cursor.isClosed() );
+        assertTrue( pages.get( 1 ).isCancelled() );
+        Mockito.verify( connection ).abandon( 2 );
+    }
+
+
+    /**
+     * A connection using the default searchPaged implementation
+     */
+    public abstract static class DefaultPagedConnection implements LdapConnection
+    {
+        @Override
+        public SearchCursor searchPaged( SearchRequest searchRequest, int pageSize ) throws LdapException
+        {
+            return LdapConnection.super.searchPaged( searchRequest, pageSize );
+        }
+    }
+
+
+    @Test
+    public void testDefaultSearchPaged() throws Exception
+    {
+        DefaultPagedConnection pagedConnection = Mockito.mock( DefaultPagedConnection.class );
+        Mockito.doCallRealMethod().when( pagedConnection ).searchPaged( Mockito.any( SearchRequest.class ),
+            Mockito.anyInt() );
+
+        // Each page is answered when it's requested, the last one has 5 entries
+        Mockito.when( pagedConnection.search( Mockito.any( SearchRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            SearchRequest request = ( SearchRequest ) invocation.getArguments()[0];
+            PagedResults pagedResults = ( PagedResults ) request.getControl( PagedResults.OID );
+            assertEquals( 10, pagedResults.getSize() );
+            cookies.add( pagedResults.getCookie() );
+            requests.add( request );
+
+            SearchFuture future = new SearchFuture( connection, requests.size() );
+            boolean lastPage = requests.size() == 3;
+            sendPage( future, lastPage ? 5 : 10, ResultCodeEnum.SUCCESS, lastPage ? null : "page"
+                + ( requests.size() + 1 ) );
+
+            return new SearchCursorImpl( future, 10000L, TimeUnit.MILLISECONDS );
+        } );
+
+        SearchRequest searchRequest = new SearchRequestImpl();
+        SearchCursor cursor = pagedConnection.searchPaged( searchRequest, 10 );
+        int count = 0;
+
+        while ( cursor.next() )
+        {
+            assertTrue( cursor.isEntry() );
+
+            // The next page is only requested when the current one has been consumed
+            assertEquals( count / 10 + 1, requests.size() );
+            count++;
+        }
+
+        assertEquals( 25, count );
+        assertEquals( 3, requests.size() );
+        assertEquals( ResultCodeEnum.SUCCESS, cursor.getSearchResultDone().getLdapResult().getResultCode() );
+        assertArrayEquals( Strings.EMPTY_BYTES, cookies.get( 0 ) );
+        assertArrayEquals( Strings.getBytesUtf8( "page2" ), cookies.get( 1 ) );
+        assertArrayEquals( Strings.getBytesUtf8( "page3" ), cookies.get( 2 ) );
+        assertFalse( searchRequest.hasControl( PagedResults.OID ) );
+
+        cursor.close();
+    }
+}
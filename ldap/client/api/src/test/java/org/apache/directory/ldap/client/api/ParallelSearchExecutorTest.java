@@ -0,0 +1,344 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.cursor.SearchCursor;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+
+/**
+ * Tests the ParallelSearchExecutor, with connections answering with a fake tree of
+ * 4 branches of 25 entries.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ParallelSearchExecutorTest
+{
+    /** The number of branches */
+    private static final int BRANCHES = 4;
+
+    /** The number of entries per branch */
+    private static final int ENTRIES = 25;
+
+    /** The mocked pool */
+    private LdapConnectionPool pool;
+
+    /** The number of borrowed connections */
+    private AtomicInteger borrowed;
+
+    /** The searches, per base Dn */
+    private Map<String, SearchScope> searches;
+
+    /** The first requested attribute of the searches, per base Dn */
+    private Map<String, String> attributes;
+
+    /** The result code of each branch search, SUCCESS by default */
+    private Map<String, ResultCodeEnum> resultCodes;
+
+    /** The executor */
+    private ParallelSearchExecutor executor;
+
+
+    @Before
+    public void setup() throws Exception
+    {
+        borrowed = new AtomicInteger();
+        searches = new ConcurrentHashMap<>();
+        attributes = new ConcurrentHashMap<>();
+        resultCodes = new ConcurrentHashMap<>();
+        pool = Mockito.mock( LdapConnectionPool.class );
+
+        Mockito.when( pool.getConnection() ).thenAnswer( invocation ->
+        {
+            borrowed.incrementAndGet();
+
+            return newConnection();
+        } );
+
+        Mockito.doAnswer( invocation ->
+        {
+            borrowed.decrementAndGet();
+
+            return null;
+        } ).when( pool ).releaseConnection( Mockito.any( LdapConnection.class ) );
+    }
+
+
+    @After
+    public void tearDown()
+    {
+        if ( executor != null )
+        {
+            executor.close();
+        }
+    }
+
+
+    /**
+     * Creates a connection answering the searches on the fake tree
+     */
+    private LdapConnection newConnection() throws LdapException
+    {
+        LdapConnection connection = Mockito.mock( LdapConnection.class );
+
+        Mockito.when( connection.search( Mockito.any( SearchRequest.class ) ) ).thenAnswer( invocation ->
+        {
+            SearchRequest request = ( SearchRequest ) invocation.getArguments()[0];
+            String base = request.getBase().getName();
+            searches.put( base, request.getScope() );
+
+            if ( !request.getAttributes().isEmpty() )
+            {
+                attributes.put( base, request.getAttributes().get( 0 ) );
+            }
+
+            if ( base.equals( "ou=fail,ou=system" ) )
+            {
+                throw new LdapException( "Search failed" );
+            }
+
+            SearchFuture future = new SearchFuture( connection, 1 );
+
+            switch ( request.getScope() )
+            {
+                case OBJECT:
+                    future.set( newEntry( base ) );
+                    break;
+
+                case ONELEVEL:
+                    for ( int i = 0; i < BRANCHES; i++ )
+                    {
+                        future.set( newEntry( "ou=b" + i + "," + base ) );
+                    }
+
+                    for ( String branch : resultCodes.keySet() )
+                    {
+                        future.set( newEntry( branch ) );
+                    }
+
+                    break;
+
+                default:
+                    for ( int i = 1; i < ENTRIES; i++ )
+                    {
+                        future.set( newEntry( "cn=e" + i + "," + base ) );
+                    }
+
+                    future.set( newEntry( base ) );
+                    break;
+            }
+
+            SearchResultDone done = new SearchResultDoneImpl( 1 );
+            done.getLdapResult().setResultCode( resultCodes.getOrDefault( base, ResultCodeEnum.SUCCESS ) );
+            future.set( done );
+
+            return new SearchCursorImpl( future, 10L, TimeUnit.SECONDS );
+        } );
+
+        return connection;
+    }
+
+
+    private static SearchResultEntry newEntry( String dn ) throws LdapException
+    {
+        SearchResultEntry entry = new SearchResultEntryImpl( 1 );
+        entry.setEntry( new DefaultEntry( dn ) );
+
+        return entry;
+    }
+
+
+    private static SearchRequest newSearchRequest() throws LdapException
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setBase( new Dn( "ou=system" ) );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setFilter( "(cn=*)" );
+
+        return searchRequest;
+    }
+
+
+    /**
+     * Waits until all the connections have been released
+     */
+    private void assertReleased() throws InterruptedException
+    {
+        for ( int i = 0; ( i < 100 ) && ( borrowed.get() != 0 ); i++ )
+        {
+            Thread.sleep( 50L );
+        }
+
+        assertEquals( 0, borrowed.get() );
+    }
+
+
+    @Test
+    public void testSubtreeSearch() throws Exception
+    {
+        executor = new ParallelSearchExecutor( pool, 3, 4 );
+        Set<String> dns = new HashSet<>();
+
+        try ( SearchCursor cursor = executor.search( newSearchRequest() ) )
+        {
+            while ( cursor.next() )
+            {
+                assertTrue( cursor.isEntry() );
+                assertTrue( dns.add( cursor.getEntry().getDn().getName() ) );
+            }
+
+            assertEquals( ResultCodeEnum.SUCCESS, cursor.getSearchResultDone().getLdapResult().getResultCode() );
+        }
+
+        assertEquals( 1 + BRANCHES * ENTRIES, dns.size() );
+        assertTrue( dns.contains( "ou=system" ) );
+        assertTrue( dns.contains( "cn=e1,ou=b3,ou=system" ) );
+
+        // The base is searched alone, then its children are enumerated without their attributes
+        assertEquals( SearchScope.ONELEVEL, searches.get( "ou=system" ) );
+        assertEquals( SchemaConstants.NO_ATTRIBUTE, attributes.get( "ou=system" ) );
+
+        for ( int i = 0; i < BRANCHES; i++ )
+        {
+            assertEquals( SearchScope.SUBTREE, searches.get( "ou=b" + i + ",ou=system" ) );
+        }
+
+        assertReleased();
+    }
+
+
+    @Test
+    public void testBranchResultCodes() throws Exception
+    {
+        executor = new ParallelSearchExecutor( pool, 2, 16 );
+
+        // A removed branch is ignored
+        resultCodes.put( "ou=removed,ou=system", ResultCodeEnum.NO_SUCH_OBJECT );
+        resultCodes.put( "ou=limited,ou=system", ResultCodeEnum.SIZE_LIMIT_EXCEEDED );
+        int count = 0;
+
+        try ( SearchCursor cursor = executor.search( newSearchRequest() ) )
+        {
+            while ( cursor.next() )
+            {
+                count++;
+            }
+
+            assertEquals( ResultCodeEnum.SIZE_LIMIT_EXCEEDED,
+                cursor.getSearchResultDone().getLdapResult().getResultCode() );
+        }
+
+        assertEquals( 1 + ( BRANCHES + 2 ) * ENTRIES, count );
+        assertReleased();
+    }
+
+
+    @Test
+    public void testBranchFailure() throws Exception
+    {
+        executor = new ParallelSearchExecutor( pool, 2, 16 );
+        resultCodes.put( "ou=fail,ou=system", ResultCodeEnum.SUCCESS );
+
+        try ( SearchCursor cursor = executor.search( newSearchRequest() ) )
+        {
+            while ( cursor.next() )
+            {
+                // Nothing to do
+            }
+
+            fail();
+        }
+        catch ( LdapException le )
+        {
+            assertEquals( "Search failed", le.getMessage() );
+        }
+
+        assertReleased();
+    }
+
+
+    @Test
+    public void testClose() throws Exception
+    {
+        executor = new ParallelSearchExecutor( pool, 3, 1 );
+
+        try ( SearchCursor cursor = executor.search( newSearchRequest() ) )
+        {
+            assertTrue( cursor.next() );
+        }
+
+        // The searches blocked on the full buffer are stopped
+        assertReleased();
+    }
+
+
+    @Test
+    public void testOneLevelSearch() throws Exception
+    {
+        executor = new ParallelSearchExecutor( pool, 3, 4 );
+        SearchRequest searchRequest = newSearchRequest();
+        searchRequest.setScope( SearchScope.ONELEVEL );
+        int count = 0;
+
+        try ( SearchCursor cursor = executor.search( searchRequest ) )
+        {
+            while ( cursor.next() )
+            {
+                count++;
+            }
+
+            assertFalse( cursor.next() );
+        }
+
+        // The search is not split
+        assertEquals( BRANCHES, count );
+        assertEquals( 1, searches.size() );
+        assertReleased();
+    }
+}
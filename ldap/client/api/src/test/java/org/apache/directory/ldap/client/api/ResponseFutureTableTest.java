@@ -0,0 +1,236 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.apache.directory.ldap.client.api.future.AddFuture;
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
+import org.junit.Test;
+
+
+/**
+ * Tests the ResponseFutureTable.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ResponseFutureTableTest
+{
+    @Test
+    public void testPutGetRemove()
+    {
+        ResponseFutureTable table = new ResponseFutureTable( 4 );
+        AddFuture future = new AddFuture( null, 1 );
+
+        table.put( 1, future );
+
+        assertSame( future, table.get( 1 ) );
+        assertNull( table.get( 5 ) );
+        assertNull( table.remove( 5 ) );
+        assertSame( future, table.remove( 1 ) );
+        assertNull( table.get( 1 ) );
+        assertNull( table.remove( 1 ) );
+    }
+
+
+    @Test
+    public void testCollisions()
+    {
+        ResponseFutureTable table = new ResponseFutureTable( 4 );
+        List<ResponseFuture<?>> futures = new ArrayList<>();
+
+        // More requests than slots, some of them being stored in the overflow map,
+        // with the 0 and negative messageIds we get when the counter wraps
+        for ( int messageId = -6; messageId <= 10; messageId++ )
+        {
+            AddFuture future = new AddFuture( null, messageId );
+            futures.add( future );
+            table.put( messageId, future );
+        }
+
+        assertEquals( futures.size(), table.values().size() );
+        assertTrue( table.values().containsAll( futures ) );
+
+        for ( int messageId = -6; messageId <= 10; messageId++ )
+        {
+            assertSame( futures.get( messageId + 6 ), table.get( messageId ) );
+        }
+
+        for ( int messageId = -6; messageId <= 10; messageId++ )
+        {
+            assertSame( futures.get( messageId + 6 ), table.remove( messageId ) );
+        }
+
+        assertTrue( table.values().isEmpty() );
+
+        // The slots are free again
+        AddFuture future = new AddFuture( null, 11 );
+        table.put( 11, future );
+        assertSame( future, table.get( 11 ) );
+
+        table.clear();
+        assertNull( table.get( 11 ) );
+        assertTrue( table.values().isEmpty() );
+    }
+
+
+    @Test
+    public void testReplaceOverflowedFuture()
+    {
+        ResponseFutureTable table = new ResponseFutureTable( 4 );
+        AddFuture future1 = new AddFuture( null, 1 );
+        AddFuture overflowed = new AddFuture( null, 5 );
+
+        // The messageId 5 is stored in the overflow map, as the slot is used by 1
+        table.put( 1, future1 );
+        table.put( 5, overflowed );
+        assertSame( future1, table.remove( 1 ) );
+
+        // Now the messageId 5 takes the free slot, the overflowed future must be dropped
+        AddFuture future5 = new AddFuture( null, 5 );
+        table.put( 5, future5 );
+
+        assertSame( future5, table.get( 5 ) );
+        assertEquals( 1, table.values().size() );
+        assertSame( future5, table.remove( 5 ) );
+        assertNull( table.get( 5 ) );
+        assertNull( table.remove( 5 ) );
+        assertTrue( table.values().isEmpty() );
+    }
+
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException
+    {
+        final ResponseFutureTable table = new ResponseFutureTable( 64 );
+        final AtomicInteger messageId = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch( 8 );
+
+        for ( int i = 0; i < 8; i++ )
+        {
+            new Thread( () ->
+            {
+                for ( int j = 0; j < 10000; j++ )
+                {
+                    int id = messageId.incrementAndGet();
+                    AddFuture future = new AddFuture( null, id );
+                    table.put( id, future );
+
+                    if ( ( table.get( id ) != future ) || ( table.remove( id ) != future ) )
+                    {
+                        errors.incrementAndGet();
+                    }
+                }
+
+                done.countDown();
+            } ).start();
+        }
+
+        done.await();
+
+        assertEquals( 0, errors.get() );
+        assertTrue( table.values().isEmpty() );
+    }
+
+
+    @Test
+    public void testConcurrentRemoveOfCollidingIds() throws InterruptedException
+    {
+        // All the messageIds are stored in the same slot, or in the overflow map
+        final ResponseFutureTable table = new ResponseFutureTable( 2 );
+        final AtomicInteger messageId = new AtomicInteger( 1 );
+        final Map<ResponseFuture<?>, Integer> messageIds = new ConcurrentHashMap<>();
+        final Set<ResponseFuture<?>> removed = ConcurrentHashMap.newKeySet();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch( 8 );
+        final AtomicBoolean running = new AtomicBoolean( true );
+        List<Thread> removers = new ArrayList<>();
+
+        // Each removed future must be the one of the removed messageId, and must
+        // be removed once
+        final BiConsumer<Integer, ResponseFuture<?>> check = ( id, future ) ->
+        {
+            if ( ( future != null ) && ( !id.equals( messageIds.get( future ) ) || !removed.add( future ) ) )
+            {
+                errors.incrementAndGet();
+            }
+        };
+
+        // The threads removing the last stored messageIds, concurrently with their owner
+        for ( int i = 0; i < 4; i++ )
+        {
+            Thread remover = new Thread( () ->
+            {
+                while ( running.get() )
+                {
+                    int id = messageId.get() - 2;
+                    check.accept( id, table.remove( id ) );
+                }
+            } );
+
+            remover.start();
+            removers.add( remover );
+        }
+
+        for ( int i = 0; i < 8; i++ )
+        {
+            new Thread( () ->
+            {
+                for ( int j = 0; j < 20000; j++ )
+                {
+                    int id = messageId.getAndAdd( 2 );
+                    AddFuture future = new AddFuture( null, id );
+                    messageIds.put( future, id );
+                    table.put( id, future );
+                    check.accept( id, table.remove( id ) );
+                }
+
+                done.countDown();
+            } ).start();
+        }
+
+        done.await();
+        running.set( false );
+
+        for ( Thread remover : removers )
+        {
+            remover.join();
+        }
+
+        assertEquals( 0, errors.get() );
+        assertEquals( messageIds.size(), removed.size() );
+        assertTrue( table.values().isEmpty() );
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.ldap.model.message.AddResponseImpl;
+import org.apache.directory.ldap.client.api.future.AddFuture;
+import org.junit.Test;
+
+
+/**
+ * Tests the ResponseTimeoutWheel.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ResponseTimeoutWheelTest
+{
+    @Test
+    public void testExpire() throws Exception
+    {
+        Map<Integer, Long> expired = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch( 2 );
+        long start = System.nanoTime();
+
+        ResponseTimeoutWheel wheel = new ResponseTimeoutWheel( 10L, 8, "test" );
+        ResponseTimeoutWheel.Expirer expirer = ( messageId, future, timeout ) ->
+        {
+            expired.put( messageId, TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+            latch.countDown();
+
+            return 0L;
+        };
+
+        try
+        {
+            assertFalse( wheel.isStarted() );
+
+            // A short timeout, and a timeout longer than a wheel rotation
+            wheel.schedule( 1, new AddFuture( null, 1 ), 50L, expirer );
+            wheel.schedule( 2, new AddFuture( null, 2 ), 200L, expirer );
+
+            // A completed request, and a request which never expires
+            AddFuture completed = new AddFuture( null, 3 );
+            wheel.schedule( 3, completed, 50L, expirer );
+            completed.set( new AddResponseImpl( 3 ) );
+            wheel.schedule( 4, new AddFuture( null, 4 ), 0L, expirer );
+
+            assertTrue( wheel.isStarted() );
+            assertTrue( latch.await( 10L, TimeUnit.SECONDS ) );
+
+            assertTrue( expired.get( 1 ) >= 50L );
+            assertTrue( expired.get( 2 ) >= 200L );
+
+            Thread.sleep( 100L );
+            assertEquals( 2, expired.size() );
+        }
+        finally
+        {
+            wheel.stop();
+        }
+
+        assertFalse( wheel.isStarted() );
+    }
+
+
+    @Test
+    public void testReschedule() throws Exception
+    {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch( 3 );
+
+        ResponseTimeoutWheel wheel = new ResponseTimeoutWheel( 10L, 8, "test" );
+        ResponseTimeoutWheel.Expirer expirer = ( messageId, future, timeout ) ->
+        {
+            latch.countDown();
+
+            // Rescheduled twice before expiring
+            return calls.incrementAndGet() < 3 ? timeout : 0L;
+        };
+
+        try
+        {
+            wheel.schedule( 1, new AddFuture( null, 1 ), 20L, expirer );
+
+            assertTrue( latch.await( 10L, TimeUnit.SECONDS ) );
+            Thread.sleep( 100L );
+            assertEquals( 3, calls.get() );
+        }
+        finally
+        {
+            wheel.stop();
+        }
+    }
+
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        Map<Integer, Long> expired = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch( 1 );
+
+        ResponseTimeoutWheel wheel = new ResponseTimeoutWheel( 10L, 8, "test" );
+        ResponseTimeoutWheel.Expirer expirer = ( messageId, future, timeout ) ->
+        {
+            expired.put( messageId, timeout );
+            latch.countDown();
+
+            return 0L;
+        };
+
+        ResponseFutureTable table = new ResponseFutureTable( 4 );
+
+        try
+        {
+            // A request removed from the table, never completed, is not expired
+            AddFuture removed = new AddFuture( null, 1 );
+            table.put( 1, removed, wheel.schedule( 1, removed, 50L, expirer ) );
+            AddFuture pending = new AddFuture( null, 2 );
+            table.put( 2, pending, wheel.schedule( 2, pending, 50L, expirer ) );
+            assertSame( removed, table.remove( 1 ) );
+
+            // A request with a long timeout is not retained by the wheel once removed
+            AddFuture released = new AddFuture( null, 3 );
+            table.put( 3, released, wheel.schedule( 3, released, 60000L, expirer ) );
+            WeakReference<AddFuture> reference = new WeakReference<>( released );
+            released = null;
+            table.remove( 3 );
+
+            assertTrue( latch.await( 10L, TimeUnit.SECONDS ) );
+            Thread.sleep( 100L );
+            assertEquals( 1, expired.size() );
+            assertTrue( expired.containsKey( 2 ) );
+
+            for ( int i = 0; ( i < 10 ) && ( reference.get() != null ); i++ )
+            {
+                System.gc();
+                Thread.sleep( 10L );
+            }
+
+            assertNull( reference.get() );
+        }
+        finally
+        {
+            wheel.stop();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.ldap.model.schema.registries.SchemaLoader;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+
+/**
+ * Tests the ServerCapabilityCache.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ServerCapabilityCacheTest
+{
+    /**
+     * Creates a connection to a server, returning a new list of controls and a new
+     * SchemaManager each time they are read
+     */
+    private static LdapNetworkConnection newConnection( int port ) throws Exception
+    {
+        LdapConnectionConfig config = new LdapConnectionConfig();
+        config.setLdapHost( "ldap.example.com" );
+        config.setLdapPort( port );
+
+        LdapNetworkConnection connection = Mockito.mock( LdapNetworkConnection.class );
+        Mockito.when( connection.getConfig() ).thenReturn( config );
+        Mockito.when( connection.fetchSupportedControls() ).thenAnswer(
+            invocation -> new ArrayList<>( Arrays.asList( "1.2.840.113556.1.4.319" ) ) );
+        Mockito.when( connection.createSchemaManager( Mockito.any( SchemaLoader.class ) ) ).thenAnswer(
+            invocation -> Mockito.mock( SchemaManager.class ) );
+
+        return connection;
+    }
+
+
+    @Test
+    public void testSharedPerServer() throws Exception
+    {
+        ServerCapabilityCache cache = new ServerCapabilityCache();
+        LdapNetworkConnection connection1 = newConnection( 389 );
+        LdapNetworkConnection connection2 = newConnection( 389 );
+        LdapNetworkConnection otherServer = newConnection( 10389 );
+
+        List<String> controls = cache.getSupportedControls( connection1 );
+        assertEquals( Arrays.asList( "1.2.840.113556.1.4.319" ), controls );
+        assertSame( controls, cache.getSupportedControls( connection2 ) );
+        assertNotSame( controls, cache.getSupportedControls( otherServer ) );
+
+        SchemaManager schemaManager = cache.getSchemaManager( connection1, false );
+        assertSame( schemaManager, cache.getSchemaManager( connection2, false ) );
+        assertNotSame( schemaManager, cache.getSchemaManager( connection2, true ) );
+
+        // Only the first connection to each server has read the capabilities
+        Mockito.verify( connection1, Mockito.times( 1 ) ).fetchSupportedControls();
+        Mockito.verify( connection2, Mockito.never() ).fetchSupportedControls();
+        Mockito.verify( otherServer, Mockito.times( 1 ) ).fetchSupportedControls();
+        Mockito.verify( connection1, Mockito.times( 1 ) ).createSchemaManager( Mockito.any( SchemaLoader.class ) );
+    }
+
+
+    @Test
+    public void testInvalidate() throws Exception
+    {
+        ServerCapabilityCache cache = new ServerCapabilityCache();
+        LdapNetworkConnection connection = newConnection( 389 );
+        LdapNetworkConnection otherServer = newConnection( 10389 );
+
+        List<String> controls = cache.getSupportedControls( connection );
+        List<String> otherControls = cache.getSupportedControls( otherServer );
+
+        cache.invalidate( "ldap.example.com", 389 );
+
+        assertNotSame( controls, cache.getSupportedControls( connection ) );
+        assertSame( otherControls, cache.getSupportedControls( otherServer ) );
+
+        cache.invalidateAll();
+
+        assertNotSame( otherControls, cache.getSupportedControls( otherServer ) );
+    }
+
+
+    @Test
+    public void testExpiration() throws Exception
+    {
+        ServerCapabilityCache cache = new ServerCapabilityCache( 50L );
+        LdapNetworkConnection connection = newConnection( 389 );
+
+        List<String> controls = cache.getSupportedControls( connection );
+        Thread.sleep( 100L );
+
+        assertNotSame( controls, cache.getSupportedControls( connection ) );
+        Mockito.verify( connection, Mockito.times( 2 ) ).fetchSupportedControls();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.future;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.directory.api.ldap.model.message.AddResponse;
+import org.apache.directory.api.ldap.model.message.AddResponseImpl;
+import org.apache.directory.ldap.client.api.exception.LdapConnectionTimeOutException;
+import org.junit.Test;
+
+
+/**
+ * Tests the CompletableFuture of an AddFuture.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class AddFutureTest
+{
+    @Test
+    public void testCompletableFuture() throws Exception
+    {
+        AddFuture future = new AddFuture( null, 1 );
+        AtomicReference<AddResponse> received = new AtomicReference<>();
+        CompletableFuture<AddResponse> completableFuture = future.toCompletableFuture();
+        completableFuture.thenAccept( received::set );
+
+        assertFalse( completableFuture.isDone() );
+
+        AddResponse response = new AddResponseImpl( 1 );
+        future.set( response );
+
+        assertSame( response, received.get() );
+        assertSame( completableFuture, future.toCompletableFuture() );
+
+        // Created after the response has been received
+        future = new AddFuture( null, 2 );
+        future.set( response );
+        assertSame( response, future.toCompletableFuture().get() );
+    }
+
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        AddFuture future = new AddFuture( null, 1 );
+        CompletableFuture<AddResponse> completableFuture = future.toCompletableFuture();
+
+        future.cancel();
+
+        assertTrue( completableFuture.isCancelled() || completableFuture.isCompletedExceptionally() );
+        assertTrue( future.toCompletableFuture().isCompletedExceptionally() );
+    }
+
+
+    @Test
+    public void testCancelWithCause() throws Exception
+    {
+        AddFuture future = new AddFuture( null, 1 );
+        CompletableFuture<AddResponse> completableFuture = future.toCompletableFuture();
+        LdapConnectionTimeOutException cause = new LdapConnectionTimeOutException( "timeout" );
+
+        future.setCause( cause );
+        future.cancel();
+
+        try
+        {
+            completableFuture.get();
+            fail();
+        }
+        catch ( ExecutionException ee )
+        {
+            assertSame( cause, ee.getCause() );
+        }
+
+        // Created after the request has been cancelled
+        try
+        {
+            future.toCompletableFuture().get();
+            fail();
+        }
+        catch ( ExecutionException ee )
+        {
+            assertSame( cause, ee.getCause() );
+        }
+    }
+
+
+    @Test
+    public void testGetWithTimeout() throws Exception
+    {
+        AddFuture future = new AddFuture( null, 1 );
+
+        assertNull( future.get( 10L, TimeUnit.MILLISECONDS ) );
+
+        // The response received before the call is returned without waiting
+        AddResponse response = new AddResponseImpl( 1 );
+        future.set( response );
+
+        long start = System.nanoTime();
+        assertSame( response, future.get( 1L, TimeUnit.MINUTES ) );
+        assertTrue( System.nanoTime() - start < TimeUnit.SECONDS.toNanos( 10L ) );
+    }
+
+
+    @Test
+    public void testConcurrentWaiters() throws Exception
+    {
+        int threads = 32;
+        int rounds = 100;
+        AtomicInteger received = new AtomicInteger();
+        List<Thread> waiters = new ArrayList<>();
+
+        for ( int round = 0; round < rounds; round++ )
+        {
+            AddFuture future = new AddFuture( null, round );
+            CountDownLatch started = new CountDownLatch( threads );
+            waiters.clear();
+
+            for ( int i = 0; i < threads; i++ )
+            {
+                Thread waiter = new Thread( () ->
+                {
+                    started.countDown();
+
+                    try
+                    {
+                        if ( future.get( 1L, TimeUnit.MINUTES ) != null )
+                        {
+                            received.incrementAndGet();
+                        }
+                    }
+                    catch ( InterruptedException ie )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                } );
+
+                waiter.start();
+                waiters.add( waiter );
+            }
+
+            // Some waiters may be blocked, some not yet : none of them may miss the response
+            started.await();
+            future.set( new AddResponseImpl( round ) );
+
+            for ( Thread waiter : waiters )
+            {
+                waiter.join( 10000L );
+                assertFalse( waiter.isAlive() );
+            }
+        }
+
+        assertEquals( threads * rounds, received.get() );
+    }
+}
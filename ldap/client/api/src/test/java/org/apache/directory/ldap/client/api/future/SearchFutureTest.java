@@ -0,0 +1,242 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.future;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.api.ldap.model.message.IntermediateResponseImpl;
+import org.apache.directory.api.ldap.model.message.Response;
+import org.apache.directory.api.ldap.model.message.SearchResultDone;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.ldap.client.api.exception.LdapConnectionTimeOutException;
+import org.apache.mina.core.session.DummySession;
+import org.junit.Test;
+
+
+/**
+ * Tests the flow control of the SearchFuture.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SearchFutureTest
+{
+    @Test
+    public void testUnbounded() throws InterruptedException
+    {
+        DummySession session = new DummySession();
+        SearchFuture future = new SearchFuture( null, 1, session, 0 );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            future.set( new SearchResultEntryImpl( 1 ) );
+        }
+
+        assertFalse( session.isReadSuspended() );
+    }
+
+
+    @Test
+    public void testSuspendResumeRead() throws InterruptedException
+    {
+        DummySession session = new DummySession();
+        SearchFuture future = new SearchFuture( null, 1, session, 4 );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            future.set( new SearchResultEntryImpl( 1 ) );
+        }
+
+        assertFalse( session.isReadSuspended() );
+
+        // The fourth response fills the queue
+        future.set( new SearchResultEntryImpl( 1 ) );
+        assertTrue( session.isReadSuspended() );
+
+        // The responses already read are still queued
+        Response done = new SearchResultDoneImpl( 1 );
+        future.set( done );
+        assertTrue( session.isReadSuspended() );
+
+        // The reads are resumed once half of the queue has been consumed
+        future.get();
+        future.get();
+        assertTrue( session.isReadSuspended() );
+        future.get( 1, TimeUnit.SECONDS );
+        assertFalse( session.isReadSuspended() );
+
+        future.get();
+        assertSame( done, future.get() );
+        assertNull( future.get( 1, TimeUnit.MILLISECONDS ) );
+        assertFalse( session.isReadSuspended() );
+    }
+
+
+    @Test
+    public void testCancelResumesRead() throws InterruptedException
+    {
+        DummySession session = new DummySession();
+        SearchFuture future = new SearchFuture( null, 1, session, 2 );
+
+        future.set( new SearchResultEntryImpl( 1 ) );
+        future.set( new SearchResultEntryImpl( 1 ) );
+        assertTrue( session.isReadSuspended() );
+
+        future.cancel();
+        assertFalse( session.isReadSuspended() );
+
+        // No more suspension once cancelled
+        future.set( new SearchResultEntryImpl( 1 ) );
+        assertFalse( session.isReadSuspended() );
+        assertEquals( 3, future.queue.size() );
+    }
+
+
+    @Test
+    public void testSuspendResumeReadTwoSearches() throws InterruptedException
+    {
+        DummySession session = new DummySession();
+        SearchFuture future1 = new SearchFuture( null, 1, session, 2 );
+        SearchFuture future2 = new SearchFuture( null, 2, session, 2 );
+
+        // The first search suspends the reads
+        future1.set( new SearchResultEntryImpl( 1 ) );
+        future1.set( new SearchResultEntryImpl( 1 ) );
+        assertTrue( session.isReadSuspended() );
+
+        // The second search fills its queue with the responses already read
+        future2.set( new SearchResultEntryImpl( 2 ) );
+        future2.set( new SearchResultEntryImpl( 2 ) );
+        assertTrue( session.isReadSuspended() );
+
+        // The first search is consumed, the second one still needs the reads suspended
+        future1.get();
+        assertTrue( session.isReadSuspended() );
+
+        future2.get();
+        assertFalse( session.isReadSuspended() );
+
+        // The first search fills its queue again, then the second one
+        future1.set( new SearchResultEntryImpl( 1 ) );
+        future1.set( new SearchResultEntryImpl( 1 ) );
+        assertTrue( session.isReadSuspended() );
+        future2.set( new SearchResultEntryImpl( 2 ) );
+        assertTrue( session.isReadSuspended() );
+
+        // Cancelling the first search releases its suspension only
+        future1.cancel();
+        assertTrue( session.isReadSuspended() );
+
+        future2.get();
+        assertFalse( session.isReadSuspended() );
+    }
+
+
+    @Test
+    public void testListener() throws Exception
+    {
+        List<Response> received = new ArrayList<>();
+        SearchFuture future = new SearchFuture( null, 1, received::add );
+        CompletableFuture<Response> completableFuture = future.toCompletableFuture();
+
+        future.set( new SearchResultEntryImpl( 1 ) );
+        future.set( new IntermediateResponseImpl( 1 ) );
+        assertFalse( future.isDone() );
+        assertFalse( completableFuture.isDone() );
+
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        future.set( done );
+
+        // The responses are not queued
+        assertEquals( 3, received.size() );
+        assertSame( done, received.get( 2 ) );
+        assertTrue( future.queue.isEmpty() );
+
+        assertTrue( future.isDone() );
+        assertSame( done, completableFuture.get() );
+        assertSame( done, future.toCompletableFuture().get() );
+    }
+
+
+    @Test
+    public void testCompletableFuture() throws Exception
+    {
+        SearchFuture future = new SearchFuture( null, 1 );
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+
+        future.set( new SearchResultEntryImpl( 1 ) );
+        future.set( done );
+
+        // Created after the response has been received
+        assertSame( done, future.toCompletableFuture().get() );
+        assertEquals( 2, future.queue.size() );
+
+        future = new SearchFuture( null, 2 );
+        CompletableFuture<Response> completableFuture = future.toCompletableFuture();
+        future.cancel();
+
+        assertTrue( future.isDone() );
+
+        try
+        {
+            completableFuture.get();
+            fail();
+        }
+        catch ( ExecutionException | CancellationException e )
+        {
+            // Expected
+        }
+    }
+
+
+    @Test
+    public void testCompletableFutureCancelledWithCause() throws Exception
+    {
+        SearchFuture future = new SearchFuture( null, 1 );
+        CompletableFuture<Response> completableFuture = future.toCompletableFuture();
+        LdapConnectionTimeOutException cause = new LdapConnectionTimeOutException( "timeout" );
+
+        future.setCause( cause );
+        future.cancel();
+
+        try
+        {
+            completableFuture.get();
+            fail();
+        }
+        catch ( ExecutionException ee )
+        {
+            assertSame( cause, ee.getCause() );
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the LatencyHistogram.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LatencyHistogramTest
+{
+    @Test
+    public void testEmpty()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals( 0L, histogram.getCount() );
+        assertEquals( 0L, histogram.getMax() );
+        assertEquals( 0d, histogram.getMean(), 0d );
+        assertEquals( 0L, histogram.getValueAtPercentile( 99d ) );
+    }
+
+
+    @Test
+    public void testPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        for ( long value = 1L; value <= 1000L; value++ )
+        {
+            histogram.record( value * 1000L );
+        }
+
+        assertEquals( 1000L, histogram.getCount() );
+        assertEquals( 1000000L, histogram.getMax() );
+        assertEquals( 500500d, histogram.getMean(), 0.001d );
+
+        // The values are bounded by the bucket precision, 1/16
+        long p50 = histogram.getValueAtPercentile( 50d );
+        long p99 = histogram.getValueAtPercentile( 99d );
+
+        assertTrue( ( p50 >= 500000L ) && ( p50 <= 500000L * 17L / 16L ) );
+        assertTrue( ( p99 >= 990000L ) && ( p99 <= 1000000L ) );
+        assertEquals( 1000000L, histogram.getValueAtPercentile( 100d ) );
+        assertTrue( histogram.getValueAtPercentile( 0d ) <= 1000L * 17L / 16L );
+
+        // Small and huge values
+        histogram.record( -5L );
+        histogram.record( 3L );
+        histogram.record( Long.MAX_VALUE );
+
+        assertEquals( 0L, histogram.getValueAtPercentile( 0d ) );
+        assertEquals( Long.MAX_VALUE, histogram.getValueAtPercentile( 100d ) );
+
+        histogram.reset();
+
+        assertEquals( 0L, histogram.getCount() );
+        assertEquals( 0L, histogram.getValueAtPercentile( 50d ) );
+    }
+
+
+    @Test
+    public void testConcurrentRecording() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        CountDownLatch start = new CountDownLatch( 1 );
+        List<Thread> threads = new ArrayList<>();
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            Thread thread = new Thread( () ->
+            {
+                try
+                {
+                    start.await();
+                }
+                catch ( InterruptedException ie )
+                {
+                    return;
+                }
+
+                for ( long value = 0L; value < 10000L; value++ )
+                {
+                    histogram.record( value );
+                }
+            } );
+
+            thread.start();
+            threads.add( thread );
+        }
+
+        start.countDown();
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertEquals( 40000L, histogram.getCount() );
+        assertEquals( 9999L, histogram.getMax() );
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.metrics;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.directory.api.ldap.model.message.MessageTypeEnum;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.junit.Test;
+
+
+/**
+ * Tests the LdapConnectionMetrics.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapConnectionMetricsTest
+{
+    @Test
+    public void testRecording()
+    {
+        LdapConnectionMetrics metrics = new LdapConnectionMetrics();
+
+        metrics.requestSent( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.requestSent( MessageTypeEnum.SEARCH_REQUEST );
+        metrics.requestSent( MessageTypeEnum.ADD_REQUEST );
+        metrics.requestSent( MessageTypeEnum.MODIFY_REQUEST );
+        assertEquals( 4L, metrics.getInFlight() );
+
+        metrics.responseReceived( MessageTypeEnum.SEARCH_RESULT_ENTRY );
+        metrics.responseReceived( MessageTypeEnum.SEARCH_RESULT_DONE );
+        metrics.requestCompleted( MessageTypeEnum.SEARCH_REQUEST, ResultCodeEnum.SUCCESS,
+            TimeUnit.MILLISECONDS.toNanos( 2L ) );
+        metrics.responseReceived( MessageTypeEnum.ADD_RESPONSE );
+        metrics.requestCompleted( MessageTypeEnum.ADD_REQUEST, ResultCodeEnum.ENTRY_ALREADY_EXISTS,
+            TimeUnit.MILLISECONDS.toNanos( 1L ) );
+
+        // A request timing out is abandoned
+        metrics.requestExpired();
+        metrics.requestAbandoned();
+
+        metrics.bytesWritten( 100 );
+        metrics.bytesRead( 250 );
+        metrics.connectionBorrowed( TimeUnit.MICROSECONDS.toNanos( 10L ) );
+
+        assertEquals( 4L, metrics.getRequestCount() );
+        assertEquals( 2L, metrics.getRequestCount( "SEARCH_REQUEST" ) );
+        assertEquals( 1L, metrics.getInFlight() );
+        assertEquals( 1L, metrics.getErrorCount() );
+        assertEquals( 1L, metrics.getTimeoutCount() );
+        assertEquals( 3L, metrics.getPdusReceived() );
+        assertEquals( 100L, metrics.getBytesWritten() );
+        assertEquals( 250L, metrics.getBytesRead() );
+        assertEquals( 1L, metrics.getBorrowCount() );
+        assertEquals( 10L, metrics.getBorrowWait99thPercentile() );
+        assertArrayEquals( new String[]
+            { "ADD_REQUEST", "MODIFY_REQUEST", "SEARCH_REQUEST" }, metrics.getOperations() );
+
+        long p99 = metrics.getLatencyAtPercentile( "SEARCH_REQUEST", 99d );
+        assertTrue( ( p99 >= 2000L ) && ( p99 <= 2000L * 17L / 16L ) );
+        assertEquals( 1000d, metrics.getMeanLatency( "ADD_REQUEST" ), 0.001d );
+        assertEquals( 1L, metrics.getLatencyHistogram( MessageTypeEnum.ADD_REQUEST ).getCount() );
+        assertNull( metrics.getLatencyHistogram( MessageTypeEnum.UNBIND_REQUEST ) );
+
+        metrics.reset();
+
+        assertEquals( 0L, metrics.getRequestCount() );
+        assertEquals( 0L, metrics.getBytesRead() );
+        assertEquals( 0, metrics.getOperations().length );
+
+        // The requests in flight are still pending
+        assertEquals( 1L, metrics.getInFlight() );
+    }
+
+
+    @Test( expected = IllegalArgumentException.class )
+    public void testUnknownOperation()
+    {
+        new LdapConnectionMetrics().getRequestCount( "UNBIND_REQUEST" );
+    }
+
+
+    @Test
+    public void testMBean() throws Exception
+    {
+        LdapConnectionMetrics metrics = new LdapConnectionMetrics();
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.registerMBean( "org.apache.directory.ldap.client:type=LdapConnectionMetrics,name=test" );
+
+        try
+        {
+            metrics.requestSent( MessageTypeEnum.BIND_REQUEST );
+
+            assertTrue( mbeanServer.isRegistered( name ) );
+            assertEquals( 1L, mbeanServer.getAttribute( name, "RequestCount" ) );
+            assertEquals( 1L, mbeanServer.getAttribute( name, "InFlight" ) );
+            assertEquals( 1L, mbeanServer.invoke( name, "getRequestCount", new Object[]
+                { "BIND_REQUEST" }, new String[]
+                { String.class.getName() } ) );
+        }
+        finally
+        {
+            metrics.unregisterMBean();
+        }
+
+        assertFalse( mbeanServer.isRegistered( name ) );
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.directory.api.asn1.ber.tlv.TLV;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Value;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.message.AddRequest;
 import org.apache.directory.api.util.Strings;
@@ -87,11 +88,12 @@ public class AddAttributeValue extends GrammarAction<LdapMessageContainer<AddReq
                         LOG.debug( I18n.msg( I18n.MSG_05112_ADDING_VALUE, Strings.dumpBytes( ( byte[] ) value ) ) );
                     }
 
-                    currentAttribute.add( ( byte[] ) value );
+                    // The decoded byte[] is not shared, no need to copy it again
+                    currentAttribute.add( Value.wrap( ( byte[] ) value ) );
                 }
                 else
                 {
-                    value = Strings.utf8ToString( tlv.getValue().getData() );
+                    value = Strings.utf8ToString( tlv.getValue().getDataBuffer() );
 
                     if ( LOG.isDebugEnabled() )
                     {
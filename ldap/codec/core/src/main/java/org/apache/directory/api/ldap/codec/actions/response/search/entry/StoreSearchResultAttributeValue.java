@@ -25,6 +25,7 @@ import org.apache.directory.api.asn1.ber.tlv.TLV;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.Value;
 import org.apache.directory.api.ldap.model.exception.LdapException;
 import org.apache.directory.api.ldap.model.message.SearchResultEntry;
 import org.apache.directory.api.util.Strings;
@@ -82,8 +83,9 @@ public class StoreSearchResultAttributeValue extends GrammarAction<LdapMessageCo
             {
                 if ( container.isBinary( container.getCurrentAttribute().getId() ) )
                 {
+                    // The decoded byte[] is not shared, no need to copy it again
                     byte[] value = tlv.getValue().getData();
-                    currentAttribute.add( value );
+                    currentAttribute.add( Value.wrap( value ) );
 
                     if ( LOG.isDebugEnabled() )
                     {
@@ -92,7 +94,7 @@ public class StoreSearchResultAttributeValue extends GrammarAction<LdapMessageCo
                 }
                 else
                 {
-                    String value = Strings.utf8ToString( tlv.getValue().getData() );
+                    String value = Strings.utf8ToString( tlv.getValue().getDataBuffer() );
                     currentAttribute.add( value );
 
                     if ( LOG.isDebugEnabled() )
@@ -0,0 +1,1257 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.api;
+
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.directory.api.asn1.ber.tlv.UniversalTag;
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * An Entry decoded from a SearchResultEntry, which keeps the raw BER encoded
+ * PartialAttributeList and only creates the Attributes when they are accessed. Getting,
+ * modifying or checking an attribute only materializes this attribute, any operation
+ * involving all the attributes (iterating, comparing, cloning, serializing...) materializes
+ * all of them.
+ * <br>
+ * When a SchemaManager is applied to this entry, the materialized attributes are schema
+ * aware, the values being normalized when the attribute is created. The attribute types
+ * are checked when the SchemaManager is applied, but a value which can't be normalized
+ * is only detected when its attribute is materialized : the method accessing it then
+ * throws an IllegalStateException wrapping the LdapException, where creating a schema
+ * aware DefaultEntry would have failed.
+ * <br>
+ * The methods are synchronized, as the read accessors modify this entry when they
+ * materialize an attribute : it can be read by many threads, as a DefaultEntry can. Like
+ * the DefaultEntry, it's not safe to modify it while it's iterated, or while its
+ * attributes are read.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class LazyEntry implements Entry
+{
+    /** Used for serialization */
+    private static final long serialVersionUID = 1L;
+
+    /** The SEQUENCE tag */
+    private static final int SEQUENCE_TAG = UniversalTag.SEQUENCE.getValue();
+
+    /** The SET tag */
+    private static final int SET_TAG = UniversalTag.SET.getValue();
+
+    /** The OCTET STRING tag */
+    private static final int OCTET_STRING_TAG = UniversalTag.OCTET_STRING.getValue();
+
+    /** The entry containing the materialized attributes */
+    private DefaultEntry entry;
+
+    /** The encoded PartialAttributeList content */
+    private final byte[] encoded;
+
+    /** The position of the not yet materialized attributes, per attribute ID (or OID, when schema aware) */
+    private Map<String, int[]> pending;
+
+    /** The detector used to know which values are binary */
+    private final transient BinaryAttributeDetector binaryAttributeDetector;
+
+    /** The SchemaManager, if any */
+    private transient SchemaManager schemaManager;
+
+
+    /**
+     * Creates a new LazyEntry instance
+     */
+    private LazyEntry( Dn dn, byte[] encoded, Map<String, int[]> pending,
+        BinaryAttributeDetector binaryAttributeDetector )
+    {
+        this.entry = new DefaultEntry( dn );
+        this.encoded = encoded;
+        this.pending = pending;
+        this.binaryAttributeDetector = binaryAttributeDetector;
+    }
+
+
+    /**
+     * Creates a LazyEntry from an encoded PartialAttributeList. Only the attributes
+     * types are decoded, and the structure of the list is checked.
+     *
+     * @param dn The entry's Dn
+     * @param encoded The content of the PartialAttributeList, without its SEQUENCE header
+     * @param binaryAttributeDetector The detector used to know which values are binary
+     * @return The new LazyEntry, or <code>null</code> if the PartialAttributeList is invalid
+     */
+    public static LazyEntry create( Dn dn, byte[] encoded, BinaryAttributeDetector binaryAttributeDetector )
+    {
+        Map<String, int[]> pending = new HashMap<>();
+        int[] pos = new int[1];
+        int end = encoded.length;
+
+        while ( pos[0] < end )
+        {
+            int start = pos[0];
+
+            // The PartialAttribute SEQUENCE
+            if ( ( encoded[pos[0]++] & 0xFF ) != SEQUENCE_TAG )
+            {
+                return null;
+            }
+
+            int attributeLength = readLength( encoded, pos, end );
+
+            if ( attributeLength <= 0 )
+            {
+                return null;
+            }
+
+            int attributeEnd = pos[0] + attributeLength;
+
+            // The type, which can't be empty
+            if ( ( encoded[pos[0]++] & 0xFF ) != OCTET_STRING_TAG )
+            {
+                return null;
+            }
+
+            int typeLength = readLength( encoded, pos, attributeEnd );
+
+            if ( typeLength <= 0 )
+            {
+                return null;
+            }
+
+            String id = Strings.trim( Strings.toLowerCaseAscii( Strings.utf8ToString( encoded, pos[0], typeLength ) ) );
+            pos[0] += typeLength;
+
+            if ( Strings.isEmpty( id ) )
+            {
+                return null;
+            }
+
+            // The vals SET, which contains only OCTET STRINGs
+            if ( ( pos[0] >= attributeEnd ) || ( ( encoded[pos[0]++] & 0xFF ) != SET_TAG ) )
+            {
+                return null;
+            }
+
+            int valsLength = readLength( encoded, pos, attributeEnd );
+
+            if ( ( valsLength < 0 ) || ( pos[0] + valsLength != attributeEnd ) )
+            {
+                return null;
+            }
+
+            while ( pos[0] < attributeEnd )
+            {
+                if ( ( encoded[pos[0]++] & 0xFF ) != OCTET_STRING_TAG )
+                {
+                    return null;
+                }
+
+                int valueLength = readLength( encoded, pos, attributeEnd );
+
+                if ( valueLength < 0 )
+                {
+                    return null;
+                }
+
+                pos[0] += valueLength;
+            }
+
+            // As for the DefaultEntry, a duplicated attribute replaces the previous one
+            pending.put( id, new int[]
+                { start } );
+        }
+
+        return new LazyEntry( dn, encoded, pending, binaryAttributeDetector );
+    }
+
+
+    /**
+     * Reads a definite length, up to 4 bytes long
+     *
+     * @return The length, or -1 if it's not supported or if it goes beyond the given end
+     */
+    private static int readLength( byte[] encoded, int[] pos, int end )
+    {
+        if ( pos[0] >= end )
+        {
+            return -1;
+        }
+
+        int length = encoded[pos[0]++] & 0xFF;
+
+        if ( length > 0x7F )
+        {
+            int nbBytes = length & 0x7F;
+
+            if ( ( nbBytes == 0 ) || ( nbBytes > 4 ) || ( pos[0] + nbBytes > end ) )
+            {
+                return -1;
+            }
+
+            length = 0;
+
+            for ( int i = 0; i < nbBytes; i++ )
+            {
+                length = ( length << 8 ) | ( encoded[pos[0]++] & 0xFF );
+            }
+
+            if ( length < 0 )
+            {
+                return -1;
+            }
+        }
+
+        if ( length > end - pos[0] )
+        {
+            return -1;
+        }
+
+        return length;
+    }
+
+
+    /**
+     * Makes this entry schema aware. The attributes types are checked against the
+     * schema, but the values will only be normalized when their attribute is materialized.
+     *
+     * @param schemaManager The SchemaManager to use
+     * @throws LdapException If one of the attributes is not known by the schema
+     */
+    public synchronized void applySchemaManager( SchemaManager schemaManager ) throws LdapException
+    {
+        Map<String, int[]> schemaPending = new HashMap<>( pending.size() );
+
+        for ( Map.Entry<String, int[]> element : pending.entrySet() )
+        {
+            String oid = schemaManager.lookupAttributeTypeRegistry( element.getKey() ).getOid();
+
+            // Two aliases of the same attribute type are merged
+            int[] previous = schemaPending.get( oid );
+
+            if ( previous == null )
+            {
+                schemaPending.put( oid, element.getValue() );
+            }
+            else
+            {
+                int[] merged = new int[previous.length + element.getValue().length];
+                System.arraycopy( previous, 0, merged, 0, previous.length );
+                System.arraycopy( element.getValue(), 0, merged, previous.length, element.getValue().length );
+                schemaPending.put( oid, merged );
+            }
+        }
+
+        this.entry = new DefaultEntry( schemaManager, entry );
+        this.schemaManager = schemaManager;
+        this.pending = schemaPending;
+    }
+
+
+    /**
+     * @return The number of attributes which haven't been materialized yet
+     */
+    public synchronized int getPendingCount()
+    {
+        return pending.size();
+    }
+
+
+    /**
+     * Materializes the attribute stored with the given key, if it hasn't been done yet
+     */
+    private void materializeKey( String key )
+    {
+        if ( key == null )
+        {
+            return;
+        }
+
+        int[] positions = pending.get( key );
+
+        if ( positions == null )
+        {
+            return;
+        }
+
+        try
+        {
+            // All the values are decoded and normalized before the entry is modified : if one
+            // of them is invalid, the attribute stays pending and the next access fails again
+            Attribute[] attributes = new Attribute[positions.length];
+
+            for ( int i = 0; i < positions.length; i++ )
+            {
+                Attribute attribute = decodeAttribute( positions[i] );
+
+                if ( schemaManager == null )
+                {
+                    attributes[i] = attribute;
+                }
+                else
+                {
+                    AttributeType attributeType = schemaManager.lookupAttributeTypeRegistry( key );
+                    attributes[i] = new DefaultAttribute( attributeType, attribute );
+                }
+            }
+
+            if ( schemaManager == null )
+            {
+                entry.put( attributes );
+            }
+            else
+            {
+                entry.add( attributes );
+            }
+
+            pending.remove( key );
+        }
+        catch ( LdapException le )
+        {
+            throw new IllegalStateException( I18n.msg( I18n.MSG_13200_CANT_STORE_ATTRIBUTE, key ), le );
+        }
+    }
+
+
+    /**
+     * Decodes the attribute stored at the given position. Its structure has already been checked.
+     */
+    private Attribute decodeAttribute( int position ) throws LdapException
+    {
+        int[] pos = new int[]
+            { position + 1 };
+        int end = encoded.length;
+
+        int attributeLength = readLength( encoded, pos, end );
+        int attributeEnd = pos[0] + attributeLength;
+
+        // The type
+        pos[0]++;
+        int typeLength = readLength( encoded, pos, attributeEnd );
+        byte[] type = new byte[typeLength];
+        System.arraycopy( encoded, pos[0], type, 0, typeLength );
+        pos[0] += typeLength;
+
+        Attribute attribute = new DefaultAttribute( type );
+        boolean isBinary = binaryAttributeDetector.isBinary( attribute.getId() );
+
+        // The values
+        pos[0]++;
+        readLength( encoded, pos, attributeEnd );
+
+        while ( pos[0] < attributeEnd )
+        {
+            pos[0]++;
+            int valueLength = readLength( encoded, pos, attributeEnd );
+
+            if ( valueLength == 0 )
+            {
+                attribute.add( "" );
+            }
+            else if ( isBinary )
+            {
+                byte[] value = new byte[valueLength];
+                System.arraycopy( encoded, pos[0], value, 0, valueLength );
+                attribute.add( Value.wrap( value ) );
+            }
+            else
+            {
+                attribute.add( Strings.utf8ToString( encoded, pos[0], valueLength ) );
+            }
+
+            pos[0] += valueLength;
+        }
+
+        return attribute;
+    }
+
+
+    /**
+     * Gets the key of the pending attributes index for the given attribute ID
+     *
+     * @return The key, or null if the ID is not known by the schema
+     */
+    private String getPendingKey( String upId )
+    {
+        String id = Strings.trim( Strings.toLowerCaseAscii( upId ) );
+
+        if ( schemaManager == null )
+        {
+            return id;
+        }
+
+        AttributeType attributeType = schemaManager.getAttributeType( id );
+
+        return attributeType == null ? null : attributeType.getOid();
+    }
+
+
+    /**
+     * Tells if the attribute with the given ID is present and hasn't been materialized yet
+     */
+    private boolean isPending( String upId )
+    {
+        if ( pending.isEmpty() || ( upId == null ) )
+        {
+            return false;
+        }
+
+        String key = getPendingKey( upId );
+
+        return ( key != null ) && pending.containsKey( key );
+    }
+
+
+    /**
+     * Materializes the attribute with the given ID, if it hasn't been done yet
+     */
+    private void materialize( String upId )
+    {
+        if ( pending.isEmpty() || ( upId == null ) )
+        {
+            return;
+        }
+
+        materializeKey( getPendingKey( upId ) );
+    }
+
+
+    /**
+     * Materializes the given attribute, if it hasn't been done yet
+     */
+    private void materialize( AttributeType attributeType )
+    {
+        if ( pending.isEmpty() || ( attributeType == null ) )
+        {
+            return;
+        }
+
+        if ( schemaManager == null )
+        {
+            // The attributes are not stored by OID
+            materializeAll();
+        }
+        else
+        {
+            materializeKey( attributeType.getOid() );
+        }
+    }
+
+
+    /**
+     * Materializes the given attributes, if it hasn't been done yet
+     */
+    private void materialize( Attribute... attributes )
+    {
+        if ( attributes == null )
+        {
+            return;
+        }
+
+        for ( Attribute attribute : attributes )
+        {
+            if ( attribute != null )
+            {
+                if ( attribute.getAttributeType() != null )
+                {
+                    materialize( attribute.getAttributeType() );
+                }
+                else
+                {
+                    materialize( attribute.getUpId() );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Materializes all the attributes which haven't been materialized yet
+     */
+    private void materializeAll()
+    {
+        while ( !pending.isEmpty() )
+        {
+            materializeKey( pending.keySet().iterator().next() );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void clear()
+    {
+        pending.clear();
+        entry.clear();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry clone()
+    {
+        materializeAll();
+
+        return entry.clone();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry shallowClone()
+    {
+        materializeAll();
+
+        return entry.shallowClone();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Dn getDn()
+    {
+        return entry.getDn();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean hasObjectClass( String... objectClasses )
+    {
+        materialize( SchemaConstants.OBJECT_CLASS_AT );
+
+        return entry.hasObjectClass( objectClasses );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean hasObjectClass( Attribute... objectClasses )
+    {
+        materialize( SchemaConstants.OBJECT_CLASS_AT );
+
+        return entry.hasObjectClass( objectClasses );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute get( String alias )
+    {
+        materialize( alias );
+
+        return entry.get( alias );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute get( AttributeType attributeType )
+    {
+        materialize( attributeType );
+
+        return entry.get( attributeType );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Collection<Attribute> getAttributes()
+    {
+        materializeAll();
+
+        return entry.getAttributes();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void setDn( Dn dn )
+    {
+        entry.setDn( dn );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void setDn( String dn ) throws LdapInvalidDnException
+    {
+        entry.setDn( dn );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Iterator<Attribute> iterator()
+    {
+        materializeAll();
+
+        return entry.iterator();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry add( Attribute... attributes ) throws LdapException
+    {
+        materialize( attributes );
+        entry.add( attributes );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry add( AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        materialize( attributeType );
+        entry.add( attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry add( AttributeType attributeType, String... values ) throws LdapException
+    {
+        materialize( attributeType );
+        entry.add( attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry add( AttributeType attributeType, Value... values ) throws LdapException
+    {
+        materialize( attributeType );
+        entry.add( attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry add( String upId, AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        materialize( attributeType );
+        entry.add( upId, attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry add( String upId, AttributeType attributeType, String... values ) throws LdapException
+    {
+        materialize( attributeType );
+        entry.add( upId, attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry add( String upId, AttributeType attributeType, Value... values ) throws LdapException
+    {
+        materialize( attributeType );
+        entry.add( upId, attributeType, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry add( String upId, String... values ) throws LdapException
+    {
+        materialize( upId );
+        entry.add( upId, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry add( String upId, byte[]... values ) throws LdapException
+    {
+        materialize( upId );
+        entry.add( upId, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Entry add( String upId, Value... values ) throws LdapException
+    {
+        materialize( upId );
+        entry.add( upId, values );
+
+        return this;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized List<Attribute> put( Attribute... attributes ) throws LdapException
+    {
+        materialize( attributes );
+
+        return entry.put( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute put( AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        materialize( attributeType );
+
+        return entry.put( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute put( AttributeType attributeType, String... values ) throws LdapException
+    {
+        materialize( attributeType );
+
+        return entry.put( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute put( AttributeType attributeType, Value... values ) throws LdapException
+    {
+        materialize( attributeType );
+
+        return entry.put( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute put( String upId, AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        materialize( attributeType );
+
+        return entry.put( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute put( String upId, AttributeType attributeType, String... values ) throws LdapException
+    {
+        materialize( attributeType );
+
+        return entry.put( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute put( String upId, AttributeType attributeType, Value... values ) throws LdapException
+    {
+        materialize( attributeType );
+
+        return entry.put( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute put( String upId, byte[]... values )
+    {
+        materialize( upId );
+
+        return entry.put( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute put( String upId, String... values )
+    {
+        materialize( upId );
+
+        return entry.put( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Attribute put( String upId, Value... values )
+    {
+        materialize( upId );
+
+        return entry.put( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean remove( AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        materialize( attributeType );
+
+        return entry.remove( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean remove( AttributeType attributeType, String... values ) throws LdapException
+    {
+        materialize( attributeType );
+
+        return entry.remove( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean remove( AttributeType attributeType, Value... values ) throws LdapException
+    {
+        materialize( attributeType );
+
+        return entry.remove( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized List<Attribute> remove( Attribute... attributes ) throws LdapException
+    {
+        materialize( attributes );
+
+        return entry.remove( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void removeAttributes( AttributeType... attributes )
+    {
+        if ( attributes != null )
+        {
+            for ( AttributeType attributeType : attributes )
+            {
+                materialize( attributeType );
+            }
+        }
+
+        entry.removeAttributes( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean remove( String upId, byte[]... values ) throws LdapException
+    {
+        materialize( upId );
+
+        return entry.remove( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean remove( String upId, String... values ) throws LdapException
+    {
+        materialize( upId );
+
+        return entry.remove( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean remove( String upId, Value... values ) throws LdapException
+    {
+        materialize( upId );
+
+        return entry.remove( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void removeAttributes( String... attributes )
+    {
+        if ( attributes != null )
+        {
+            for ( String upId : attributes )
+            {
+                materialize( upId );
+            }
+        }
+
+        entry.removeAttributes( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean contains( AttributeType attributeType, byte[]... values )
+    {
+        materialize( attributeType );
+
+        return entry.contains( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean contains( AttributeType attributeType, String... values )
+    {
+        materialize( attributeType );
+
+        return entry.contains( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean contains( AttributeType attributeType, Value... values )
+    {
+        materialize( attributeType );
+
+        return entry.contains( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean containsAttribute( AttributeType attributeType )
+    {
+        // The pending attributes are indexed the way the DefaultEntry stores them, no need to decode them
+        if ( ( attributeType != null ) && pending.containsKey( attributeType.getOid() ) )
+        {
+            return true;
+        }
+
+        return entry.containsAttribute( attributeType );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean contains( Attribute... attributes )
+    {
+        materialize( attributes );
+
+        return entry.contains( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean contains( String upId, byte[]... values )
+    {
+        materialize( upId );
+
+        return entry.contains( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean contains( String upId, String... values )
+    {
+        materialize( upId );
+
+        return entry.contains( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean contains( String upId, Value... values )
+    {
+        materialize( upId );
+
+        return entry.contains( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean containsAttribute( String... attributes )
+    {
+        if ( pending.isEmpty() || ( attributes == null ) )
+        {
+            return entry.containsAttribute( attributes );
+        }
+
+        // The pending attributes are found in the index built when the entry was read, without decoding them
+        for ( String upId : attributes )
+        {
+            if ( !isPending( upId ) && !entry.containsAttribute( upId ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int size()
+    {
+        // The pending attributes are never stored in the entry
+        return entry.size() + pending.size();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean isSchemaAware()
+    {
+        return entry.isSchemaAware();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void writeExternal( ObjectOutput out ) throws IOException
+    {
+        materializeAll();
+        entry.writeExternal( out );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void readExternal( ObjectInput in ) throws IOException, ClassNotFoundException
+    {
+        entry.readExternal( in );
+    }
+
+
+    /**
+     * A LazyEntry is serialized as a DefaultEntry
+     *
+     * @return The DefaultEntry containing all the attributes
+     */
+    protected synchronized Object writeReplace()
+    {
+        materializeAll();
+
+        return entry;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int hashCode()
+    {
+        materializeAll();
+
+        return entry.hashCode();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+
+        // Don't hold the lock while comparing : o may be a LazyEntry, and a concurrent
+        // o.equals( this ) would deadlock. The entry isn't modified once materialized
+        synchronized ( this )
+        {
+            materializeAll();
+        }
+
+        return entry.equals( o );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString()
+    {
+        return toString( "" );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString( String tabs )
+    {
+        materializeAll();
+
+        return entry.toString( tabs );
+    }
+}
@@ -48,6 +48,15 @@ public class LdapDecoder
     /** The maximum PDU size, stored into the LDAPSession's attribute */
     public static final String MAX_PDU_SIZE_ATTR = "LDAP-maxPduSize";
 
+    /** The flag telling if the values should be sliced from the incoming buffers, stored into the LDAPSession's attribute */
+    public static final String SLICED_VALUES_ATTR = "LDAP-slicedValues";
+
+    /** The flag telling if the SearchResultEntry attributes should be decoded lazily, stored into the LDAPSession's attribute */
+    public static final String LAZY_ENTRIES_ATTR = "LDAP-lazyEntries";
+
+    /** The flag telling if the most frequent responses should be decoded in a single pass, stored into the LDAPSession's attribute */
+    public static final String FAST_PATH_ATTR = "LDAP-fastPath";
+
 
     /**
      * Creates an instance of a Ldap Decoder implementation.
@@ -273,6 +273,26 @@ public final class LdapEncoder
      * @throws EncoderException If anything goes wrong.
      */
     public static ByteBuffer encodeMessage( Asn1Buffer buffer, LdapApiService codec, Message message ) throws EncoderException
+    {
+        encodeMessageReverse( buffer, codec, message );
+
+        return buffer.getBytes();
+    }
+
+
+    /**
+     * Encode a message into the given buffer, without extracting the resulting PDU
+     * from it. This is useful when the caller wants to get the PDU without copying
+     * it, using {@link Asn1Buffer#getBuffer()} or the {@link org.apache.directory.api.asn1.util.Asn1Buffer2}
+     * segments.
+     *
+     * @param buffer The Asn1Buffer instance in which we store the result
+     * @param codec The LdapApiService instance
+     * @param message The message to encode
+     * @throws EncoderException If anything goes wrong.
+     */
+    public static void encodeMessageReverse( Asn1Buffer buffer, LdapApiService codec, Message message )
+        throws EncoderException
     {
         int start = buffer.getPos();
 
@@ -295,7 +315,5 @@ public final class LdapEncoder
 
         // The LdapMessage Sequence
         BerValue.encodeSequence( buffer );
-
-        return buffer.getBytes();
     }
 }
@@ -0,0 +1,592 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.api;
+
+
+import java.nio.ByteBuffer;
+
+import org.apache.directory.api.asn1.ber.tlv.TLVStateEnum;
+import org.apache.directory.api.asn1.ber.tlv.UniversalTag;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.message.BindResponseImpl;
+import org.apache.directory.api.ldap.model.message.LdapResult;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.ModifyResponseImpl;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * A straight-line decoder for the most frequent responses a client receives :
+ * SearchResultEntry, SearchResultDone, BindResponse and ModifyResponse. It decodes
+ * a complete PDU in one single pass over the buffer, without going through the
+ * {@link org.apache.directory.api.asn1.ber.Asn1Decoder} state machine.
+ * <br>
+ * It only handles the simplest form of those messages : no controls, no referrals,
+ * no SASL credentials, definite lengths only. Anything else, including a PDU that
+ * is not completely contained in the buffer or an invalid one, is left to the generic
+ * grammar : in this case, the buffer is not modified and <code>null</code> is returned.
+ * The messages produced by this decoder are the same as the ones produced by the
+ * LdapMessageGrammar, except when the container requires lazy entries : the
+ * SearchResultEntry then contains a {@link LazyEntry}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class LdapFastPathDecoder
+{
+    /** The SEQUENCE tag */
+    private static final int SEQUENCE_TAG = UniversalTag.SEQUENCE.getValue();
+
+    /** The SET tag */
+    private static final int SET_TAG = UniversalTag.SET.getValue();
+
+    /** The OCTET STRING tag */
+    private static final int OCTET_STRING_TAG = UniversalTag.OCTET_STRING.getValue();
+
+    /** The INTEGER tag */
+    private static final int INTEGER_TAG = UniversalTag.INTEGER.getValue();
+
+    /** The ENUMERATED tag */
+    private static final int ENUMERATED_TAG = UniversalTag.ENUMERATED.getValue();
+
+    /** The highest result code accepted by the grammar */
+    private static final int MAX_RESULT_CODE = ResultCodeEnum.E_SYNC_REFRESH_REQUIRED.getResultCode();
+
+    /** The buffer being decoded */
+    private final ByteBuffer buffer;
+
+    /** The current position in the buffer */
+    private int pos;
+
+
+    /**
+     * Creates a new LdapFastPathDecoder instance
+     */
+    private LdapFastPathDecoder( ByteBuffer buffer )
+    {
+        this.buffer = buffer;
+        this.pos = buffer.position();
+    }
+
+
+    /**
+     * Decodes the PDU starting at the buffer's current position, if it's one of the
+     * supported responses and if it's completely available. When the PDU has been
+     * decoded, the buffer position is moved after it.
+     *
+     * @param buffer The buffer containing the PDU
+     * @param container The container used to decode the messages. It must not be in
+     * the middle of a PDU decoding, otherwise the fast path is not used.
+     * @return The decoded message, or <code>null</code> if the PDU has to be decoded
+     * by the generic grammar
+     */
+    public static Message decode( ByteBuffer buffer, LdapMessageContainer<? extends Message> container )
+    {
+        if ( ( container.getState() != TLVStateEnum.TAG_STATE_START ) || ( container.getDecodedBytes() != 0 ) )
+        {
+            // We are in the middle of a fragmented PDU
+            return null;
+        }
+
+        LdapFastPathDecoder decoder = new LdapFastPathDecoder( buffer );
+        int start = decoder.pos;
+        int limit = buffer.limit();
+
+        // The LdapMessage SEQUENCE
+        if ( ( limit - start < 2 ) || ( decoder.readByte() != SEQUENCE_TAG ) )
+        {
+            return null;
+        }
+
+        int pduLength = decoder.readLength( limit );
+
+        if ( pduLength <= 0 )
+        {
+            return null;
+        }
+
+        int pduEnd = decoder.pos + pduLength;
+
+        if ( pduEnd - start > container.getMaxPDUSize() )
+        {
+            return null;
+        }
+
+        // The MessageID
+        int messageId = decoder.readInteger( INTEGER_TAG, pduEnd, Integer.MAX_VALUE );
+
+        if ( ( messageId < 0 ) || ( decoder.pos >= pduEnd ) )
+        {
+            return null;
+        }
+
+        // The protocolOp, which must be the last element : no controls
+        int opTag = decoder.readByte();
+        int opLength = decoder.readLength( pduEnd );
+
+        if ( ( opLength < 0 ) || ( decoder.pos + opLength != pduEnd ) )
+        {
+            return null;
+        }
+
+        Message message;
+
+        switch ( opTag )
+        {
+            case LdapCodecConstants.SEARCH_RESULT_ENTRY_TAG:
+                message = decoder.decodeSearchResultEntry( messageId, pduEnd, container );
+                break;
+
+            case LdapCodecConstants.SEARCH_RESULT_DONE_TAG:
+                message = decoder.decodeResultResponse( new SearchResultDoneImpl( messageId ), pduEnd );
+                break;
+
+            case LdapCodecConstants.BIND_RESPONSE_TAG:
+                message = decoder.decodeResultResponse( new BindResponseImpl( messageId ), pduEnd );
+                break;
+
+            case LdapCodecConstants.MODIFY_RESPONSE_TAG:
+                message = decoder.decodeResultResponse( new ModifyResponseImpl( messageId ), pduEnd );
+                break;
+
+            default:
+                return null;
+        }
+
+        if ( ( message == null ) || ( decoder.pos != pduEnd ) )
+        {
+            return null;
+        }
+
+        buffer.position( pduEnd );
+
+        return message;
+    }
+
+
+    /**
+     * Decodes a SearchResultEntry
+     */
+    private SearchResultEntry decodeSearchResultEntry( int messageId, int end,
+        LdapMessageContainer<? extends Message> container )
+    {
+        SearchResultEntry searchResultEntry = new SearchResultEntryImpl( messageId );
+
+        // The objectName
+        Dn objectName = readDn( end );
+
+        if ( objectName == null )
+        {
+            return null;
+        }
+
+        searchResultEntry.setObjectName( objectName );
+
+        // The PartialAttributeList
+        if ( ( pos >= end ) || ( readByte() != SEQUENCE_TAG ) )
+        {
+            return null;
+        }
+
+        int attributesLength = readLength( end );
+
+        if ( ( attributesLength < 0 ) || ( pos + attributesLength != end ) )
+        {
+            return null;
+        }
+
+        if ( container.isLazyEntries() )
+        {
+            // Keep the encoded attributes, they will be decoded when accessed
+            LazyEntry lazyEntry = LazyEntry.create( objectName, readBytes( attributesLength ),
+                container.getBinaryAttributeDetector() );
+
+            if ( lazyEntry == null )
+            {
+                return null;
+            }
+
+            searchResultEntry.setEntry( lazyEntry );
+
+            return searchResultEntry;
+        }
+
+        Entry entry = searchResultEntry.getEntry();
+
+        while ( pos < end )
+        {
+            // The PartialAttribute SEQUENCE
+            if ( readByte() != SEQUENCE_TAG )
+            {
+                return null;
+            }
+
+            int attributeLength = readLength( end );
+
+            if ( attributeLength <= 0 )
+            {
+                return null;
+            }
+
+            int attributeEnd = pos + attributeLength;
+
+            // The type, which can't be empty
+            if ( readByte() != OCTET_STRING_TAG )
+            {
+                return null;
+            }
+
+            int typeLength = readLength( attributeEnd );
+
+            if ( typeLength <= 0 )
+            {
+                return null;
+            }
+
+            Attribute attribute;
+
+            try
+            {
+                attribute = new DefaultAttribute( readBytes( typeLength ) );
+                entry.put( attribute );
+            }
+            catch ( LdapException le )
+            {
+                return null;
+            }
+
+            // The vals SET
+            if ( ( pos >= attributeEnd ) || ( readByte() != SET_TAG ) )
+            {
+                return null;
+            }
+
+            int valsLength = readLength( attributeEnd );
+
+            if ( ( valsLength < 0 ) || ( pos + valsLength != attributeEnd ) )
+            {
+                return null;
+            }
+
+            boolean isBinary = ( valsLength > 0 ) && container.isBinary( attribute.getId() );
+
+            while ( pos < attributeEnd )
+            {
+                if ( readByte() != OCTET_STRING_TAG )
+                {
+                    return null;
+                }
+
+                int valueLength = readLength( attributeEnd );
+
+                if ( valueLength < 0 )
+                {
+                    return null;
+                }
+
+                try
+                {
+                    if ( valueLength == 0 )
+                    {
+                        attribute.add( "" );
+                    }
+                    else if ( isBinary )
+                    {
+                        attribute.add( Value.wrap( readBytes( valueLength ) ) );
+                    }
+                    else
+                    {
+                        attribute.add( readString( valueLength ) );
+                    }
+                }
+                catch ( LdapException le )
+                {
+                    // Can't occur, the attribute is not schema aware
+                    return null;
+                }
+            }
+        }
+
+        return searchResultEntry;
+    }
+
+
+    /**
+     * Decodes a response only containing a LdapResult without referrals
+     */
+    private ResultResponse decodeResultResponse( ResultResponse response, int end )
+    {
+        // The resultCode
+        int resultCodeValue = readInteger( ENUMERATED_TAG, end, MAX_RESULT_CODE );
+
+        if ( resultCodeValue < 0 )
+        {
+            return null;
+        }
+
+        ResultCodeEnum resultCode = ResultCodeEnum.getResultCode( resultCodeValue );
+        LdapResult ldapResult = response.getLdapResult();
+        ldapResult.setResultCode( resultCode );
+
+        // The matchedDN, which is only stored for a few result codes
+        if ( ( pos >= end ) || ( readByte() != OCTET_STRING_TAG ) )
+        {
+            return null;
+        }
+
+        int matchedDnLength = readLength( end );
+
+        if ( matchedDnLength < 0 )
+        {
+            return null;
+        }
+
+        Dn matchedDn = Dn.EMPTY_DN;
+
+        if ( matchedDnLength > 0 )
+        {
+            switch ( resultCode )
+            {
+                case NO_SUCH_OBJECT:
+                case ALIAS_PROBLEM:
+                case INVALID_DN_SYNTAX:
+                case ALIAS_DEREFERENCING_PROBLEM:
+                    try
+                    {
+                        matchedDn = new Dn( readString( matchedDnLength ) );
+                    }
+                    catch ( LdapInvalidDnException lide )
+                    {
+                        return null;
+                    }
+
+                    break;
+
+                default:
+                    // Not allowed for this result code : ignored
+                    pos += matchedDnLength;
+                    break;
+            }
+        }
+
+        ldapResult.setMatchedDn( matchedDn );
+
+        // The diagnosticMessage, which must be the last element
+        if ( ( pos >= end ) || ( readByte() != OCTET_STRING_TAG ) )
+        {
+            return null;
+        }
+
+        int messageLength = readLength( end );
+
+        if ( ( messageLength < 0 ) || ( pos + messageLength != end ) )
+        {
+            return null;
+        }
+
+        ldapResult.setDiagnosticMessage( messageLength == 0 ? "" : readString( messageLength ) );
+
+        return response;
+    }
+
+
+    /**
+     * Reads an OCTET STRING containing a Dn
+     *
+     * @return The Dn, or null if it's invalid
+     */
+    private Dn readDn( int end )
+    {
+        if ( ( pos >= end ) || ( readByte() != OCTET_STRING_TAG ) )
+        {
+            return null;
+        }
+
+        int length = readLength( end );
+
+        if ( length < 0 )
+        {
+            return null;
+        }
+
+        if ( length == 0 )
+        {
+            return Dn.EMPTY_DN;
+        }
+
+        try
+        {
+            return new Dn( readString( length ) );
+        }
+        catch ( LdapInvalidDnException lide )
+        {
+            return null;
+        }
+    }
+
+
+    /**
+     * Reads an INTEGER or an ENUMERATED, which value must be in [0, max]
+     *
+     * @return The value, or -1 if it's invalid
+     */
+    private int readInteger( int tag, int end, int max )
+    {
+        if ( ( pos >= end ) || ( readByte() != tag ) )
+        {
+            return -1;
+        }
+
+        int length = readLength( end );
+
+        if ( ( length <= 0 ) || ( length > 4 ) )
+        {
+            return -1;
+        }
+
+        int value = buffer.get( pos );
+
+        if ( value < 0 )
+        {
+            // Negative values are not allowed
+            return -1;
+        }
+
+        for ( int i = 1; i < length; i++ )
+        {
+            value = ( value << 8 ) | ( buffer.get( pos + i ) & 0xFF );
+        }
+
+        pos += length;
+
+        if ( ( value < 0 ) || ( value > max ) )
+        {
+            return -1;
+        }
+
+        return value;
+    }
+
+
+    /**
+     * Reads a single byte, as an unsigned value
+     */
+    private int readByte()
+    {
+        return buffer.get( pos++ ) & 0xFF;
+    }
+
+
+    /**
+     * Reads a definite length, up to 4 bytes long
+     *
+     * @return The length, or -1 if it's not supported or if it goes beyond the given end
+     */
+    private int readLength( int end )
+    {
+        if ( pos >= end )
+        {
+            return -1;
+        }
+
+        int length = readByte();
+
+        if ( length > 0x7F )
+        {
+            int nbBytes = length & 0x7F;
+
+            // Indefinite lengths and lengths above 2^31 are left to the grammar
+            if ( ( nbBytes == 0 ) || ( nbBytes > 4 ) || ( pos + nbBytes > end ) )
+            {
+                return -1;
+            }
+
+            length = 0;
+
+            for ( int i = 0; i < nbBytes; i++ )
+            {
+                length = ( length << 8 ) | readByte();
+            }
+
+            if ( length < 0 )
+            {
+                return -1;
+            }
+        }
+
+        if ( length > end - pos )
+        {
+            return -1;
+        }
+
+        return length;
+    }
+
+
+    /**
+     * Reads some bytes into a new byte[]
+     */
+    private byte[] readBytes( int length )
+    {
+        byte[] bytes = new byte[length];
+
+        if ( buffer.hasArray() )
+        {
+            System.arraycopy( buffer.array(), buffer.arrayOffset() + pos, bytes, 0, length );
+        }
+        else
+        {
+            ByteBuffer source = buffer.duplicate();
+            source.position( pos );
+            source.get( bytes );
+        }
+
+        pos += length;
+
+        return bytes;
+    }
+
+
+    /**
+     * Reads an UTF-8 String
+     */
+    private String readString( int length )
+    {
+        if ( !buffer.hasArray() )
+        {
+            return Strings.utf8ToString( readBytes( length ) );
+        }
+
+        String value = Strings.utf8ToString( buffer.array(), buffer.arrayOffset() + pos, length );
+        pos += length;
+
+        return value;
+    }
+}
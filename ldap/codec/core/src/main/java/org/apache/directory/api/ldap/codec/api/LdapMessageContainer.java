@@ -54,6 +54,12 @@ public class LdapMessageContainer<E extends Message> extends AbstractContainer
     /** checks if attribute is binary */
     private BinaryAttributeDetector binaryAttributeDetector;
 
+    /** A flag telling if the SearchResultEntry attributes are decoded lazily */
+    private boolean lazyEntries;
+
+    /** A flag telling if the most frequent responses are decoded in a single pass */
+    private boolean fastPath;
+
     /** The message ID */
     private int messageId;
 
@@ -246,6 +252,51 @@ public class LdapMessageContainer<E extends Message> extends AbstractContainer
     }
 
 
+    /**
+     * @return <tt>true</tt> if the SearchResultEntry attributes are decoded lazily
+     */
+    public boolean isLazyEntries()
+    {
+        return lazyEntries;
+    }
+
+
+    /**
+     * Sets whether the SearchResultEntry attributes should be decoded lazily. When set,
+     * the entries decoded in a single pass by the {@link LdapFastPathDecoder} are
+     * {@link LazyEntry} instances, the other ones being decoded as usual.
+     *
+     * @param lazyEntries <tt>true</tt> to decode the attributes lazily
+     */
+    public void setLazyEntries( boolean lazyEntries )
+    {
+        this.lazyEntries = lazyEntries;
+    }
+
+
+    /**
+     * @return <tt>true</tt> if the most frequent responses are decoded in a single pass
+     */
+    public boolean isFastPath()
+    {
+        return fastPath;
+    }
+
+
+    /**
+     * Sets whether the complete PDUs should first be given to the {@link LdapFastPathDecoder},
+     * which decodes the most frequent responses a client receives in a single pass. It's
+     * only useful on a client session, the requests received by a server being always
+     * decoded by the generic grammar.
+     *
+     * @param fastPath <tt>true</tt> to decode the most frequent responses in a single pass
+     */
+    public void setFastPath( boolean fastPath )
+    {
+        this.fastPath = fastPath;
+    }
+
+
     /**
      * @return the ldapResult
      */
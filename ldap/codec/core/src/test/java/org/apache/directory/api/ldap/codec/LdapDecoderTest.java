@@ -23,6 +23,7 @@ package org.apache.directory.api.ldap.codec;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
@@ -32,6 +33,7 @@ import java.util.List;
 import org.apache.directory.api.asn1.DecoderException;
 import org.apache.directory.api.asn1.EncoderException;
 import org.apache.directory.api.asn1.ber.Asn1Decoder;
+import org.apache.directory.api.asn1.ber.tlv.TLV;
 import org.apache.directory.api.asn1.ber.tlv.TLVStateEnum;
 import org.apache.directory.api.asn1.util.Asn1Buffer;
 import org.apache.directory.api.ldap.codec.api.LdapDecoder;
@@ -236,6 +238,61 @@ public class LdapDecoderTest extends AbstractCodecServiceTest
     }
 
 
+    /**
+     * Test the decoding of two messages in a direct buffer, the TLVs of the first
+     * message being reused by the second one
+     */
+    @Test
+    public void testDecode2MessagesDirectBuffer() throws DecoderException, EncoderException
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+
+        byte[] pdu = new byte[]
+            {
+                0x30, 0x33,                 // LDAPMessage ::=SEQUENCE {
+                  0x02, 0x01, 0x01,         // messageID MessageID
+                  0x60, 0x2E,               // CHOICE { ..., bindRequest BindRequest, ...
+                                            // BindRequest ::= APPLICATION[0] SEQUENCE {
+                    0x02, 0x01, 0x03,       // version INTEGER (1..127),
+                    0x04, 0x1F,             // name LDAPDN,
+                      'u', 'i', 'd', '=', 'a', 'k', 'a', 'r', 'a', 's', 'u', 'l', 'u', ',',
+                      'd', 'c', '=', 'e', 'x', 'a', 'm', 'p', 'l', 'e', ',', 'd', 'c', '=', 'c', 'o', 'm',
+                    ( byte ) 0x80, 0x08,    // authentication
+                                            // AuthenticationChoice
+                                            // AuthenticationChoice ::= CHOICE { simple [0] OCTET STRING,
+                                            // ...
+                      'p', 'a', 's', 's', 'w', 'o', 'r', 'd'
+            };
+
+        ByteBuffer stream = ByteBuffer.allocateDirect( pdu.length * 2 );
+        stream.put( pdu );
+        pdu[4] = 0x02;
+        stream.put( pdu );
+        stream.flip();
+
+        List<Message> result = new ArrayList<Message>();
+
+        decode( stream, container, result );
+
+        assertEquals( 2, result.size() );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            BindRequest bindRequest = ( BindRequest ) ( result.get( i ) );
+
+            assertEquals( i + 1, bindRequest.getMessageId() );
+            assertEquals( "uid=akarasulu,dc=example,dc=com", bindRequest.getName().toString() );
+            assertEquals( "password", Strings.utf8ToString( bindRequest.getCredentials() ) );
+        }
+
+        // The container has been cleaned : the next TLV is a recycled one
+        TLV tlv = container.getNewTlv();
+        container.clean();
+        assertSame( tlv, container.getNewTlv() );
+        assertNull( tlv.getParent() );
+    }
+
+
     /**
      * Test the decoding of a partial PDU
      */
@@ -0,0 +1,228 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.apache.directory.api.asn1.DecoderException;
+import org.apache.directory.api.asn1.EncoderException;
+import org.apache.directory.api.asn1.ber.Asn1Decoder;
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.ldap.codec.api.LdapEncoder;
+import org.apache.directory.api.ldap.codec.api.LdapFastPathDecoder;
+import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.api.ldap.codec.osgi.AbstractCodecServiceTest;
+import org.apache.directory.api.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.message.BindResponse;
+import org.apache.directory.api.ldap.model.message.BindResponseImpl;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.ModifyResponseImpl;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.ResultResponse;
+import org.apache.directory.api.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.mycila.junit.concurrent.Concurrency;
+import com.mycila.junit.concurrent.ConcurrentJunitRunner;
+
+
+/**
+ * Test the fast path decoder, checking that it produces the same messages as the
+ * generic grammar, and that it leaves the unsupported PDUs to the grammar.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@RunWith(ConcurrentJunitRunner.class)
+@Concurrency()
+public class LdapFastPathDecoderTest extends AbstractCodecServiceTest
+{
+    /**
+     * Encode a message
+     */
+    private ByteBuffer encode( Message message ) throws EncoderException
+    {
+        Asn1Buffer buffer = new Asn1Buffer();
+
+        return LdapEncoder.encodeMessage( buffer, codec, message );
+    }
+
+
+    /**
+     * Decode a PDU with the fast path, check that it has been fully consumed
+     * and that the generic grammar produces the same message
+     */
+    private Message decodeAndCompare( ByteBuffer stream ) throws DecoderException
+    {
+        ByteBuffer genericStream = stream.duplicate();
+
+        Message message = LdapFastPathDecoder.decode( stream, new LdapMessageContainer<Message>( codec ) );
+
+        assertNotNull( message );
+        assertEquals( 0, stream.remaining() );
+
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+        Asn1Decoder.decode( genericStream, container );
+
+        assertEquals( container.getMessage(), message );
+
+        return message;
+    }
+
+
+    /**
+     * Test the decoding of a SearchResultEntry, in a heap and in a direct buffer
+     */
+    @Test
+    public void testDecodeSearchResultEntry() throws Exception
+    {
+        SearchResultEntry searchResultEntry = new SearchResultEntryImpl( 12 );
+        searchResultEntry.setEntry( new DefaultEntry( "ou=contacts,dc=iktek,dc=com",
+            "objectClass: top",
+            "objectClass: organizationalUnit",
+            "ou: contacts",
+            "description:",
+            "jpegPhoto", new byte[]
+                { 0x01, 0x02, ( byte ) 0xFF } ) );
+        searchResultEntry.getEntry().put( new DefaultAttribute( "cn" ) );
+
+        ByteBuffer stream = encode( searchResultEntry );
+        ByteBuffer direct = ByteBuffer.allocateDirect( stream.remaining() );
+        direct.put( stream.duplicate() ).flip();
+
+        SearchResultEntry decoded = ( SearchResultEntry ) decodeAndCompare( stream );
+
+        assertEquals( 12, decoded.getMessageId() );
+        assertEquals( "ou=contacts,dc=iktek,dc=com", decoded.getObjectName().getName() );
+        assertEquals( 5, decoded.getEntry().size() );
+        assertTrue( decoded.getEntry().contains( "objectClass", "top", "organizationalUnit" ) );
+        assertEquals( "", decoded.getEntry().get( "description" ).getString() );
+        assertArrayEquals( new byte[]
+            { 0x01, 0x02, ( byte ) 0xFF }, decoded.getEntry().get( "jpegPhoto" ).getBytes() );
+        assertEquals( 0, decoded.getEntry().get( "cn" ).size() );
+
+        assertEquals( decoded, decodeAndCompare( direct ) );
+    }
+
+
+    /**
+     * Test the decoding of the responses only containing a LdapResult
+     */
+    @Test
+    public void testDecodeResultResponses() throws Exception
+    {
+        ResultResponse[] responses = new ResultResponse[]
+            {
+                new SearchResultDoneImpl( 1 ),
+                new BindResponseImpl( 2 ),
+                new ModifyResponseImpl( 3 )
+            };
+
+        for ( ResultResponse response : responses )
+        {
+            response.getLdapResult().setResultCode( ResultCodeEnum.NO_SUCH_OBJECT );
+            response.getLdapResult().setMatchedDn( new Dn( "dc=example,dc=com" ) );
+            response.getLdapResult().setDiagnosticMessage( "Not found" );
+
+            ResultResponse decoded = ( ResultResponse ) decodeAndCompare( encode( response ) );
+
+            assertEquals( response.getMessageId(), decoded.getMessageId() );
+            assertEquals( ResultCodeEnum.NO_SUCH_OBJECT, decoded.getLdapResult().getResultCode() );
+            assertEquals( "dc=example,dc=com", decoded.getLdapResult().getMatchedDn().getName() );
+            assertEquals( "Not found", decoded.getLdapResult().getDiagnosticMessage() );
+        }
+
+        // A matchedDN is ignored when the result code does not allow it
+        BindResponse bindResponse = new BindResponseImpl( 4 );
+        bindResponse.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        bindResponse.getLdapResult().setMatchedDn( new Dn( "dc=example,dc=com" ) );
+
+        BindResponse decoded = ( BindResponse ) decodeAndCompare( encode( bindResponse ) );
+
+        assertEquals( Dn.EMPTY_DN, decoded.getLdapResult().getMatchedDn() );
+    }
+
+
+    /**
+     * Test that the PDUs the fast path can't handle are left untouched
+     */
+    @Test
+    public void testFallback() throws Exception
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+
+        // A response with a control
+        ByteBuffer stream = ByteBuffer.wrap( new byte[]
+            {
+                0x30, 0x2C,                 // LDAPMessage ::=SEQUENCE {
+                  0x02, 0x01, 0x01,         // messageID MessageID
+                  0x65, 0x07,               // CHOICE { ..., searchResDone SearchResultDone, ...
+                    0x0A, 0x01, 0x00,       // resultCode success
+                    0x04, 0x00,             // matchedDN LDAPDN,
+                    0x04, 0x00,             // errorMessage LDAPString,
+                  ( byte ) 0xA0, 0x1E,      // controls
+                    0x30, 0x1C,             // The ManageDsaIT control
+                      0x04, 0x17,           // Oid : 2.16.840.1.113730.3.4.2
+                        '2', '.', '1', '6', '.', '8', '4', '0', '.', '1', '.', '1', '1', '3', '7', '3', '0', '.',
+                        '3', '.', '4', '.', '2',
+                      0x01, 0x01, 0x00      // criticality: false
+            } );
+
+        assertNull( LdapFastPathDecoder.decode( stream, container ) );
+        assertEquals( 0, stream.position() );
+
+        // A response with SASL credentials
+        BindResponse bindResponse = new BindResponseImpl( 2 );
+        bindResponse.getLdapResult().setResultCode( ResultCodeEnum.SASL_BIND_IN_PROGRESS );
+        bindResponse.setServerSaslCreds( new byte[]
+            { 0x01 } );
+        stream = encode( bindResponse );
+
+        assertNull( LdapFastPathDecoder.decode( stream, container ) );
+        assertEquals( 0, stream.position() );
+
+        // A truncated PDU
+        SearchResultDoneImpl done = new SearchResultDoneImpl( 3 );
+        done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        stream = encode( done );
+        stream.limit( stream.limit() - 1 );
+
+        assertNull( LdapFastPathDecoder.decode( stream, container ) );
+        assertEquals( 0, stream.position() );
+
+        // A PDU bigger than the maximum PDU size
+        stream.limit( stream.capacity() );
+        container.setMaxPDUSize( stream.remaining() - 1 );
+
+        assertNull( LdapFastPathDecoder.decode( stream, container ) );
+        assertEquals( 0, stream.position() );
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.search;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.api.asn1.ber.Asn1Decoder;
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.ldap.codec.api.DefaultConfigurableBinaryAttributeDetector;
+import org.apache.directory.api.ldap.codec.api.LazyEntry;
+import org.apache.directory.api.ldap.codec.api.LdapEncoder;
+import org.apache.directory.api.ldap.codec.api.LdapFastPathDecoder;
+import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.api.ldap.codec.osgi.AbstractCodecServiceTest;
+import org.apache.directory.api.ldap.model.entry.Attribute;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.mycila.junit.concurrent.Concurrency;
+import com.mycila.junit.concurrent.ConcurrentJunitRunner;
+
+
+/**
+ * Test the lazy decoding of the SearchResultEntry attributes
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@RunWith(ConcurrentJunitRunner.class)
+@Concurrency()
+public class LazyEntryTest extends AbstractCodecServiceTest
+{
+    /**
+     * Encode a SearchResultEntry
+     */
+    private ByteBuffer encode() throws Exception
+    {
+        SearchResultEntry searchResultEntry = new SearchResultEntryImpl( 1 );
+        searchResultEntry.setEntry( new DefaultEntry( "uid=jdoe,ou=people,dc=example,dc=com",
+            "objectClass: top",
+            "objectClass: person",
+            "uid: jdoe",
+            "cn: John Doe",
+            "sn: Doe",
+            "description:",
+            "jpegPhoto", new byte[]
+                { 0x01, 0x02, ( byte ) 0xFF } ) );
+
+        return LdapEncoder.encodeMessage( new Asn1Buffer(), codec, searchResultEntry );
+    }
+
+
+    /**
+     * Decode a SearchResultEntry with lazy entries
+     */
+    private LazyEntry decodeLazy( ByteBuffer stream )
+    {
+        LdapMessageContainer<Message> container = new LdapMessageContainer<>( codec );
+        container.setLazyEntries( true );
+
+        SearchResultEntry searchResultEntry = ( SearchResultEntry ) LdapFastPathDecoder.decode( stream, container );
+
+        assertEquals( "uid=jdoe,ou=people,dc=example,dc=com", searchResultEntry.getObjectName().getName() );
+        assertTrue( searchResultEntry.getEntry() instanceof LazyEntry );
+
+        return ( LazyEntry ) searchResultEntry.getEntry();
+    }
+
+
+    /**
+     * Test that the attributes are only decoded when accessed
+     */
+    @Test
+    public void testLazyAttributes() throws Exception
+    {
+        LazyEntry entry = decodeLazy( encode() );
+
+        assertEquals( 6, entry.getPendingCount() );
+        assertEquals( 6, entry.size() );
+
+        // Only the accessed attributes are decoded
+        Attribute cn = entry.get( "CN" );
+
+        assertEquals( "cn", cn.getUpId() );
+        assertEquals( "John Doe", cn.getString() );
+        assertEquals( 5, entry.getPendingCount() );
+
+        assertTrue( entry.contains( "sn", "Doe" ) );
+        assertTrue( entry.hasObjectClass( "person" ) );
+        assertEquals( "", entry.get( "description" ).getString() );
+        assertArrayEquals( new byte[]
+            { 0x01, 0x02, ( byte ) 0xFF }, entry.get( "jpegPhoto" ).getBytes() );
+        assertNull( entry.get( "mail" ) );
+        assertEquals( 1, entry.getPendingCount() );
+        assertEquals( 6, entry.size() );
+
+        // Removing a pending attribute
+        entry.removeAttributes( "uid" );
+
+        assertFalse( entry.containsAttribute( "uid" ) );
+        assertEquals( 0, entry.getPendingCount() );
+        assertEquals( 5, entry.size() );
+    }
+
+
+    /**
+     * Test that checking the presence of an attribute does not decode it
+     */
+    @Test
+    public void testContainsAttributeDoesNotDecode() throws Exception
+    {
+        LazyEntry entry = decodeLazy( encode() );
+
+        assertTrue( entry.containsAttribute( " UID " ) );
+        assertTrue( entry.containsAttribute( "cn", "sn", "jpegPhoto" ) );
+        assertFalse( entry.containsAttribute( "cn", "mail" ) );
+        assertFalse( entry.containsAttribute( "mail" ) );
+        assertEquals( 6, entry.getPendingCount() );
+
+        // The materialized attributes are found too
+        entry.get( "cn" );
+        assertTrue( entry.containsAttribute( "cn", "sn" ) );
+        assertEquals( 5, entry.getPendingCount() );
+    }
+
+
+    /**
+     * Test that a lazy entry is equal to the entry decoded by the grammar
+     */
+    @Test
+    public void testLazyEntryEquals() throws Exception
+    {
+        ByteBuffer stream = encode();
+
+        LdapMessageContainer<SearchResultEntry> container = new LdapMessageContainer<>( codec );
+        Asn1Decoder.decode( stream.duplicate(), container );
+        Entry expected = container.getMessage().getEntry();
+
+        LazyEntry entry = decodeLazy( stream );
+
+        assertEquals( expected, entry );
+        assertEquals( 0, entry.getPendingCount() );
+
+        // Iterating on the entry decodes all the attributes
+        entry = decodeLazy( encode() );
+        int count = 0;
+
+        for ( Attribute attribute : entry )
+        {
+            assertEquals( expected.get( attribute.getId() ), attribute );
+            count++;
+        }
+
+        assertEquals( 6, count );
+        assertEquals( 0, entry.getPendingCount() );
+    }
+
+
+    /**
+     * Test that the attributes of a lazy entry can be materialized by concurrent readers
+     */
+    @Test
+    public void testConcurrentReads() throws Exception
+    {
+        ByteBuffer stream = encode();
+        String[] ids = new String[]
+            { "objectClass", "uid", "cn", "sn", "description", "jpegPhoto" };
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            LazyEntry entry = decodeLazy( stream.duplicate() );
+            List<Thread> readers = new ArrayList<>();
+            AtomicInteger found = new AtomicInteger();
+
+            for ( String id : ids )
+            {
+                Thread reader = new Thread( () ->
+                {
+                    if ( entry.containsAttribute( id ) && ( entry.get( id ) != null ) )
+                    {
+                        found.incrementAndGet();
+                    }
+                } );
+
+                readers.add( reader );
+                reader.start();
+            }
+
+            for ( Thread reader : readers )
+            {
+                reader.join();
+            }
+
+            assertEquals( ids.length, found.get() );
+            assertEquals( 0, entry.getPendingCount() );
+            assertEquals( ids.length, entry.size() );
+        }
+    }
+
+
+    /**
+     * Test that an invalid attribute list is rejected
+     */
+    @Test
+    public void testInvalidAttributes() throws Exception
+    {
+        // An attribute without vals
+        assertNull( LazyEntry.create( null, new byte[]
+            { 0x30, 0x04, 0x04, 0x02, 'c', 'n' }, new DefaultConfigurableBinaryAttributeDetector() ) );
+
+        // A truncated value
+        assertNull( LazyEntry.create( null, new byte[]
+            { 0x30, 0x08, 0x04, 0x02, 'c', 'n', 0x31, 0x02, 0x04, 0x01 },
+            new DefaultConfigurableBinaryAttributeDetector() ) );
+    }
+}
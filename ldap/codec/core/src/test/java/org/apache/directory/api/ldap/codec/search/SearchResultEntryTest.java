@@ -126,6 +126,77 @@ public class SearchResultEntryTest extends AbstractCodecServiceTest
     }
 
 
+    /**
+     * Test the decoding of a SearchResultEntry with sliced values, the PDU
+     * being split in two buffers which are reused after each decoding
+     */
+    @Test
+    public void testDecodeSearchResultEntrySlicedSuccess() throws DecoderException, EncoderException, LdapException
+    {
+        byte[] pdu = new byte[]
+            {
+                0x30, 0x4e,                     // LDAPMessage ::=SEQUENCE {
+                  0x02, 0x01, 0x01,             // messageID MessageID
+                  0x64, 0x49,                   // CHOICE { ..., searchResEntry SearchResultEntry,
+                                                // ...
+                                                // SearchResultEntry ::= [APPLICATION 4] SEQUENCE {
+                                                // objectName LDAPDN,
+                    0x04, 0x1b,
+                      'o', 'u', '=', 'c', 'o', 'n', 't', 'a', 'c', 't', 's', ',',
+                      'd', 'c', '=', 'i', 'k', 't', 'e', 'k', ',', 'd', 'c', '=', 'c', 'o', 'm',
+                                                // attributes PartialAttributeList }
+                                                // PartialAttributeList ::= SEQUENCE OF SEQUENCE {
+                    0x30, 0x2a,
+                      0x30, 0x28,
+                        0x04, 0x0b,             // type AttributeDescription,
+                          'o', 'b', 'j', 'e', 'c', 't', 'c', 'l', 'a', 's', 's',
+                        0x31, 0x19,             // vals SET OF AttributeValue }
+                          0x04, 0x03,           // AttributeValue ::= OCTET STRING
+                            't', 'o', 'p',
+                          0x04, 0x12,           // AttributeValue ::= OCTET STRING
+                            'o', 'r', 'g', 'a', 'n', 'i', 'z', 'a', 't', 'i', 'o', 'n', 'a', 'l', 'U', 'n', 'i', 't',
+             };
+
+        LdapMessageContainer<SearchResultEntry> ldapMessageContainer =
+            new LdapMessageContainer<>( codec );
+        ldapMessageContainer.setSlicing( true );
+
+        // Split the PDU in the middle of the last value
+        int split = pdu.length - 5;
+        ByteBuffer stream = ByteBuffer.allocate( pdu.length );
+        stream.put( pdu, 0, split );
+        stream.flip();
+
+        Asn1Decoder.decode( stream, ldapMessageContainer );
+
+        // Reuse the buffer, as a transport would do
+        stream.clear();
+        Arrays.fill( stream.array(), ( byte ) 'x' );
+        stream.put( pdu, split, pdu.length - split );
+        stream.flip();
+
+        Asn1Decoder.decode( stream, ldapMessageContainer );
+
+        SearchResultEntry searchResultEntry = ldapMessageContainer.getMessage();
+
+        assertEquals( 1, searchResultEntry.getMessageId() );
+        assertEquals( "ou=contacts,dc=iktek,dc=com", searchResultEntry.getObjectName().toString() );
+
+        Attribute attribute = searchResultEntry.getEntry().get( "objectclass" );
+
+        assertEquals( 2, attribute.size() );
+        assertTrue( attribute.contains( "top" ) );
+        assertTrue( attribute.contains( "organizationalUnit" ) );
+
+        // Check encode reverse
+        Asn1Buffer buffer = new Asn1Buffer();
+
+        LdapEncoder.encodeMessage( buffer, codec, searchResultEntry );
+
+        assertTrue( Arrays.equals( pdu, buffer.getBytes().array() ) );
+    }
+
+
     /**
      * Test the decoding of a SearchResultEntry
      */
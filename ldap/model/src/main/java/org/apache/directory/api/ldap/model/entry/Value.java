@@ -47,8 +47,10 @@ import org.slf4j.LoggerFactory;
 /**
  * A Class for wrapping attribute values stored into an Entry Attribute, or a AVA.
  * 
- * We keep the value as byte[] unless we need to convert them to a String (if we have
- * a HR Value).
+ * A Value stores a single form of the user provided value : a String if the value is
+ * Human Readable, a byte[] otherwise. The other form is computed when requested. The
+ * normalized String of a HR value is the user provided String itself when the
+ * normalization does not change it, so most of the HR values hold a single String.
  * 
  * The serialized Value will be stored as :
  * 
@@ -84,13 +86,16 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
     /** the User Provided value if it's a String */
     private String upValue;
 
-    /** the prepared representation of the user provided value if it's a String */
+    /** the prepared representation of the user provided value if it's a String. Same instance as upValue when they are equal */
     private String normValue;
 
     /** The computed hashcode. We don't want to compute it each time the hashcode() method is called */
     private volatile int h;
 
-    /** The UTF-8 bytes for this value (we use the UP value) */
+    /**
+     * The user provided value if it's not HR. The UTF-8 bytes of a HR value are computed when needed,
+     * unless they are not valid UTF-8 : the original bytes are then kept, as the String can't give them back
+     */
     private byte[] bytes;
 
     /** Two flags used to tell if the value is HR or not in serialization */
@@ -114,11 +119,6 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
         // We can't normalize the value, we store it as is
         normValue = upValue;
         
-        if ( upValue != null )
-        {
-            bytes = Strings.getBytesUtf8( upValue );
-        }
-        
         hashCode();
     }
     
@@ -130,14 +130,26 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
      */
     public Value( byte[] value )
     {
-        if ( value != null )
+        this( value, true );
+    }
+
+
+    /**
+     * Creates a Value with an initial user provided binary value, copying it or not.
+     *
+     * @param value the binary value to wrap which may be null, or a zero length byte array
+     * @param copy tells if the value has to be copied
+     */
+    private Value( byte[] value, boolean copy )
+    {
+        if ( ( value != null ) && copy )
         {
             bytes = new byte[value.length];
             System.arraycopy( value, 0, bytes, 0, value.length );
         }
         else
         {
-            bytes = null;
+            bytes = value;
         }
         
         isHR = false;
@@ -160,17 +172,21 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
         
         if ( upValue != null )
         {
-            bytes = new byte[upValue.length];
-            System.arraycopy( upValue, 0, bytes, 0, upValue.length );
-
             if ( isHR )
             {
                 this.upValue = Strings.utf8ToString( upValue );
+
+                if ( isLossy( upValue, this.upValue ) )
+                {
+                    bytes = new byte[upValue.length];
+                    System.arraycopy( upValue, 0, bytes, 0, upValue.length );
+                }
+            }
+            else
+            {
+                bytes = new byte[upValue.length];
+                System.arraycopy( upValue, 0, bytes, 0, upValue.length );
             }
-        }
-        else
-        {
-            bytes = null;
         }
         
         if ( ( attributeType != null ) && !attributeType.isRelaxed() )
@@ -180,7 +196,7 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
 
             if ( syntaxChecker != null )
             {
-                if ( !syntaxChecker.isValidSyntax( bytes ) )
+                if ( !syntaxChecker.isValidSyntax( upValue ) )
                 {
                     throw new LdapInvalidAttributeValueException( ResultCodeEnum.INVALID_ATTRIBUTE_SYNTAX, 
                         I18n.err( I18n.ERR_13246_INVALID_VALUE_PER_SYNTAX ) );
@@ -255,15 +271,6 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
         init( attributeType );
         this.upValue = upValue;
         
-        if ( upValue != null )
-        {
-            bytes = Strings.getBytesUtf8( upValue );
-        }
-        else
-        {
-            bytes = null;
-        }
-        
         try
         {
             computeNormValue();
@@ -313,16 +320,7 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
         init( attributeType );
         this.upValue = upValue;
         
-        if ( upValue != null )
-        {
-            bytes = Strings.getBytesUtf8( upValue );
-        }
-        else
-        {
-            bytes = null;
-        }
-        
-        this.normValue = normValue;
+        this.normValue = share( normValue );
         
         if ( !attributeType.isRelaxed() )
         {
@@ -359,7 +357,36 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
         
         if ( isHR )
         {
-            this.upValue = value.upValue;
+            if ( value.isHR )
+            {
+                this.upValue = value.upValue;
+
+                // The original bytes of the value, if they are kept, are never modified
+                bytes = value.bytes;
+            }
+            else if ( value.bytes != null )
+            {
+                this.upValue = Strings.utf8ToString( value.bytes );
+
+                if ( isLossy( value.bytes, this.upValue ) )
+                {
+                    bytes = new byte[value.bytes.length];
+                    System.arraycopy( value.bytes, 0, bytes, 0, value.bytes.length );
+                }
+            }
+        }
+        else if ( value.isHR )
+        {
+            if ( value.upValue != null )
+            {
+                bytes = Strings.getBytesUtf8( value.upValue );
+            }
+        }
+        else if ( value.bytes != null )
+        {
+            // We have to copy the byte[], it would be shared otherwise
+            bytes = new byte[value.bytes.length];
+            System.arraycopy( value.bytes, 0, bytes, 0, value.bytes.length );
         }
 
         try
@@ -386,13 +413,6 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
                 throw new IllegalArgumentException( I18n.err( I18n.ERR_13219_NULL_SYNTAX_CHECKER, normValue ) );
             }
         }
-            
-        // We have to copy the byte[], they are just referenced by suoer.clone()
-        if ( value.bytes != null )
-        {
-            bytes = new byte[value.bytes.length];
-            System.arraycopy( value.bytes, 0, bytes, 0, value.bytes.length );
-        }
 
         hashCode();
     }
@@ -411,6 +431,20 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
     }
     
 
+    /**
+     * Creates a binary Value sharing the given byte[] instead of copying it as the
+     * {@link #Value(byte[])} constructor does. It's used by the decoders, which own the
+     * byte[] they have read : the byte[] must not be modified once the Value is created.
+     *
+     * @param value the binary value to wrap which may be null, or a zero length byte array
+     * @return A binary Value
+     */
+    public static Value wrap( byte[] value )
+    {
+        return new Value( value, false );
+    }
+    
+
     /**
      * Clone a Value
      * 
@@ -567,7 +601,22 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
         }
 
         // Now, normalize the upValue
-        normValue = normalizer.normalize( upValue );
+        normValue = share( normalizer.normalize( upValue ) );
+    }
+    
+    
+    /**
+     * Returns the user provided value if it's equal to a normalized value, so that
+     * a single String is kept when the normalization does not change the value.
+     */
+    private String share( String normalized )
+    {
+        if ( ( normalized != null ) && normalized.equals( upValue ) )
+        {
+            return upValue;
+        }
+        
+        return normalized;
     }
     
     
@@ -582,12 +631,19 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
 
     /**
      * Get the wrapped value as a byte[]. If the original value
-     * is binary, this method will return a copy of the wrapped byte[]
+     * is binary, this method will return a copy of the wrapped byte[]. A HR
+     * value built from bytes which are not valid UTF-8 returns a copy of
+     * these bytes.
      *
      * @return the wrapped value as a byte[]
      */
     public byte[] getBytes()
     {
+        if ( isHR && ( bytes == null ) )
+        {
+            return upValue == null ? null : Strings.getBytesUtf8( upValue );
+        }
+        
         if ( bytes == null )
         {
             return null;
@@ -605,6 +661,34 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
     }
 
 
+    /**
+     * Gets the value as a byte[], without copying it : the bytes of a binary value are
+     * returned as is, and a HR value is encoded in UTF-8. The result must not be modified.
+     *
+     * @return The value as a byte[]
+     */
+    private byte[] getBytesNoCopy()
+    {
+        if ( isHR && ( bytes == null ) )
+        {
+            return upValue == null ? null : Strings.getBytesUtf8( upValue );
+        }
+
+        return bytes;
+    }
+
+
+    /**
+     * Tells if a String decoded from some bytes can't give them back when encoded in
+     * UTF-8, because they are not valid UTF-8.
+     */
+    private static boolean isLossy( byte[] upBytes, String decoded )
+    {
+        // The invalid UTF-8 sequences are decoded as replacement characters
+        return ( decoded.indexOf( '\uFFFD' ) >= 0 ) && !Arrays.equals( upBytes, Strings.getBytesUtf8( decoded ) );
+    }
+
+
     /**
      * Tells if the value is schema aware or not.
      *
@@ -706,6 +790,7 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
     {
         // Compute the length : the isHR flag first, the value and prepared value presence flags
         int length = 1;
+        byte[] upBytes = null;
         byte[] preparedBytes = null;
 
         if ( isHR )
@@ -713,13 +798,22 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
             if ( upValue != null )
             {
                 // The presence flag, the length and the value
-                length += 1 + 4 + bytes.length;
+                upBytes = getBytesNoCopy();
+                length += 1 + 4 + upBytes.length;
             }
 
             if ( normValue != null )
             {
                 // The presence flag, the length and the value
-                preparedBytes = Strings.getBytesUtf8( normValue );
+                if ( ( normValue == upValue ) && ( bytes == null ) )
+                {
+                    preparedBytes = upBytes;
+                }
+                else
+                {
+                    preparedBytes = Strings.getBytesUtf8( normValue );
+                }
+
                 length += 1 + 4 + preparedBytes.length;
             }
         }
@@ -746,10 +840,10 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
             buffer[pos++] = Serialize.TRUE;
 
             // Write the user provided value, if not null
-            if ( bytes != null )
+            if ( upBytes != null )
             {
                 buffer[pos++] = Serialize.TRUE;
-                pos = Serialize.serialize( bytes, buffer, pos );
+                pos = Serialize.serialize( upBytes, buffer, pos );
             }
             else
             {
@@ -849,10 +943,11 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
     
             if ( hasValue )
             {
-                bytes = Serialize.deserializeBytes( buffer, pos );
-                pos += 4 + bytes.length;
+                byte[] upBytes = Serialize.deserializeBytes( buffer, pos );
+                pos += 4 + upBytes.length;
 
-                upValue = Strings.utf8ToString( bytes );
+                upValue = Strings.utf8ToString( upBytes );
+                bytes = isLossy( upBytes, upValue ) ? upBytes : null;
             }
 
             // Read the prepared value, if not null
@@ -863,7 +958,7 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
             {
                 byte[] preparedBytes = Serialize.deserializeBytes( buffer, pos );
                 pos += 4 + preparedBytes.length;
-                normValue = Strings.utf8ToString( preparedBytes );
+                normValue = share( Strings.utf8ToString( preparedBytes ) );
             }
         }
         else
@@ -913,20 +1008,21 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
             if ( in.readBoolean() )
             {
                 int length = in.readInt();
-                bytes = new byte[length];
+                byte[] upBytes = new byte[length];
                 
                 if ( length != 0 )
                 {
-                    in.readFully( bytes );
+                    in.readFully( upBytes );
                 }
     
-                upValue = Strings.utf8ToString( bytes );
+                upValue = Strings.utf8ToString( upBytes );
+                bytes = isLossy( upBytes, upValue ) ? upBytes : null;
             }
     
             // Read the prepared String if any
             if ( in.readBoolean() )
             {
-                normValue = in.readUTF();
+                normValue = share( in.readUTF() );
             }
         }
         else
@@ -964,11 +1060,12 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
             if ( upValue != null )
             {
                 // Write the value
-                out.writeInt( bytes.length );
+                byte[] upBytes = getBytesNoCopy();
+                out.writeInt( upBytes.length );
     
-                if ( bytes.length > 0 )
+                if ( upBytes.length > 0 )
                 {
-                    out.write( bytes );
+                    out.write( upBytes );
                 }
             }
 
@@ -1021,7 +1118,7 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
         }
         
         // Check if both value are null
-        if ( bytes == null )
+        if ( upValue == null )
         {
             if ( other == null )
             {
@@ -1125,9 +1222,9 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
         }
         
         // Check if both value are null
-        if ( bytes == null )
+        if ( isNull() )
         {
-            if ( other.bytes == null )
+            if ( other.isNull() )
             {
                 return 0;
             }
@@ -1136,7 +1233,7 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
                 return -1;
             }
         }
-        else if ( other.bytes == null )
+        else if ( other.isNull() )
         {
             return 1;
         }
@@ -1146,7 +1243,7 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
         // Shortcut when the value are not HR
         if ( !isHR )
         {
-            return Strings.compare( bytes, other.bytes );
+            return Strings.compare( bytes, other.getBytesNoCopy() );
         }
 
         // We have HR values. We may have an attributeType for the base Value
@@ -1294,23 +1391,23 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
         }
         
         // HR values
-        if ( bytes == null )
+        if ( upValue == null )
         {
-            return other.bytes == null;
+            return other.upValue == null;
         }
         
         // Special case
-        if ( other.bytes == null )
+        if ( other.upValue == null )
         {
             return false;
         }
         
         // Not null, but empty. We try to avoid a spurious String Preparation
-        if ( bytes.length == 0 )
+        if ( upValue.isEmpty() )
         {
-            return other.bytes.length == 0;
+            return other.upValue.isEmpty();
         }
-        else if ( other.bytes.length == 0 )
+        else if ( other.upValue.isEmpty() )
         {
             return false;
         }
@@ -1327,10 +1424,10 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
                 // Use the Other value AT
                 equalityMR = other.attributeType.getEquality();
  
-                // We may not have an Equality MR, and in tjis case, we compare the bytes
+                // We may not have an Equality MR, and in tjis case, we compare the user provided values
                 if ( equalityMR == null )
                 {
-                    return Arrays.equals( bytes, other.bytes );
+                    return upValue.equals( other.upValue );
                 }
                 
                 LdapComparator<Object> ldapComparator = equalityMR.getLdapComparator();
@@ -1347,16 +1444,8 @@ public class Value implements Cloneable, Externalizable, Comparable<Value>
             }
             else
             {
-                // Both are null. We will compare the prepared String if we have one, 
-                // or the bytes otherwise.
-                if ( upValue != null )
-                {
-                    return upValue.equals( other.upValue );
-                }
-                else
-                {
-                    return Arrays.equals( bytes, other.bytes );
-                } 
+                // Both are null. We compare the user provided values
+                return upValue.equals( other.upValue );
             }
         }
         else 
@@ -20,21 +20,62 @@
 package org.apache.directory.api.ldap.model.name;
 
 
-import java.io.StringReader;
 import java.util.List;
 
+import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
 import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
 import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.util.Chars;
+import org.apache.directory.api.util.Hex;
+import org.apache.directory.api.util.Position;
+import org.apache.directory.api.util.Strings;
 
 
 /**
- * A Dn parser that is able to parse complex DNs. This is an Antlr based parser.
+ * A Dn parser that is able to parse complex DNs : multi-valued RDNs, quoted,
+ * escaped or hex encoded values. It's a single pass parser covering the RFC 4514
+ * grammar :
+ * <pre>
+ * distinguishedName = [ relativeDistinguishedName *( ( COMMA / SEMI ) relativeDistinguishedName ) ]
+ * relativeDistinguishedName = attributeTypeAndValue *( PLUS attributeTypeAndValue )
+ * attributeTypeAndValue = *SPACE attributeType *SPACE EQUALS *SPACE attributeValue *SPACE
+ * attributeType = descr / [ "oid." ] numericoid
+ * attributeValue = quotestring / hexstring / string
+ * quotestring = DQUOTE *( pair / ( %x01-FFFE - DQUOTE - ESC ) ) DQUOTE
+ * hexstring = SHARP 1*hexpair
+ * string = [ ( leadchar / pair ) [ *( stringchar / pair ) ( trailchar / pair ) ] ]
+ * pair = ESC ( ESC / special / hexpair )
+ * special = DQUOTE / PLUS / COMMA / SEMI / LANGLE / RANGLE / SPACE / SHARP / EQUALS
+ * </pre>
+ * The SEMI separator and the quoted values are accepted for RFC 2253 compatibility.
+ * The unescaped trailing spaces of a string value are not part of the value, but they
+ * are kept in the user provided name.
+ * <br>
+ * The consecutive escaped hex pairs are decoded as UTF-8. The values that contain
+ * no escaped character are extracted from the name without any copy.
  * 
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
 /* No protection*/class ComplexDnParser
 {
+    /** The "oid." prefix an attributeType numericoid may start with */
+    private static final String OID_PREFIX = "oid.";
+
+
+    /**
+     * The value of an AttributeTypeAndValue, as a String or as a byte[]
+     */
+    private static final class AvaValue
+    {
+        /** The String value */
+        private String string;
+
+        /** The binary value, for a hexstring */
+        private byte[] bytes;
+    }
+
 
     /**
      * Parses an Dn.
@@ -48,21 +89,53 @@ import org.apache.directory.api.ldap.model.schema.SchemaManager;
      */
     /* No protection*/String parseDn( SchemaManager schemaManager, String name, List<Rdn> rdns ) throws LdapInvalidDnException
     {
-        AntlrDnParser dnParser = new AntlrDnParser( new AntlrDnLexer( new StringReader( name ) ) );
-
-        try
+        if ( ( name == null ) || ( name.trim().length() == 0 ) )
         {
-            return dnParser.relativeDistinguishedNames( schemaManager, rdns );
+            // We have an empty Dn, just get out of the function.
+            return "";
         }
-        catch ( Exception e )
+
+        Position pos = new Position();
+        pos.start = 0;
+        pos.length = name.length();
+        StringBuilder sb = new StringBuilder( name.length() );
+
+        while ( true )
         {
-            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, e.getMessage(), e );
+            Rdn rdn = new Rdn( schemaManager );
+            parseRdnInternal( schemaManager, name, pos, rdn );
+            sb.append( rdn.getNormName() );
+            rdns.add( rdn );
+
+            if ( !hasMoreChars( pos ) )
+            {
+                // end of line reached
+                break;
+            }
+
+            char c = name.charAt( pos.start++ );
+
+            switch ( c )
+            {
+                case ',':
+                case ';':
+                    // another Rdn to parse
+                    sb.append( ',' );
+                    break;
+
+                default:
+                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13601_EXPECTED_COMMA_SEMI_COLON, c,
+                        pos.start - 1 ) );
+            }
         }
+
+        return sb.toString();
     }
 
 
     /**
-     * Parses an Rdn.
+     * Parses an Rdn. The parsing stops at the first character that can't be part
+     * of the Rdn.
      * 
      * @param schemaManager The SchemaManager
      * @param name the string representation of the relative distinguished name
@@ -72,15 +145,572 @@ import org.apache.directory.api.ldap.model.schema.SchemaManager;
      */
     /* No protection*/void parseRdn( SchemaManager schemaManager, String name, Rdn rdn ) throws LdapInvalidDnException
     {
-        AntlrDnParser dnParser = new AntlrDnParser( new AntlrDnLexer( new StringReader( name ) ) );
+        Position pos = new Position();
+        pos.start = 0;
+        pos.length = name.length();
+
+        parseRdnInternal( schemaManager, name, pos, rdn );
+    }
+
+
+    /**
+     * Parses the AttributeTypeAndValues of a Rdn, and computes its user provided
+     * and normalized names.
+     */
+    private static void parseRdnInternal( SchemaManager schemaManager, String name, Position pos, Rdn rdn )
+        throws LdapInvalidDnException
+    {
+        int rdnStart = pos.start;
+
+        parseAva( schemaManager, name, pos, rdn );
+
+        while ( hasMoreChars( pos ) && ( name.charAt( pos.start ) == '+' ) )
+        {
+            pos.start++;
+            parseAva( schemaManager, name, pos, rdn );
+        }
+
+        rdn.setUpName( name.substring( rdnStart, pos.start ) );
+
+        // The normalized name lists the Avas in the Rdn order
+        StringBuilder sbNormName = new StringBuilder();
+        boolean isFirst = true;
+
+        for ( Ava ava : rdn )
+        {
+            if ( isFirst )
+            {
+                isFirst = false;
+            }
+            else
+            {
+                sbNormName.append( '+' );
+            }
+
+            if ( schemaManager != null )
+            {
+                sbNormName.append( ava.getAttributeType().getOid() );
+            }
+            else
+            {
+                sbNormName.append( ava.getNormType() );
+            }
+
+            sbNormName.append( '=' );
+
+            if ( ( ava.getValue() != null ) && ( ava.getValue().getNormalized() != null ) )
+            {
+                sbNormName.append( ava.getValue().getNormalized() );
+            }
+        }
+
+        rdn.setNormName( sbNormName.toString() );
+        rdn.hashCode();
+    }
+
+
+    /**
+     * Parses an AttributeTypeAndValue and adds it to the Rdn. The trailing spaces
+     * following a quoted or a hex value are consumed, but are not part of the Ava
+     * user provided name.
+     */
+    private static void parseAva( SchemaManager schemaManager, String name, Position pos, Rdn rdn )
+        throws LdapInvalidDnException
+    {
+        int avaStart = pos.start;
+
+        // SPACE* attributeType SPACE* EQUALS SPACE*
+        matchSpaces( name, pos );
+        String type = matchAttributeType( name, pos );
+        matchSpaces( name, pos );
+        matchEquals( name, pos );
+        matchSpaces( name, pos );
+
+        // attributeValue
+        AvaValue value = new AvaValue();
+        char c = hasMoreChars( pos ) ? name.charAt( pos.start ) : ',';
+
+        switch ( c )
+        {
+            case '"':
+                matchQuoteString( name, pos, value );
+                break;
+
+            case '#':
+                matchHexString( name, pos, value );
+                break;
+
+            default:
+                matchString( name, pos, value );
+                break;
+        }
 
-        try
+        String upName = name.substring( avaStart, pos.start );
+
+        // SPACE*
+        matchSpaces( name, pos );
+
+        AttributeType attributeType = null;
+
+        if ( schemaManager != null )
         {
-            dnParser.relativeDistinguishedName( schemaManager, rdn );
+            if ( type.regionMatches( true, 0, OID_PREFIX, 0, OID_PREFIX.length() ) )
+            {
+                type = type.substring( OID_PREFIX.length() );
+            }
+
+            attributeType = schemaManager.getAttributeType( type );
         }
-        catch ( Exception e )
+
+        Ava ava;
+
+        if ( value.bytes == null )
+        {
+            ava = new Ava( schemaManager, type, upName, value.string );
+        }
+        else if ( ( attributeType != null ) && attributeType.isHR() )
+        {
+            ava = new Ava( schemaManager, type, upName, Strings.utf8ToString( value.bytes ) );
+        }
+        else
+        {
+            ava = new Ava( schemaManager, type, upName, value.bytes );
+        }
+
+        rdn.addAVA( schemaManager, ava );
+    }
+
+
+    /**
+     * Matches and forgets optional spaces.
+     */
+    private static void matchSpaces( String name, Position pos )
+    {
+        while ( hasMoreChars( pos ) && ( name.charAt( pos.start ) == ' ' ) )
+        {
+            pos.start++;
+        }
+    }
+
+
+    /**
+     * Matches an attribute type, either a descr or a numericoid, optionally prefixed
+     * by "oid.".
+     */
+    private static String matchAttributeType( String name, Position pos ) throws LdapInvalidDnException
+    {
+        int start = pos.start;
+        char c = nextChar( name, pos );
+
+        if ( Chars.isAlpha( c ) )
+        {
+            if ( name.regionMatches( true, pos.start, OID_PREFIX, 0, OID_PREFIX.length() )
+                && ( pos.start + OID_PREFIX.length() < pos.length )
+                && Chars.isDigit( name.charAt( pos.start + OID_PREFIX.length() ) ) )
+            {
+                pos.start += OID_PREFIX.length();
+                matchNumericOid( name, pos );
+            }
+            else
+            {
+                matchDescr( name, pos );
+            }
+        }
+        else if ( Chars.isDigit( c ) )
+        {
+            matchNumericOid( name, pos );
+        }
+        else
+        {
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13604_START_AT_EXPECTED, c,
+                pos.start ) );
+        }
+
+        return name.substring( start, pos.start );
+    }
+
+
+    /**
+     * Matches a descr : ALPHA *( ALPHA / DIGIT / HYPHEN / UNDERSCORE ). The underscore
+     * is not allowed by RFC 4512, but some servers use it.
+     */
+    private static void matchDescr( String name, Position pos ) throws LdapInvalidDnException
+    {
+        // Skip the leading ALPHA
+        pos.start++;
+
+        while ( hasMoreChars( pos ) )
+        {
+            char c = name.charAt( pos.start );
+
+            if ( Chars.isAlphaDigitMinus( c ) || ( c == '_' ) )
+            {
+                pos.start++;
+            }
+            else if ( ( c == ' ' ) || ( c == '=' ) )
+            {
+                return;
+            }
+            else
+            {
+                throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13605_START_AT_DESCR_EXPECTED, c,
+                    pos.start ) );
+            }
+        }
+    }
+
+
+    /**
+     * Matches a numericoid : number 1*( DOT number ), where a number has no leading zero.
+     */
+    private static void matchNumericOid( String name, Position pos ) throws LdapInvalidDnException
+    {
+        int dotCount = 0;
+
+        while ( true )
+        {
+            // number
+            char c = nextChar( name, pos );
+
+            if ( !Chars.isDigit( c ) )
+            {
+                throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13608_START_AT_NUMERICOID_EXPECTED, c,
+                    pos.start ) );
+            }
+
+            pos.start++;
+
+            if ( c != '0' )
+            {
+                while ( hasMoreChars( pos ) && Chars.isDigit( name.charAt( pos.start ) ) )
+                {
+                    pos.start++;
+                }
+            }
+
+            if ( !hasMoreChars( pos ) )
+            {
+                break;
+            }
+
+            c = name.charAt( pos.start );
+
+            if ( c == '.' )
+            {
+                pos.start++;
+                dotCount++;
+            }
+            else if ( ( c == ' ' ) || ( c == '=' ) )
+            {
+                break;
+            }
+            else
+            {
+                throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13606_EXPECTED_NUMERICOID, c,
+                    pos.start ) );
+            }
+        }
+
+        if ( dotCount == 0 )
+        {
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13607_DOT_MISSING_IN_OID ) );
+        }
+    }
+
+
+    /**
+     * Matches the equals character.
+     */
+    private static void matchEquals( String name, Position pos ) throws LdapInvalidDnException
+    {
+        char c = nextChar( name, pos );
+
+        if ( c != '=' )
         {
-            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, e.getMessage(), e );
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13609_EQUAL_EXPECTED, c, pos.start ) );
         }
+
+        pos.start++;
+    }
+
+
+    /**
+     * Matches a string value. The value ends at the first unescaped COMMA, SEMI or PLUS,
+     * or at the end of the name. The unescaped trailing spaces are consumed, but are
+     * not part of the value.
+     */
+    private static void matchString( String name, Position pos, AvaValue value ) throws LdapInvalidDnException
+    {
+        int start = pos.start;
+
+        // The value, only created when an escaped char is found
+        StringBuilder sb = null;
+
+        // The value length in the name, or in the StringBuilder, without the trailing spaces
+        int valueLength = 0;
+
+        while ( hasMoreChars( pos ) )
+        {
+            char c = name.charAt( pos.start );
+
+            switch ( c )
+            {
+                case ',':
+                case ';':
+                case '+':
+                    value.string = getValue( name, start, sb, valueLength );
+                    return;
+
+                case '\\':
+                    if ( sb == null )
+                    {
+                        sb = new StringBuilder( name.length() - start );
+                        sb.append( name, start, pos.start );
+                    }
+
+                    matchPair( name, pos, sb );
+                    valueLength = sb.length();
+                    break;
+
+                case ' ':
+                    if ( sb != null )
+                    {
+                        sb.append( c );
+                    }
+
+                    pos.start++;
+                    break;
+
+                case '"':
+                case '<':
+                case '>':
+                case '\u0000':
+                case '\uFFFF':
+                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13628_UNEXPECTED_CHAR_IN_VALUE, c,
+                        pos.start ) );
+
+                default:
+                    pos.start++;
+
+                    if ( sb != null )
+                    {
+                        sb.append( c );
+                        valueLength = sb.length();
+                    }
+                    else
+                    {
+                        valueLength = pos.start - start;
+                    }
+
+                    break;
+            }
+        }
+
+        value.string = getValue( name, start, sb, valueLength );
+    }
+
+
+    /**
+     * Gets a string value, either from the name or from the StringBuilder
+     * the escaped chars have been decoded into.
+     */
+    private static String getValue( String name, int start, StringBuilder sb, int valueLength )
+    {
+        if ( sb == null )
+        {
+            return name.substring( start, start + valueLength );
+        }
+
+        sb.setLength( valueLength );
+
+        return sb.toString();
+    }
+
+
+    /**
+     * Matches a quoted value. The quotes are not part of the value.
+     */
+    private static void matchQuoteString( String name, Position pos, AvaValue value ) throws LdapInvalidDnException
+    {
+        int quotePos = pos.start;
+
+        // Skip the opening quote
+        pos.start++;
+
+        int start = pos.start;
+        StringBuilder sb = null;
+
+        while ( hasMoreChars( pos ) )
+        {
+            char c = name.charAt( pos.start );
+
+            switch ( c )
+            {
+                case '"':
+                    value.string = getValue( name, start, sb, sb == null ? pos.start - start : sb.length() );
+                    pos.start++;
+                    return;
+
+                case '\\':
+                    if ( sb == null )
+                    {
+                        sb = new StringBuilder( name.length() - start );
+                        sb.append( name, start, pos.start );
+                    }
+
+                    matchPair( name, pos, sb );
+                    break;
+
+                case '\u0000':
+                case '\uFFFF':
+                    throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13628_UNEXPECTED_CHAR_IN_VALUE, c,
+                        pos.start ) );
+
+                default:
+                    if ( sb != null )
+                    {
+                        sb.append( c );
+                    }
+
+                    pos.start++;
+                    break;
+            }
+        }
+
+        throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13630_UNCLOSED_QUOTED_VALUE, quotePos ) );
+    }
+
+
+    /**
+     * Matches a hex value : SHARP 1*hexpair. The value is binary.
+     */
+    private static void matchHexString( String name, Position pos, AvaValue value ) throws LdapInvalidDnException
+    {
+        // Skip the SHARP
+        pos.start++;
+
+        int start = pos.start;
+
+        while ( hasMoreChars( pos ) && Chars.isHex( name.charAt( pos.start ) ) )
+        {
+            pos.start++;
+        }
+
+        int nbHex = pos.start - start;
+
+        if ( nbHex == 0 )
+        {
+            char c = hasMoreChars( pos ) ? name.charAt( pos.start ) : '#';
+
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13628_UNEXPECTED_CHAR_IN_VALUE, c,
+                pos.start ) );
+        }
+
+        if ( ( nbHex & 0x01 ) != 0 )
+        {
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13613_VALUE_NOT_IN_HEX_FORM_ODD_NUMBER ) );
+        }
+
+        byte[] bytes = new byte[nbHex / 2];
+
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            bytes[i] = Hex.getHexValue( name.charAt( start + 2 * i ), name.charAt( start + 2 * i + 1 ) );
+        }
+
+        value.bytes = bytes;
+    }
+
+
+    /**
+     * Matches a pair : ESC ( ESC / special / hexpair ), and appends the unescaped
+     * char to the value. The consecutive hexpairs are decoded as UTF-8.
+     */
+    private static void matchPair( String name, Position pos, StringBuilder sb ) throws LdapInvalidDnException
+    {
+        // Skip the ESC
+        pos.start++;
+
+        char c = nextChar( name, pos );
+
+        switch ( c )
+        {
+            case '\\':
+            case '"':
+            case '+':
+            case ',':
+            case ';':
+            case '<':
+            case '>':
+            case ' ':
+            case '#':
+            case '=':
+                sb.append( c );
+                pos.start++;
+                return;
+
+            default:
+                break;
+        }
+
+        if ( !isHexPair( name, pos.start ) )
+        {
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13629_INVALID_ESCAPED_CHAR, c,
+                pos.start ) );
+        }
+
+        // Gather all the consecutive hexpairs, as they may be a multi-bytes UTF-8 char
+        int start = pos.start;
+        int nbBytes = 1;
+        pos.start += 2;
+
+        while ( ( pos.start + 2 < pos.length ) && ( name.charAt( pos.start ) == '\\' ) && isHexPair( name, pos.start + 1 ) )
+        {
+            nbBytes++;
+            pos.start += 3;
+        }
+
+        byte[] bytes = new byte[nbBytes];
+
+        for ( int i = 0; i < nbBytes; i++ )
+        {
+            bytes[i] = Hex.getHexValue( name.charAt( start + 3 * i ), name.charAt( start + 3 * i + 1 ) );
+        }
+
+        sb.append( Strings.utf8ToString( bytes, nbBytes ) );
+    }
+
+
+    /**
+     * Tells if the two chars at the given position are hex digits.
+     */
+    private static boolean isHexPair( String name, int index )
+    {
+        return ( index + 1 < name.length() ) && Chars.isHex( name.charAt( index ) ) && Chars.isHex( name.charAt( index + 1 ) );
+    }
+
+
+    /**
+     * Gets the current character, without moving forward.
+     * 
+     * @throws LdapInvalidDnException If no more characters are available
+     */
+    private static char nextChar( String name, Position pos ) throws LdapInvalidDnException
+    {
+        if ( !hasMoreChars( pos ) )
+        {
+            throw new LdapInvalidDnException( ResultCodeEnum.INVALID_DN_SYNTAX, I18n.err( I18n.ERR_13610_NO_MORE_CHAR_AVAILABLE, pos.start ) );
+        }
+
+        return name.charAt( pos.start );
+    }
+
+
+    /**
+     * Checks if there are more characters.
+     */
+    private static boolean hasMoreChars( Position pos )
+    {
+        return pos.start < pos.length;
     }
 }
@@ -398,6 +398,25 @@ public class Dn implements Iterable<Rdn>, Externalizable
     }
 
 
+    /**
+     * Creates a Dn from its leftmost Rdn and its parent, sharing the parent Rdns.
+     *
+     * @param schemaManager The SchemaManager used to create the Rdn and the parent
+     * @param upName The user provided name
+     * @param rdn The leftmost Rdn
+     * @param parent The parent Dn, which must not be empty
+     */
+    /* No protection */Dn( SchemaManager schemaManager, String upName, Rdn rdn, Dn parent )
+    {
+        this.schemaManager = schemaManager;
+        rdns = new ArrayList<>( parent.rdns.size() + 1 );
+        rdns.add( rdn );
+        rdns.addAll( parent.rdns );
+        this.upName = upName;
+        normName = rdn.getNormName() + "," + parent.normName;
+    }
+
+
     /**
      * Get the associated SchemaManager if any.
      *
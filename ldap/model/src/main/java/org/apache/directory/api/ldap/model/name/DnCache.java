@@ -0,0 +1,265 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.model.name;
+
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+import org.apache.directory.api.util.Strings;
+
+
+/**
+ * A bounded cache of the Dns and Rdns parsed with a SchemaManager, keyed by their
+ * user provided name. As a Dn is immutable, the same instance is returned each time
+ * the same name is requested.
+ * <br>
+ * When a Dn is not in the cache, only its leftmost Rdn is parsed : its parent is
+ * itself taken from the cache, so the Dns under a same parent share its Rdn
+ * instances, which are parsed and normalized once.
+ * <br>
+ * When the cache is full, some entries are evicted to make room for the new ones.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DnCache
+{
+    /** The default maximum number of cached Dns */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /** The SchemaManager used to parse the names */
+    private final SchemaManager schemaManager;
+
+    /** The maximum number of cached Dns, and of cached Rdns */
+    private final int maxSize;
+
+    /** The cached Dns */
+    private final Map<String, Dn> dns = new ConcurrentHashMap<>();
+
+    /** The cached Rdns */
+    private final Map<String, Rdn> rdns = new ConcurrentHashMap<>();
+
+
+    /**
+     * Creates a new DnCache instance, caching up to {@link #DEFAULT_MAX_SIZE} Dns.
+     *
+     * @param schemaManager The SchemaManager used to parse the names. Can be null.
+     */
+    public DnCache( SchemaManager schemaManager )
+    {
+        this( schemaManager, DEFAULT_MAX_SIZE );
+    }
+
+
+    /**
+     * Creates a new DnCache instance.
+     *
+     * @param schemaManager The SchemaManager used to parse the names. Can be null.
+     * @param maxSize The maximum number of cached Dns
+     */
+    public DnCache( SchemaManager schemaManager, int maxSize )
+    {
+        if ( maxSize <= 0 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_13627_INVALID_DN_CACHE_SIZE, maxSize ) );
+        }
+
+        this.schemaManager = schemaManager;
+        this.maxSize = maxSize;
+    }
+
+
+    /**
+     * Gets the Dn of a name, parsing it if it's not in the cache.
+     *
+     * @param name The user provided name
+     * @return The Dn, shared with the other callers requesting the same name
+     * @throws LdapInvalidDnException If the name is not a valid Dn
+     */
+    public Dn getDn( String name ) throws LdapInvalidDnException
+    {
+        if ( name == null )
+        {
+            return new Dn( schemaManager );
+        }
+
+        Dn dn = dns.get( name );
+
+        if ( dn == null )
+        {
+            dn = parseDn( name );
+            put( dns, name, dn );
+        }
+
+        return dn;
+    }
+
+
+    /**
+     * Gets the Rdn of a name, parsing it if it's not in the cache.
+     *
+     * @param name The user provided name
+     * @return The Rdn, shared with the other callers requesting the same name
+     * @throws LdapInvalidDnException If the name is not a valid Rdn
+     */
+    public Rdn getRdn( String name ) throws LdapInvalidDnException
+    {
+        Rdn rdn = rdns.get( name );
+
+        if ( rdn == null )
+        {
+            rdn = new Rdn( schemaManager, name );
+            put( rdns, name, rdn );
+        }
+
+        return rdn;
+    }
+
+
+    /**
+     * Parses the leftmost Rdn of a name, and gets its parent from the cache
+     */
+    private Dn parseDn( String name ) throws LdapInvalidDnException
+    {
+        int separator = findSeparator( name );
+
+        if ( separator < 0 )
+        {
+            return new Dn( schemaManager, name );
+        }
+
+        try
+        {
+            Rdn rdn = getRdn( name.substring( 0, separator ) );
+            Dn parent = getDn( name.substring( separator + 1 ) );
+
+            if ( ( rdn.size() == 0 ) || parent.isEmpty() )
+            {
+                return new Dn( schemaManager, name );
+            }
+
+            return new Dn( schemaManager, name, rdn, parent );
+        }
+        catch ( LdapInvalidDnException lide )
+        {
+            // Let the Dn report the error, or accept the name if the schema is relaxed
+            return new Dn( schemaManager, name );
+        }
+    }
+
+
+    /**
+     * Finds the position of the separator between the leftmost Rdn of a name and its
+     * parent : the first ',' or ';' which is neither escaped nor in a quoted value.
+     *
+     * @return The position of the separator, or -1 if the name has a single Rdn
+     */
+    private static int findSeparator( String name )
+    {
+        if ( Strings.isEmpty( name ) )
+        {
+            return -1;
+        }
+
+        boolean quoted = false;
+
+        for ( int i = 0; i < name.length(); i++ )
+        {
+            switch ( name.charAt( i ) )
+            {
+                case '\\':
+                    // Skip the escaped char
+                    i++;
+                    break;
+
+                case '"':
+                    quoted = !quoted;
+                    break;
+
+                case ',':
+                case ';':
+                    if ( !quoted )
+                    {
+                        return i;
+                    }
+
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Adds an element to a cache, evicting some elements first if it's full
+     */
+    private <T> void put( Map<String, T> cache, String name, T element )
+    {
+        if ( cache.size() >= maxSize )
+        {
+            Iterator<String> names = cache.keySet().iterator();
+
+            // Evicts a tenth of the cache, so that it's not done on each addition
+            for ( int i = 0; ( i <= maxSize / 10 ) && names.hasNext(); i++ )
+            {
+                names.next();
+                names.remove();
+            }
+        }
+
+        cache.put( name, element );
+    }
+
+
+    /**
+     * @return The SchemaManager used to parse the names
+     */
+    public SchemaManager getSchemaManager()
+    {
+        return schemaManager;
+    }
+
+
+    /**
+     * @return The number of cached Dns
+     */
+    public int size()
+    {
+        return dns.size();
+    }
+
+
+    /**
+     * Removes all the cached Dns and Rdns
+     */
+    public void clear()
+    {
+        dns.clear();
+        rdns.clear();
+    }
+}
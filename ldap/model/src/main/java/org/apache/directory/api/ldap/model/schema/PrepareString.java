@@ -45,10 +45,10 @@ public final class PrepareString
         END
     }
     
-    /** A flag used to lowercase chars during the map process */
+    /** A flag used to keep casing during the map process */
     public static final boolean CASE_SENSITIVE = true;
 
-    /** A flag used to keep casing during the map process */
+    /** A flag used to lowercase chars during the map process */
     public static final boolean IGNORE_CASE = false;
 
     /**
@@ -4214,6 +4214,120 @@ public final class PrepareString
         // create the resulting String
         return new String( target, 0, newPos );
     }
+    
+    /**
+     * Applies the Map, Normalize, Prohibit and Insignificant Characters Handling steps
+     * to a String containing only ASCII chars, in one single pass. The ASCII chars are
+     * never modified by the NFKC normalization and are never prohibited, so only the
+     * mapping and the spaces have to be handled.
+     * 
+     * @param value The String to prepare
+     * @param caseSensitive {@link #CASE_SENSITIVE} to keep the chars case, {@link #IGNORE_CASE}
+     * to lower case them
+     * @param assertionType The type of assertion the value is prepared for
+     * @return The prepared String, or <code>null</code> if the String contains a non ASCII
+     * char, in which case each step must be applied
+     */
+    public static String prepareAscii( String value, boolean caseSensitive, AssertionType assertionType )
+    {
+        int length = value.length();
+
+        // Each space in the middle of the String may be doubled, and two spaces may be added
+        char[] target = new char[length * 2 + 2];
+        int newPos = 0;
+        boolean hasChars = false;
+        boolean hasLeadingSpaces = false;
+        boolean hasPendingSpaces = false;
+
+        for ( int pos = 0; pos < length; pos++ )
+        {
+            char c = value.charAt( pos );
+
+            if ( c > 0x007E )
+            {
+                if ( c == 0x007F )
+                {
+                    // Control code, mapped to nothing
+                    continue;
+                }
+
+                // Not an ASCII char
+                return null;
+            }
+
+            if ( ( c == ' ' ) || ( ( c >= 0x0009 ) && ( c <= 0x000D ) ) )
+            {
+                // A space, or a char mapped to a space
+                if ( hasChars )
+                {
+                    hasPendingSpaces = true;
+                }
+                else
+                {
+                    hasLeadingSpaces = true;
+                }
+
+                continue;
+            }
+
+            if ( c < 0x0020 )
+            {
+                // Control code, mapped to nothing
+                continue;
+            }
+
+            if ( !hasChars )
+            {
+                // The String starts with one space, except for the ANY and FINAL substrings
+                // which start with a space only if there were some leading spaces
+                if ( hasLeadingSpaces || ( assertionType == AssertionType.ATTRIBUTE_VALUE )
+                    || ( assertionType == AssertionType.SUBSTRING_INITIAL ) )
+                {
+                    target[newPos++] = ' ';
+                }
+
+                hasChars = true;
+            }
+            else if ( hasPendingSpaces )
+            {
+                // The inner spaces are replaced by two spaces
+                target[newPos++] = ' ';
+                target[newPos++] = ' ';
+                hasPendingSpaces = false;
+            }
+
+            if ( !caseSensitive && ( c >= 'A' ) && ( c <= 'Z' ) )
+            {
+                c = ( char ) ( c + 0x0020 );
+            }
+
+            target[newPos++] = c;
+        }
+
+        if ( !hasChars )
+        {
+            // An empty String
+            if ( assertionType == AssertionType.ATTRIBUTE_VALUE )
+            {
+                return "  ";
+            }
+            else
+            {
+                return " ";
+            }
+        }
+
+        // The String ends with one space, except for the INITIAL and ANY substrings
+        // which end with a space only if there were some trailing spaces
+        if ( hasPendingSpaces || ( assertionType == AssertionType.ATTRIBUTE_VALUE )
+            || ( assertionType == AssertionType.SUBSTRING_FINAL ) )
+        {
+            target[newPos++] = ' ';
+        }
+
+        return new String( target, 0, newPos );
+    }
+
 
     
     /**
@@ -0,0 +1,233 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.model.schema.normalizers;
+
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.directory.api.i18n.I18n;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.schema.Normalizer;
+import org.apache.directory.api.ldap.model.schema.PrepareString;
+import org.apache.directory.api.ldap.model.schema.PreparedNormalizer;
+import org.apache.directory.api.ldap.model.schema.SchemaManager;
+
+
+/**
+ * A Normalizer keeping the values normalized by another Normalizer in a bounded cache,
+ * so that normalizing again a frequently used value (an ObjectClass name, a member Dn...)
+ * is a simple lookup. The cache is associated with the wrapped Normalizer, and so with
+ * its MatchingRule OID. It can be shared by many threads.
+ * <br>
+ * Only the attribute values are cached : the substring assertions are directly
+ * normalized by the wrapped Normalizer. When the cache is full, some values are evicted
+ * to make room for the new ones.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CachingNormalizer extends Normalizer implements PreparedNormalizer
+{
+    /** The mandatory serialVersionUID */
+    private static final long serialVersionUID = 1L;
+
+    /** The default maximum number of cached values */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /** The wrapped Normalizer */
+    private final Normalizer normalizer;
+
+    /** The maximum number of cached values */
+    private final int maxSize;
+
+    /** The normalized values, keyed by the values */
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+
+    /** The number of values found in the cache */
+    private final LongAdder hits = new LongAdder();
+
+    /** The number of values normalized by the wrapped Normalizer */
+    private final LongAdder misses = new LongAdder();
+
+
+    /**
+     * Creates a new CachingNormalizer instance, caching up to {@link #DEFAULT_MAX_SIZE} values.
+     *
+     * @param normalizer The wrapped Normalizer
+     */
+    public CachingNormalizer( Normalizer normalizer )
+    {
+        this( normalizer, DEFAULT_MAX_SIZE );
+    }
+
+
+    /**
+     * Creates a new CachingNormalizer instance.
+     *
+     * @param normalizer The wrapped Normalizer
+     * @param maxSize The maximum number of cached values
+     */
+    public CachingNormalizer( Normalizer normalizer, int maxSize )
+    {
+        super( normalizer.getOid() );
+
+        if ( maxSize <= 0 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_13631_INVALID_NORMALIZER_CACHE_SIZE, maxSize ) );
+        }
+
+        this.normalizer = normalizer;
+        this.maxSize = maxSize;
+        setSchemaName( normalizer.getSchemaName() );
+        setFqcn( normalizer.getFqcn() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String normalize( String value ) throws LdapException
+    {
+        if ( value == null )
+        {
+            return normalizer.normalize( value );
+        }
+
+        String normValue = values.get( value );
+
+        if ( normValue != null )
+        {
+            hits.increment();
+
+            return normValue;
+        }
+
+        misses.increment();
+        normValue = normalizer.normalize( value );
+
+        if ( normValue != null )
+        {
+            put( value, normValue );
+        }
+
+        return normValue;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String normalize( String value, PrepareString.AssertionType assertionType ) throws LdapException
+    {
+        return normalizer.normalize( value, assertionType );
+    }
+
+
+    /**
+     * Adds a normalized value to the cache, evicting some values first if it's full
+     */
+    private void put( String value, String normValue )
+    {
+        if ( values.size() >= maxSize )
+        {
+            Iterator<String> keys = values.keySet().iterator();
+
+            // Evicts a tenth of the cache, so that it's not done on each addition
+            for ( int i = 0; ( i <= maxSize / 10 ) && keys.hasNext(); i++ )
+            {
+                keys.next();
+                keys.remove();
+            }
+        }
+
+        values.put( value, normValue );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSchemaManager( SchemaManager schemaManager )
+    {
+        normalizer.setSchemaManager( schemaManager );
+        clear();
+    }
+
+
+    /**
+     * @return The wrapped Normalizer
+     */
+    public Normalizer getNormalizer()
+    {
+        return normalizer;
+    }
+
+
+    /**
+     * @return The maximum number of cached values
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+
+    /**
+     * @return The number of cached values
+     */
+    public int size()
+    {
+        return values.size();
+    }
+
+
+    /**
+     * @return The number of values which have been found in the cache
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+
+    /**
+     * @return The number of values which have been normalized by the wrapped Normalizer
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+
+    /**
+     * Removes all the cached values, and resets the hits and misses counters.
+     */
+    public void clear()
+    {
+        values.clear();
+        hits.reset();
+        misses.reset();
+    }
+}
@@ -83,7 +83,13 @@ public class DeepTrimNormalizer extends Normalizer implements PreparedNormalizer
             return null;
         }
 
-        String normValue = null;
+        // Fast path for the ASCII values, prepared in one single pass
+        String normValue = PrepareString.prepareAscii( value, PrepareString.CASE_SENSITIVE, assertionType );
+
+        if ( normValue != null )
+        {
+            return normValue;
+        }
 
         try
         {
@@ -84,7 +84,13 @@ public class DeepTrimToLowerNormalizer extends Normalizer implements PreparedNor
             return null;
         }
 
-        String normValue = null;
+        // Fast path for the ASCII values, prepared in one single pass
+        String normValue = PrepareString.prepareAscii( value, PrepareString.IGNORE_CASE, assertionType );
+
+        if ( normValue != null )
+        {
+            return normValue;
+        }
 
         try
         {
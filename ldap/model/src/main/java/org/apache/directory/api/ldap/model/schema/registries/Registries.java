@@ -52,6 +52,8 @@ import org.apache.directory.api.ldap.model.schema.SchemaErrorHandler;
 import org.apache.directory.api.ldap.model.schema.SchemaObject;
 import org.apache.directory.api.ldap.model.schema.SchemaObjectWrapper;
 import org.apache.directory.api.ldap.model.schema.SyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.normalizers.CachingNormalizer;
+import org.apache.directory.api.ldap.model.schema.normalizers.NoOpNormalizer;
 import org.apache.directory.api.ldap.model.schema.registries.helper.AttributeTypeHelper;
 import org.apache.directory.api.ldap.model.schema.registries.helper.DitContentRuleHelper;
 import org.apache.directory.api.ldap.model.schema.registries.helper.DitStructureRuleHelper;
@@ -126,6 +128,9 @@ public class Registries implements SchemaLoaderListener, Cloneable
     /** A flag indicating that disabled SchemaObject are accepted */
     private boolean disabledAccepted;
 
+    /** The maximum number of values cached by each MatchingRule Normalizer, 0 if they are not cached */
+    private int normalizerCacheSize;
+
     private SchemaErrorHandler errorHandler;
 
     /** Two flags for RELAXED and STRICT modes */
@@ -2825,6 +2830,82 @@ public class Registries implements SchemaLoaderListener, Cloneable
     }
 
 
+    /**
+     * @return The maximum number of normalized values cached by each MatchingRule
+     * Normalizer, 0 if the normalized values are not cached
+     */
+    public int getNormalizerCacheSize()
+    {
+        return normalizerCacheSize;
+    }
+
+
+    /**
+     * Sets the maximum number of normalized values cached by each MatchingRule
+     * Normalizer. The registered MatchingRules get a new, empty, cache, which must
+     * be renewed this way when a SchemaObject they depend on is modified.
+     *
+     * @param normalizerCacheSize The maximum number of cached values, or 0 to disable the caches
+     * @throws LdapException If the AttributeTypes normalizers can't be updated
+     */
+    public void setNormalizerCacheSize( int normalizerCacheSize ) throws LdapException
+    {
+        if ( normalizerCacheSize < 0 )
+        {
+            throw new IllegalArgumentException( I18n.err( I18n.ERR_13631_INVALID_NORMALIZER_CACHE_SIZE,
+                normalizerCacheSize ) );
+        }
+
+        this.normalizerCacheSize = normalizerCacheSize;
+
+        for ( MatchingRule matchingRule : matchingRuleRegistry )
+        {
+            if ( matchingRule.getNormalizer() != null )
+            {
+                try
+                {
+                    matchingRule.unlock();
+                    matchingRule.setNormalizer( cacheNormalizer( matchingRule.getNormalizer() ) );
+                }
+                finally
+                {
+                    matchingRule.lock();
+                }
+            }
+        }
+
+        // The AttributeTypes normalizers are the ones of their equality MatchingRule
+        for ( AttributeType attributeType : attributeTypeRegistry )
+        {
+            attributeTypeRegistry.addMappingFor( attributeType );
+        }
+    }
+
+
+    /**
+     * Gets the Normalizer a MatchingRule uses : the given Normalizer is wrapped in a
+     * {@link CachingNormalizer} if the normalized values are cached.
+     *
+     * @param normalizer The MatchingRule Normalizer, which may already be wrapped
+     * @return The Normalizer the MatchingRule must use
+     */
+    public Normalizer cacheNormalizer( Normalizer normalizer )
+    {
+        if ( normalizer instanceof CachingNormalizer )
+        {
+            normalizer = ( ( CachingNormalizer ) normalizer ).getNormalizer();
+        }
+
+        // There is nothing to save when the values are not modified
+        if ( ( normalizerCacheSize == 0 ) || ( normalizer instanceof NoOpNormalizer ) )
+        {
+            return normalizer;
+        }
+
+        return new CachingNormalizer( normalizer, normalizerCacheSize );
+    }
+
+
     /**
      * Clear the registries from all its elements
      *
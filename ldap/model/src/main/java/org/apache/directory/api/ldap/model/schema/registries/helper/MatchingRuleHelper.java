@@ -130,7 +130,7 @@ public final class MatchingRuleHelper
                 if ( normalizer != null )
                 {
                     registries.addReference( matchingRule, normalizer );
-                    matchingRule.setNormalizer( normalizer );
+                    matchingRule.setNormalizer( registries.cacheNormalizer( normalizer ) );
                 }
 
                 if ( ldapSyntax != null )
@@ -25,6 +25,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -268,6 +269,27 @@ public class BinaryValueTest
     }
 
 
+    @Test
+    public void testWrap() throws LdapException
+    {
+        byte[] bytes = new byte[]
+            { 0x01, 0x02, 0x03, 0x04 };
+        Value cbv = Value.wrap( bytes );
+
+        assertTrue( Arrays.equals( bytes, cbv.getBytes() ) );
+        assertFalse( cbv.isHumanReadable() );
+        assertFalse( cbv.isSchemaAware() );
+        assertEquals( new Value( bytes ), cbv );
+        assertEquals( new Value( bytes ).hashCode(), cbv.hashCode() );
+
+        // The byte[] is shared, not copied
+        bytes[0] = 0x10;
+        assertEquals( 0x10, cbv.getBytes()[0] );
+
+        assertTrue( Value.wrap( null ).isNull() );
+    }
+
+
     @Test
     public void testSetByteArray() throws LdapException
     {
@@ -437,6 +459,39 @@ public class BinaryValueTest
     }
 
 
+    @Test
+    public void testCompareToHrValue() throws LdapException
+    {
+        Value bv = new Value( Strings.getBytesUtf8( "abc" ) );
+        Value sv = new Value( "abc" );
+
+        // A binary value is compared with the UTF-8 bytes of a HR value
+        assertEquals( 0, bv.compareTo( sv.getBytes() ) );
+        assertEquals( -1, bv.compareTo( new Value( "abd" ).getBytes() ) );
+
+        // But a binary value and a HR value can't be compared directly
+        try
+        {
+            bv.compareTo( sv );
+            fail();
+        }
+        catch ( IllegalStateException ise )
+        {
+            // Expected
+        }
+
+        try
+        {
+            sv.compareTo( bv );
+            fail();
+        }
+        catch ( IllegalStateException ise )
+        {
+            // Expected
+        }
+    }
+
+
     @Test
     public void testToString()
     {
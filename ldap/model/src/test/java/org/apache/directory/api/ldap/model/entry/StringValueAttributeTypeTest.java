@@ -20,10 +20,12 @@
 package org.apache.directory.api.ldap.model.entry;
 
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -46,6 +48,7 @@ import org.apache.directory.api.ldap.model.schema.comparators.StringComparator;
 import org.apache.directory.api.ldap.model.schema.normalizers.DeepTrimToLowerNormalizer;
 import org.apache.directory.api.ldap.model.schema.normalizers.NoOpNormalizer;
 import org.apache.directory.api.ldap.model.schema.syntaxCheckers.OctetStringSyntaxChecker;
+import org.apache.directory.api.util.Strings;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -688,4 +691,78 @@ public class StringValueAttributeTypeTest
 
         assertEquals( ssv, ssvSer );
     }
+
+
+    /**
+     * Test that the normalized value is the user provided one when the normalization
+     * does not change it, and that the bytes of a HR value are still available
+     */
+    @Test
+    public void testNormalizedValueSharing() throws LdapException, IOException, ClassNotFoundException
+    {
+        Value value = new Value( at, "  John   Doe " );
+        String normValue = value.getNormalized();
+
+        assertEquals( "  John   Doe ", new String( value.getBytes(), "UTF-8" ) );
+
+        // A value which is already normalized
+        Value normalized = new Value( at, normValue );
+
+        assertSame( normalized.getString(), normalized.getNormalized() );
+        assertEquals( normValue, new String( normalized.getBytes(), "UTF-8" ) );
+        assertEquals( normalized, value );
+        assertEquals( 0, normalized.compareTo( value ) );
+
+        // The sharing is kept when the value is deserialized
+        Value normalizedSer = deserializeValue( serializeValue( normalized ) );
+
+        assertSame( normalizedSer.getString(), normalizedSer.getNormalized() );
+        assertEquals( normalized, normalizedSer );
+
+        byte[] buffer = new byte[64];
+        int pos = value.serialize( buffer, 0 );
+        Value valueSer = Value.createValue( at );
+
+        assertEquals( pos, valueSer.deserialize( buffer, 0 ) );
+        assertEquals( value, valueSer );
+        assertEquals( "  John   Doe ", valueSer.getString() );
+    }
+
+
+    /**
+     * Test that a HR value built from bytes which are not valid UTF-8 gives them back
+     */
+    @Test
+    public void testInvalidUtf8Bytes() throws LdapException, IOException, ClassNotFoundException
+    {
+        // The deep trim normalizer rejects the replacement character
+        mr.setNormalizer( new NoOpNormalizer( mr.getOid() ) );
+
+        byte[] invalid = new byte[]
+            { 'a', ( byte ) 0xFF, 'b' };
+        Value value = new Value( at, invalid );
+
+        assertTrue( value.isHumanReadable() );
+        assertEquals( "a\uFFFDb", value.getString() );
+        assertArrayEquals( invalid, value.getBytes() );
+
+        // The bytes are kept when the value is copied or deserialized
+        assertArrayEquals( invalid, new Value( at, value ).getBytes() );
+        assertArrayEquals( invalid, deserializeValue( serializeValue( value ) ).getBytes() );
+
+        byte[] buffer = new byte[64];
+        int pos = value.serialize( buffer, 0 );
+        Value valueSer = Value.createValue( at );
+
+        assertEquals( pos, valueSer.deserialize( buffer, 0 ) );
+        assertArrayEquals( invalid, valueSer.getBytes() );
+        assertEquals( value.getString(), valueSer.getString() );
+
+        // A valid value, even with a replacement character, keeps a single String
+        byte[] valid = Strings.getBytesUtf8( "a\uFFFDb" );
+        Value validValue = new Value( at, valid );
+
+        assertArrayEquals( valid, validValue.getBytes() );
+        assertEquals( value.getString(), validValue.getString() );
+    }
 }
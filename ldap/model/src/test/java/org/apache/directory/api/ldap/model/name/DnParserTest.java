@@ -680,7 +680,85 @@ public class DnParserTest
     {
         new Dn( "uid=nghZwwtHgxgyvVbTQCYyeY\\+O4cc=,dc=example,dc=com" );
     }
-    
+
+
+    /**
+     * test the normalized name of a multi-valued Rdn, when there is no SchemaManager
+     */
+    @Test
+    public void testMultivaluedRdnNormName() throws LdapException
+    {
+        Dn dn = new Dn( "cn=a + SN=b ,dc=com" );
+        assertEquals( "cn=a+sn=b,dc=com", dn.getNormName() );
+        assertEquals( "cn=a + SN=b ,dc=com", dn.getName() );
+        assertEquals( "cn=a + SN=b ", dn.getRdn().getName() );
+    }
+
+
+    /**
+     * test a quoted value containing special chars, and a SHARP
+     */
+    @Test
+    public void testLdapDNQuotedValueWithSpecialChars() throws LdapException
+    {
+        Dn dn = new Dn( "ou=\"Sales, EMEA\" ,dc=com" );
+        assertEquals( "Sales, EMEA", dn.getRdn().getValue() );
+        assertEquals( "ou=\"Sales, EMEA\" ,dc=com", dn.getName() );
+        assertEquals( "ou=\"Sales, EMEA\"", dn.getRdn().getAva().getName() );
+
+        dn = new Dn( "cn=\"#41\"" );
+        assertEquals( "#41", dn.getRdn().getValue() );
+    }
+
+
+    /**
+     * test a Dn with escaped UTF-8 bytes, mixed with escaped special chars
+     */
+    @Test
+    public void testLdapDNEscapedUtf8Bytes() throws LdapException
+    {
+        Dn dn = new Dn( "CN=J\\C3\\BCrgen\\, M\\C3\\BCller\\20,DC=com" );
+        assertEquals( "J\u00fcrgen, M\u00fcller ", dn.getRdn().getValue() );
+        assertEquals( "CN=J\\C3\\BCrgen\\, M\\C3\\BCller\\20,DC=com", dn.getName() );
+    }
+
+
+    /**
+     * test the unescaped trailing spaces, which are not part of the value
+     */
+    @Test
+    public void testLdapDNTrailingSpaces() throws LdapException
+    {
+        assertEquals( "a\\", new Dn( "cn=a\\\\  " ).getRdn().getValue() );
+        assertEquals( "a ", new Dn( "cn=a\\   " ).getRdn().getValue() );
+        assertEquals( "a b+", new Dn( "cn=a b\\2B  ,dc=com" ).getRdn().getValue() );
+    }
+
+
+    /**
+     * test invalid complex Dns
+     */
+    @Test
+    public void testBadComplexLdapDN()
+    {
+        String[] badDns =
+            { "cn=\"unclosed", "cn=a\\zz", "cn=a\\", "cn=a\\,<b", "cn=a\"b", "cn=#414", "cn=#", "cn=a+", "cn=a,", "01.2=a",
+                "1=a", "cn=a+sn=b,,dc=com" };
+
+        for ( String badDn : badDns )
+        {
+            try
+            {
+                new Dn( badDn );
+                fail( badDn );
+            }
+            catch ( LdapInvalidDnException lide )
+            {
+                // Expected
+            }
+        }
+    }
+
     
     @Test
     @Ignore
@@ -23,8 +23,10 @@ package org.apache.directory.api.ldap.model.schema;
 import java.io.IOException;
 
 import org.apache.directory.api.util.exception.InvalidCharacterException;
+import org.apache.directory.api.ldap.model.schema.PrepareString.AssertionType;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * Tests for the PrepareString class
@@ -471,4 +473,43 @@ public class PrepareStringTest
         char[] empty = new char[]{ ' ', ' ', ' ', 'a', ' ', ' ', 'b', ' ', ' ', ' ', ' ', 'c', ' ', 'd', ' ', ' ', ' ' };
         assertEquals( " a  b  c  d ", PrepareString.insignificantSpacesStringAny( empty ) );
     }
+    
+    
+    //-------------------------------------------------------------------------
+    // Test the PrepareString.prepareAscii method
+    //-------------------------------------------------------------------------
+    @Test
+    public void prepareAsciiNonAscii()
+    {
+        assertNull( PrepareString.prepareAscii( "caf\u00e9", PrepareString.IGNORE_CASE, AssertionType.ATTRIBUTE_VALUE ) );
+        assertNull( PrepareString.prepareAscii( "\u00a0a", PrepareString.CASE_SENSITIVE, AssertionType.SUBSTRING_ANY ) );
+    }
+
+
+    @Test
+    public void prepareAsciiSameAsEachStep() throws InvalidCharacterException
+    {
+        String[] values =
+            { "", " ", "   ", "a", " A", "A ", "  John \t\n Doe  ", "a\u0001b", "a \u0001 b", "\u007F", " \u0000 ",
+                "C:\\a\\b", "Ab  Cd\rEf " };
+
+        for ( String value : values )
+        {
+            for ( boolean caseSensitive : new boolean[] { PrepareString.CASE_SENSITIVE, PrepareString.IGNORE_CASE } )
+            {
+                String mapped = caseSensitive ? PrepareString.mapCaseSensitive( value ) : PrepareString.mapIgnoreCase( value );
+                char[] chars = PrepareString.normalize( mapped ).toCharArray();
+                PrepareString.checkProhibited( chars );
+
+                assertEquals( PrepareString.insignificantSpacesStringValue( chars ),
+                    PrepareString.prepareAscii( value, caseSensitive, AssertionType.ATTRIBUTE_VALUE ) );
+                assertEquals( PrepareString.insignificantSpacesStringInitial( chars ),
+                    PrepareString.prepareAscii( value, caseSensitive, AssertionType.SUBSTRING_INITIAL ) );
+                assertEquals( PrepareString.insignificantSpacesStringAny( chars ),
+                    PrepareString.prepareAscii( value, caseSensitive, AssertionType.SUBSTRING_ANY ) );
+                assertEquals( PrepareString.insignificantSpacesStringFinal( chars ),
+                    PrepareString.prepareAscii( value, caseSensitive, AssertionType.SUBSTRING_FINAL ) );
+            }
+        }
+    }
 }
@@ -0,0 +1,161 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.api.ldap.model.schema.normalizers;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.directory.api.ldap.model.schema.PrepareString;
+import org.junit.Test;
+
+
+/**
+ * Tests the CachingNormalizer class.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CachingNormalizerTest
+{
+    @Test
+    public void testNormalizeCachesTheValue() throws Exception
+    {
+        DeepTrimToLowerNormalizer deepTrimToLowerNormalizer = new DeepTrimToLowerNormalizer( "1.1" );
+        CachingNormalizer normalizer = new CachingNormalizer( deepTrimToLowerNormalizer );
+
+        assertEquals( "1.1", normalizer.getOid() );
+        assertSame( deepTrimToLowerNormalizer, normalizer.getNormalizer() );
+
+        String normValue = normalizer.normalize( "  InetOrgPerson " );
+
+        assertEquals( " inetorgperson ", normValue );
+        assertEquals( 0L, normalizer.getHits() );
+        assertEquals( 1L, normalizer.getMisses() );
+
+        assertSame( normValue, normalizer.normalize( "  InetOrgPerson " ) );
+        assertEquals( 1L, normalizer.getHits() );
+        assertEquals( 1L, normalizer.getMisses() );
+        assertEquals( 1, normalizer.size() );
+
+        normalizer.clear();
+
+        assertEquals( 0, normalizer.size() );
+        assertEquals( 0L, normalizer.getHits() );
+        assertEquals( 0L, normalizer.getMisses() );
+    }
+
+
+    @Test
+    public void testNormalizeSubstringIsNotCached() throws Exception
+    {
+        CachingNormalizer normalizer = new CachingNormalizer( new DeepTrimToLowerNormalizer( "1.1" ) );
+
+        assertEquals( " abc", normalizer.normalize( "ABC", PrepareString.AssertionType.SUBSTRING_INITIAL ) );
+        assertEquals( 0, normalizer.size() );
+        assertEquals( 0L, normalizer.getMisses() );
+    }
+
+
+    @Test
+    public void testNormalizeNullValue() throws Exception
+    {
+        CachingNormalizer normalizer = new CachingNormalizer( new BooleanNormalizer() );
+
+        assertNull( normalizer.normalize( null ) );
+        assertEquals( 0, normalizer.size() );
+    }
+
+
+    @Test
+    public void testCacheIsBounded() throws Exception
+    {
+        CachingNormalizer normalizer = new CachingNormalizer( new DeepTrimToLowerNormalizer( "1.1" ), 100 );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            assertEquals( " value" + i + " ", normalizer.normalize( "Value" + i ) );
+            assertTrue( normalizer.size() <= 100 );
+        }
+
+        assertEquals( 1000L, normalizer.getMisses() );
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxSize()
+    {
+        new CachingNormalizer( new DeepTrimToLowerNormalizer( "1.1" ), 0 );
+    }
+
+
+    @Test
+    public void testConcurrentNormalize() throws Exception
+    {
+        final CachingNormalizer normalizer = new CachingNormalizer( new DeepTrimToLowerNormalizer( "1.1" ), 50 );
+        ExecutorService executor = Executors.newFixedThreadPool( 8 );
+
+        try
+        {
+            List<Future<Boolean>> futures = new ArrayList<>();
+
+            for ( int i = 0; i < 8; i++ )
+            {
+                futures.add( executor.submit( new Callable<Boolean>()
+                {
+                    @Override
+                    public Boolean call() throws Exception
+                    {
+                        for ( int j = 0; j < 10000; j++ )
+                        {
+                            if ( !( " value" + ( j % 100 ) + " " ).equals( normalizer.normalize( "VALUE" + ( j % 100 ) ) ) )
+                            {
+                                return false;
+                            }
+                        }
+
+                        return true;
+                    }
+                } ) );
+            }
+
+            for ( Future<Boolean> future : futures )
+            {
+                assertTrue( future.get() );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // Each thread may add a value while another one is evicting some
+        assertEquals( 80000L, normalizer.getHits() + normalizer.getMisses() );
+        assertTrue( normalizer.size() <= 50 + 8 );
+    }
+}
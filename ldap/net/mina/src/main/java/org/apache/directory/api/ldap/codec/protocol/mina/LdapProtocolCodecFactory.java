@@ -20,6 +20,7 @@
 package org.apache.directory.api.ldap.codec.protocol.mina;
 
 
+import org.apache.directory.api.asn1.util.Asn1BufferPool;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.codec.api.LdapApiServiceFactory;
 import org.apache.mina.core.session.IoSession;
@@ -62,6 +63,40 @@ public class LdapProtocolCodecFactory implements ProtocolCodecFactory
         ldapDecoder = new LdapProtocolDecoder();
         ldapEncoder = new LdapProtocolEncoder( ldapApiService );
     }
+
+
+
+    /**
+     * Creates a new instance of LdapProtocolCodecFactory which encoder writes the
+     * messages segment by segment, without flattening them into a single buffer.
+     *
+     * @param ldapApiService The associated LdapApiService instance
+     * @param gatheringWrites If the messages must be written segment by segment
+     */
+    public LdapProtocolCodecFactory( LdapApiService ldapApiService, boolean gatheringWrites )
+    {
+        ldapDecoder = new LdapProtocolDecoder();
+        ldapEncoder = new LdapProtocolEncoder( ldapApiService, gatheringWrites );
+    }
+
+
+    /**
+     * Creates a new instance of LdapProtocolCodecFactory which encoder uses pooled
+     * buffers. The factory must be installed with a {@link LdapProtocolCodecFilter},
+     * which gives the buffers back to the pool once they have been written. The LDAP
+     * client connections do so with the factory registered with
+     * {@link LdapApiService#registerProtocolCodecFactory(org.apache.mina.filter.codec.ProtocolCodecFactory)}.
+     *
+     * @param ldapApiService The associated LdapApiService instance
+     * @param bufferPool The pool of buffers used to encode the messages
+     * @param directBuffers If the encoded messages must be written from direct buffers
+     */
+    public LdapProtocolCodecFactory( LdapApiService ldapApiService, Asn1BufferPool bufferPool,
+        boolean directBuffers )
+    {
+        ldapDecoder = new LdapProtocolDecoder();
+        ldapEncoder = new LdapProtocolEncoder( ldapApiService, bufferPool, directBuffers );
+    }
     
 
     /**
@@ -0,0 +1,72 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.protocol.mina;
+
+
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.WriteRequest;
+import org.apache.mina.filter.codec.ProtocolCodecFactory;
+import org.apache.mina.filter.codec.ProtocolCodecFilter;
+
+
+/**
+ * A ProtocolCodecFilter which gives the pooled buffers used by the {@link LdapProtocolEncoder}
+ * back to their pool once they have been written. The NIO processor of MINA frees most of the
+ * buffers it has written, but not the one completing a flush which reached its quota of written
+ * bytes, and the other transports never free them. This filter must then be used in place of a
+ * plain ProtocolCodecFilter when the codec factory has been created with an
+ * {@link org.apache.directory.api.asn1.util.Asn1BufferPool}, otherwise the buffers which are not
+ * freed are replaced by newly allocated ones.
+ * <br>
+ * The buffers which are not written because the session has been closed are not released,
+ * they are simply reclaimed by the GC.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapProtocolCodecFilter extends ProtocolCodecFilter
+{
+    /**
+     * Creates a new instance of LdapProtocolCodecFilter.
+     *
+     * @param factory The codec factory
+     */
+    public LdapProtocolCodecFilter( ProtocolCodecFactory factory )
+    {
+        super( factory );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void messageSent( NextFilter nextFilter, IoSession session, WriteRequest writeRequest ) throws Exception
+    {
+        Object message = writeRequest.getMessage();
+
+        if ( message instanceof PooledIoBuffer )
+        {
+            // The encoded PDU has been written, the Asn1Buffer can be reused
+            ( ( PooledIoBuffer ) message ).free();
+        }
+
+        super.messageSent( nextFilter, session, writeRequest );
+    }
+}
@@ -21,14 +21,13 @@ package org.apache.directory.api.ldap.codec.protocol.mina;
 
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.apache.directory.api.asn1.DecoderException;
 import org.apache.directory.api.asn1.ber.Asn1Decoder;
 import org.apache.directory.api.asn1.ber.tlv.TLVStateEnum;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.LdapDecoder;
+import org.apache.directory.api.ldap.codec.api.LdapFastPathDecoder;
 import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.api.ldap.codec.api.ResponseCarryingException;
 import org.apache.directory.api.ldap.model.constants.Loggers;
@@ -80,31 +79,41 @@ public class LdapProtocolDecoder implements ProtocolDecoder
             messageContainer.setMaxPDUSize( maxPDUSize );
         }
 
-        List<Message> decodedMessages = new ArrayList<>();
-        ByteBuffer buf = in.buf();
+        if ( session.containsAttribute( LdapDecoder.SLICED_VALUES_ATTR ) )
+        {
+            messageContainer.setSlicing( ( Boolean ) session.getAttribute( LdapDecoder.SLICED_VALUES_ATTR ) );
+        }
 
-        decode( buf, messageContainer, decodedMessages );
+        if ( session.containsAttribute( LdapDecoder.LAZY_ENTRIES_ATTR ) )
+        {
+            messageContainer.setLazyEntries( ( Boolean ) session.getAttribute( LdapDecoder.LAZY_ENTRIES_ATTR ) );
+        }
 
-        for ( Message message : decodedMessages )
+        if ( session.containsAttribute( LdapDecoder.FAST_PATH_ATTR ) )
         {
-            out.write( message );
+            messageContainer.setFastPath( ( Boolean ) session.getAttribute( LdapDecoder.FAST_PATH_ATTR ) );
         }
+
+        decode( in.buf(), messageContainer, out );
     }
 
 
     /**
      * Decode an incoming buffer into LDAP messages. The result can be 0, 1 or many
-     * LDAP messages, which will be stored into the array the caller has created.
+     * LDAP messages, which are written into the decoder output as soon as they are
+     * decoded. The buffer can be a heap or a direct buffer. When the container enables
+     * it, complete PDUs are first given to the {@link LdapFastPathDecoder}, the generic
+     * grammar being used when it can't decode them.
      * 
      * @param buffer The incoming byte buffer
      * @param messageContainer The LdapMessageContainer which will be used to store the
      * message being decoded. If the message is not fully decoded, the ucrrent state
      * is stored into this container
-     * @param decodedMessages The list of decoded messages
+     * @param out The decoder output the decoded messages are written to
      * @throws DecoderException If the decoding failed
      */
     private void decode( ByteBuffer buffer, LdapMessageContainer<AbstractMessage> messageContainer,
-        List<Message> decodedMessages ) throws DecoderException
+        ProtocolDecoderOutput out ) throws DecoderException
     {
         buffer.mark();
 
@@ -116,38 +125,48 @@ public class LdapProtocolDecoder implements ProtocolDecoder
                 {
                     CODEC_LOG.debug( I18n.msg( I18n.MSG_14000_DECODING_PDU ) );
 
-                    int size = buffer.limit();
-                    int position = buffer.position();
-                    int pduLength = size - position;
+                    // Don't use buffer.array(), which is not available for direct buffers
+                    byte[] array = new byte[buffer.remaining()];
+                    buffer.duplicate().get( array );
 
-                    byte[] array = new byte[pduLength];
+                    CODEC_LOG.debug( Strings.dumpBytes( array ) );
+                }
 
-                    System.arraycopy( buffer.array(), position, array, 0, pduLength );
+                // The most frequent responses are decoded in one single pass, when complete
+                Message fastMessage = null;
 
-                    if ( array.length == 0 )
-                    {
-                        CODEC_LOG.debug( I18n.msg( I18n.MSG_14001_NULL_BUFFER ) );
-                    }
-                    else
+                if ( messageContainer.isFastPath() )
+                {
+                    fastMessage = LdapFastPathDecoder.decode( buffer, messageContainer );
+                }
+
+                if ( fastMessage != null )
+                {
+                    if ( CODEC_LOG.isDebugEnabled() )
                     {
-                        CODEC_LOG.debug( Strings.dumpBytes( array ) );
+                        CODEC_LOG.debug( I18n.msg( I18n.MSG_14002_DECODED_LDAP_MESSAGE, fastMessage ) );
                     }
+
+                    out.write( fastMessage );
+
+                    continue;
                 }
 
                 Asn1Decoder.decode( buffer, messageContainer );
 
                 if ( messageContainer.getState() == TLVStateEnum.PDU_DECODED )
                 {
+                    Message message = messageContainer.getMessage();
+
                     if ( CODEC_LOG.isDebugEnabled() )
                     {
-                        CODEC_LOG.debug( I18n.msg( I18n.MSG_14002_DECODED_LDAP_MESSAGE, messageContainer.getMessage() ) );
+                        CODEC_LOG.debug( I18n.msg( I18n.MSG_14002_DECODED_LDAP_MESSAGE, message ) );
                     }
 
-                    Message message = messageContainer.getMessage();
-
-                    decodedMessages.add( message );
-
+                    // Clean the container before handing the message, the TLVs will be reused
                     messageContainer.clean();
+
+                    out.write( message );
                 }
             }
             catch ( ResponseCarryingException rce )
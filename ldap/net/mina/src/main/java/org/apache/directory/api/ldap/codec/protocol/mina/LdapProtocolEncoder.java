@@ -21,9 +21,12 @@ package org.apache.directory.api.ldap.codec.protocol.mina;
 
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.directory.api.asn1.EncoderException;
 import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.asn1.util.Asn1Buffer2;
+import org.apache.directory.api.asn1.util.Asn1BufferPool;
 import org.apache.directory.api.i18n.I18n;
 import org.apache.directory.api.ldap.codec.api.LdapApiService;
 import org.apache.directory.api.ldap.codec.api.LdapApiServiceFactory;
@@ -32,6 +35,7 @@ import org.apache.directory.api.ldap.model.constants.Loggers;
 import org.apache.directory.api.ldap.model.message.Message;
 import org.apache.directory.api.util.Strings;
 import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.session.AttributeKey;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.ProtocolEncoder;
 import org.apache.mina.filter.codec.ProtocolEncoderOutput;
@@ -54,6 +58,19 @@ public class LdapProtocolEncoder implements ProtocolEncoder
     
     /** A thread local storage used to store the Asn1Buffer instance */
     private ThreadLocal<Asn1Buffer> threadLocalStorage = new ThreadLocal<>();
+
+    /** The pool of Asn1Buffers, if the encoded PDUs are handed to MINA without copy */
+    private Asn1BufferPool bufferPool;
+
+    /** A flag set when the encoded PDUs must be copied into direct buffers */
+    private boolean directBuffers;
+
+    /** The session attribute storing the size of the last PDU encoded for this session */
+    private static final AttributeKey LAST_ENCODED_SIZE = new AttributeKey( LdapProtocolEncoder.class,
+        "lastEncodedSize" );
+
+    /** A flag set when the encoded PDUs are written segment by segment */
+    private boolean gatheringWrites;
     
     /**
      * Creates a new instance of LdapProtocolEncoder.
@@ -74,12 +91,62 @@ public class LdapProtocolEncoder implements ProtocolEncoder
     }
 
 
+    /**
+     * Creates a new instance of LdapProtocolEncoder which encodes the messages into
+     * buffers taken from a pool. When direct buffers are not requested, the encoded
+     * PDU is handed to MINA without being copied, and the buffer returns to the pool
+     * once it has been written, provided the codec is installed with a
+     * {@link LdapProtocolCodecFilter}. Otherwise, the PDU is copied into a direct IoBuffer
+     * allocated by the current MINA IoBufferAllocator, and the buffer immediately
+     * returns to the pool.
+     *
+     * @param ldapApiService The Service to use
+     * @param bufferPool The pool of Asn1Buffers
+     * @param directBuffers If the encoded PDUs must be written from direct buffers
+     */
+    public LdapProtocolEncoder( LdapApiService ldapApiService, Asn1BufferPool bufferPool, boolean directBuffers )
+    {
+        codec = ldapApiService;
+        this.bufferPool = bufferPool;
+        this.directBuffers = directBuffers;
+    }
+
+
+    /**
+     * Creates a new instance of LdapProtocolEncoder.
+     *
+     * @param ldapApiService The Service to use
+     * @param gatheringWrites If true, each message is encoded into a new {@link Asn1Buffer2},
+     * which segments are written one after the other, without being flattened into a
+     * single buffer. This is useful for very large messages.
+     */
+    public LdapProtocolEncoder( LdapApiService ldapApiService, boolean gatheringWrites )
+    {
+        codec = ldapApiService;
+        this.gatheringWrites = gatheringWrites;
+    }
+
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void encode( IoSession session, Object message, ProtocolEncoderOutput out ) throws Exception
     {
+        if ( gatheringWrites )
+        {
+            encodeGathering( message, out );
+
+            return;
+        }
+
+        if ( bufferPool != null )
+        {
+            encodePooled( session, message, out );
+            
+            return;
+        }
+        
         Asn1Buffer asn1Buffer = threadLocalStorage.get();
         
         if ( asn1Buffer == null )
@@ -92,7 +159,7 @@ public class LdapProtocolEncoder implements ProtocolEncoder
         
         try
         { 
-            LdapEncoder.encodeMessage( asn1Buffer, codec, ( Message ) message );
+            LdapEncoder.encodeMessageReverse( asn1Buffer, codec, ( Message ) message );
             encoded = asn1Buffer.getBytes();
         }
         catch ( EncoderException e )
@@ -119,6 +186,96 @@ public class LdapProtocolEncoder implements ProtocolEncoder
     }
 
 
+    /**
+     * Encode a message into a pooled buffer, and write it without copying it,
+     * unless direct buffers are requested. The buffer is picked using the size of
+     * the previous PDU encoded for the same session.
+     */
+    private void encodePooled( IoSession session, Object message, ProtocolEncoderOutput out )
+        throws EncoderException
+    {
+        AtomicInteger lastEncodedSize = ( AtomicInteger ) session.getAttribute( LAST_ENCODED_SIZE );
+
+        if ( lastEncodedSize == null )
+        {
+            lastEncodedSize = new AtomicInteger();
+            AtomicInteger existing = ( AtomicInteger ) session.setAttributeIfAbsent( LAST_ENCODED_SIZE,
+                lastEncodedSize );
+
+            if ( existing != null )
+            {
+                lastEncodedSize = existing;
+            }
+        }
+
+        Asn1Buffer asn1Buffer = bufferPool.acquire( lastEncodedSize.get() );
+        IoBuffer ioBuffer;
+
+        try
+        {
+            LdapEncoder.encodeMessageReverse( asn1Buffer, codec, ( Message ) message );
+        }
+        catch ( EncoderException e )
+        {
+            bufferPool.release( asn1Buffer );
+            CODEC_LOG.error( I18n.err( I18n.ERR_14000_ERROR_ENCODING_MESSAGE, message, e.getMessage() ) );
+            throw e;
+        }
+
+        lastEncodedSize.set( asn1Buffer.getPos() );
+
+        if ( directBuffers )
+        {
+            ioBuffer = IoBuffer.allocate( asn1Buffer.getPos(), true );
+            asn1Buffer.copyTo( ioBuffer.buf() );
+            ioBuffer.flip();
+            bufferPool.release( asn1Buffer );
+        }
+        else
+        {
+            ioBuffer = new PooledIoBuffer( asn1Buffer, bufferPool );
+        }
+
+        if ( CODEC_LOG.isDebugEnabled() )
+        {
+            CODEC_LOG.debug( I18n.msg( I18n.MSG_14003_ENCODED_LDAP_MESSAGE, message, ioBuffer.getHexDump() ) );
+        }
+
+        out.write( ioBuffer );
+    }
+
+
+    /**
+     * Encode a message into a segmented buffer, and write all the segments. The
+     * buffer can't be reused, as MINA writes the segments asynchronously.
+     */
+    private void encodeGathering( Object message, ProtocolEncoderOutput out ) throws EncoderException
+    {
+        Asn1Buffer2 asn1Buffer = new Asn1Buffer2();
+
+        try
+        {
+            LdapEncoder.encodeMessageReverse( asn1Buffer, codec, ( Message ) message );
+        }
+        catch ( EncoderException e )
+        {
+            CODEC_LOG.error( I18n.err( I18n.ERR_14000_ERROR_ENCODING_MESSAGE, message, e.getMessage() ) );
+            throw e;
+        }
+
+        if ( CODEC_LOG.isDebugEnabled() )
+        {
+            CODEC_LOG.debug( I18n.msg( I18n.MSG_14003_ENCODED_LDAP_MESSAGE, message,
+                Strings.dumpBytes( asn1Buffer.getBytes().array() ) ) );
+        }
+
+        for ( ByteBuffer segment : asn1Buffer.getByteBuffers() )
+        {
+            out.write( IoBuffer.wrap( segment ) );
+        }
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,183 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.protocol.mina;
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.asn1.util.Asn1BufferPool;
+import org.apache.mina.core.buffer.AbstractIoBuffer;
+import org.apache.mina.core.buffer.IoBuffer;
+
+
+/**
+ * An IoBuffer wrapping the encoded PDU stored in a pooled {@link Asn1Buffer}, without
+ * copying it. MINA does not always free the buffers it has written, so the {@link LdapProtocolCodecFilter}
+ * calls {@link #free()} when the buffer has been sent, which gives the Asn1Buffer back to its pool.
+ * A buffer is only released once, whoever frees it first.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class PooledIoBuffer extends AbstractIoBuffer
+{
+    /** The wrapped ByteBuffer */
+    private ByteBuffer buf;
+
+    /** The Asn1Buffer containing the data, null for derived buffers */
+    private final Asn1Buffer asn1Buffer;
+
+    /** The pool the Asn1Buffer belongs to */
+    private final Asn1BufferPool pool;
+
+    /** A flag set when the Asn1Buffer has been released */
+    private final AtomicBoolean released = new AtomicBoolean( false );
+
+
+    /**
+     * Creates a new PooledIoBuffer instance
+     *
+     * @param asn1Buffer The Asn1Buffer containing the encoded PDU
+     * @param pool The pool the Asn1Buffer will be released to
+     */
+    PooledIoBuffer( Asn1Buffer asn1Buffer, Asn1BufferPool pool )
+    {
+        this( asn1Buffer.getBuffer(), asn1Buffer, pool );
+    }
+
+
+    /**
+     * Creates a new PooledIoBuffer instance
+     */
+    private PooledIoBuffer( ByteBuffer buf, Asn1Buffer asn1Buffer, Asn1BufferPool pool )
+    {
+        super( IoBuffer.getAllocator(), buf.capacity() );
+        this.buf = buf;
+        this.asn1Buffer = asn1Buffer;
+        this.pool = pool;
+    }
+
+
+    /**
+     * Creates a derived PooledIoBuffer instance, which does not own the Asn1Buffer
+     */
+    private PooledIoBuffer( PooledIoBuffer parent, ByteBuffer buf )
+    {
+        super( parent );
+        this.buf = buf;
+        this.asn1Buffer = null;
+        this.pool = null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ByteBuffer buf()
+    {
+        return buf;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void buf( ByteBuffer buf )
+    {
+        this.buf = buf;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected IoBuffer duplicate0()
+    {
+        return new PooledIoBuffer( this, buf.duplicate() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected IoBuffer slice0()
+    {
+        return new PooledIoBuffer( this, buf.slice() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected IoBuffer asReadOnlyBuffer0()
+    {
+        return new PooledIoBuffer( this, buf.asReadOnlyBuffer() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public byte[] array()
+    {
+        return buf.array();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int arrayOffset()
+    {
+        return buf.arrayOffset();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasArray()
+    {
+        return buf.hasArray();
+    }
+
+
+    /**
+     * Gives the Asn1Buffer back to its pool. Derived buffers don't own the
+     * Asn1Buffer, so freeing them does nothing.
+     */
+    @Override
+    public void free()
+    {
+        if ( ( asn1Buffer != null ) && released.compareAndSet( false, true ) )
+        {
+            pool.release( asn1Buffer );
+        }
+    }
+}
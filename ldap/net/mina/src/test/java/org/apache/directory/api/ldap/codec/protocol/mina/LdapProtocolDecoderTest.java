@@ -0,0 +1,113 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.protocol.mina;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.apache.directory.api.asn1.util.Asn1Buffer;
+import org.apache.directory.api.ldap.codec.api.LazyEntry;
+import org.apache.directory.api.ldap.codec.api.LdapApiService;
+import org.apache.directory.api.ldap.codec.api.LdapDecoder;
+import org.apache.directory.api.ldap.codec.api.LdapEncoder;
+import org.apache.directory.api.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.api.ldap.codec.osgi.DefaultLdapCodecService;
+import org.apache.directory.api.ldap.model.entry.DefaultEntry;
+import org.apache.directory.api.ldap.model.message.Message;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilter.NextFilter;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.AbstractProtocolDecoderOutput;
+import org.junit.Test;
+
+
+/**
+ * Test the decoding options of the LdapProtocolDecoder
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapProtocolDecoderTest
+{
+    /**
+     * Decodes a SearchResultEntry on a session with lazy entries, and optionally the
+     * single-pass decoder
+     */
+    private static SearchResultEntry decodeEntry( boolean fastPath ) throws Exception
+    {
+        LdapApiService codec = new DefaultLdapCodecService();
+
+        SearchResultEntry searchResultEntry = new SearchResultEntryImpl( 1 );
+        searchResultEntry.setEntry( new DefaultEntry( "cn=test,ou=system", "objectClass: person", "cn: test",
+            "sn: test" ) );
+        ByteBuffer pdu = LdapEncoder.encodeMessage( new Asn1Buffer(), codec, searchResultEntry );
+
+        DummySession session = new DummySession();
+        session.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR, new LdapMessageContainer<Message>( codec ) );
+        session.setAttribute( LdapDecoder.LAZY_ENTRIES_ATTR, Boolean.TRUE );
+
+        if ( fastPath )
+        {
+            session.setAttribute( LdapDecoder.FAST_PATH_ATTR, Boolean.TRUE );
+        }
+
+        AbstractProtocolDecoderOutput out = new AbstractProtocolDecoderOutput()
+        {
+            @Override
+            public void flush( NextFilter nextFilter, IoSession session )
+            {
+                // Nothing to do
+            }
+        };
+
+        new LdapProtocolDecoder().decode( session, IoBuffer.wrap( pdu ), out );
+
+        assertEquals( 1, out.getMessageQueue().size() );
+
+        return ( SearchResultEntry ) out.getMessageQueue().poll();
+    }
+
+
+    @Test
+    public void testFastPathDisabledByDefault() throws Exception
+    {
+        SearchResultEntry searchResultEntry = decodeEntry( false );
+
+        // The generic grammar does not produce lazy entries
+        assertFalse( searchResultEntry.getEntry() instanceof LazyEntry );
+        assertEquals( "test", searchResultEntry.getEntry().get( "sn" ).getString() );
+    }
+
+
+    @Test
+    public void testFastPath() throws Exception
+    {
+        SearchResultEntry searchResultEntry = decodeEntry( true );
+
+        assertTrue( searchResultEntry.getEntry() instanceof LazyEntry );
+        assertEquals( "test", searchResultEntry.getEntry().get( "sn" ).getString() );
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.api.ldap.codec.protocol.mina;
+
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.directory.api.asn1.util.Asn1BufferPool;
+import org.apache.directory.api.ldap.codec.osgi.DefaultLdapCodecService;
+import org.apache.directory.api.ldap.model.message.DeleteRequest;
+import org.apache.directory.api.ldap.model.message.DeleteRequestImpl;
+import org.apache.directory.api.ldap.model.name.Dn;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.filter.codec.ProtocolCodecFilter;
+import org.junit.Test;
+
+
+/**
+ * Test the pooled encoding path of the LdapProtocolEncoder
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapProtocolEncoderTest
+{
+    private static DeleteRequest newDeleteRequest( int messageId ) throws Exception
+    {
+        DeleteRequest deleteRequest = new DeleteRequestImpl();
+        deleteRequest.setMessageId( messageId );
+        deleteRequest.setName( new Dn( "cn=test,ou=system" ) );
+
+        return deleteRequest;
+    }
+
+
+    @Test
+    public void testPooledBuffersAreReleased() throws Exception
+    {
+        Asn1BufferPool pool = new Asn1BufferPool();
+        LdapProtocolCodecFactory factory = new LdapProtocolCodecFactory( new DefaultLdapCodecService(), pool, false );
+
+        DummySession session = new DummySession();
+        session.getFilterChain().addLast( "codec", new LdapProtocolCodecFilter( factory ) );
+
+        session.write( newDeleteRequest( 1 ) );
+        assertEquals( 1, pool.getAvailable() );
+
+        // The same buffer is used for the next PDU
+        session.write( newDeleteRequest( 2 ) );
+        session.write( newDeleteRequest( 3 ) );
+        assertEquals( 1, pool.getAvailable() );
+    }
+
+
+    @Test
+    public void testPooledBuffersAreNotReleasedByMina() throws Exception
+    {
+        Asn1BufferPool pool = new Asn1BufferPool();
+        LdapProtocolCodecFactory factory = new LdapProtocolCodecFactory( new DefaultLdapCodecService(), pool, false );
+
+        DummySession session = new DummySession();
+        session.getFilterChain().addLast( "codec", new ProtocolCodecFilter( factory ) );
+
+        session.write( newDeleteRequest( 1 ) );
+        session.write( newDeleteRequest( 2 ) );
+        assertEquals( 0, pool.getAvailable() );
+    }
+
+
+    @Test
+    public void testDirectBuffersAreReleasedImmediately() throws Exception
+    {
+        Asn1BufferPool pool = new Asn1BufferPool();
+        LdapProtocolCodecFactory factory = new LdapProtocolCodecFactory( new DefaultLdapCodecService(), pool, true );
+
+        DummySession session = new DummySession();
+        session.getFilterChain().addLast( "codec", new ProtocolCodecFilter( factory ) );
+
+        session.write( newDeleteRequest( 1 ) );
+        session.write( newDeleteRequest( 2 ) );
+        assertEquals( 1, pool.getAvailable() );
+    }
+}
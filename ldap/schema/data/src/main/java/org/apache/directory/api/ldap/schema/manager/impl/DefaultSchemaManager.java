@@ -2511,6 +2511,31 @@ public class DefaultSchemaManager implements SchemaManager
     }
 
 
+    /**
+     * @return The maximum number of normalized values cached by each MatchingRule
+     * Normalizer, 0 if the normalized values are not cached
+     */
+    public int getNormalizerCacheSize()
+    {
+        return registries.getNormalizerCacheSize();
+    }
+
+
+    /**
+     * Sets the maximum number of normalized values cached by each MatchingRule
+     * Normalizer, so that the values which are frequently normalized (ObjectClass
+     * names, member Dns...) are only normalized once. The normalized values are not
+     * cached by default.
+     *
+     * @param normalizerCacheSize The maximum number of cached values, or 0 to disable the caches
+     * @throws LdapException If the AttributeTypes normalizers can't be updated
+     */
+    public void setNormalizerCacheSize( int normalizerCacheSize ) throws LdapException
+    {
+        registries.setNormalizerCacheSize( normalizerCacheSize );
+    }
+
+
     /**
      * {@inheritDoc}
      */
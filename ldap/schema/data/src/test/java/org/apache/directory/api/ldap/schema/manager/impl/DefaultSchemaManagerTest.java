@@ -20,7 +20,17 @@
 package org.apache.directory.api.ldap.schema.manager.impl;
 
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+import org.apache.directory.api.ldap.model.entry.Value;
+import org.apache.directory.api.ldap.model.schema.AttributeType;
+import org.apache.directory.api.ldap.model.schema.Normalizer;
 import org.apache.directory.api.ldap.model.schema.SyntaxChecker;
+import org.apache.directory.api.ldap.model.schema.normalizers.CachingNormalizer;
 import org.junit.Test;
 
 
@@ -46,4 +56,43 @@ public class DefaultSchemaManagerTest
             sc.isValidSyntax( "foo" );
         }
     }
+
+
+    /**
+     * Verifies that the values normalized by the MatchingRules are cached
+     * once the cache size has been set.
+     */
+    @Test
+    public void testNormalizerCache() throws Exception
+    {
+        DefaultSchemaManager schemaManager = new DefaultSchemaManager();
+        AttributeType objectClass = schemaManager.getAttributeType( SchemaConstants.OBJECT_CLASS_AT );
+        Normalizer normalizer = objectClass.getEquality().getNormalizer();
+
+        assertEquals( 0, schemaManager.getNormalizerCacheSize() );
+        assertFalse( normalizer instanceof CachingNormalizer );
+
+        schemaManager.setNormalizerCacheSize( 100 );
+
+        assertEquals( 100, schemaManager.getNormalizerCacheSize() );
+        assertTrue( objectClass.getEquality().getNormalizer() instanceof CachingNormalizer );
+
+        CachingNormalizer cachingNormalizer = ( CachingNormalizer ) objectClass.getEquality().getNormalizer();
+
+        assertSame( normalizer, cachingNormalizer.getNormalizer() );
+        assertSame( cachingNormalizer, schemaManager.getNormalizerMapping()
+            .get( SchemaConstants.OBJECT_CLASS_AT_OID ).getNormalizer() );
+
+        Value value1 = new Value( objectClass, "InetOrgPerson" );
+        Value value2 = new Value( objectClass, "InetOrgPerson" );
+
+        assertEquals( "2.16.840.1.113730.3.2.2", value1.getNormalized() );
+        assertEquals( value1, value2 );
+        assertEquals( 1L, cachingNormalizer.getMisses() );
+        assertEquals( 1L, cachingNormalizer.getHits() );
+
+        schemaManager.setNormalizerCacheSize( 0 );
+
+        assertSame( normalizer, objectClass.getEquality().getNormalizer() );
+    }
 }
@@ -25,6 +25,7 @@ import static org.apache.directory.api.util.Hex.encodeHex;
 import static org.apache.directory.api.util.Hex.getHexValue;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -819,6 +820,30 @@ public final class Strings
     }
 
 
+    /**
+     * Return an UTF-8 encoded String from the remaining bytes of a ByteBuffer.
+     * The buffer position is not modified.
+     *
+     * @param buffer The ByteBuffer to be transformed to a String
+     * @return A String.
+     */
+    public static String utf8ToString( ByteBuffer buffer )
+    {
+        if ( buffer == null )
+        {
+            return "";
+        }
+
+        if ( buffer.hasArray() )
+        {
+            return new String( buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(),
+                StandardCharsets.UTF_8 );
+        }
+
+        return StandardCharsets.UTF_8.decode( buffer.duplicate() ).toString();
+    }
+
+
     /**
      * Check if a text is present at the current position in a buffer.
      *